@@ -20,6 +20,7 @@ package de.cyface.datacapturing.model;
 
 import static de.cyface.datacapturing.TestUtils.AUTHORITY;
 import static de.cyface.datacapturing.TestUtils.TAG;
+import static de.cyface.datacapturing.persistence.CapturingPersistenceBehaviour.DEFAULT_WRITE_QUEUE_CAPACITY;
 import static de.cyface.persistence.Utils.getEventUri;
 import static de.cyface.persistence.Utils.getGeoLocationsUri;
 import static de.cyface.persistence.Utils.getIdentifierUri;
@@ -59,6 +60,7 @@ import androidx.test.platform.app.InstrumentationRegistry;
 import androidx.test.rule.provider.ProviderTestRule;
 
 import de.cyface.datacapturing.persistence.CapturingPersistenceBehaviour;
+import de.cyface.datacapturing.persistence.OverflowPolicy;
 import de.cyface.datacapturing.persistence.WritingDataCompletedCallback;
 import de.cyface.persistence.DefaultFileAccess;
 import de.cyface.persistence.DefaultLocationCleaningStrategy;
@@ -92,7 +94,7 @@ import de.cyface.utils.Validate;
  *
  * @author Klemens Muthmann
  * @author Armin Schnabel
- * @version 5.6.0
+ * @version 5.6.2
  * @since 1.0.0
  */
 @RunWith(AndroidJUnit4.class)
@@ -137,7 +139,9 @@ public class CapturedDataWriterTest {
         context = InstrumentationRegistry.getInstrumentation().getTargetContext();
 
         SharedTestUtils.clearPersistenceLayer(context, context.getContentResolver(), AUTHORITY);
-        this.capturingBehaviour = new CapturingPersistenceBehaviour();
+        // Insert each location immediately as the tests check the database right after storing them
+        this.capturingBehaviour = new CapturingPersistenceBehaviour(DEFAULT_WRITE_QUEUE_CAPACITY, OverflowPolicy.BLOCK,
+                1, 0L);
         oocut = new PersistenceLayer<>(context, mockResolver, AUTHORITY, capturingBehaviour);
         // This is normally called in the <code>DataCapturingService#Constructor</code>
         oocut.restoreOrCreateDeviceId();
@@ -275,11 +279,14 @@ public class CapturedDataWriterTest {
 
             // Point3ds
             Point3dFile accelerationsFile = Point3dFile.loadFile(context, fileAccessLayer, measurement.getIdentifier(),
-                    Point3dFile.ACCELERATIONS_FOLDER_NAME, Point3dFile.ACCELERATIONS_FILE_EXTENSION);
+                    Point3dFile.ACCELERATIONS_FOLDER_NAME, Point3dFile.ACCELERATIONS_FILE_EXTENSION,
+                    measurement.getFileFormatVersion());
             Point3dFile rotationsFile = Point3dFile.loadFile(context, fileAccessLayer, measurement.getIdentifier(),
-                    Point3dFile.ROTATIONS_FOLDER_NAME, Point3dFile.ROTATION_FILE_EXTENSION);
+                    Point3dFile.ROTATIONS_FOLDER_NAME, Point3dFile.ROTATION_FILE_EXTENSION,
+                    measurement.getFileFormatVersion());
             Point3dFile directionsFile = Point3dFile.loadFile(context, fileAccessLayer, measurement.getIdentifier(),
-                    Point3dFile.DIRECTIONS_FOLDER_NAME, Point3dFile.DIRECTION_FILE_EXTENSION);
+                    Point3dFile.DIRECTIONS_FOLDER_NAME, Point3dFile.DIRECTION_FILE_EXTENSION,
+                    measurement.getFileFormatVersion());
 
             List<Point3d> accelerations = deserialize(fileAccessLayer, accelerationsFile.getFile(), TEST_DATA_COUNT);
             List<Point3d> rotations = deserialize(fileAccessLayer, rotationsFile.getFile(), TEST_DATA_COUNT);
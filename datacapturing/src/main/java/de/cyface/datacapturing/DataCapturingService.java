@@ -34,6 +34,7 @@ import java.lang.ref.WeakReference;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
@@ -51,6 +52,7 @@ import android.content.pm.PackageManager;
 import android.net.ConnectivityManager;
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.IBinder;
 import android.os.Message;
 import android.os.Messenger;
@@ -104,7 +106,7 @@ import de.cyface.utils.Validate;
  *
  * @author Klemens Muthmann
  * @author Armin Schnabel
- * @version 18.0.3
+ * @version 18.1.0
  * @since 1.0.0
  */
 public abstract class DataCapturingService {
@@ -198,6 +200,11 @@ public abstract class DataCapturingService {
      */
     @SuppressWarnings({"WeakerAccess", "RedundantSuppression"}) // Used by SDK integrators (CY)
     public final static long IS_RUNNING_CALLBACK_TIMEOUT = 500L;
+    /**
+     * The number of ms to wait for the {@link DataCapturingBackgroundService} to persist the captured data which is
+     * still buffered when the capturing is stopped or paused, see {@link #stopCapturing()}.
+     */
+    private final static long STOP_CAPTURING_TIMEOUT_MILLIS = 5_000L;
     /**
      * The frequency in which sensor data should be captured. If this is higher than the maximum
      * frequency the maximum frequency is used. If this is lower than the maximum frequency the system
@@ -345,7 +352,8 @@ public abstract class DataCapturingService {
      * <p>
      * This is an asynchronous method. You should not assume that the service has been stopped after the method returns.
      * The provided <code>finishedHandler</code> is called after the <code>DataCapturingBackgroundService</code> has
-     * successfully shutdown.
+     * successfully shutdown. Before the {@link MeasurementStatus} is changed, this method waits a few seconds at most
+     * until the <code>DataCapturingBackgroundService</code> persisted the captured data which is still buffered.
      * <p>
      * ATTENTION: It seems to be possible, that the service stopped signal is never received. Under these circumstances
      * your handle might wait forever. You might want to consider using some timeout mechanism to prevent your app from
@@ -392,7 +400,8 @@ public abstract class DataCapturingService {
      * <p>
      * This is an asynchronous method. You should not assume that the service has been stopped after the method returns.
      * The provided <code>finishedHandler</code> is called after the <code>DataCapturingBackgroundService</code> has
-     * successfully shutdown.
+     * successfully shutdown. Before the {@link MeasurementStatus} is changed, this method waits a few seconds at most
+     * until the <code>DataCapturingBackgroundService</code> persisted the captured data which is still buffered.
      * <p>
      * ATTENTION: It seems to be possible, that the service stopped signal is never received. Under these circumstances
      * your handle might wait forever. You might want to consider using some timeout mechanism to prevent your app from
@@ -774,6 +783,9 @@ public abstract class DataCapturingService {
         LocalBroadcastManager.getInstance(context).registerReceiver(finishedHandler,
                 new IntentFilter(MessageCodes.LOCAL_BROADCAST_SERVICE_STOPPED));
 
+        // The data is persisted before the caller changes the MeasurementStatus, so it is e.g. synchronized completely
+        stopCapturing();
+
         final boolean serviceWasActive;
         try {
             // For some reasons we have to call the unbind here.
@@ -794,6 +806,54 @@ public abstract class DataCapturingService {
         return serviceWasActive;
     }
 
+    /**
+     * Asks the bound {@link DataCapturingBackgroundService} to stop the capturing and to persist the captured data
+     * which is still buffered, see {@link MessageCodes#STOP_CAPTURING}, and waits until it confirmed this.
+     * <p>
+     * The background service inserts the {@link GeoLocation}s in groups and writes the sensor data asynchronously. It
+     * persists the remaining data when it's destroyed, but {@link Context#stopService(Intent)} returns before that.
+     * Without waiting here, a {@link Measurement} could be finished and e.g. synchronized while its last data is not
+     * written yet. If the background service does not answer within {@link #STOP_CAPTURING_TIMEOUT_MILLIS}, the data
+     * is persisted when it's destroyed.
+     */
+    private void stopCapturing() {
+        final Messenger toServiceMessenger = this.toServiceMessenger;
+        if (toServiceMessenger == null) {
+            Log.w(TAG, "Not bound to the background service, unable to wait for the captured data to be persisted.");
+            return;
+        }
+
+        // The answer is received on a separate thread as the calling thread is usually the main thread
+        final HandlerThread replyThread = new HandlerThread("CapturingStoppedReceiver");
+        replyThread.start();
+        try {
+            final CountDownLatch capturingStopped = new CountDownLatch(1);
+            final Message stopCapturing = Message.obtain(null, MessageCodes.STOP_CAPTURING);
+            stopCapturing.replyTo = new Messenger(new Handler(replyThread.getLooper(), new Handler.Callback() {
+                @Override
+                public boolean handleMessage(@NonNull final Message msg) {
+                    if (msg.what != MessageCodes.CAPTURING_STOPPED) {
+                        return false;
+                    }
+                    capturingStopped.countDown();
+                    return true;
+                }
+            }));
+            toServiceMessenger.send(stopCapturing);
+            if (!capturingStopped.await(STOP_CAPTURING_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                Log.w(TAG, "Background service did not confirm in time that the captured data is persisted.");
+            }
+        } catch (final RemoteException e) {
+            // The background service is not running anymore, so there is no buffered data
+            Log.w(TAG, "Unable to ask the background service to stop capturing.", e);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            Log.w(TAG, "Interrupted while waiting for the captured data to be persisted.", e);
+        } finally {
+            replyThread.quitSafely();
+        }
+    }
+
     /**
      * This message is sent to the {@link ShutDownFinishedHandler} to inform callers that the async stop
      * command was executed.
@@ -878,7 +938,8 @@ public abstract class DataCapturingService {
         Validate.isTrue(!hasOpenMeasurements, "There is a dead OPEN measurement!");
         Validate.isTrue(!hasPausedMeasurements, "There is a dead PAUSED measurement or wrong life-cycle call.");
 
-        return persistenceLayer.newMeasurement(modality);
+        return persistenceLayer.newMeasurement(modality,
+                persistenceLayer.getPersistenceBehaviour().getPersistenceFileFormatVersion());
     }
 
     /**
@@ -28,7 +28,7 @@ import de.cyface.utils.Validate;
  *
  * @author Klemens Muthmann
  * @author Armin Schnabel
- * @version 4.0.2
+ * @version 4.1.0
  * @since 2.0.0
  */
 public class MessageCodes {
@@ -39,6 +39,18 @@ public class MessageCodes {
      * latter.
      */
     public static final int REGISTER_CLIENT = 1;
+    /**
+     * The code for messages sent from the {@link DataCapturingService} to the
+     * {@link de.cyface.datacapturing.backend.DataCapturingBackgroundService} before it's stopped or paused, to stop the
+     * capturing and to persist the captured data which is still buffered. The background service answers with
+     * {@link #CAPTURING_STOPPED} to the {@code replyTo} of the message.
+     */
+    public static final int STOP_CAPTURING = 2;
+    /**
+     * The code for messages sent from the {@link de.cyface.datacapturing.backend.DataCapturingBackgroundService} to the
+     * {@code replyTo} of a {@link #STOP_CAPTURING} message when all captured data is persisted.
+     */
+    public static final int CAPTURING_STOPPED = 3;
     /**
      * The code for messages sent from the {@link de.cyface.datacapturing.backend.DataCapturingBackgroundService} to the
      * {@link DataCapturingService} every time a new geo location was captured.
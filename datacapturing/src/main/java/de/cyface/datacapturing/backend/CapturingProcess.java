@@ -24,8 +24,6 @@ import static de.cyface.utils.TestEnvironment.isEmulator;
 import java.io.Closeable;
 import java.util.Collection;
 import java.util.HashSet;
-import java.util.List;
-import java.util.Vector;
 
 import android.hardware.Sensor;
 import android.hardware.SensorEvent;
@@ -45,7 +43,7 @@ import androidx.annotation.NonNull;
 import de.cyface.datacapturing.exception.DataCapturingException;
 import de.cyface.datacapturing.model.CapturedData;
 import de.cyface.persistence.model.GeoLocation;
-import de.cyface.persistence.model.Point3d;
+import de.cyface.persistence.model.Point3dBuffer;
 import de.cyface.utils.Validate;
 
 /**
@@ -54,7 +52,7 @@ import de.cyface.utils.Validate;
  *
  * @author Klemens Muthmann
  * @author Armin Schnabel
- * @version 3.1.0
+ * @version 3.2.0
  * @since 1.0.0
  */
 public abstract class CapturingProcess implements SensorEventListener, LocationListener, Closeable {
@@ -73,16 +71,22 @@ public abstract class CapturingProcess implements SensorEventListener, LocationL
     private final int delayBetweenSensorEventsInMicroseconds;
     /**
      * Cache for captured but not yet processed points from the accelerometer.
+     * <p>
+     * The buffer is handed over to the listeners in {@link #handOverSensorData()} and replaced by a new one.
      */
-    private final List<Point3d> accelerations;
+    private Point3dBuffer accelerations;
     /**
      * Cache for captured but not yet processed points from the gyroscope.
+     * <p>
+     * The buffer is handed over to the listeners in {@link #handOverSensorData()} and replaced by a new one.
      */
-    private final List<Point3d> rotations;
+    private Point3dBuffer rotations;
     /**
      * Cache for captured but not yet processed points from the compass.
+     * <p>
+     * The buffer is handed over to the listeners in {@link #handOverSensorData()} and replaced by a new one.
      */
-    private final List<Point3d> directions;
+    private Point3dBuffer directions;
     /**
      * A <code>List</code> of listeners we need to inform about captured data.
      */
@@ -150,9 +154,9 @@ public abstract class CapturingProcess implements SensorEventListener, LocationL
         Validate.notNull("Illegal argument: locationEventHandlerThread was null!", locationEventHandlerThread);
         Validate.notNull("Illegal argument: sensorEventHandlerThread was null!", sensorEventHandlerThread);
 
-        this.accelerations = new Vector<>(30);
-        this.rotations = new Vector<>(30);
-        this.directions = new Vector<>(30);
+        this.accelerations = new Point3dBuffer();
+        this.rotations = new Point3dBuffer();
+        this.directions = new Point3dBuffer();
         this.listener = new HashSet<>();
         this.locationManager = locationManager;
         this.sensorService = sensorService;
@@ -206,15 +210,12 @@ public abstract class CapturingProcess implements SensorEventListener, LocationL
                     listener.onLocationCaptured(
                             // The Android Location contains the accuracy in meters. GeoLocation uses cm.
                             new GeoLocation(latitude, longitude, locationTime, speed, locationAccuracyMeters * 100));
-                    try {
-                        listener.onDataCaptured(new CapturedData(accelerations, rotations, directions));
-                    } catch (DataCapturingException e) {
-                        throw new IllegalStateException(e);
-                    }
                 }
-                accelerations.clear();
-                rotations.clear();
-                directions.clear();
+                try {
+                    handOverSensorData();
+                } catch (DataCapturingException e) {
+                    throw new IllegalStateException(e);
+                }
             }
         }
     }
@@ -252,14 +253,7 @@ public abstract class CapturingProcess implements SensorEventListener, LocationL
         if (!locationStatusHandler.hasLocationFix() && (lastNoGeoLocationFixUpdateTime == 0
                 || (thisSensorEventTime - lastNoGeoLocationFixUpdateTime > 1_000))) {
             try {
-                for (CapturingProcessListener listener : this.listener) {
-                    CapturedData capturedData = new CapturedData(accelerations, rotations, directions);
-                    listener.onDataCaptured(capturedData);
-                }
-
-                accelerations.clear();
-                rotations.clear();
-                directions.clear();
+                handOverSensorData();
                 lastNoGeoLocationFixUpdateTime = thisSensorEventTime;
             } catch (SecurityException | DataCapturingException e) {
                 throw new IllegalStateException(e);
@@ -278,6 +272,29 @@ public abstract class CapturingProcess implements SensorEventListener, LocationL
         }
     }
 
+    /**
+     * Hands the cached sensor data over to all listeners.
+     * <p>
+     * The filled buffers are passed to the listeners as {@code Point3dBatch}es without copying them. They are replaced
+     * by new buffers of the same capacity so that the listeners can keep the handed over data while capturing
+     * continues. This way only a few arrays are allocated per hand-off instead of one object per sensor event.
+     * <p>
+     * This method must be called while holding the lock of this object.
+     *
+     * @throws DataCapturingException If a listener failed to handle the captured data.
+     */
+    private void handOverSensorData() throws DataCapturingException {
+        final CapturedData capturedData = new CapturedData(accelerations.toBatch(), rotations.toBatch(),
+                directions.toBatch());
+        accelerations = new Point3dBuffer(accelerations.capacity());
+        rotations = new Point3dBuffer(rotations.capacity());
+        directions = new Point3dBuffer(directions.capacity());
+
+        for (final CapturingProcessListener listener : this.listener) {
+            listener.onDataCaptured(capturedData);
+        }
+    }
+
     /**
      * Calculates the static offset (ms) which needs to be added to the `event.time` (ns) in order
      * to calculate the Unix timestamp of the event.
@@ -377,14 +394,15 @@ public abstract class CapturingProcess implements SensorEventListener, LocationL
      * Saves a captured {@code SensorEvent} to the local in memory storage for that point.
      * as different vendors and Android versions store different timestamps in the event.ts
      * (e.g. uptimeNano, sysTimeNano) we use an offset from the first sample captures to get the same timestamp format.
+     * <p>
+     * This is called for each sensor event and, thus, must not allocate any objects.
      *
      * @param event The Android {@code SensorEvent} to store.
      * @param storage The storage to store the {@code SensorEvent} to.
      */
-    private void saveSensorValue(final SensorEvent event, final List<Point3d> storage) {
-        Point3d dataPoint = new Point3d(event.values[0], event.values[1], event.values[2],
-                event.timestamp / 1_000_000L + eventTimeOffsetMillis);
-        storage.add(dataPoint);
+    private void saveSensorValue(final SensorEvent event, final Point3dBuffer storage) {
+        storage.add(event.timestamp / 1_000_000L + eventTimeOffsetMillis, event.values[0], event.values[1],
+                event.values[2]);
     }
 
     /**
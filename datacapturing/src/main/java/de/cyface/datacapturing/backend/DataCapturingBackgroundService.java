@@ -29,9 +29,7 @@ import static de.cyface.synchronization.BundlesExtrasCodes.STOPPED_SUCCESSFULLY;
 import static de.cyface.utils.DiskConsumption.spaceAvailable;
 
 import java.lang.ref.WeakReference;
-import java.util.Collections;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Set;
 
 import android.annotation.SuppressLint;
@@ -71,7 +69,7 @@ import de.cyface.persistence.PersistenceBehaviour;
 import de.cyface.persistence.PersistenceLayer;
 import de.cyface.persistence.model.GeoLocation;
 import de.cyface.persistence.model.Measurement;
-import de.cyface.persistence.model.Point3d;
+import de.cyface.persistence.model.Point3dBatch;
 import de.cyface.persistence.serialization.MeasurementSerializer;
 import de.cyface.synchronization.BundlesExtrasCodes;
 import de.cyface.utils.CursorIsNullException;
@@ -87,7 +85,7 @@ import de.cyface.utils.Validate;
  *
  * @author Klemens Muthmann
  * @author Armin Schnabel
- * @version 7.1.3
+ * @version 7.3.0
  * @since 2.0.0
  */
 public class DataCapturingBackgroundService extends Service implements CapturingProcessListener {
@@ -239,16 +237,29 @@ public class DataCapturingBackgroundService extends Service implements Capturing
         if (wakeLock != null && wakeLock.isHeld()) {
             wakeLock.release();
         }
+        stopCapturing();
+
+        // OnDestroy is called before the messages below to make sure it's semantic is right (stopped)
+        super.onDestroy();
+        sendStoppedMessage();
+    }
+
+    /**
+     * Stops the capturing and persists the captured data which is still buffered: the buffered {@link GeoLocation}s
+     * are inserted and the sensor data files are written, closed and verified.
+     * <p>
+     * This is called when the {@link DataCapturingService} asks for it with {@link MessageCodes#STOP_CAPTURING} before
+     * it changes the {@link de.cyface.persistence.model.MeasurementStatus}, and again in {@link #onDestroy()}, e.g.
+     * when this service is stopped without that message. Calling it again has no effect.
+     */
+    private void stopCapturing() {
         if (dataCapturing != null) {
             dataCapturing.close();
+            dataCapturing = null;
         }
         if (persistenceLayer != null) {
             persistenceLayer.shutdown();
         }
-
-        // OnDestroy is called before the messages below to make sure it's semantic is right (stopped)
-        super.onDestroy();
-        sendStoppedMessage();
     }
 
     /**
@@ -338,8 +349,10 @@ public class DataCapturingBackgroundService extends Service implements Capturing
 
             // Ensure we resume measurements with a known file format version
             final short persistenceFileFormatVersion = measurement.getFileFormatVersion();
-            Validate.isTrue(persistenceFileFormatVersion == MeasurementSerializer.PERSISTENCE_FILE_FORMAT_VERSION,
-                    "Resume a measurement of a previous persistence file format version is not yet supported!");
+            // Previous versions are supported as the data is appended in the version of the measurement
+            Validate.isTrue(MeasurementSerializer.isSupported(persistenceFileFormatVersion),
+                    "Resume a measurement of an unknown persistence file format version: "
+                            + persistenceFileFormatVersion);
         } catch (final CursorIsNullException e) {
             // because onStartCommand is called by Android so we can't throw soft exception.
             throw new IllegalStateException(e);
@@ -431,14 +444,14 @@ public class DataCapturingBackgroundService extends Service implements Capturing
 
     @Override
     public void onDataCaptured(final @NonNull CapturedData data) {
-        final List<Point3d> accelerations = data.getAccelerations();
-        final List<Point3d> rotations = data.getRotations();
-        final List<Point3d> directions = data.getDirections();
+        final Point3dBatch accelerations = data.getAccelerationBatch();
+        final Point3dBatch rotations = data.getRotationBatch();
+        final Point3dBatch directions = data.getDirectionBatch();
         final int iterationSize = Math.max(accelerations.size(), Math.max(directions.size(), rotations.size()));
         for (int i = 0; i < iterationSize; i += MAXIMUM_CAPTURED_DATA_MESSAGE_SIZE) {
 
-            final CapturedData dataSublist = new CapturedData(sampleSubList(accelerations, i),
-                    sampleSubList(rotations, i), sampleSubList(directions, i));
+            final CapturedData dataSublist = new CapturedData(sampleSubBatch(accelerations, i),
+                    sampleSubBatch(rotations, i), sampleSubBatch(directions, i));
             informCaller(MessageCodes.DATA_CAPTURED, dataSublist);
             capturingBehaviour.storeData(dataSublist, currentMeasurementIdentifier, new WritingDataCompletedCallback() {
                 @Override
@@ -451,15 +464,17 @@ public class DataCapturingBackgroundService extends Service implements Capturing
 
     /**
      * Extracts a subset of maximal {@code MAXIMUM_CAPTURED_DATA_MESSAGE_SIZE} elements of captured data.
+     * <p>
+     * The subset is a view on the provided batch and, thus, does not copy any samples.
      *
-     * @param completeList The {@link List<Point3d>} to extract a subset from
-     * @param fromIndex The low endpoint (inclusive) of the subList
-     * @return The extracted sublist
+     * @param completeBatch The {@link Point3dBatch} to extract a subset from
+     * @param fromIndex The low endpoint (inclusive) of the subset
+     * @return The extracted subset
      */
-    private @NonNull List<Point3d> sampleSubList(final @NonNull List<Point3d> completeList, final int fromIndex) {
+    private @NonNull Point3dBatch sampleSubBatch(final @NonNull Point3dBatch completeBatch, final int fromIndex) {
         final int endIndex = fromIndex + MAXIMUM_CAPTURED_DATA_MESSAGE_SIZE;
-        final int toIndex = Math.min(endIndex, completeList.size());
-        return (fromIndex >= toIndex) ? Collections.<Point3d> emptyList() : completeList.subList(fromIndex, toIndex);
+        final int toIndex = Math.min(endIndex, completeBatch.size());
+        return (fromIndex >= toIndex) ? Point3dBatch.EMPTY : completeBatch.subBatch(fromIndex, toIndex);
     }
 
     @Override
@@ -520,7 +535,7 @@ public class DataCapturingBackgroundService extends Service implements Capturing
      * - We don't use Broadcasts here to reduce the amount of broadcasts.
      *
      * @author Klemens Muthmann
-     * @version 1.0.1
+     * @version 1.1.0
      * @since 1.0.0
      */
     private final static class MessageHandler extends Handler {
@@ -550,7 +565,6 @@ public class DataCapturingBackgroundService extends Service implements Capturing
 
             final DataCapturingBackgroundService service = context.get();
 
-            // noinspection SwitchStatementWithTooFewBranches
             switch (msg.what) {
                 case MessageCodes.REGISTER_CLIENT:
                     Log.v(TAG, "Registering client!");
@@ -559,6 +573,15 @@ public class DataCapturingBackgroundService extends Service implements Capturing
                     }
                     service.clients.add(msg.replyTo);
                     break;
+                case MessageCodes.STOP_CAPTURING:
+                    Log.v(TAG, "Stopping capturing!");
+                    service.stopCapturing();
+                    try {
+                        msg.replyTo.send(Message.obtain(null, MessageCodes.CAPTURING_STOPPED));
+                    } catch (final RemoteException e) {
+                        Log.w(TAG, "Unable to confirm that the capturing stopped.", e);
+                    }
+                    break;
                 default:
                     super.handleMessage(msg);
             }
@@ -1,34 +1,35 @@
 package de.cyface.datacapturing.model;
 
-import java.util.Collections;
-import java.util.LinkedList;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.List;
 
 import android.os.Parcel;
 import android.os.Parcelable;
 import androidx.annotation.NonNull;
 import de.cyface.persistence.model.Point3d;
+import de.cyface.persistence.model.Point3dBatch;
 
 /**
  * Immutable data handling object for captured data.
  *
  * @author Klemens Muthmann
- * @version 3.0.3
+ * @version 4.0.0
  * @since 1.0.0
  */
 public final class CapturedData implements Parcelable {
     /**
      * All accelerations captured since the last position was captured.
      */
-    private final List<Point3d> accelerations;
+    private final Point3dBatch accelerations;
     /**
      * All rotations captured since the last position was captured.
      */
-    private final List<Point3d> rotations;
+    private final Point3dBatch rotations;
     /**
      * All directions captured since the last position was captured.
      */
-    private final List<Point3d> directions;
+    private final Point3dBatch directions;
 
     /**
      * Creates a new captured data object from the provided data. The lists are copied and thus may be changed after
@@ -47,30 +48,73 @@ public final class CapturedData implements Parcelable {
      */
     public CapturedData(final @NonNull List<Point3d> accelerations, final @NonNull List<Point3d> rotations,
                         final @NonNull List<Point3d> directions) {
-        this.accelerations = new LinkedList<>(accelerations);
-        this.rotations = new LinkedList<>(rotations);
-        this.directions = new LinkedList<>(directions);
+        this(new Point3dBatch(accelerations), new Point3dBatch(rotations), new Point3dBatch(directions));
     }
 
     /**
+     * Creates a new captured data object from the provided batches. As {@link Point3dBatch}es are immutable they
+     * are not copied.
+     *
+     * @param accelerations The raw acceleration values as points in a 3D space.
+     *            The batch contains all captured values since the last GNSS fix.
+     * @param rotations The raw rotational acceleration values as returned by the gyroscope.
+     *            The batch contains all captured values since the last GNSS fix.
+     * @param directions The intensity of the earth's magnetic field on each of the three axis in space.
+     *            The batch contains all captured values since the last GNSS fix.
+     */
+    public CapturedData(final @NonNull Point3dBatch accelerations, final @NonNull Point3dBatch rotations,
+                        final @NonNull Point3dBatch directions) {
+        this.accelerations = accelerations;
+        this.rotations = rotations;
+        this.directions = directions;
+    }
+
+    /**
+     * @return All accelerations captured since the last position was captured.
+     */
+    public Point3dBatch getAccelerationBatch() {
+        return accelerations;
+    }
+
+    /**
+     * @return All rotations captured since the last position was captured.
+     */
+    public Point3dBatch getRotationBatch() {
+        return rotations;
+    }
+
+    /**
+     * @return All directions captured since the last position was captured.
+     */
+    public Point3dBatch getDirectionBatch() {
+        return directions;
+    }
+
+    /**
+     * Prefer {@link #getAccelerationBatch()} which does not create one object per sample.
+     *
      * @return All accelerations captured since the last position was captured.
      */
     public List<Point3d> getAccelerations() {
-        return Collections.unmodifiableList(accelerations);
+        return accelerations.asList();
     }
 
     /**
+     * Prefer {@link #getRotationBatch()} which does not create one object per sample.
+     *
      * @return All rotations captured since the last position was captured.
      */
     public List<Point3d> getRotations() {
-        return Collections.unmodifiableList(rotations);
+        return rotations.asList();
     }
 
     /**
+     * Prefer {@link #getDirectionBatch()} which does not create one object per sample.
+     *
      * @return All directions captured since the last position was captured.
      */
     public List<Point3d> getDirections() {
-        return Collections.unmodifiableList(directions);
+        return directions.asList();
     }
 
     /*
@@ -79,13 +123,18 @@ public final class CapturedData implements Parcelable {
 
     /**
      * Recreates this object from the provided <code>Parcel</code>.
+     * <p>
+     * All samples are read from one contiguous byte block as written by {@link #writeToParcel(Parcel, int)}. The
+     * native byte order is used as the parcel never leaves the device.
      *
      * @param in Serialized form of a <code>CapturedData</code> object.
      */
     protected CapturedData(Parcel in) {
-        accelerations = in.createTypedArrayList(Point3d.CREATOR);
-        rotations = in.createTypedArrayList(Point3d.CREATOR);
-        directions = in.createTypedArrayList(Point3d.CREATOR);
+        final byte[] bytes = in.createByteArray();
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.nativeOrder());
+        accelerations = Point3dBatch.readFrom(buffer);
+        rotations = Point3dBatch.readFrom(buffer);
+        directions = Point3dBatch.readFrom(buffer);
     }
 
     /**
@@ -110,9 +159,13 @@ public final class CapturedData implements Parcelable {
 
     @Override
     public void writeToParcel(Parcel dest, int flags) {
-        dest.writeTypedList(accelerations);
-        dest.writeTypedList(rotations);
-        dest.writeTypedList(directions);
+        final ByteBuffer buffer = ByteBuffer
+                .allocate(accelerations.serializedSize() + rotations.serializedSize() + directions.serializedSize())
+                .order(ByteOrder.nativeOrder());
+        accelerations.writeTo(buffer);
+        rotations.writeTo(buffer);
+        directions.writeTo(buffer);
+        dest.writeByteArray(buffer.array());
     }
 
     /*
@@ -2,90 +2,367 @@ package de.cyface.datacapturing.persistence;
 
 import static de.cyface.datacapturing.Constants.BACKGROUND_TAG;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
 import android.util.Log;
 import androidx.annotation.NonNull;
 import de.cyface.datacapturing.model.CapturedData;
+import de.cyface.persistence.model.Point3dBatch;
 import de.cyface.persistence.serialization.Point3dFile;
+import de.cyface.persistence.serialization.Point3dFileAppender;
 
 /**
  * A class responsible for writing captured sensor data to the underlying persistence layer.
  * <p>
- * This is a throw away runnable. You should never run this twice. Doing so will cause duplicates inside the
- * persistence layer. Instead create a new instance per <code>CapturedData</code> to save.
+ * All data is written by one dedicated thread in the order it was submitted, so the samples in the
+ * {@link Point3dFile}s are strictly ordered. The submitted data is queued in a bounded queue which is allocated once.
+ * What happens when this queue is full is defined by the {@link OverflowPolicy}. When multiple {@link CapturedData}
+ * instances are queued they are appended with one gathering write per file. The submitting threads never write to
+ * the files themselves.
  *
  * @author Klemens Muthmann
  * @author Armin Schnabel
- * @version 4.0.1
+ * @version 6.0.2
  * @since 1.0.0
  */
-public class CapturedDataWriter implements Runnable {
+public class CapturedDataWriter implements Closeable {
 
     /**
      * The tag used to identify Logcat messages from this class.
      */
     private static final String TAG = BACKGROUND_TAG;
     /**
-     * The data to write.
+     * The time to wait for new data before the writer thread checks whether it was closed.
+     */
+    private static final long POLL_TIMEOUT_MILLIS = 100L;
+    /**
+     * The interval in which {@link #close()} logs that it still waits for the queued data to be written.
+     */
+    private static final long CLOSE_LOG_INTERVAL_MILLIS = 1_000L;
+    /**
+     * The queue of data waiting to be written.
+     */
+    private final BlockingQueue<Entry> queue;
+    /**
+     * The data submitted with {@link OverflowPolicy#SPILL} while the {@link #queue} was full. This is only accessed
+     * while holding the {@link #spillLock}.
+     */
+    private final ArrayDeque<Entry> spilled;
+    /**
+     * Lock which guarantees that the writer thread takes the data from the {@link #queue} and the {@link #spilled}
+     * data at once and, thus, that the data is written in order.
      */
-    private final CapturedData data;
+    private final Object spillLock = new Object();
     /**
-     * The {@link Point3dFile} to write acceleration points to.
+     * The data currently written. This is only accessed by the {@link #writerThread}.
      */
-    private final Point3dFile accelerationsFile;
+    private final List<Entry> pending;
     /**
-     * The {@link Point3dFile} to write rotation points to.
+     * What to do when data is submitted while the {@link #queue} is full.
      */
-    private final Point3dFile rotationsFile;
+    private final OverflowPolicy overflowPolicy;
     /**
-     * The {@link Point3dFile} to write direction points to.
+     * The appender of the {@link Point3dFile} to write acceleration points to.
      */
-    private final Point3dFile directionsFile;
+    private final Point3dFileAppender accelerationsAppender;
     /**
-     * Callback which is called after writing data has finished.
+     * The appender of the {@link Point3dFile} to write rotation points to.
      */
-    private final WritingDataCompletedCallback callback;
+    private final Point3dFileAppender rotationsAppender;
+    /**
+     * The appender of the {@link Point3dFile} to write direction points to.
+     */
+    private final Point3dFileAppender directionsAppender;
+    /**
+     * The thread which writes the queued data.
+     */
+    private final Thread writerThread;
+    /**
+     * {@code true} after {@link #close()} was called.
+     */
+    private volatile boolean closed;
+    /**
+     * The number of {@code CapturedData} instances written.
+     */
+    private final AtomicLong writtenCount = new AtomicLong();
+    /**
+     * The number of {@code CapturedData} instances dropped.
+     */
+    private final AtomicLong droppedCount = new AtomicLong();
+    /**
+     * The sum of the latencies in nanoseconds of all written {@code CapturedData} instances.
+     */
+    private final AtomicLong totalLatencyNanos = new AtomicLong();
+    /**
+     * The maximal latency in nanoseconds of all written {@code CapturedData} instances.
+     */
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
 
     /**
-     * Creates a new completely initialized writer for captured data.
+     * Creates a new completely initialized writer for captured data and starts its writer thread.
+     *
+     * @param accelerationsAppender The appender of the file to write the accelerations to.
+     * @param rotationsAppender The appender of the file to write the rotations to.
+     * @param directionsAppender The appender of the file to write the directions to.
+     * @param queueCapacity The number of {@link CapturedData} instances which can be queued.
+     * @param overflowPolicy What to do when data is submitted while the queue is full.
+     */
+    CapturedDataWriter(@NonNull final Point3dFileAppender accelerationsAppender,
+            @NonNull final Point3dFileAppender rotationsAppender,
+            @NonNull final Point3dFileAppender directionsAppender, final int queueCapacity,
+            @NonNull final OverflowPolicy overflowPolicy) {
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("Illegal argument: queueCapacity was less than 1: " + queueCapacity);
+        }
+        this.accelerationsAppender = accelerationsAppender;
+        this.rotationsAppender = rotationsAppender;
+        this.directionsAppender = directionsAppender;
+        this.overflowPolicy = overflowPolicy;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.spilled = new ArrayDeque<>();
+        this.pending = new ArrayList<>(queueCapacity);
+        this.writerThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeQueuedData();
+            }
+        }, "CapturedDataWriter");
+        writerThread.start();
+    }
+
+    /**
+     * Submits the provided data to be written after all previously submitted data.
+     * <p>
+     * Data submitted after or concurrently to {@link #close()} is dropped, unless the writer thread already took it.
      *
      * @param data The data to write.
-     * @param accelerationsFile The file to write the data to.
-     * @param rotationsFile The file to write the data to.
-     * @param directionsFile The file to write the data to.
-     * @param callback Callback which is called after writing data has finished.
-     */
-    CapturedDataWriter(final @NonNull CapturedData data, @NonNull final Point3dFile accelerationsFile,
-            @NonNull final Point3dFile rotationsFile, @NonNull final Point3dFile directionsFile,
-            final @NonNull WritingDataCompletedCallback callback) {
-        this.data = data;
-        this.accelerationsFile = accelerationsFile;
-        this.rotationsFile = rotationsFile;
-        this.directionsFile = directionsFile;
-        this.callback = callback;
+     * @param callback Callback which is called after writing the data has finished or when the data was dropped.
+     */
+    void submit(@NonNull final CapturedData data, @NonNull final WritingDataCompletedCallback callback) {
+        final Entry entry = new Entry(data, callback, System.nanoTime());
+        if (closed) {
+            drop(entry);
+            return;
+        }
+        switch (overflowPolicy) {
+            case BLOCK:
+                try {
+                    // Re-checking regularly as the writer thread stops when this writer is closed
+                    while (!queue.offer(entry, POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                        if (closed) {
+                            drop(entry);
+                            return;
+                        }
+                    }
+                } catch (final InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                break;
+            case DROP_OLDEST:
+                while (!queue.offer(entry)) {
+                    final Entry dropped = queue.poll();
+                    if (dropped != null) {
+                        drop(dropped);
+                    }
+                }
+                break;
+            case SPILL:
+                synchronized (spillLock) {
+                    // Once data was spilled, newer data must be spilled, too, until the writer thread took it
+                    if (!spilled.isEmpty() || !queue.offer(entry)) {
+                        spilled.add(entry);
+                    }
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown overflow policy: " + overflowPolicy);
+        }
+        // The writer thread may have stopped between the first check and queueing the data
+        if (closed && withdraw(entry)) {
+            drop(entry);
+        }
+    }
+
+    /**
+     * Removes the provided data from the queued or spilled data.
+     *
+     * @param entry The data to remove.
+     * @return {@code true} if the data was removed, {@code false} if it was already taken by the writer thread or
+     *         dropped.
+     */
+    private boolean withdraw(@NonNull final Entry entry) {
+        synchronized (spillLock) {
+            return queue.remove(entry) || spilled.remove(entry);
+        }
     }
 
     /**
-     * Even though the ContentResolver is easier to use, we use the ContentProviderClient as it is
-     * faster when you execute multiple operations. (https://stackoverflow.com/a/5233631/5815054)
-     * - It's essential to create a new client for each thread and to close the client after usage,
-     * as the client is not thread safe, see:
-     * https://developer.android.com/reference/android/content/ContentProviderClient
+     * Counts the provided data as dropped and informs its callback.
+     *
+     * @param entry The dropped data.
      */
-    private void writeCapturedData() {
+    private void drop(@NonNull final Entry entry) {
+        droppedCount.incrementAndGet();
+        entry.callback.writingDataCompleted();
+    }
 
-        Log.d(TAG, "appending " + data.getAccelerations().size() + "/" + data.getRotations().size() + "/"
-                + data.getDirections().size() + " A/R/MPs on: " + Thread.currentThread().getName());
-        accelerationsFile.append(data.getAccelerations());
-        rotationsFile.append(data.getRotations());
-        directionsFile.append(data.getDirections());
+    /**
+     * Writes the queued data until this writer is closed and the queue is empty.
+     */
+    private void writeQueuedData() {
+        try {
+            // Data is only spilled while the queue is full, so the queue is never empty while there is spilled data
+            while (!closed || !queue.isEmpty()) {
+                final Entry first = queue.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                pending.add(first);
+                synchronized (spillLock) {
+                    // The queued data is older than the spilled data
+                    queue.drainTo(pending);
+                    pending.addAll(spilled);
+                    spilled.clear();
+                }
+                writePending();
+            }
+        } catch (final InterruptedException e) {
+            // Only happens when another component interrupts this thread, so the queued data is reported as dropped
+            final List<Entry> remaining = new ArrayList<>(queue.size());
+            synchronized (spillLock) {
+                queue.drainTo(remaining);
+                remaining.addAll(spilled);
+                spilled.clear();
+            }
+            for (final Entry entry : remaining) {
+                drop(entry);
+            }
+            Log.w(TAG, "Writer thread interrupted, dropped " + remaining.size() + " queued entries.", e);
+        }
     }
 
-    @Override
-    public void run() {
+    /**
+     * Appends the {@link #pending} data to the files and informs their callbacks. This must only be called by the
+     * {@link #writerThread}.
+     */
+    private void writePending() {
+        final int size = pending.size();
+        final Point3dBatch[] accelerations = new Point3dBatch[size];
+        final Point3dBatch[] rotations = new Point3dBatch[size];
+        final Point3dBatch[] directions = new Point3dBatch[size];
+        for (int i = 0; i < size; i++) {
+            final CapturedData data = pending.get(i).data;
+            accelerations[i] = data.getAccelerationBatch();
+            rotations[i] = data.getRotationBatch();
+            directions[i] = data.getDirectionBatch();
+        }
+
         try {
-            writeCapturedData();
+            accelerationsAppender.append(accelerations);
+            rotationsAppender.append(rotations);
+            directionsAppender.append(directions);
+
+            final long now = System.nanoTime();
+            for (final Entry entry : pending) {
+                final long latency = now - entry.submitNanos;
+                totalLatencyNanos.addAndGet(latency);
+                if (latency > maxLatencyNanos.get()) {
+                    maxLatencyNanos.set(latency);
+                }
+            }
+            writtenCount.addAndGet(size);
+        } catch (final IOException e) {
+            // TODO [MOV-566]: Soft catch the no space left scenario
+            Log.e(TAG, "Failed to append data to file. Is there space left on the device?", e);
+            droppedCount.addAndGet(size);
         } finally {
-            callback.writingDataCompleted();
+            for (final Entry entry : pending) {
+                entry.callback.writingDataCompleted();
+            }
+            pending.clear();
+        }
+    }
+
+    /**
+     * @return A snapshot of the counters of this writer.
+     */
+    public WriterStatistics getStatistics() {
+        final long written = writtenCount.get();
+        final double averageLatencyMillis = written == 0 ? 0.0
+                : totalLatencyNanos.get() / (double)written / TimeUnit.MILLISECONDS.toNanos(1);
+        final int queueDepth;
+        synchronized (spillLock) {
+            queueDepth = queue.size() + spilled.size();
+        }
+        return new WriterStatistics(queueDepth, written, droppedCount.get(),
+                TimeUnit.NANOSECONDS.toMillis(maxLatencyNanos.get()), averageLatencyMillis);
+    }
+
+    /**
+     * Stops accepting data and waits until all queued data is written. The appenders are not closed by this method.
+     * <p>
+     * The writer thread is never interrupted, as an interrupt during a write closes the {@code FileChannel}s of the
+     * appenders. When the calling thread is interrupted, this still waits and restores the interrupt status afterwards.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        boolean interrupted = false;
+        while (writerThread.isAlive()) {
+            try {
+                writerThread.join(CLOSE_LOG_INTERVAL_MILLIS);
+            } catch (final InterruptedException e) {
+                interrupted = true;
+                continue;
+            }
+            if (writerThread.isAlive()) {
+                Log.w(TAG, "Waiting for the writer thread to write the queued data: " + getStatistics());
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Data waiting to be written.
+     *
+     * @author Armin Schnabel
+     * @version 1.0.0
+     * @since 6.2.0
+     */
+    private static final class Entry {
+        /**
+         * The data to write.
+         */
+        private final CapturedData data;
+        /**
+         * Callback which is called after writing the data has finished or when the data was dropped.
+         */
+        private final WritingDataCompletedCallback callback;
+        /**
+         * The value of {@link System#nanoTime()} when the data was submitted.
+         */
+        private final long submitNanos;
+
+        /**
+         * @param data The data to write.
+         * @param callback Callback which is called after writing the data has finished or was dropped.
+         * @param submitNanos The value of {@link System#nanoTime()} when the data was submitted.
+         */
+        private Entry(@NonNull final CapturedData data, @NonNull final WritingDataCompletedCallback callback,
+                final long submitNanos) {
+            this.data = data;
+            this.callback = callback;
+            this.submitNanos = submitNanos;
         }
     }
 }
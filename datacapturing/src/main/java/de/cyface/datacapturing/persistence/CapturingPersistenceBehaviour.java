@@ -3,26 +3,25 @@ package de.cyface.datacapturing.persistence;
 import static de.cyface.datacapturing.Constants.TAG;
 import static de.cyface.persistence.model.MeasurementStatus.FINISHED;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.io.IOException;
 
 import android.content.ContentProvider;
-import android.content.ContentValues;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import de.cyface.datacapturing.model.CapturedData;
 import de.cyface.persistence.Constants;
-import de.cyface.persistence.GeoLocationsTable;
 import de.cyface.persistence.NoSuchMeasurementException;
 import de.cyface.persistence.PersistenceBehaviour;
 import de.cyface.persistence.PersistenceLayer;
 import de.cyface.persistence.model.GeoLocation;
 import de.cyface.persistence.model.Measurement;
 import de.cyface.persistence.model.MeasurementStatus;
+import de.cyface.persistence.serialization.MeasurementSerializer;
 import de.cyface.persistence.serialization.Point3dFile;
+import de.cyface.persistence.serialization.Point3dFileAppender;
 import de.cyface.utils.CursorIsNullException;
 import de.cyface.utils.Validate;
 
@@ -30,15 +29,56 @@ import de.cyface.utils.Validate;
  * This {@link PersistenceBehaviour} is used when a {@link PersistenceLayer} is used to capture a {@link Measurement}s.
  *
  * @author Armin Schnabel
- * @version 2.0.3
+ * @version 3.6.5
  * @since 3.0.0
  */
 public class CapturingPersistenceBehaviour implements PersistenceBehaviour {
 
     /**
-     * A threadPool to execute operations on their own background threads.
+     * The default number of {@link CapturedData} instances which can be queued for writing. With the usual hand-off
+     * once per second this allows the storage to stall for about half a minute before the {@link OverflowPolicy}
+     * applies.
      */
-    private ExecutorService threadPool;
+    public static final int DEFAULT_WRITE_QUEUE_CAPACITY = 32;
+    /**
+     * The default number of {@link GeoLocation}s which are inserted together. With the usual rate of one location per
+     * second this inserts the locations about every 10 seconds.
+     */
+    public static final int DEFAULT_LOCATION_BATCH_SIZE = 10;
+    /**
+     * The default maximal time in milliseconds a {@link GeoLocation} is buffered before it's inserted. This limits the
+     * locations lost when the app is killed, e.g. when no location fixes arrive for a while.
+     */
+    public static final long DEFAULT_LOCATION_MAX_DELAY_MILLIS = 10_000L;
+    /**
+     * The number of {@link CapturedData} instances which can be queued for writing.
+     */
+    private final int writeQueueCapacity;
+    /**
+     * What to do when the write queue is full.
+     */
+    private final OverflowPolicy overflowPolicy;
+    /**
+     * The number of {@link GeoLocation}s which are inserted together.
+     */
+    private final int locationBatchSize;
+    /**
+     * The maximal time in milliseconds a {@link GeoLocation} is buffered before it's inserted.
+     */
+    private final long locationMaxDelayMillis;
+    /**
+     * The {@link MeasurementSerializer#PERSISTENCE_FILE_FORMAT_VERSION} used for the sensor data files of new
+     * {@link Measurement}s.
+     */
+    private final short persistenceFileFormatVersion;
+    /**
+     * The single writer which writes the sensor data in order. It's created with the first data to store.
+     */
+    private CapturedDataWriter writer;
+    /**
+     * {@code true} after {@link #shutdown()} was called. Data stored afterwards is ignored.
+     */
+    private boolean isShutdown;
     /**
      * Caching the current {@link Measurement}, so we do not need to ask the database each time we require the
      * current measurement. This is <code>null</code> if there is no running measurement or if we lost the
@@ -46,26 +86,114 @@ public class CapturingPersistenceBehaviour implements PersistenceBehaviour {
      */
     private Long currentMeasurementIdentifier;
     /**
-     * The file to write the acceleration points to.
+     * The appender of the file to write the acceleration points to. It's kept open until {@link #shutdown()}.
+     */
+    private Point3dFileAppender accelerationsAppender;
+    /**
+     * The appender of the file to write the rotation points to. It's kept open until {@link #shutdown()}.
+     */
+    private Point3dFileAppender rotationsAppender;
+    /**
+     * The appender of the file to write the direction points to. It's kept open until {@link #shutdown()}.
      */
-    private Point3dFile accelerationsFile;
+    private Point3dFileAppender directionsAppender;
     /**
-     * The file to write the rotation points to.
+     * The id of the {@link Measurement} the {@link Point3dFileAppender}s are open for or {@code null} if they are
+     * closed.
      */
-    private Point3dFile rotationsFile;
+    private Long appendersMeasurementIdentifier;
     /**
-     * The file to write the direction points to.
+     * The buffer which inserts the {@link GeoLocation}s in groups. It's created with the first location to store and
+     * flushed on {@link #shutdown()}.
      */
-    private Point3dFile directionsFile;
+    private GeoLocationWriteBuffer locationBuffer;
+    /**
+     * The id of the {@link Measurement} the {@link #locationBuffer} stored {@link GeoLocation}s for or {@code null} if
+     * no location was stored since the last {@link #shutdown()}.
+     */
+    private Long locationsMeasurementIdentifier;
     /**
      * A reference to the {@link PersistenceLayer} which implements this behaviour to access it's methods.
      */
     private PersistenceLayer persistenceLayer;
 
+    /**
+     * Creates a new behaviour which blocks the capturing when the storage cannot keep up, so no data is lost.
+     */
+    public CapturingPersistenceBehaviour() {
+        this(DEFAULT_WRITE_QUEUE_CAPACITY, OverflowPolicy.BLOCK);
+    }
+
+    /**
+     * @param writeQueueCapacity The number of {@link CapturedData} instances which can be queued for writing.
+     * @param overflowPolicy What to do when the write queue is full.
+     */
+    public CapturingPersistenceBehaviour(final int writeQueueCapacity, @NonNull final OverflowPolicy overflowPolicy) {
+        this(writeQueueCapacity, overflowPolicy, DEFAULT_LOCATION_BATCH_SIZE, DEFAULT_LOCATION_MAX_DELAY_MILLIS);
+    }
+
+    /**
+     * The {@link GeoLocation}s are inserted in groups of {@code locationBatchSize} or after
+     * {@code locationMaxDelayMillis}, whichever comes first, and on {@link #shutdown()}, i.e. when the capturing is
+     * paused or stopped. If the app is killed, the locations buffered until then are lost, see
+     * {@link GeoLocationWriteBuffer}.
+     *
+     * @param writeQueueCapacity The number of {@link CapturedData} instances which can be queued for writing.
+     * @param overflowPolicy What to do when the write queue is full.
+     * @param locationBatchSize The number of {@code GeoLocation}s which are inserted together. {@code 1} inserts each
+     *            location immediately.
+     * @param locationMaxDelayMillis The maximal time in milliseconds a {@code GeoLocation} is buffered before it's
+     *            inserted.
+     */
+    public CapturingPersistenceBehaviour(final int writeQueueCapacity, @NonNull final OverflowPolicy overflowPolicy,
+            final int locationBatchSize, final long locationMaxDelayMillis) {
+        this(writeQueueCapacity, overflowPolicy, locationBatchSize, locationMaxDelayMillis,
+                MeasurementSerializer.PERSISTENCE_FILE_FORMAT_VERSION);
+    }
+
+    /**
+     * The sensor data files of new {@link Measurement}s are written in the {@code persistenceFileFormatVersion}.
+     * The default {@link MeasurementSerializer#PERSISTENCE_FILE_FORMAT_VERSION_3} uses the least storage on the device
+     * but the data has to be decoded and compressed again for each upload.
+     * {@link MeasurementSerializer#PERSISTENCE_FILE_FORMAT_VERSION_4} uses more storage but its compressed segments are
+     * copied into the transfer file, which makes the synchronization cheaper. Measurements which were created before
+     * keep the version they were created with.
+     *
+     * @param writeQueueCapacity The number of {@link CapturedData} instances which can be queued for writing.
+     * @param overflowPolicy What to do when the write queue is full.
+     * @param locationBatchSize The number of {@code GeoLocation}s which are inserted together. {@code 1} inserts each
+     *            location immediately.
+     * @param locationMaxDelayMillis The maximal time in milliseconds a {@code GeoLocation} is buffered before it's
+     *            inserted.
+     * @param persistenceFileFormatVersion The {@link MeasurementSerializer#PERSISTENCE_FILE_FORMAT_VERSION} used for
+     *            the sensor data files of new {@code Measurement}s.
+     */
+    public CapturingPersistenceBehaviour(final int writeQueueCapacity, @NonNull final OverflowPolicy overflowPolicy,
+            final int locationBatchSize, final long locationMaxDelayMillis, final short persistenceFileFormatVersion) {
+        Validate.isTrue(writeQueueCapacity > 0, "Illegal argument: writeQueueCapacity must be positive");
+        Validate.isTrue(locationBatchSize > 0, "Illegal argument: locationBatchSize must be positive");
+        Validate.isTrue(locationMaxDelayMillis >= 0, "Illegal argument: locationMaxDelayMillis must not be negative");
+        Validate.isTrue(MeasurementSerializer.isSupported(persistenceFileFormatVersion),
+                "Illegal argument: unsupported persistenceFileFormatVersion " + persistenceFileFormatVersion);
+        this.writeQueueCapacity = writeQueueCapacity;
+        this.overflowPolicy = overflowPolicy;
+        this.locationBatchSize = locationBatchSize;
+        this.locationMaxDelayMillis = locationMaxDelayMillis;
+        this.persistenceFileFormatVersion = persistenceFileFormatVersion;
+    }
+
+    /**
+     * @return The {@link MeasurementSerializer#PERSISTENCE_FILE_FORMAT_VERSION} used for the sensor data files of new
+     *         {@link Measurement}s.
+     */
+    public short getPersistenceFileFormatVersion() {
+        return persistenceFileFormatVersion;
+    }
+
     @Override
     public void onStart(@NonNull final PersistenceLayer persistenceLayer) {
         this.persistenceLayer = persistenceLayer;
-        this.threadPool = Executors.newCachedThreadPool();
+        this.isShutdown = false;
     }
 
     @Override
@@ -75,14 +203,85 @@ public class CapturingPersistenceBehaviour implements PersistenceBehaviour {
 
     @Override
     public void shutdown() {
-        if (threadPool != null) {
-            try {
-                threadPool.shutdown();
-                threadPool.awaitTermination(1, TimeUnit.SECONDS);
-                threadPool.shutdownNow();
-            } catch (InterruptedException e) {
-                throw new IllegalStateException(e);
+        synchronized (this) {
+            isShutdown = true;
+            if (locationBuffer != null) {
+                locationBuffer.close();
+                locationBuffer = null;
+            }
+            if (locationsMeasurementIdentifier != null) {
+                // Only after the last locations were inserted, or the simplified tracks would miss them
+                simplifyTracks(locationsMeasurementIdentifier);
+                locationsMeasurementIdentifier = null;
             }
+            if (writer != null) {
+                writer.close();
+                Log.d(TAG, "Writer closed: " + writer.getStatistics());
+                writer = null;
+            }
+            final Long measurementIdentifier = appendersMeasurementIdentifier;
+            closeAppenders();
+            if (measurementIdentifier != null) {
+                verifyFiles(measurementIdentifier);
+            }
+        }
+    }
+
+    /**
+     * @return A snapshot of the counters of the sensor data writer or {@code null} if no data was stored since the
+     *         last {@link #shutdown()}.
+     */
+    @Nullable
+    public WriterStatistics getWriterStatistics() {
+        final CapturedDataWriter writer = this.writer;
+        return writer == null ? null : writer.getStatistics();
+    }
+
+    /**
+     * Closes the {@link Point3dFileAppender}s of the currently captured {@link Measurement} if they are open.
+     * <p>
+     * This must only be called after the {@link #writer} has been closed, as there must not be any writes pending.
+     */
+    private void closeAppenders() {
+        try {
+            if (accelerationsAppender != null) {
+                accelerationsAppender.close();
+            }
+            if (rotationsAppender != null) {
+                rotationsAppender.close();
+            }
+            if (directionsAppender != null) {
+                directionsAppender.close();
+            }
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            accelerationsAppender = null;
+            rotationsAppender = null;
+            directionsAppender = null;
+            appendersMeasurementIdentifier = null;
+        }
+    }
+
+    /**
+     * Verifies the sensor data files of a {@link Measurement}, so damaged data, e.g. a block which was only partially
+     * written when the app was killed, is removed before it's synchronized.
+     * <p>
+     * This is done before {@link #shutdown()} returns and, thus, before the {@link MeasurementStatus} is changed, as
+     * the files may be truncated while they are serialized for the synchronization otherwise. This must only be
+     * called after the {@link Point3dFileAppender}s have been closed.
+     *
+     * @param measurementIdentifier The id of the {@code Measurement} to verify.
+     */
+    private void verifyFiles(final long measurementIdentifier) {
+        try {
+            final long removed = persistenceLayer.verifyPoint3dFiles(measurementIdentifier);
+            if (removed > 0) {
+                Log.w(TAG, "Removed " + removed + " damaged bytes of measurement " + measurementIdentifier);
+            }
+        } catch (final CursorIsNullException | IllegalStateException e) {
+            // Not critical, incomplete blocks are also ignored when the files are read
+            Log.w(TAG, "Unable to verify files of measurement " + measurementIdentifier, e);
         }
     }
 
@@ -94,45 +293,85 @@ public class CapturingPersistenceBehaviour implements PersistenceBehaviour {
      */
     public void storeData(final @NonNull CapturedData data, final long measurementIdentifier,
             final @NonNull WritingDataCompletedCallback callback) {
-        if (threadPool.isShutdown()) {
-            return;
-        }
-        if (accelerationsFile == null) {
-            accelerationsFile = new Point3dFile(persistenceLayer.getContext(), measurementIdentifier,
-                    Point3dFile.ACCELERATIONS_FOLDER_NAME, Point3dFile.ACCELERATIONS_FILE_EXTENSION);
-        }
-        if (rotationsFile == null) {
-            rotationsFile = new Point3dFile(persistenceLayer.getContext(), measurementIdentifier,
-                    Point3dFile.ROTATIONS_FOLDER_NAME, Point3dFile.ROTATION_FILE_EXTENSION);
-        }
-        if (directionsFile == null) {
-            directionsFile = new Point3dFile(persistenceLayer.getContext(), measurementIdentifier,
-                    Point3dFile.DIRECTIONS_FOLDER_NAME, Point3dFile.DIRECTION_FILE_EXTENSION);
+        final CapturedDataWriter writer;
+        synchronized (this) {
+            if (isShutdown) {
+                return;
+            }
+            if (this.writer == null) {
+                openAppenders(measurementIdentifier);
+                this.writer = new CapturedDataWriter(accelerationsAppender, rotationsAppender, directionsAppender,
+                        writeQueueCapacity, overflowPolicy);
+            }
+            writer = this.writer;
         }
 
-        final CapturedDataWriter writer = new CapturedDataWriter(data, accelerationsFile, rotationsFile, directionsFile,
-                callback);
+        // Called outside the lock as this may block, depending on the overflow policy
+        writer.submit(data, callback);
+    }
+
+    /**
+     * Opens the {@link Point3dFileAppender}s for the provided {@link Measurement}.
+     *
+     * @param measurementIdentifier The id of the {@code Measurement} to store the data to.
+     */
+    private void openAppenders(final long measurementIdentifier) {
+        // Resumed measurements keep the file format version they were created with
+        final short fileFormatVersion;
+        try {
+            final Measurement measurement = persistenceLayer.loadMeasurement(measurementIdentifier);
+            Validate.notNull("Measurement not found: " + measurementIdentifier, measurement);
+            fileFormatVersion = measurement.getFileFormatVersion();
+        } catch (final CursorIsNullException e) {
+            throw new IllegalStateException(e);
+        }
 
-        threadPool.submit(writer);
+        try {
+            if (accelerationsAppender == null) {
+                accelerationsAppender = new Point3dFile(persistenceLayer.getContext(), measurementIdentifier,
+                        Point3dFile.ACCELERATIONS_FOLDER_NAME, Point3dFile.ACCELERATIONS_FILE_EXTENSION,
+                        fileFormatVersion).openAppender();
+            }
+            if (rotationsAppender == null) {
+                rotationsAppender = new Point3dFile(persistenceLayer.getContext(), measurementIdentifier,
+                        Point3dFile.ROTATIONS_FOLDER_NAME, Point3dFile.ROTATION_FILE_EXTENSION, fileFormatVersion)
+                                .openAppender();
+            }
+            if (directionsAppender == null) {
+                directionsAppender = new Point3dFile(persistenceLayer.getContext(), measurementIdentifier,
+                        Point3dFile.DIRECTIONS_FOLDER_NAME, Point3dFile.DIRECTION_FILE_EXTENSION, fileFormatVersion)
+                                .openAppender();
+            }
+            appendersMeasurementIdentifier = measurementIdentifier;
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
     }
 
     /**
      * Stores the provided geo location under the currently active captured measurement.
+     * <p>
+     * The location is buffered and inserted together with the following locations, see
+     * {@link #CapturingPersistenceBehaviour(int, OverflowPolicy, int, long)}. Locations stored after
+     * {@link #shutdown()} are ignored, as the capturing was stopped and all data was persisted.
      *
      * @param location The geo location to store.
      * @param measurementIdentifier The identifier of the measurement to store the data to.
      */
     public void storeLocation(final @NonNull GeoLocation location, final long measurementIdentifier) {
-
-        final ContentValues values = new ContentValues();
-        values.put(GeoLocationsTable.COLUMN_ACCURACY, Math.round(location.getAccuracy()));
-        values.put(GeoLocationsTable.COLUMN_GEOLOCATION_TIME, location.getTimestamp());
-        values.put(GeoLocationsTable.COLUMN_LAT, location.getLat());
-        values.put(GeoLocationsTable.COLUMN_LON, location.getLon());
-        values.put(GeoLocationsTable.COLUMN_SPEED, location.getSpeed());
-        values.put(GeoLocationsTable.COLUMN_MEASUREMENT_FK, measurementIdentifier);
-
-        persistenceLayer.getResolver().insert(persistenceLayer.getGeoLocationsUri(), values);
+        synchronized (this) {
+            if (isShutdown) {
+                // The capturing stopped and the status of the measurement may change, like for storeData
+                Log.w(TAG, "Ignoring location captured after shutdown of measurement " + measurementIdentifier);
+                return;
+            }
+            if (locationBuffer == null) {
+                locationBuffer = new GeoLocationWriteBuffer(persistenceLayer.getResolver(),
+                        persistenceLayer.getGeoLocationsUri(), locationBatchSize, locationMaxDelayMillis);
+            }
+            locationBuffer.add(location, measurementIdentifier);
+            locationsMeasurementIdentifier = measurementIdentifier;
+        }
     }
 
     /**
@@ -226,6 +465,20 @@ public class CapturingPersistenceBehaviour implements PersistenceBehaviour {
         }
     }
 
+    /**
+     * Simplifies the {@link de.cyface.persistence.model.Track}s captured so far in the background, so they can be
+     * drawn on a map without loading all {@link GeoLocation}s. After a resume only the new {@code Track}s are
+     * simplified.
+     * <p>
+     * This is called by {@link #shutdown()} after the buffered {@code GeoLocation}s were inserted, i.e. when the
+     * {@code Measurement} is paused or stopped.
+     *
+     * @param measurementIdentifier The id of the {@link Measurement} to simplify.
+     */
+    private void simplifyTracks(final long measurementIdentifier) {
+        persistenceLayer.scheduleSimplifiedTracksUpdate(measurementIdentifier);
+    }
+
     /**
      * Updates the {@link Measurement#getDistance()} entry of the currently captured {@link Measurement}.
      *
@@ -0,0 +1,193 @@
+package de.cyface.datacapturing.persistence;
+
+import static de.cyface.datacapturing.Constants.BACKGROUND_TAG;
+
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import android.content.ContentResolver;
+import android.net.Uri;
+import android.os.Bundle;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import de.cyface.persistence.MeasuringPointsContentProvider;
+import de.cyface.persistence.model.GeoLocation;
+import de.cyface.persistence.model.Measurement;
+import de.cyface.utils.Validate;
+
+/**
+ * A write-behind buffer which inserts {@link GeoLocation}s in groups with one
+ * {@link MeasuringPointsContentProvider#METHOD_INSERT_GEO_LOCATIONS} call, i.e. in one database transaction, instead of
+ * one transaction per location. The locations are buffered and sent as primitive arrays.
+ * <p>
+ * The buffered locations are inserted when {@link #maxBatchSize} locations are buffered, {@link #maxDelayMillis}
+ * after the oldest buffered location was added or when {@link #flush()} or {@link #close()} is called, whichever comes
+ * first. Thus, if the app is killed, at most the locations captured during the last {@code maxDelayMillis}, but not
+ * more than {@code maxBatchSize - 1} locations, are lost.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author Armin Schnabel
+ * @version 1.1.0
+ * @since 6.2.0
+ */
+public class GeoLocationWriteBuffer {
+
+    /**
+     * The tag used to identify Logcat messages from this class.
+     */
+    private static final String TAG = BACKGROUND_TAG;
+    /**
+     * The resolver to insert the locations with.
+     */
+    private final ContentResolver resolver;
+    /**
+     * The uri of the table to insert the locations into.
+     */
+    private final Uri geoLocationsUri;
+    /**
+     * The number of locations which are inserted together.
+     */
+    private final int maxBatchSize;
+    /**
+     * The maximal time in milliseconds a location is buffered before it's inserted.
+     */
+    private final long maxDelayMillis;
+    /**
+     * The id of the {@link Measurement} the buffered locations belong to.
+     */
+    private long measurementIdentifier;
+    /**
+     * The number of buffered locations.
+     */
+    private int size;
+    /**
+     * The timestamps of the buffered locations.
+     */
+    private final long[] timestamps;
+    /**
+     * The latitudes of the buffered locations.
+     */
+    private final double[] latitudes;
+    /**
+     * The longitudes of the buffered locations.
+     */
+    private final double[] longitudes;
+    /**
+     * The speeds of the buffered locations.
+     */
+    private final double[] speeds;
+    /**
+     * The rounded accuracies of the buffered locations.
+     */
+    private final int[] accuracies;
+    /**
+     * The executor which inserts the buffered locations after {@link #maxDelayMillis}.
+     */
+    private final ScheduledExecutorService executor;
+    /**
+     * The scheduled insert of the buffered locations or {@code null} if no location is buffered.
+     */
+    private ScheduledFuture<?> scheduledFlush;
+
+    /**
+     * @param resolver The resolver to insert the locations with.
+     * @param geoLocationsUri The uri of the table to insert the locations into.
+     * @param maxBatchSize The number of locations which are inserted together. {@code 1} inserts each location
+     *            immediately.
+     * @param maxDelayMillis The maximal time in milliseconds a location is buffered before it's inserted.
+     */
+    GeoLocationWriteBuffer(@NonNull final ContentResolver resolver, @NonNull final Uri geoLocationsUri,
+            final int maxBatchSize, final long maxDelayMillis) {
+        Validate.isTrue(maxBatchSize > 0, "Illegal argument: maxBatchSize must be positive");
+        Validate.isTrue(maxDelayMillis >= 0, "Illegal argument: maxDelayMillis must not be negative");
+        this.resolver = resolver;
+        this.geoLocationsUri = geoLocationsUri;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayMillis = maxDelayMillis;
+        this.timestamps = new long[maxBatchSize];
+        this.latitudes = new double[maxBatchSize];
+        this.longitudes = new double[maxBatchSize];
+        this.speeds = new double[maxBatchSize];
+        this.accuracies = new int[maxBatchSize];
+        this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(@NonNull final Runnable runnable) {
+                return new Thread(runnable, "GeoLocationWriteBuffer");
+            }
+        });
+    }
+
+    /**
+     * Buffers the provided location.
+     *
+     * @param location The location to insert.
+     * @param measurementIdentifier The id of the {@link Measurement} the location belongs to.
+     */
+    synchronized void add(@NonNull final GeoLocation location, final long measurementIdentifier) {
+        if (size > 0 && measurementIdentifier != this.measurementIdentifier) {
+            flush();
+        }
+        this.measurementIdentifier = measurementIdentifier;
+        timestamps[size] = location.getTimestamp();
+        latitudes[size] = location.getLat();
+        longitudes[size] = location.getLon();
+        speeds[size] = location.getSpeed();
+        accuracies[size] = Math.round(location.getAccuracy());
+        size++;
+
+        if (size >= maxBatchSize) {
+            flush();
+        } else if (scheduledFlush == null) {
+            scheduledFlush = executor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    flush();
+                }
+            }, maxDelayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Inserts all buffered locations in one transaction.
+     */
+    synchronized void flush() {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        if (size == 0) {
+            return;
+        }
+
+        final Bundle extras = new Bundle();
+        extras.putLong(MeasuringPointsContentProvider.EXTRA_MEASUREMENT_ID, measurementIdentifier);
+        extras.putLongArray(MeasuringPointsContentProvider.EXTRA_TIMESTAMPS, Arrays.copyOf(timestamps, size));
+        extras.putDoubleArray(MeasuringPointsContentProvider.EXTRA_LATITUDES, Arrays.copyOf(latitudes, size));
+        extras.putDoubleArray(MeasuringPointsContentProvider.EXTRA_LONGITUDES, Arrays.copyOf(longitudes, size));
+        extras.putDoubleArray(MeasuringPointsContentProvider.EXTRA_SPEEDS, Arrays.copyOf(speeds, size));
+        extras.putIntArray(MeasuringPointsContentProvider.EXTRA_ACCURACIES, Arrays.copyOf(accuracies, size));
+        final int buffered = size;
+        size = 0;
+
+        final Bundle result = resolver.call(geoLocationsUri, MeasuringPointsContentProvider.METHOD_INSERT_GEO_LOCATIONS,
+                geoLocationsUri.toString(), extras);
+        Validate.notNull("Failed to insert " + buffered + " locations", result);
+        final int inserted = result.getInt(MeasuringPointsContentProvider.EXTRA_ROWS);
+        Validate.isTrue(inserted == buffered, "Inserted " + inserted + " instead of " + buffered + " locations");
+        Log.v(TAG, "Inserted " + inserted + " locations");
+    }
+
+    /**
+     * Inserts all buffered locations and stops the timer. Locations must not be added afterwards.
+     */
+    synchronized void close() {
+        flush();
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,27 @@
+package de.cyface.datacapturing.persistence;
+
+/**
+ * Defines what the {@link CapturedDataWriter} does when new data is submitted while its queue is full, i.e. when the
+ * storage cannot keep up with the captured data.
+ *
+ * @author Armin Schnabel
+ * @version 1.0.1
+ * @since 6.2.0
+ */
+public enum OverflowPolicy {
+    /**
+     * The submitting thread is blocked until there is space in the queue. No data is lost but the capturing may be
+     * delayed.
+     */
+    BLOCK,
+    /**
+     * The oldest queued data is dropped to make space for the new data. The capturing is never delayed but data is
+     * lost.
+     */
+    DROP_OLDEST,
+    /**
+     * The new data is kept in an unbounded overflow list which the writer thread writes after the queued data. No data
+     * is lost and the capturing is never delayed, but the memory used by the overflow list is not bounded.
+     */
+    SPILL
+}
@@ -0,0 +1,76 @@
+package de.cyface.datacapturing.persistence;
+
+/**
+ * An immutable snapshot of the counters of a {@link CapturedDataWriter}.
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 6.2.0
+ */
+public final class WriterStatistics {
+
+    /**
+     * The number of {@code CapturedData} instances waiting to be written.
+     */
+    private final int queueDepth;
+    /**
+     * The number of {@code CapturedData} instances written.
+     */
+    private final long writtenCount;
+    /**
+     * The number of {@code CapturedData} instances dropped, either by {@link OverflowPolicy#DROP_OLDEST} or because
+     * writing them failed.
+     */
+    private final long droppedCount;
+    /**
+     * The maximal time in milliseconds between the submission and the completed write of a {@code CapturedData}.
+     */
+    private final long maxLatencyMillis;
+    /**
+     * The average time in milliseconds between the submission and the completed write of a {@code CapturedData}.
+     */
+    private final double averageLatencyMillis;
+
+    /**
+     * @param queueDepth The number of {@code CapturedData} instances waiting to be written.
+     * @param writtenCount The number of {@code CapturedData} instances written.
+     * @param droppedCount The number of {@code CapturedData} instances dropped.
+     * @param maxLatencyMillis The maximal time in milliseconds between the submission and the completed write.
+     * @param averageLatencyMillis The average time in milliseconds between the submission and the completed write.
+     */
+    WriterStatistics(final int queueDepth, final long writtenCount, final long droppedCount,
+            final long maxLatencyMillis, final double averageLatencyMillis) {
+        this.queueDepth = queueDepth;
+        this.writtenCount = writtenCount;
+        this.droppedCount = droppedCount;
+        this.maxLatencyMillis = maxLatencyMillis;
+        this.averageLatencyMillis = averageLatencyMillis;
+    }
+
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    public long getWrittenCount() {
+        return writtenCount;
+    }
+
+    public long getDroppedCount() {
+        return droppedCount;
+    }
+
+    public long getMaxLatencyMillis() {
+        return maxLatencyMillis;
+    }
+
+    public double getAverageLatencyMillis() {
+        return averageLatencyMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "WriterStatistics{" + "queueDepth=" + queueDepth + ", writtenCount=" + writtenCount + ", droppedCount="
+                + droppedCount + ", maxLatencyMillis=" + maxLatencyMillis + ", averageLatencyMillis="
+                + averageLatencyMillis + '}';
+    }
+}
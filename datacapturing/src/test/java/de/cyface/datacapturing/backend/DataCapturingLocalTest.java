@@ -48,6 +48,7 @@ import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
 
 import android.os.Build;
+import android.os.Parcel;
 import android.os.Parcelable;
 
 import de.cyface.datacapturing.EventHandlingStrategy;
@@ -67,7 +68,7 @@ import de.cyface.utils.CursorIsNullException;
  *
  * @author Klemens Muthmann
  * @author Armin Schnabel
- * @version 2.3.1
+ * @version 2.4.0
  * @since 2.0.0
  */
 @RunWith(RobolectricTestRunner.class)
@@ -246,4 +247,46 @@ public class DataCapturingLocalTest {
         assertThat(receivedRotations, is(equalTo(rotationsSize)));
         assertThat(receivedDirections, is(equalTo(directionsSize)));
     }
+
+    /**
+     * Tests that the slices created by {@link DataCapturingBackgroundService#onDataCaptured(CapturedData)} survive
+     * the round trip through a {@link Parcel}, which is how they are sent to the caller.
+     */
+    @Test
+    public void testParcelingOfCapturedDataSlices() {
+        // Arrange
+        final int size = DataCapturingBackgroundService.MAXIMUM_CAPTURED_DATA_MESSAGE_SIZE + 3;
+        final List<Point3d> accelerations = new ArrayList<>(size);
+        final List<Point3d> rotations = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            accelerations.add(new Point3d(i, -i, i / 2f, 1_000_000L + i));
+            rotations.add(new Point3d(-i, i, i / 3f, 2_000_000L + i));
+        }
+        final CapturedData data = new CapturedData(accelerations, rotations, new ArrayList<Point3d>());
+        final ArgumentCaptor<CapturedData> captor = ArgumentCaptor.forClass(CapturedData.class);
+        doNothing().when(oocut).informCaller(eq(DATA_CAPTURED), any(CapturedData.class));
+
+        // Act
+        oocut.onDataCaptured(data);
+
+        // Assert
+        verify(oocut, times(2)).informCaller(eq(DATA_CAPTURED), captor.capture());
+        for (final CapturedData slice : captor.getAllValues()) {
+            final Parcel parcel = Parcel.obtain();
+            try {
+                slice.writeToParcel(parcel, 0);
+                parcel.setDataPosition(0);
+                final CapturedData unparceled = CapturedData.CREATOR.createFromParcel(parcel);
+                assertThat(unparceled, is(equalTo(slice)));
+            } finally {
+                parcel.recycle();
+            }
+        }
+        final CapturedData lastSlice = captor.getAllValues().get(1);
+        assertThat(lastSlice.getAccelerations().size(), is(equalTo(3)));
+        assertThat(lastSlice.getAccelerationBatch().getTimestamp(0),
+                is(equalTo(accelerations.get(size - 3).getTimestamp())));
+        assertThat(lastSlice.getAccelerationBatch().getX(0), is(equalTo(accelerations.get(size - 3).getX())));
+        assertThat(lastSlice.getDirections().size(), is(equalTo(0)));
+    }
 }
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2021 Cyface GmbH
+ *
+ * This file is part of the Cyface SDK for Android.
+ *
+ * The Cyface SDK for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface SDK for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface SDK for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.datacapturing.persistence;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import android.os.Build;
+
+import de.cyface.datacapturing.model.CapturedData;
+import de.cyface.persistence.model.Point3d;
+import de.cyface.persistence.model.Point3dBatch;
+import de.cyface.persistence.serialization.MeasurementSerializer;
+import de.cyface.persistence.serialization.Point3dBlockSerializer;
+import de.cyface.persistence.serialization.Point3dFileAppender;
+
+/**
+ * Tests that the {@link CapturedDataWriter} writes the data in order for each {@link OverflowPolicy}.
+ *
+ * @author Armin Schnabel
+ * @version 1.2.0
+ * @since 6.2.0
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = Build.VERSION_CODES.O_MR1) // To be able to execute tests with Java 8 (instead of 9)
+public class CapturedDataWriterLocalTest {
+
+    /**
+     * The number of {@link CapturedData} instances submitted per test.
+     */
+    private static final int SUBMISSIONS = 500;
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    private File accelerationsFile;
+    private Point3dFileAppender accelerationsAppender;
+    private Point3dFileAppender rotationsAppender;
+    private Point3dFileAppender directionsAppender;
+    /**
+     * Counts the calls to the {@link WritingDataCompletedCallback}.
+     */
+    private final AtomicInteger completed = new AtomicInteger();
+    private final WritingDataCompletedCallback callback = new WritingDataCompletedCallback() {
+        @Override
+        public void writingDataCompleted() {
+            completed.incrementAndGet();
+        }
+    };
+
+    @Before
+    public void setUp() throws IOException {
+        accelerationsFile = folder.newFile("accelerations.cyfa");
+        accelerationsAppender = new Point3dFileAppender(accelerationsFile);
+        rotationsAppender = new Point3dFileAppender(folder.newFile("rotations.cyfr"));
+        directionsAppender = new Point3dFileAppender(folder.newFile("directions.cyfd"));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        accelerationsAppender.close();
+        rotationsAppender.close();
+        directionsAppender.close();
+    }
+
+    /**
+     * Tests that no data is lost or reordered with {@link OverflowPolicy#BLOCK}.
+     */
+    @Test
+    public void testSubmit_block() throws IOException {
+        final WriterStatistics statistics = submitAndClose(OverflowPolicy.BLOCK);
+
+        assertThat(statistics.getWrittenCount(), is(equalTo((long)SUBMISSIONS)));
+        assertThat(statistics.getDroppedCount(), is(equalTo(0L)));
+        assertThat(readTimestamps().size(), is(equalTo(SUBMISSIONS)));
+    }
+
+    /**
+     * Tests that no data is lost or reordered with {@link OverflowPolicy#SPILL}, even though the queue is smaller
+     * than the number of submissions.
+     */
+    @Test
+    public void testSubmit_spill() throws IOException {
+        final WriterStatistics statistics = submitAndClose(OverflowPolicy.SPILL);
+
+        assertThat(statistics.getWrittenCount(), is(equalTo((long)SUBMISSIONS)));
+        assertThat(statistics.getDroppedCount(), is(equalTo(0L)));
+        assertThat(readTimestamps().size(), is(equalTo(SUBMISSIONS)));
+    }
+
+    /**
+     * Tests that the data which is not dropped with {@link OverflowPolicy#DROP_OLDEST} is written in order.
+     */
+    @Test
+    public void testSubmit_dropOldest() throws IOException {
+        final WriterStatistics statistics = submitAndClose(OverflowPolicy.DROP_OLDEST);
+
+        assertThat(statistics.getWrittenCount() + statistics.getDroppedCount(), is(equalTo((long)SUBMISSIONS)));
+        assertThat((long)readTimestamps().size(), is(equalTo(statistics.getWrittenCount())));
+    }
+
+    /**
+     * Tests that closing the writer from an interrupted thread still writes all queued data and keeps the interrupt
+     * status of the thread.
+     */
+    @Test
+    public void testClose_interrupted() throws IOException {
+        // Arrange
+        final CapturedDataWriter oocut = new CapturedDataWriter(accelerationsAppender, rotationsAppender,
+                directionsAppender, SUBMISSIONS, OverflowPolicy.BLOCK);
+        final List<Point3d> empty = Collections.emptyList();
+        for (int i = 0; i < SUBMISSIONS; i++) {
+            final List<Point3d> accelerations = Collections.singletonList(new Point3d(i, i, i, i));
+            oocut.submit(new CapturedData(accelerations, empty, empty), callback);
+        }
+
+        // Act
+        Thread.currentThread().interrupt();
+        oocut.close();
+        final boolean interrupted = Thread.interrupted();
+
+        // Assert
+        assertThat(interrupted, is(true));
+        assertThat(completed.get(), is(equalTo(SUBMISSIONS)));
+        assertThat(oocut.getStatistics().getWrittenCount(), is(equalTo((long)SUBMISSIONS)));
+        assertThat(readTimestamps().size(), is(equalTo(SUBMISSIONS)));
+    }
+
+    /**
+     * Tests that data submitted after the writer was closed is dropped and its callback is still called.
+     */
+    @Test
+    public void testSubmit_afterClose() {
+        // Arrange
+        final CapturedDataWriter oocut = new CapturedDataWriter(accelerationsAppender, rotationsAppender,
+                directionsAppender, 2, OverflowPolicy.SPILL);
+        oocut.close();
+        final List<Point3d> empty = Collections.emptyList();
+        final List<Point3d> accelerations = Collections.singletonList(new Point3d(1, 1, 1, 1));
+
+        // Act
+        oocut.submit(new CapturedData(accelerations, empty, empty), callback);
+
+        // Assert
+        assertThat(completed.get(), is(equalTo(1)));
+        assertThat(oocut.getStatistics().getDroppedCount(), is(equalTo(1L)));
+        assertThat(oocut.getStatistics().getQueueDepth(), is(equalTo(0)));
+        assertThat(accelerationsFile.length(), is(equalTo(0L)));
+    }
+
+    /**
+     * Submits {@link #SUBMISSIONS} {@link CapturedData} instances with one acceleration each to a writer with a
+     * small queue and closes the writer afterwards.
+     *
+     * @param overflowPolicy The {@link OverflowPolicy} of the writer.
+     * @return The statistics of the writer after it was closed.
+     */
+    private WriterStatistics submitAndClose(final OverflowPolicy overflowPolicy) {
+        final CapturedDataWriter oocut = new CapturedDataWriter(accelerationsAppender, rotationsAppender,
+                directionsAppender, 2, overflowPolicy);
+        final List<Point3d> empty = Collections.emptyList();
+        for (int i = 0; i < SUBMISSIONS; i++) {
+            final List<Point3d> accelerations = Collections.singletonList(new Point3d(i, i, i, i));
+            oocut.submit(new CapturedData(accelerations, empty, empty), callback);
+        }
+        oocut.close();
+
+        assertThat(completed.get(), is(equalTo(SUBMISSIONS)));
+        final WriterStatistics statistics = oocut.getStatistics();
+        assertThat(statistics.getQueueDepth(), is(equalTo(0)));
+        return statistics;
+    }
+
+    /**
+     * Reads the timestamps from the acceleration file and checks that they are strictly increasing.
+     *
+     * @return The timestamps read.
+     */
+    private List<Long> readTimestamps() throws IOException {
+        final Point3dBatch points = Point3dBlockSerializer.deserialize(Files.readAllBytes(accelerationsFile.toPath()),
+                MeasurementSerializer.PERSISTENCE_FILE_FORMAT_VERSION);
+        final List<Long> timestamps = new ArrayList<>();
+        for (int i = 0; i < points.size(); i++) {
+            final long timestamp = points.getTimestamp(i);
+            if (!timestamps.isEmpty()) {
+                assertThat(timestamp, is(greaterThan(timestamps.get(timestamps.size() - 1))));
+            }
+            timestamps.add(timestamp);
+        }
+        return timestamps;
+    }
+}
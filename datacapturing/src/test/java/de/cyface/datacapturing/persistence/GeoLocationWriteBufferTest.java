@@ -0,0 +1,137 @@
+/*
+ * Copyright 2021 Cyface GmbH
+ *
+ * This file is part of the Cyface SDK for Android.
+ *
+ * The Cyface SDK for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface SDK for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface SDK for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.datacapturing.persistence;
+
+import static de.cyface.persistence.MeasuringPointsContentProvider.EXTRA_MEASUREMENT_ID;
+import static de.cyface.persistence.MeasuringPointsContentProvider.EXTRA_ROWS;
+import static de.cyface.persistence.MeasuringPointsContentProvider.EXTRA_TIMESTAMPS;
+import static de.cyface.persistence.MeasuringPointsContentProvider.METHOD_INSERT_GEO_LOCATIONS;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Bundle;
+
+import de.cyface.persistence.model.GeoLocation;
+
+/**
+ * Tests when the {@link GeoLocationWriteBuffer} inserts the buffered locations.
+ *
+ * @author Armin Schnabel
+ * @version 1.1.0
+ * @since 6.2.0
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = Build.VERSION_CODES.O_MR1) // To be able to execute tests with Java 8 (instead of 9)
+public class GeoLocationWriteBufferTest {
+
+    private final Uri uri = Uri.parse("content://de.cyface.test/locations");
+    private ContentResolver mockResolver;
+
+    @Before
+    public void setUp() {
+        mockResolver = mock(ContentResolver.class);
+        when(mockResolver.call(eq(uri), eq(METHOD_INSERT_GEO_LOCATIONS), anyString(), any(Bundle.class)))
+                .thenAnswer(new Answer<Bundle>() {
+                    @Override
+                    public Bundle answer(final InvocationOnMock invocation) {
+                        final Bundle extras = invocation.getArgument(3);
+                        final Bundle result = new Bundle();
+                        result.putInt(EXTRA_ROWS, extras.getLongArray(EXTRA_TIMESTAMPS).length);
+                        return result;
+                    }
+                });
+    }
+
+    /**
+     * Tests that full batches are inserted in one transaction each, in the order they were added.
+     */
+    @Test
+    public void testAdd_insertsFullBatches() {
+        // Arrange
+        final GeoLocationWriteBuffer oocut = new GeoLocationWriteBuffer(mockResolver, uri, 3, 60_000L);
+
+        // Act
+        for (int i = 0; i < 7; i++) {
+            oocut.add(location(i), 1L);
+        }
+
+        // Assert
+        final ArgumentCaptor<Bundle> captor = ArgumentCaptor.forClass(Bundle.class);
+        verify(mockResolver, times(2)).call(eq(uri), eq(METHOD_INSERT_GEO_LOCATIONS), anyString(), captor.capture());
+        assertThat(captor.getAllValues().get(0).getLongArray(EXTRA_TIMESTAMPS), is(equalTo(new long[] {0L, 1L, 2L})));
+        assertThat(captor.getAllValues().get(1).getLongArray(EXTRA_TIMESTAMPS), is(equalTo(new long[] {3L, 4L, 5L})));
+        assertThat(captor.getAllValues().get(1).getLong(EXTRA_MEASUREMENT_ID), is(equalTo(1L)));
+
+        // The remaining location is inserted on close
+        oocut.close();
+        verify(mockResolver, times(3)).call(eq(uri), eq(METHOD_INSERT_GEO_LOCATIONS), anyString(), captor.capture());
+        assertThat(captor.getValue().getLongArray(EXTRA_TIMESTAMPS), is(equalTo(new long[] {6L})));
+    }
+
+    /**
+     * Tests that a partial batch is inserted after the maximal delay.
+     */
+    @Test
+    public void testAdd_insertsAfterMaxDelay() {
+        // Arrange
+        final GeoLocationWriteBuffer oocut = new GeoLocationWriteBuffer(mockResolver, uri, 100, 50L);
+
+        // Act
+        oocut.add(location(0), 1L);
+        oocut.add(location(1), 1L);
+
+        // Assert
+        final ArgumentCaptor<Bundle> captor = ArgumentCaptor.forClass(Bundle.class);
+        verify(mockResolver, timeout(5_000L)).call(eq(uri), eq(METHOD_INSERT_GEO_LOCATIONS), anyString(),
+                captor.capture());
+        assertThat(captor.getValue().getLongArray(EXTRA_TIMESTAMPS).length, is(equalTo(2)));
+
+        // Nothing left to insert
+        oocut.close();
+        verify(mockResolver, times(1)).call(eq(uri), eq(METHOD_INSERT_GEO_LOCATIONS), anyString(), any(Bundle.class));
+        verify(mockResolver, never()).insert(any(Uri.class), any(ContentValues.class));
+    }
+
+    private static GeoLocation location(final long timestamp) {
+        return new GeoLocation(51.05, 13.73, timestamp, 5.0, 3.0f);
+    }
+}
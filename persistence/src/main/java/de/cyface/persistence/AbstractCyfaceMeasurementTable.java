@@ -14,7 +14,7 @@ import android.database.sqlite.SQLiteDatabase;
  *
  * @author Klemens Muthmann
  * @author Armin Schnabel
- * @version 1.1.1
+ * @version 1.2.0
  * @since 1.0.0
  */
 public abstract class AbstractCyfaceMeasurementTable implements CyfaceMeasurementTable {
@@ -28,6 +28,11 @@ public abstract class AbstractCyfaceMeasurementTable implements CyfaceMeasuremen
      * The database table name.
      */
     private final String name;
+    /**
+     * The columns of this table, cached for {@link #checkColumns(String[])}. It's created with the first query as
+     * {@link #getDatabaseTableColumns()} must not be called in the constructor.
+     */
+    private volatile Set<String> availableColumns;
 
     AbstractCyfaceMeasurementTable(final String name) {
         if (name.isEmpty()) {
@@ -94,10 +99,15 @@ public abstract class AbstractCyfaceMeasurementTable implements CyfaceMeasuremen
 
     protected void checkColumns(String[] projection) {
         if (projection != null) {
-            Set<String> requestedColumns = new HashSet<>(Arrays.asList(projection));
-            Set<String> availableColumns = new HashSet<>(Arrays.asList(getDatabaseTableColumns()));
-            if (!availableColumns.containsAll(requestedColumns)) {
-                throw new IllegalArgumentException("Unknown columns in projection");
+            Set<String> availableColumns = this.availableColumns;
+            if (availableColumns == null) {
+                availableColumns = new HashSet<>(Arrays.asList(getDatabaseTableColumns()));
+                this.availableColumns = availableColumns;
+            }
+            for (final String column : projection) {
+                if (!availableColumns.contains(column)) {
+                    throw new IllegalArgumentException("Unknown columns in projection");
+                }
             }
         }
     }
@@ -20,11 +20,14 @@ package de.cyface.persistence;
 
 import static de.cyface.persistence.Constants.TAG;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.net.Uri;
@@ -36,7 +39,10 @@ import androidx.annotation.NonNull;
 
 import de.cyface.persistence.model.Event;
 import de.cyface.persistence.model.GeoLocation;
+import de.cyface.persistence.model.GeoLocationAggregate;
 import de.cyface.persistence.model.Measurement;
+import de.cyface.persistence.model.MeasurementTimeRange;
+import de.cyface.persistence.model.Track;
 import de.cyface.persistence.serialization.Point3dFile;
 import de.cyface.utils.Validate;
 
@@ -46,7 +52,7 @@ import de.cyface.utils.Validate;
  *
  * @author Klemens Muthmann
  * @author Armin Schnabel
- * @version 4.5.1
+ * @version 4.11.1
  * @since 1.0.0
  */
 class DatabaseHelper extends SQLiteOpenHelper {
@@ -59,7 +65,7 @@ class DatabaseHelper extends SQLiteOpenHelper {
      * Increase the DATABASE_VERSION if the database structure changes with a new update
      * but don't forget to adjust onCreate and onUpgrade accordingly for the new structure and incremental upgrade
      */
-    private final static int DATABASE_VERSION = 16;
+    private final static int DATABASE_VERSION = 20;
     /**
      * The table containing all the measurements, without the corresponding data. Data is stored in one table per type.
      */
@@ -77,6 +83,22 @@ class DatabaseHelper extends SQLiteOpenHelper {
      * The table to store the {@link Event}s on the device.
      */
     private final EventTable eventTable;
+    /**
+     * The table to store one summary of the {@link GeoLocation}s per {@link Measurement}.
+     */
+    private final MeasurementSummaryTable measurementSummaryTable;
+    /**
+     * The table to store the simplified {@link Track}s of the {@link Measurement}s.
+     */
+    private final SimplifiedLocationsTable simplifiedLocationsTable;
+    /**
+     * The table to store the spatial index of the {@link GeoLocation}s.
+     */
+    private final LocationCellsTable locationCellsTable;
+    /**
+     * The compiled statements for the writes executed while capturing. They are compiled with the first write.
+     */
+    private WriteStatements writeStatements;
 
     /**
      * Creates a new completely initialized <code>DatabaseHelper</code>.
@@ -91,6 +113,9 @@ class DatabaseHelper extends SQLiteOpenHelper {
         geoLocationsTable = new GeoLocationsTable();
         identifierTable = new IdentifierTable(context);
         eventTable = new EventTable();
+        measurementSummaryTable = new MeasurementSummaryTable();
+        simplifiedLocationsTable = new SimplifiedLocationsTable();
+        locationCellsTable = new LocationCellsTable();
     }
 
     /**
@@ -105,6 +130,9 @@ class DatabaseHelper extends SQLiteOpenHelper {
         measurementTable.onCreate(db);
         geoLocationsTable.onCreate(db);
         eventTable.onCreate(db);
+        measurementSummaryTable.onCreate(db);
+        simplifiedLocationsTable.onCreate(db);
+        locationCellsTable.onCreate(db);
     }
 
     /**
@@ -153,6 +181,9 @@ class DatabaseHelper extends SQLiteOpenHelper {
             geoLocationsTable.onUpgrade(database, fromVersion, toVersion);
             identifierTable.onUpgrade(database, fromVersion, toVersion);
             eventTable.onUpgrade(database, fromVersion, toVersion);
+            measurementSummaryTable.onUpgrade(database, fromVersion, toVersion);
+            simplifiedLocationsTable.onUpgrade(database, fromVersion, toVersion);
+            locationCellsTable.onUpgrade(database, fromVersion, toVersion);
         }
     }
 
@@ -177,6 +208,10 @@ class DatabaseHelper extends SQLiteOpenHelper {
         int ret = 0;
         database.beginTransaction();
         try {
+            // The summaries and cells can only be updated incrementally when GeoLocations are added
+            final List<Long> summarizedMeasurements = table == geoLocationsTable
+                    ? loadMeasurementIdentifiers(database, uri, selection, selectionArgs)
+                    : null;
             if (pathSegments.size() == 2) {
                 String rowIdentifier = pathSegments.get(1);
                 switch (pathSegments.get(0)) {
@@ -194,6 +229,7 @@ class DatabaseHelper extends SQLiteOpenHelper {
                         String adaptedSelection = BaseColumns._ID + "=" + rowIdentifier
                                 + (selection == null ? "" : " AND " + selection);
                         ret += table.deleteRow(getWritableDatabase(), adaptedSelection, selectionArgs);
+                        rebuildSummaries(database, summarizedMeasurements);
                         database.setTransactionSuccessful();
                         return ret;
                     default:
@@ -202,6 +238,7 @@ class DatabaseHelper extends SQLiteOpenHelper {
             } else if (pathSegments.size() == 1) {
                 switch (pathSegments.get(0)) {
                     case EventTable.URI_PATH:
+                    case SimplifiedLocationsTable.URI_PATH:
                         ret += table.deleteRow(getWritableDatabase(), selection, selectionArgs);
                         database.setTransactionSuccessful();
                         return ret;
@@ -220,6 +257,7 @@ class DatabaseHelper extends SQLiteOpenHelper {
                         // continues here until return ! -->
                     case GeoLocationsTable.URI_PATH:
                         ret += table.deleteRow(getWritableDatabase(), selection, selectionArgs);
+                        rebuildSummaries(database, summarizedMeasurements);
                         database.setTransactionSuccessful();
                         return ret;
                     default:
@@ -234,9 +272,52 @@ class DatabaseHelper extends SQLiteOpenHelper {
         }
     }
 
+    /**
+     * Loads the ids of the {@link Measurement}s which {@link GeoLocation}s are selected.
+     *
+     * @param database The database object to load from.
+     * @param uri The {@link GeoLocationsTable} URI, optionally with the id of a single {@code GeoLocation}.
+     * @param selection The selection of the {@code GeoLocation}s.
+     * @param selectionArgs The arguments to place inside the '?' placeholder from <code>selection</code>.
+     * @return The ids of the {@code Measurement}s.
+     */
+    private List<Long> loadMeasurementIdentifiers(final @NonNull SQLiteDatabase database, final @NonNull Uri uri,
+            final String selection, final String[] selectionArgs) {
+        final String adaptedSelection = uri.getPathSegments().size() == 2
+                ? BaseColumns._ID + "=" + uri.getLastPathSegment() + (selection == null ? "" : " AND " + selection)
+                : selection;
+        final List<Long> measurementIdentifiers = new ArrayList<>();
+        try (final Cursor cursor = database.query(true, GeoLocationsTable.URI_PATH,
+                new String[] {GeoLocationsTable.COLUMN_MEASUREMENT_FK}, adaptedSelection, selectionArgs, null, null,
+                null, null)) {
+            while (cursor.moveToNext()) {
+                measurementIdentifiers.add(cursor.getLong(0));
+            }
+        }
+        return measurementIdentifiers;
+    }
+
+    /**
+     * Recalculates the summaries and cells of {@link Measurement}s after {@link GeoLocation}s were deleted.
+     *
+     * @param database The database object to update.
+     * @param measurementIdentifiers The ids of the {@code Measurement}s or {@code null} if no {@code GeoLocation}s
+     *            were deleted.
+     */
+    private void rebuildSummaries(final @NonNull SQLiteDatabase database, final List<Long> measurementIdentifiers) {
+        if (measurementIdentifiers == null) {
+            return;
+        }
+        for (final long measurementIdentifier : measurementIdentifiers) {
+            measurementSummaryTable.rebuild(database, measurementIdentifier);
+            locationCellsTable.rebuild(database, measurementIdentifier);
+        }
+    }
+
     /**
      * Cascadingly deletes all data for a single {@link Measurement} from the database. This only includes
-     * {@link GeoLocation}s and {@link Event}s but not the {@link Point3dFile}s as they are not stored in database.
+     * {@link GeoLocation}s, {@link Event}s, its summary, simplified {@link Track}s and cells but not the
+     * {@link Point3dFile}s as they are not stored in database.
      *
      * @param database The database object to delete from.
      * @param measurementIdentifier The device wide unique identifier of the measurement to delete.
@@ -248,6 +329,12 @@ class DatabaseHelper extends SQLiteOpenHelper {
 
         ret += geoLocationsTable.deleteRow(database, GeoLocationsTable.COLUMN_MEASUREMENT_FK + "=?", identifierAsArgs);
         ret += eventTable.deleteRow(database, EventTable.COLUMN_MEASUREMENT_FK + "=?", identifierAsArgs);
+        ret += measurementSummaryTable.deleteRow(database, MeasurementSummaryTable.COLUMN_MEASUREMENT_FK + "=?",
+                identifierAsArgs);
+        ret += simplifiedLocationsTable.deleteRow(database, SimplifiedLocationsTable.COLUMN_MEASUREMENT_FK + "=?",
+                identifierAsArgs);
+        ret += locationCellsTable.deleteRow(database, LocationCellsTable.COLUMN_MEASUREMENT_FK + "=?",
+                identifierAsArgs);
         return ret;
     }
 
@@ -260,6 +347,10 @@ class DatabaseHelper extends SQLiteOpenHelper {
      */
     long insertRow(final @NonNull Uri uri, final @NonNull ContentValues values) {
         final CyfaceMeasurementTable table = matchTable(uri);
+        if (table == geoLocationsTable) {
+            // Updates the summary and cells in the same transaction, which must be started by the WriteStatements
+            return getWriteStatements().insertGeoLocations(table, Collections.singletonList(values))[0];
+        }
         return table.insertRow(getWritableDatabase(), values);
     }
 
@@ -272,9 +363,171 @@ class DatabaseHelper extends SQLiteOpenHelper {
      */
     long[] bulkInsert(final @NonNull Uri uri, final @NonNull List<ContentValues> values) {
         CyfaceMeasurementTable table = matchTable(uri);
+        if (table == geoLocationsTable) {
+            // Updates the summaries and cells in the same transaction, which must be started by the WriteStatements
+            return getWriteStatements().insertGeoLocations(table, values);
+        }
         return table.insertBatch(getWritableDatabase(), values);
     }
 
+    /**
+     * Provides the compiled statements for the writes executed while capturing.
+     *
+     * @return The statements compiled for the current writable database.
+     */
+    synchronized WriteStatements getWriteStatements() {
+        final SQLiteDatabase database = getWritableDatabase();
+        if (writeStatements == null || !writeStatements.isFor(database)) {
+            writeStatements = new WriteStatements(database);
+        }
+        return writeStatements;
+    }
+
+    /**
+     * Counts the rows of a table which belong to a {@link Measurement} without loading them.
+     *
+     * @param uri The table to count the rows of.
+     * @param measurementForeignKeyColumnName The column name of the column containing the reference to the measurement
+     *            table.
+     * @param measurementIdentifier The id of the {@code Measurement} to count the rows for.
+     * @return The number of rows.
+     */
+    long count(final @NonNull Uri uri, final @NonNull String measurementForeignKeyColumnName,
+            final long measurementIdentifier) {
+        return DatabaseUtils.queryNumEntries(getReadableDatabase(), matchTable(uri).getName(),
+                measurementForeignKeyColumnName + "=?", new String[] {String.valueOf(measurementIdentifier)});
+    }
+
+    /**
+     * Aggregates the {@link GeoLocation}s of the {@link Track}s of a {@link Measurement} with {@code COUNT},
+     * {@code MIN} and {@code MAX}, and selects the first and last of them via the
+     * {@link GeoLocationsTable#INDEX_MEASUREMENT_FK_GEOLOCATION_TIME}.
+     * <p>
+     * Like {@link PersistenceLayer#loadTracks(long)} this ignores the {@code GeoLocation}s captured after a
+     * {@link Event.EventType#LIFECYCLE_PAUSE} and before the following {@link Event.EventType#LIFECYCLE_RESUME}.
+     *
+     * @param measurementIdentifier The id of the {@code Measurement} to aggregate the {@code GeoLocation}s for.
+     * @return The aggregated values.
+     */
+    GeoLocationAggregate aggregateGeoLocations(final long measurementIdentifier) {
+        final SQLiteDatabase database = getReadableDatabase();
+
+        // Exclude the locations between pause and resume events
+        final StringBuilder selection = new StringBuilder(GeoLocationsTable.COLUMN_MEASUREMENT_FK + "=?");
+        final List<String> selectionArgs = new ArrayList<>();
+        selectionArgs.add(String.valueOf(measurementIdentifier));
+        try (final Cursor events = database.query(EventTable.URI_PATH,
+                new String[] {EventTable.COLUMN_TYPE, EventTable.COLUMN_TIMESTAMP},
+                EventTable.COLUMN_MEASUREMENT_FK + "=? AND " + EventTable.COLUMN_TYPE + " IN (?, ?)",
+                new String[] {String.valueOf(measurementIdentifier),
+                        Event.EventType.LIFECYCLE_PAUSE.getDatabaseIdentifier(),
+                        Event.EventType.LIFECYCLE_RESUME.getDatabaseIdentifier()},
+                null, null, EventTable.COLUMN_TIMESTAMP + " ASC")) {
+            Long pauseEventTime = null;
+            while (events.moveToNext()) {
+                final long timestamp = events.getLong(1);
+                if (Event.EventType.LIFECYCLE_PAUSE.getDatabaseIdentifier().equals(events.getString(0))) {
+                    pauseEventTime = timestamp;
+                    continue;
+                }
+                Validate.notNull(pauseEventTime);
+                selection.append(" AND NOT (" + GeoLocationsTable.COLUMN_GEOLOCATION_TIME + ">? AND "
+                        + GeoLocationsTable.COLUMN_GEOLOCATION_TIME + "<?)");
+                selectionArgs.add(String.valueOf(pauseEventTime));
+                selectionArgs.add(String.valueOf(timestamp));
+            }
+        }
+        final String[] args = selectionArgs.toArray(new String[0]);
+
+        final int count;
+        final double minLat;
+        final double maxLat;
+        final double minLon;
+        final double maxLon;
+        try (final Cursor cursor = database.rawQuery("SELECT COUNT(*), MIN(" + GeoLocationsTable.COLUMN_LAT + "), MAX("
+                + GeoLocationsTable.COLUMN_LAT + "), MIN(" + GeoLocationsTable.COLUMN_LON + "), MAX("
+                + GeoLocationsTable.COLUMN_LON + ") FROM " + GeoLocationsTable.URI_PATH + " WHERE " + selection,
+                args)) {
+            Validate.isTrue(cursor.moveToFirst());
+            count = cursor.getInt(0);
+            minLat = cursor.getDouble(1);
+            maxLat = cursor.getDouble(2);
+            minLon = cursor.getDouble(3);
+            maxLon = cursor.getDouble(4);
+        }
+        if (count == 0) {
+            return new GeoLocationAggregate(0, null, null, 0.0, 0.0, 0.0, 0.0);
+        }
+        final GeoLocation startLocation = loadEdgeGeoLocation(database, selection.toString(), args, "ASC");
+        final GeoLocation endLocation = loadEdgeGeoLocation(database, selection.toString(), args, "DESC");
+        return new GeoLocationAggregate(count, startLocation, endLocation, minLat, maxLat, minLon, maxLon);
+    }
+
+    /**
+     * Selects the {@link Measurement}s with {@link GeoLocation}s within an area via the
+     * {@link LocationCellsTable#INDEX_CELL}.
+     * <p>
+     * The area is extended to the cells it intersects, so {@code GeoLocation}s up to one cell outside of the area are
+     * included. Unlike {@link #aggregateGeoLocations(long)} this includes the {@code GeoLocation}s captured while a
+     * {@code Measurement} was paused.
+     *
+     * @param minLat The southern bound of the area.
+     * @param minLon The western bound of the area.
+     * @param maxLat The northern bound of the area.
+     * @param maxLon The eastern bound of the area. If this is smaller than {@code minLon} the area crosses the
+     *            antimeridian.
+     * @return The time range of each {@code Measurement} within the area, ordered by the id of the {@code Measurement}.
+     */
+    List<MeasurementTimeRange> loadMeasurementsInArea(final double minLat, final double minLon, final double maxLat,
+            final double maxLon) {
+        Validate.isTrue(minLat <= maxLat, "Illegal argument: minLat must not be larger than maxLat");
+
+        final String lonCellSelection = LocationCellsTable.COLUMN_LON_CELL + ">=? "
+                + (minLon <= maxLon ? "AND" : "OR") + " " + LocationCellsTable.COLUMN_LON_CELL + "<=?";
+        final List<MeasurementTimeRange> ranges = new ArrayList<>();
+        try (final Cursor cursor = getReadableDatabase().query(LocationCellsTable.URI_PATH,
+                new String[] {LocationCellsTable.COLUMN_MEASUREMENT_FK,
+                        "MIN(" + LocationCellsTable.COLUMN_START_TIME + ")",
+                        "MAX(" + LocationCellsTable.COLUMN_END_TIME + ")",
+                        "SUM(" + LocationCellsTable.COLUMN_LOCATION_COUNT + ")"},
+                LocationCellsTable.COLUMN_LAT_CELL + " BETWEEN ? AND ? AND (" + lonCellSelection + ")",
+                new String[] {String.valueOf(LocationCellsTable.latitudeCell(minLat)),
+                        String.valueOf(LocationCellsTable.latitudeCell(maxLat)),
+                        String.valueOf(LocationCellsTable.longitudeCell(minLon)),
+                        String.valueOf(LocationCellsTable.longitudeCell(maxLon))},
+                LocationCellsTable.COLUMN_MEASUREMENT_FK, null, LocationCellsTable.COLUMN_MEASUREMENT_FK + " ASC")) {
+            while (cursor.moveToNext()) {
+                ranges.add(new MeasurementTimeRange(cursor.getLong(0), cursor.getLong(1), cursor.getLong(2),
+                        cursor.getInt(3)));
+            }
+        }
+        return ranges;
+    }
+
+    /**
+     * Loads the first or last {@link GeoLocation} of a selection.
+     *
+     * @param database The database to load the {@code GeoLocation} from.
+     * @param selection The selection of the {@code GeoLocation}s.
+     * @param selectionArgs The arguments for the placeholders of the {@code selection}.
+     * @param direction {@code ASC} to load the first or {@code DESC} to load the last {@code GeoLocation}.
+     * @return The {@code GeoLocation}.
+     */
+    private GeoLocation loadEdgeGeoLocation(@NonNull final SQLiteDatabase database, @NonNull final String selection,
+            @NonNull final String[] selectionArgs, @NonNull final String direction) {
+        try (final Cursor cursor = database.query(GeoLocationsTable.URI_PATH,
+                new String[] {GeoLocationsTable.COLUMN_LAT, GeoLocationsTable.COLUMN_LON,
+                        GeoLocationsTable.COLUMN_GEOLOCATION_TIME, GeoLocationsTable.COLUMN_SPEED,
+                        GeoLocationsTable.COLUMN_ACCURACY},
+                selection, selectionArgs, null, null, GeoLocationsTable.COLUMN_GEOLOCATION_TIME + " " + direction
+                        + ", " + BaseColumns._ID + " " + direction,
+                "1")) {
+            Validate.isTrue(cursor.moveToFirst());
+            return new GeoLocation(cursor.getDouble(0), cursor.getDouble(1), cursor.getLong(2), cursor.getDouble(3),
+                    cursor.getFloat(4));
+        }
+    }
+
     /**
      * Sends a query to the database and provides the result of that query.
      *
@@ -365,6 +618,12 @@ class DatabaseHelper extends SQLiteOpenHelper {
                 return identifierTable;
             case EventTable.URI_PATH:
                 return eventTable;
+            case MeasurementSummaryTable.URI_PATH:
+                return measurementSummaryTable;
+            case SimplifiedLocationsTable.URI_PATH:
+                return simplifiedLocationsTable;
+            case LocationCellsTable.URI_PATH:
+                return locationCellsTable;
             default:
                 throw new IllegalStateException("Unknown table with URI: " + uri);
         }
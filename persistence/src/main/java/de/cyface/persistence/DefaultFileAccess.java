@@ -22,7 +22,7 @@ import de.cyface.utils.Validate;
  * Implementation of the {@link FileAccessLayer} which accesses the real file system.
  *
  * @author Armin Schnabel
- * @version 3.1.4
+ * @version 3.2.0
  * @since 3.0.0
  */
 public final class DefaultFileAccess implements FileAccessLayer {
@@ -30,33 +30,9 @@ public final class DefaultFileAccess implements FileAccessLayer {
     @Override
     public void writeToOutputStream(@NonNull final File file,
             @NonNull final BufferedOutputStream bufferedOutputStream) {
-
-        final FileInputStream fileInputStream;
-        int bytesRead, bytesAvailable, bufferSize;
-        byte[] buffer;
-        // noinspection PointlessArithmeticExpression - makes semantically more sense
-        int maxBufferSize = 1 * 1024 * 1024; // from sample code, optimize if performance problems
         try {
-            fileInputStream = new FileInputStream(file);
-            try {
-                bytesAvailable = fileInputStream.available();
-                bufferSize = Math.min(bytesAvailable, maxBufferSize);
-                buffer = new byte[bufferSize];
-
-                bytesRead = fileInputStream.read(buffer, 0, bufferSize);
-                while (bytesRead > 0) {
-                    bufferedOutputStream.write(buffer, 0, bufferSize);
-                    bytesAvailable = fileInputStream.available();
-                    bufferSize = Math.min(bytesAvailable, maxBufferSize);
-                    bytesRead = fileInputStream.read(buffer, 0, bufferSize);
-                }
-            } catch (final IOException e) {
-                throw new IllegalStateException(e);
-            } finally {
-                fileInputStream.close();
-            }
+            FileTransfer.transfer(file, bufferedOutputStream);
         } catch (final IOException e) {
-            // This catches, among others, the IOException thrown in the close
             throw new IllegalStateException(e);
         }
     }
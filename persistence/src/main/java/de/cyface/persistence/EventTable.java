@@ -13,7 +13,7 @@ import static de.cyface.persistence.Constants.TAG;
  * Table for storing {@link Event}s.
  *
  * @author Armin Schnabel
- * @version 1.1.0
+ * @version 1.2.0
  * @since 4.0.0
  */
 public class EventTable extends AbstractCyfaceMeasurementTable {
@@ -43,6 +43,11 @@ public class EventTable extends AbstractCyfaceMeasurementTable {
      * An array containing all the column names used by a {@link EventTable}.
      */
     private static final String[] COLUMNS = {BaseColumns._ID, COLUMN_TIMESTAMP, COLUMN_TYPE, COLUMN_MEASUREMENT_FK, COLUMN_VALUE};
+    /**
+     * The index which allows to load the {@link Event}s of a {@link Measurement} ordered by time without scanning and
+     * sorting the whole table.
+     */
+    static final String INDEX_MEASUREMENT_FK_TIMESTAMP = "events_measurement_fk_timestamp";
 
     /**
      * Provides a completely initialized object as a representation of a table containing {@link Event}s in the
@@ -52,6 +57,12 @@ public class EventTable extends AbstractCyfaceMeasurementTable {
         super(URI_PATH);
     }
 
+    @Override
+    public void onCreate(final SQLiteDatabase database) {
+        super.onCreate(database);
+        createIndex(database);
+    }
+
     @Override
     protected String getCreateStatement() {
         // The COLUMN_MEASUREMENT_FK may be null if the Event is not linked to a Measurement.
@@ -84,10 +95,27 @@ public class EventTable extends AbstractCyfaceMeasurementTable {
                 Log.d(TAG, "Upgrading event table from V14");
                 database.execSQL("ALTER TABLE events ADD COLUMN value TEXT");
                 break; // onUpgrade is called incrementally by DatabaseHelper
+
+            case 16:
+                // This index was added in version 17
+                Log.d(TAG, "Upgrading event table from V16");
+                createIndex(database);
+
+                break; // onUpgrade is called incrementally by DatabaseHelper
         }
 
     }
 
+    /**
+     * Creates the {@link #INDEX_MEASUREMENT_FK_TIMESTAMP} if it does not exist yet.
+     *
+     * @param database The {@code SQLiteDatabase} to create the index in
+     */
+    private void createIndex(final SQLiteDatabase database) {
+        database.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_MEASUREMENT_FK_TIMESTAMP + " ON " + getName() + " ("
+                + COLUMN_MEASUREMENT_FK + ", " + COLUMN_TIMESTAMP + ");");
+    }
+
     @Override
     protected String[] getDatabaseTableColumns() {
         return COLUMNS;
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2021 Cyface GmbH
+ *
+ * This file is part of the Cyface SDK for Android.
+ *
+ * The Cyface SDK for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface SDK for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface SDK for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.persistence;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import androidx.annotation.NonNull;
+import de.cyface.utils.Validate;
+
+/**
+ * Copies data from a {@link FileChannel} to an {@link OutputStream}, e.g. to serialize or upload files.
+ * <p>
+ * When the sink is a {@link FileOutputStream}, the data is copied with {@link FileChannel#transferTo(long, long,
+ * java.nio.channels.WritableByteChannel)}, which lets the kernel copy the data without passing it through the Java
+ * heap. Otherwise, the data is copied through a buffer of {@link #BUFFER_SIZE} bytes which is reused by each thread,
+ * so no buffer is allocated per call. A direct buffer would not help here, as an {@code OutputStream} only accepts
+ * heap arrays.
+ * <p>
+ * Exactly the requested number of bytes is copied, independent of {@code InputStream#available()}.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 6.2.0
+ */
+public final class FileTransfer {
+
+    /**
+     * The number of bytes copied at once when the data passes through the Java heap.
+     */
+    static final int BUFFER_SIZE = 64 * 1024;
+    /**
+     * The buffer of each thread which copies data through the Java heap.
+     */
+    private static final ThreadLocal<ByteBuffer> BUFFER = new ThreadLocal<ByteBuffer>() {
+        @Override
+        protected ByteBuffer initialValue() {
+            return ByteBuffer.allocate(BUFFER_SIZE);
+        }
+    };
+
+    /**
+     * Utility class, no instances.
+     */
+    private FileTransfer() {
+        // Nothing to do
+    }
+
+    /**
+     * Copies the content of a file to the provided stream.
+     *
+     * @param file The file to copy.
+     * @param outputStream The stream to copy to. It's not closed by this method.
+     * @return The number of bytes copied, which is the size of the file when it was opened.
+     * @throws IOException If reading or writing failed.
+     */
+    public static long transfer(@NonNull final File file, @NonNull final OutputStream outputStream)
+            throws IOException {
+        try (final FileChannel channel = new FileInputStream(file).getChannel()) {
+            return transfer(channel, 0L, channel.size(), outputStream);
+        }
+    }
+
+    /**
+     * Copies a range of a file to the provided stream. The position of the {@code channel} is not changed.
+     *
+     * @param channel The channel of the file to copy from.
+     * @param position The position in the file of the first byte to copy.
+     * @param count The number of bytes to copy.
+     * @param outputStream The stream to copy to. It's not closed by this method.
+     * @return The number of bytes copied, which is always {@code count}.
+     * @throws EOFException If the file ended before {@code count} bytes were copied.
+     * @throws IOException If reading or writing failed.
+     */
+    public static long transfer(@NonNull final FileChannel channel, final long position, final long count,
+            @NonNull final OutputStream outputStream) throws IOException {
+        Validate.isTrue(position >= 0 && count >= 0, "Illegal position or count: " + position + ", " + count);
+        if (outputStream instanceof FileOutputStream) {
+            return transferTo(channel, position, count, ((FileOutputStream)outputStream).getChannel());
+        }
+
+        final ByteBuffer buffer = BUFFER.get();
+        long transferred = 0L;
+        while (transferred < count) {
+            buffer.clear();
+            buffer.limit((int)Math.min(buffer.capacity(), count - transferred));
+            // Positional reads do not change the position of the channel, so they may be used concurrently
+            final int read = channel.read(buffer, position + transferred);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of file at position " + (position + transferred));
+            }
+            outputStream.write(buffer.array(), 0, read);
+            transferred += read;
+        }
+        return transferred;
+    }
+
+    /**
+     * Copies a range of a file to another file without passing the data through the Java heap.
+     *
+     * @param channel The channel of the file to copy from.
+     * @param position The position in the file of the first byte to copy.
+     * @param count The number of bytes to copy.
+     * @param target The channel to copy to.
+     * @return The number of bytes copied, which is always {@code count}.
+     * @throws EOFException If the file ended before {@code count} bytes were copied.
+     * @throws IOException If reading or writing failed.
+     */
+    private static long transferTo(@NonNull final FileChannel channel, final long position, final long count,
+            @NonNull final FileChannel target) throws IOException {
+        long transferred = 0L;
+        while (transferred < count) {
+            // Returns less than requested when the file ended, as the target channel is blocking
+            final long bytes = channel.transferTo(position + transferred, count - transferred, target);
+            if (bytes <= 0) {
+                throw new EOFException("Unexpected end of file at position " + (position + transferred));
+            }
+            transferred += bytes;
+        }
+        return transferred;
+    }
+}
@@ -34,7 +34,7 @@ import de.cyface.persistence.model.Measurement;
  *
  * @author Klemens Muthmann
  * @author Armin Schnabel
- * @version 2.4.4
+ * @version 2.5.0
  * @since 1.0.0
  */
 public class GeoLocationsTable extends AbstractCyfaceMeasurementTable {
@@ -73,6 +73,11 @@ public class GeoLocationsTable extends AbstractCyfaceMeasurementTable {
      */
     private static final String[] COLUMNS = {BaseColumns._ID, COLUMN_GEOLOCATION_TIME, COLUMN_LAT, COLUMN_LON,
             COLUMN_SPEED, COLUMN_ACCURACY, COLUMN_MEASUREMENT_FK};
+    /**
+     * The index which allows to load the {@link GeoLocation}s of a {@link Measurement} ordered by time without scanning
+     * and sorting the whole table.
+     */
+    static final String INDEX_MEASUREMENT_FK_GEOLOCATION_TIME = "locations_measurement_fk_gps_time";
 
     /**
      * Provides a completely initialized object as a representation of a table containing geo locations in the database.
@@ -81,6 +86,12 @@ public class GeoLocationsTable extends AbstractCyfaceMeasurementTable {
         super(URI_PATH);
     }
 
+    @Override
+    public void onCreate(final SQLiteDatabase database) {
+        super.onCreate(database);
+        createIndex(database);
+    }
+
     @Override
     protected String getCreateStatement() {
         return "CREATE TABLE " + getName() + " (" + BaseColumns._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
@@ -108,11 +119,31 @@ public class GeoLocationsTable extends AbstractCyfaceMeasurementTable {
                 Log.d(TAG, "Upgrading geoLocation table from V8");
                 migrateDatabaseFromV8(database);
 
+                break; // onUpgrade is called incrementally by DatabaseHelper
+
+            case 16:
+                // This index was added in version 17
+                Log.d(TAG, "Upgrading geoLocation table from V16");
+                createIndex(database);
+
                 break; // onUpgrade is called incrementally by DatabaseHelper
         }
 
     }
 
+    /**
+     * Creates the {@link #INDEX_MEASUREMENT_FK_GEOLOCATION_TIME} if it does not exist yet.
+     * <p>
+     * On an existing database with a lot of locations this takes a few seconds. It runs within the transaction of the
+     * database upgrade, so the database stays unchanged if it fails, e.g. because there is not enough space left.
+     *
+     * @param database The {@code SQLiteDatabase} to create the index in
+     */
+    private void createIndex(final SQLiteDatabase database) {
+        database.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_MEASUREMENT_FK_GEOLOCATION_TIME + " ON " + getName()
+                + " (" + COLUMN_MEASUREMENT_FK + ", " + COLUMN_GEOLOCATION_TIME + ");");
+    }
+
     /**
      * Renames table, updates the table structure and copies the data.
      *
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2021 Cyface GmbH
+ *
+ * This file is part of the Cyface SDK for Android.
+ *
+ * The Cyface SDK for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface SDK for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface SDK for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.persistence;
+
+import static de.cyface.persistence.Constants.TAG;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.provider.BaseColumns;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import de.cyface.persistence.model.GeoLocation;
+import de.cyface.persistence.model.Measurement;
+
+/**
+ * Table for storing a spatial index of the {@link GeoLocation}s: one row per {@link Measurement} and grid cell the
+ * {@code Measurement} passed through.
+ * <p>
+ * The grid divides the coordinates into cells of {@code 1 / CELLS_PER_DEGREE} degrees, i.e. about 1.1 km from north
+ * to south and 0.7 km from west to east in central Europe. The {@code Measurement}s passing through an area are found
+ * via the {@link #INDEX_CELL} without loading their {@code GeoLocation}s. The rows are updated in the same transaction
+ * as the {@code GeoLocation}s are inserted, see {@link WriteStatements#updateCells(long, long[], double[], double[])}.
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 6.2.0
+ */
+public class LocationCellsTable extends AbstractCyfaceMeasurementTable {
+
+    /**
+     * The path segment in the table URI identifying the {@link LocationCellsTable}.
+     */
+    final static String URI_PATH = "location_cells";
+    /**
+     * The number of cells per degree of latitude and longitude.
+     */
+    static final int CELLS_PER_DEGREE = 100;
+    /**
+     * Column name for the column storing the foreign key referencing the {@link Measurement} which passed through the
+     * cell.
+     */
+    public static final String COLUMN_MEASUREMENT_FK = "measurement_fk";
+    /**
+     * Column name for the column storing the row of the cell in the grid, see {@link #latitudeCell(double)}.
+     */
+    public static final String COLUMN_LAT_CELL = "lat_cell";
+    /**
+     * Column name for the column storing the column of the cell in the grid, see {@link #longitudeCell(double)}.
+     */
+    public static final String COLUMN_LON_CELL = "lon_cell";
+    /**
+     * Column name for the column storing the number of {@link GeoLocation}s within the cell.
+     */
+    public static final String COLUMN_LOCATION_COUNT = "location_count";
+    /**
+     * Column name for the column storing the timestamp of the first {@link GeoLocation} within the cell.
+     */
+    public static final String COLUMN_START_TIME = "start_time";
+    /**
+     * Column name for the column storing the timestamp of the last {@link GeoLocation} within the cell.
+     */
+    public static final String COLUMN_END_TIME = "end_time";
+    /**
+     * An array containing all the column names used by a {@link LocationCellsTable}.
+     */
+    private static final String[] COLUMNS = {BaseColumns._ID, COLUMN_MEASUREMENT_FK, COLUMN_LAT_CELL,
+            COLUMN_LON_CELL, COLUMN_LOCATION_COUNT, COLUMN_START_TIME, COLUMN_END_TIME};
+    /**
+     * The unique index which allows to select the cells within an area by a range of {@link #COLUMN_LAT_CELL}s
+     * filtered by a range of {@link #COLUMN_LON_CELL}s. It also ensures there is only one row per cell and
+     * {@link Measurement}.
+     */
+    static final String INDEX_CELL = "location_cells_cell";
+    /**
+     * The index which allows to delete the cells of a {@link Measurement} without scanning the whole table.
+     */
+    static final String INDEX_MEASUREMENT_FK = "location_cells_measurement_fk";
+
+    /**
+     * Provides a completely initialized object as a representation of a table containing the spatial index of the
+     * {@link GeoLocation}s in the database.
+     */
+    LocationCellsTable() {
+        super(URI_PATH);
+    }
+
+    @Override
+    public void onCreate(final SQLiteDatabase database) {
+        super.onCreate(database);
+        database.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS " + INDEX_CELL + " ON " + getName() + " ("
+                + COLUMN_LAT_CELL + ", " + COLUMN_LON_CELL + ", " + COLUMN_MEASUREMENT_FK + ");");
+        database.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_MEASUREMENT_FK + " ON " + getName() + " ("
+                + COLUMN_MEASUREMENT_FK + ");");
+    }
+
+    @Override
+    protected String getCreateStatement() {
+        return "CREATE TABLE " + getName() + " (" + BaseColumns._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + COLUMN_MEASUREMENT_FK + " INTEGER NOT NULL, " + COLUMN_LAT_CELL + " INTEGER NOT NULL, "
+                + COLUMN_LON_CELL + " INTEGER NOT NULL, " + COLUMN_LOCATION_COUNT + " INTEGER NOT NULL, "
+                + COLUMN_START_TIME + " INTEGER NOT NULL, " + COLUMN_END_TIME + " INTEGER NOT NULL);";
+    }
+
+    /**
+     * Don't forget to update the {@link DatabaseHelper}'s {@code DATABASE_VERSION} if you upgrade this table.
+     * <p>
+     * The Upgrade is automatically executed in a transaction, do not wrap the code in another transaction!
+     * <p>
+     * This upgrades are called incrementally by {@link DatabaseHelper#onUpgrade(SQLiteDatabase, int, int)}.
+     * <p>
+     * Remaining documentation: {@link CyfaceMeasurementTable#onUpgrade}
+     */
+    @Override
+    public void onUpgrade(final SQLiteDatabase database, final int fromVersion, final int toVersion) {
+
+        // noinspection SwitchStatementWithTooFewBranches - for readability
+        switch (fromVersion) {
+
+            case 19:
+                // This table was added in version 20
+                Log.d(TAG, "Creating location cells table from V19");
+                onCreate(database);
+                rebuild(database);
+
+                break; // onUpgrade is called incrementally by DatabaseHelper
+        }
+    }
+
+    /**
+     * Replaces all rows of this table with cells calculated from the {@link GeoLocationsTable}.
+     * <p>
+     * This is used to fill the table for the {@link Measurement}s captured before it was added.
+     *
+     * @param database The {@code SQLiteDatabase} to rebuild the table in
+     */
+    void rebuild(@NonNull final SQLiteDatabase database) {
+        database.execSQL("DELETE FROM " + getName() + ";");
+        database.execSQL(insertCellsStatement(""));
+    }
+
+    /**
+     * Replaces the rows of a {@link Measurement} with cells calculated from the {@link GeoLocationsTable}.
+     * <p>
+     * This is used when {@link GeoLocation}s of a {@code Measurement} are deleted, as the cells can only be updated
+     * incrementally when {@code GeoLocation}s are added.
+     *
+     * @param database The {@code SQLiteDatabase} to rebuild the rows in
+     * @param measurementIdentifier The id of the {@code Measurement} to rebuild the cells for
+     */
+    void rebuild(@NonNull final SQLiteDatabase database, final long measurementIdentifier) {
+        deleteRow(database, COLUMN_MEASUREMENT_FK + "=?", new String[] {String.valueOf(measurementIdentifier)});
+        database.execSQL(insertCellsStatement(" WHERE " + GeoLocationsTable.COLUMN_MEASUREMENT_FK + "=?"),
+                new Object[] {measurementIdentifier});
+    }
+
+    /**
+     * Creates the statement which inserts the cells of the {@link Measurement}s with {@link GeoLocation}s.
+     * <p>
+     * The cells are calculated with the same floating point operations as in {@link #latitudeCell(double)} and
+     * {@link #longitudeCell(double)}, so they match the cells updated incrementally.
+     *
+     * @param where An optional {@code WHERE} clause for the {@link GeoLocationsTable}
+     * @return The {@code INSERT} statement
+     */
+    private String insertCellsStatement(@NonNull final String where) {
+        return "INSERT INTO " + getName() + " (" + COLUMN_MEASUREMENT_FK + ", " + COLUMN_LAT_CELL + ", "
+                + COLUMN_LON_CELL + ", " + COLUMN_LOCATION_COUNT + ", " + COLUMN_START_TIME + ", " + COLUMN_END_TIME
+                + ") SELECT " + GeoLocationsTable.COLUMN_MEASUREMENT_FK + ", CAST((" + GeoLocationsTable.COLUMN_LAT
+                + " + 90.0) * " + CELLS_PER_DEGREE + " AS INTEGER) AS c_lat, CAST((" + GeoLocationsTable.COLUMN_LON
+                + " + 180.0) * " + CELLS_PER_DEGREE + " AS INTEGER) AS c_lon, COUNT(*), MIN("
+                + GeoLocationsTable.COLUMN_GEOLOCATION_TIME + "), MAX(" + GeoLocationsTable.COLUMN_GEOLOCATION_TIME
+                + ") FROM " + GeoLocationsTable.URI_PATH + where + " GROUP BY "
+                + GeoLocationsTable.COLUMN_MEASUREMENT_FK + ", c_lat, c_lon;";
+    }
+
+    /**
+     * @param latitude The latitude of a {@link GeoLocation}.
+     * @return The row of the cell containing the {@code latitude}, counted from the south pole.
+     */
+    static int latitudeCell(final double latitude) {
+        // Truncating is flooring as the value is not negative
+        return (int)((latitude + 90.0) * CELLS_PER_DEGREE);
+    }
+
+    /**
+     * @param longitude The longitude of a {@link GeoLocation}.
+     * @return The column of the cell containing the {@code longitude}, counted from the antimeridian.
+     */
+    static int longitudeCell(final double longitude) {
+        // Truncating is flooring as the value is not negative
+        return (int)((longitude + 180.0) * CELLS_PER_DEGREE);
+    }
+
+    @Override
+    protected String[] getDatabaseTableColumns() {
+        return COLUMNS;
+    }
+}
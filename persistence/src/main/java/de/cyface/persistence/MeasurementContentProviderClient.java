@@ -1,12 +1,12 @@
 package de.cyface.persistence;
 
-import static de.cyface.utils.CursorIsNullException.softCatchNullCursor;
-
 import android.content.ContentProvider;
 import android.content.ContentProviderClient;
 import android.database.Cursor;
 import android.net.Uri;
+import android.os.Bundle;
 import android.os.RemoteException;
+import android.provider.BaseColumns;
 
 import androidx.annotation.NonNull;
 
@@ -14,6 +14,7 @@ import de.cyface.persistence.model.Event;
 import de.cyface.persistence.model.GeoLocation;
 import de.cyface.persistence.model.Measurement;
 import de.cyface.utils.CursorIsNullException;
+import de.cyface.utils.Validate;
 
 /**
  * A wrapper for a <code>ContentProviderClient</code> used to provide access to one specific measurement.
@@ -24,11 +25,17 @@ import de.cyface.utils.CursorIsNullException;
  *
  * @author Klemens Muthmann
  * @author Armin Schnabel
- * @version 2.2.0
+ * @version 3.1.0
  * @since 2.0.0
  */
 public class MeasurementContentProviderClient {
 
+    /**
+     * The key to pass to {@link #loadGeoLocations(long, long, int)} and {@link #loadEvents(long, long, int)} to load
+     * the first page.
+     */
+    public static final long BEFORE_FIRST_PAGE = Long.MIN_VALUE;
+
     /**
      * The identifier of the measurement handled by this client.
      */
@@ -63,21 +70,32 @@ public class MeasurementContentProviderClient {
     }
 
     /**
-     * Loads a page of the geo locations for the measurement.
+     * Loads a page of the geo locations for the measurement, ordered by time.
+     * <p>
+     * The pages are selected by the key of the last geo location of the previous page ("keyset pagination"), not by an
+     * offset. This way each page is found via the {@link GeoLocationsTable#INDEX_MEASUREMENT_FK_GEOLOCATION_TIME}
+     * instead of skipping all geo locations of the previous pages, and the order is stable between pages.
      *
-     * @param offset The start index of the first geo location to load within the measurement
+     * @param afterTimestamp The {@link GeoLocationsTable#COLUMN_GEOLOCATION_TIME} of the last geo location of the
+     *            previous page or {@link #BEFORE_FIRST_PAGE} to load the first page.
+     * @param afterId The {@link BaseColumns#_ID} of the last geo location of the previous page or
+     *            {@link #BEFORE_FIRST_PAGE} to load the first page.
      * @param limit The number of geo locations to load. A recommended upper limit is:
      *            {@link AbstractCyfaceMeasurementTable#DATABASE_QUERY_LIMIT}
-     * @return A <code>Cursor</code> on the {@link GeoLocation}s stored for the {@link Measurement}.
+     * @return A <code>Cursor</code> on the {@link GeoLocation}s stored for the {@link Measurement}. The cursor also
+     *         contains the {@code BaseColumns#_ID} required to load the next page.
      * @throws RemoteException If the content provider is not accessible.
      */
-    public Cursor loadGeoLocations(final int offset, final int limit) throws RemoteException {
+    public Cursor loadGeoLocations(final long afterTimestamp, final long afterId, final int limit)
+            throws RemoteException {
         final Uri uri = Utils.getGeoLocationsUri(authority);
         final String[] projection = new String[] {GeoLocationsTable.COLUMN_GEOLOCATION_TIME,
                 GeoLocationsTable.COLUMN_LAT,
-                GeoLocationsTable.COLUMN_LON, GeoLocationsTable.COLUMN_SPEED, GeoLocationsTable.COLUMN_ACCURACY};
-        final String selection = GeoLocationsTable.COLUMN_MEASUREMENT_FK + "=?";
-        final String[] selectionArgs = new String[] {Long.valueOf(measurementIdentifier).toString()};
+                GeoLocationsTable.COLUMN_LON, GeoLocationsTable.COLUMN_SPEED, GeoLocationsTable.COLUMN_ACCURACY,
+                BaseColumns._ID};
+        final String selection = keysetSelection(GeoLocationsTable.COLUMN_MEASUREMENT_FK,
+                GeoLocationsTable.COLUMN_GEOLOCATION_TIME);
+        final String[] selectionArgs = keysetSelectionArgs(afterTimestamp, afterId);
 
         /*
          * For some reason this does not work (tested on N5X) so we always use the workaround implementation
@@ -85,38 +103,80 @@ public class MeasurementContentProviderClient {
          * Bundle queryArgs = new Bundle();
          * queryArgs.putString(android.content.ContentResolver.QUERY_ARG_SQL_SELECTION, selection);
          * queryArgs.putStringArray(android.content.ContentResolver.QUERY_ARG_SQL_SELECTION_ARGS, selectionArgs);
-         * queryArgs.putInt(ContentResolver.QUERY_ARG_OFFSET, offset);
          * queryArgs.putInt(ContentResolver.QUERY_ARG_LIMIT, limit);
          * return client.query(uri, projection, queryArgs, null);
          * }
          */
 
         // Backward compatibility workaround from https://stackoverflow.com/a/12641015/5815054
-        // the arguments limit and offset are only available starting with API 26 ("O")
+        // the argument limit is only available starting with API 26 ("O")
         return client.query(uri, projection, selection, selectionArgs,
-                GeoLocationsTable.COLUMN_MEASUREMENT_FK + " ASC limit " + limit + " offset " + offset);
+                keysetSortOrder(GeoLocationsTable.COLUMN_GEOLOCATION_TIME, limit));
     }
 
     /**
-     * Loads a page of the {@link Event}s for the {@code Measurement}.
+     * Loads a page of the {@link Event}s for the {@code Measurement}, ordered by time.
+     * <p>
+     * The pages are selected by the key of the last {@code Event} of the previous page, see
+     * {@link #loadGeoLocations(long, long, int)}.
      *
-     * @param offset The start index of the first {@code Event} to load within the Measurement
+     * @param afterTimestamp The {@link EventTable#COLUMN_TIMESTAMP} of the last {@code Event} of the previous page or
+     *            {@link #BEFORE_FIRST_PAGE} to load the first page.
+     * @param afterId The {@link BaseColumns#_ID} of the last {@code Event} of the previous page or
+     *            {@link #BEFORE_FIRST_PAGE} to load the first page.
      * @param limit The number of Events to load. A recommended upper limit is:
      *            {@link AbstractCyfaceMeasurementTable#DATABASE_QUERY_LIMIT}
-     * @return A <code>Cursor</code> on the {@link Event}s stored for the {@link Measurement}.
+     * @return A <code>Cursor</code> on the {@link Event}s stored for the {@link Measurement}. The cursor also contains
+     *         the {@code BaseColumns#_ID} required to load the next page.
      * @throws RemoteException If the content provider is not accessible.
      */
-    public Cursor loadEvents(final int offset, final int limit) throws RemoteException {
+    public Cursor loadEvents(final long afterTimestamp, final long afterId, final int limit) throws RemoteException {
         final Uri uri = Utils.getEventUri(authority);
         final String[] projection = new String[] {EventTable.COLUMN_TYPE, EventTable.COLUMN_VALUE,
-                EventTable.COLUMN_TIMESTAMP};
-        final String selection = EventTable.COLUMN_MEASUREMENT_FK + "=?";
-        final String[] selectionArgs = new String[] {Long.valueOf(measurementIdentifier).toString()};
+                EventTable.COLUMN_TIMESTAMP, BaseColumns._ID};
+        final String selection = keysetSelection(EventTable.COLUMN_MEASUREMENT_FK, EventTable.COLUMN_TIMESTAMP);
+        final String[] selectionArgs = keysetSelectionArgs(afterTimestamp, afterId);
 
         // Backward compatibility workaround from https://stackoverflow.com/a/12641015/5815054
-        // the arguments limit and offset are only available starting with API 26 ("O")
+        // the argument limit is only available starting with API 26 ("O")
         return client.query(uri, projection, selection, selectionArgs,
-                EventTable.COLUMN_MEASUREMENT_FK + " ASC limit " + limit + " offset " + offset);
+                keysetSortOrder(EventTable.COLUMN_TIMESTAMP, limit));
+    }
+
+    /**
+     * Selects the entries of the {@link Measurement} after the key {@code (timestamp, _id)}.
+     * <p>
+     * Row values like {@code (timestamp, _id) > (?, ?)} are only supported by newer SQLite versions. The redundant
+     * {@code timestamp >= ?} allows SQLite to seek the index to the first entry of the page.
+     *
+     * @param measurementForeignKeyColumnName The column name of the column containing the reference to the measurement
+     *            table.
+     * @param timestampColumnName The column name of the timestamp column.
+     * @return The selection with the arguments {@link #keysetSelectionArgs(long, long)}.
+     */
+    private String keysetSelection(@NonNull final String measurementForeignKeyColumnName,
+            @NonNull final String timestampColumnName) {
+        return measurementForeignKeyColumnName + "=? AND " + timestampColumnName + ">=? AND (" + timestampColumnName
+                + ">? OR " + BaseColumns._ID + ">?)";
+    }
+
+    /**
+     * @param afterTimestamp The timestamp of the last entry of the previous page.
+     * @param afterId The {@link BaseColumns#_ID} of the last entry of the previous page.
+     * @return The arguments for the {@link #keysetSelection(String, String)}.
+     */
+    private String[] keysetSelectionArgs(final long afterTimestamp, final long afterId) {
+        final String timestamp = String.valueOf(afterTimestamp);
+        return new String[] {String.valueOf(measurementIdentifier), timestamp, timestamp, String.valueOf(afterId)};
+    }
+
+    /**
+     * @param timestampColumnName The column name of the timestamp column.
+     * @param limit The number of entries to load.
+     * @return The stable sort order of the pages, limited to the page size.
+     */
+    private String keysetSortOrder(@NonNull final String timestampColumnName, final int limit) {
+        return timestampColumnName + " ASC, " + BaseColumns._ID + " ASC limit " + limit;
     }
 
     /**
@@ -132,21 +192,14 @@ public class MeasurementContentProviderClient {
      */
     public int countData(final @NonNull Uri tableUri, final @NonNull String measurementForeignKeyColumnName)
             throws RemoteException, CursorIsNullException {
-        Cursor cursor = null;
-
-        try {
-            final String selection = measurementForeignKeyColumnName + "=?";
-            final String[] selectionArgs = new String[] {Long.valueOf(measurementIdentifier).toString()};
-
-            cursor = client.query(tableUri, null, selection, selectionArgs, null);
-            softCatchNullCursor(cursor);
-
-            return cursor.getCount();
-        } finally {
-            if (cursor != null) {
-                cursor.close();
-            }
-        }
+        final Bundle extras = new Bundle();
+        extras.putLong(MeasuringPointsContentProvider.EXTRA_MEASUREMENT_ID, measurementIdentifier);
+        extras.putString(MeasuringPointsContentProvider.EXTRA_COLUMN, measurementForeignKeyColumnName);
+
+        // Counted by the database, as a query would load all rows into a cursor just to call getCount()
+        final Bundle result = client.call(MeasuringPointsContentProvider.METHOD_COUNT, tableUri.toString(), extras);
+        Validate.notNull("Provider call failed: " + MeasuringPointsContentProvider.METHOD_COUNT, result);
+        return (int)result.getLong(MeasuringPointsContentProvider.EXTRA_COUNT);
     }
 
     public @NonNull Uri createGeoLocationTableUri() {
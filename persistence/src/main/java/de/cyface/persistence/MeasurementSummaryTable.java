@@ -0,0 +1,250 @@
+/*
+ * Copyright 2021 Cyface GmbH
+ *
+ * This file is part of the Cyface SDK for Android.
+ *
+ * The Cyface SDK for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface SDK for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface SDK for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.persistence;
+
+import static de.cyface.persistence.Constants.TAG;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.provider.BaseColumns;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import de.cyface.persistence.model.GeoLocation;
+import de.cyface.persistence.model.Measurement;
+import de.cyface.persistence.model.MeasurementSummary;
+
+/**
+ * Table for storing one {@link MeasurementSummary} per {@link Measurement} with {@link GeoLocation}s.
+ * <p>
+ * The rows are updated in the same transaction as the {@code GeoLocation}s are inserted, see
+ * {@link WriteStatements#updateSummary(long, long[], double[], double[], double[])}. This way, e.g. a list of all
+ * {@code Measurement}s can show their duration, bounding box and average speed without aggregating the
+ * {@code GeoLocation}s of each {@code Measurement}.
+ *
+ * @author Armin Schnabel
+ * @version 1.1.0
+ * @since 6.2.0
+ */
+public class MeasurementSummaryTable extends AbstractCyfaceMeasurementTable {
+
+    /**
+     * The path segment in the table URI identifying the {@link MeasurementSummaryTable}.
+     */
+    final static String URI_PATH = "measurement_summaries";
+    /**
+     * Column name for the column storing the foreign key referencing the {@link Measurement} summarized. There is at
+     * most one row per {@code Measurement}.
+     */
+    public static final String COLUMN_MEASUREMENT_FK = "measurement_fk";
+    /**
+     * Column name for the column storing the number of {@link GeoLocation}s.
+     */
+    public static final String COLUMN_LOCATION_COUNT = "location_count";
+    /**
+     * Column name for the column storing the timestamp of the first {@link GeoLocation}.
+     */
+    public static final String COLUMN_START_TIME = "start_time";
+    /**
+     * Column name for the column storing the latitude of the first {@link GeoLocation}.
+     */
+    public static final String COLUMN_START_LAT = "start_lat";
+    /**
+     * Column name for the column storing the longitude of the first {@link GeoLocation}.
+     */
+    public static final String COLUMN_START_LON = "start_lon";
+    /**
+     * Column name for the column storing the timestamp of the last {@link GeoLocation}.
+     */
+    public static final String COLUMN_END_TIME = "end_time";
+    /**
+     * Column name for the column storing the latitude of the last {@link GeoLocation}.
+     */
+    public static final String COLUMN_END_LAT = "end_lat";
+    /**
+     * Column name for the column storing the longitude of the last {@link GeoLocation}.
+     */
+    public static final String COLUMN_END_LON = "end_lon";
+    /**
+     * Column name for the column storing the southern bound of the bounding box.
+     */
+    public static final String COLUMN_MIN_LAT = "min_lat";
+    /**
+     * Column name for the column storing the northern bound of the bounding box.
+     */
+    public static final String COLUMN_MAX_LAT = "max_lat";
+    /**
+     * Column name for the column storing the western bound of the bounding box.
+     */
+    public static final String COLUMN_MIN_LON = "min_lon";
+    /**
+     * Column name for the column storing the eastern bound of the bounding box.
+     */
+    public static final String COLUMN_MAX_LON = "max_lon";
+    /**
+     * Column name for the column storing the sum of the {@link GeoLocation} speeds in meters per second. The sum
+     * instead of the average is stored so it can be updated without loading the previous {@code GeoLocation}s.
+     */
+    public static final String COLUMN_SPEED_SUM = "speed_sum";
+    /**
+     * Column name for the column storing the {@link #COLUMN_LOCATION_COUNT} at which the
+     * {@link SimplifiedLocationsTable} entries of the {@link Measurement} were created. If it differs from the current
+     * count, the simplified {@code Track}s are outdated.
+     */
+    public static final String COLUMN_SIMPLIFIED_LOCATION_COUNT = "simplified_location_count";
+    /**
+     * An array containing all the column names used by a {@link MeasurementSummaryTable}.
+     */
+    private static final String[] COLUMNS = {BaseColumns._ID, COLUMN_MEASUREMENT_FK, COLUMN_LOCATION_COUNT,
+            COLUMN_START_TIME, COLUMN_START_LAT, COLUMN_START_LON, COLUMN_END_TIME, COLUMN_END_LAT, COLUMN_END_LON,
+            COLUMN_MIN_LAT, COLUMN_MAX_LAT, COLUMN_MIN_LON, COLUMN_MAX_LON, COLUMN_SPEED_SUM,
+            COLUMN_SIMPLIFIED_LOCATION_COUNT};
+
+    /**
+     * Provides a completely initialized object as a representation of a table containing {@link MeasurementSummary}s
+     * in the database.
+     */
+    MeasurementSummaryTable() {
+        super(URI_PATH);
+    }
+
+    @Override
+    protected String getCreateStatement() {
+        // The values are null until the first GeoLocation is added
+        return "CREATE TABLE " + getName() + " (" + BaseColumns._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + COLUMN_MEASUREMENT_FK + " INTEGER NOT NULL UNIQUE, " + COLUMN_LOCATION_COUNT
+                + " INTEGER NOT NULL DEFAULT 0, " + COLUMN_START_TIME + " INTEGER, " + COLUMN_START_LAT + " REAL, "
+                + COLUMN_START_LON + " REAL, " + COLUMN_END_TIME + " INTEGER, " + COLUMN_END_LAT + " REAL, "
+                + COLUMN_END_LON + " REAL, " + COLUMN_MIN_LAT + " REAL, " + COLUMN_MAX_LAT + " REAL, "
+                + COLUMN_MIN_LON + " REAL, " + COLUMN_MAX_LON + " REAL, " + COLUMN_SPEED_SUM
+                + " REAL NOT NULL DEFAULT 0, " + COLUMN_SIMPLIFIED_LOCATION_COUNT + " INTEGER NOT NULL DEFAULT 0);";
+    }
+
+    /**
+     * Don't forget to update the {@link DatabaseHelper}'s {@code DATABASE_VERSION} if you upgrade this table.
+     * <p>
+     * The Upgrade is automatically executed in a transaction, do not wrap the code in another transaction!
+     * <p>
+     * This upgrades are called incrementally by {@link DatabaseHelper#onUpgrade(SQLiteDatabase, int, int)}.
+     * <p>
+     * Remaining documentation: {@link CyfaceMeasurementTable#onUpgrade}
+     */
+    @Override
+    public void onUpgrade(final SQLiteDatabase database, final int fromVersion, final int toVersion) {
+
+        switch (fromVersion) {
+
+            case 17:
+                // This table was added in version 18. The create statement of V18 is hard-coded as the later upgrades
+                // are executed afterwards.
+                Log.d(TAG, "Creating measurement summary table from V17");
+                database.execSQL("CREATE TABLE measurement_summaries (_id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                        + "measurement_fk INTEGER NOT NULL UNIQUE, location_count INTEGER NOT NULL DEFAULT 0, "
+                        + "start_time INTEGER, start_lat REAL, start_lon REAL, end_time INTEGER, end_lat REAL, "
+                        + "end_lon REAL, min_lat REAL, max_lat REAL, min_lon REAL, max_lon REAL, "
+                        + "speed_sum REAL NOT NULL DEFAULT 0);");
+                rebuild(database);
+
+                break; // onUpgrade is called incrementally by DatabaseHelper
+
+            case 18:
+                // This column was added in version 19
+                Log.d(TAG, "Upgrading measurement summary table from V18");
+                database.execSQL("ALTER TABLE measurement_summaries ADD COLUMN simplified_location_count INTEGER "
+                        + "NOT NULL DEFAULT 0");
+
+                break; // onUpgrade is called incrementally by DatabaseHelper
+        }
+    }
+
+    /**
+     * Replaces all rows of this table with summaries calculated from the {@link GeoLocationsTable}.
+     * <p>
+     * This is used to fill the table for the {@link Measurement}s captured before it was added.
+     *
+     * @param database The {@code SQLiteDatabase} to rebuild the table in
+     */
+    void rebuild(@NonNull final SQLiteDatabase database) {
+        database.execSQL("DELETE FROM " + getName() + ";");
+        database.execSQL(insertSummariesStatement(""));
+    }
+
+    /**
+     * Replaces the row of a {@link Measurement} with a summary calculated from the {@link GeoLocationsTable}.
+     * <p>
+     * This is used when {@link GeoLocation}s of a {@code Measurement} are deleted, as the summary can only be updated
+     * incrementally when {@code GeoLocation}s are added. The {@link #COLUMN_SIMPLIFIED_LOCATION_COUNT} is reset, so
+     * the simplified {@code Track}s are recreated.
+     *
+     * @param database The {@code SQLiteDatabase} to rebuild the row in
+     * @param measurementIdentifier The id of the {@code Measurement} to rebuild the summary for
+     */
+    void rebuild(@NonNull final SQLiteDatabase database, final long measurementIdentifier) {
+        deleteRow(database, COLUMN_MEASUREMENT_FK + "=?", new String[] {String.valueOf(measurementIdentifier)});
+        database.execSQL(insertSummariesStatement(" WHERE l." + GeoLocationsTable.COLUMN_MEASUREMENT_FK + "=?"),
+                new Object[] {measurementIdentifier});
+    }
+
+    /**
+     * Creates the statement which inserts one summary per {@link Measurement} with {@link GeoLocation}s.
+     * <p>
+     * The first and last {@code GeoLocation} of each {@code Measurement} are selected via the
+     * {@link GeoLocationsTable#INDEX_MEASUREMENT_FK_GEOLOCATION_TIME}. Of multiple {@code GeoLocation}s with the same
+     * timestamp the first inserted is the first and the last inserted the last {@code GeoLocation}, as when the
+     * summary is updated incrementally.
+     *
+     * @param where An optional {@code WHERE} clause for the {@link GeoLocationsTable} aliased as {@code l}
+     * @return The {@code INSERT} statement
+     */
+    private String insertSummariesStatement(@NonNull final String where) {
+        return "INSERT INTO " + getName() + " (" + COLUMN_MEASUREMENT_FK + ", " + COLUMN_LOCATION_COUNT + ", "
+                + COLUMN_START_TIME + ", " + COLUMN_START_LAT + ", " + COLUMN_START_LON + ", " + COLUMN_END_TIME + ", "
+                + COLUMN_END_LAT + ", " + COLUMN_END_LON + ", " + COLUMN_MIN_LAT + ", " + COLUMN_MAX_LAT + ", "
+                + COLUMN_MIN_LON + ", " + COLUMN_MAX_LON + ", " + COLUMN_SPEED_SUM + ") SELECT l."
+                + GeoLocationsTable.COLUMN_MEASUREMENT_FK + ", COUNT(*), MIN(l."
+                + GeoLocationsTable.COLUMN_GEOLOCATION_TIME + "), " + edgeValue(GeoLocationsTable.COLUMN_LAT, "ASC")
+                + ", " + edgeValue(GeoLocationsTable.COLUMN_LON, "ASC") + ", MAX(l."
+                + GeoLocationsTable.COLUMN_GEOLOCATION_TIME + "), " + edgeValue(GeoLocationsTable.COLUMN_LAT, "DESC")
+                + ", " + edgeValue(GeoLocationsTable.COLUMN_LON, "DESC") + ", MIN(l." + GeoLocationsTable.COLUMN_LAT
+                + "), MAX(l." + GeoLocationsTable.COLUMN_LAT + "), MIN(l." + GeoLocationsTable.COLUMN_LON + "), MAX(l."
+                + GeoLocationsTable.COLUMN_LON + "), SUM(l." + GeoLocationsTable.COLUMN_SPEED + ") FROM "
+                + GeoLocationsTable.URI_PATH + " l" + where + " GROUP BY l." + GeoLocationsTable.COLUMN_MEASUREMENT_FK
+                + ";";
+    }
+
+    /**
+     * Creates a sub-query which selects a value of the first or last {@link GeoLocation} of the {@link Measurement}
+     * grouped by in {@link #insertSummariesStatement(String)}.
+     *
+     * @param column The {@link GeoLocationsTable} column to select
+     * @param direction {@code ASC} to select the first or {@code DESC} to select the last {@code GeoLocation}
+     * @return The sub-query
+     */
+    private static String edgeValue(@NonNull final String column, @NonNull final String direction) {
+        return "(SELECT e." + column + " FROM " + GeoLocationsTable.URI_PATH + " e WHERE e."
+                + GeoLocationsTable.COLUMN_MEASUREMENT_FK + "=l." + GeoLocationsTable.COLUMN_MEASUREMENT_FK
+                + " ORDER BY e." + GeoLocationsTable.COLUMN_GEOLOCATION_TIME + " " + direction + ", e."
+                + BaseColumns._ID + " " + direction + " LIMIT 1)";
+    }
+
+    @Override
+    protected String[] getDatabaseTableColumns() {
+        return COLUMNS;
+    }
+}
@@ -39,7 +39,7 @@ import de.cyface.utils.Validate;
  *
  * @author Klemens Muthmann
  * @author Armin Schnabel
- * @version 4.0.0
+ * @version 4.1.0
  * @since 1.0.0
  */
 public class MeasurementTable extends AbstractCyfaceMeasurementTable {
@@ -76,6 +76,11 @@ public class MeasurementTable extends AbstractCyfaceMeasurementTable {
      */
     private static final String[] COLUMNS = {BaseColumns._ID, COLUMN_STATUS, COLUMN_MODALITY,
             COLUMN_PERSISTENCE_FILE_FORMAT_VERSION, COLUMN_DISTANCE, COLUMN_TIMESTAMP};
+    /**
+     * The index which allows to find the {@link Measurement}s with a specific {@link MeasurementStatus} without scanning
+     * the whole table.
+     */
+    static final String INDEX_STATUS = "measurements_status";
 
     /**
      * Creates a new completely initialized {@code MeasurementTable} using the name {@link #URI_PATH}.
@@ -84,6 +89,12 @@ public class MeasurementTable extends AbstractCyfaceMeasurementTable {
         super(URI_PATH);
     }
 
+    @Override
+    public void onCreate(final SQLiteDatabase database) {
+        super.onCreate(database);
+        createIndex(database);
+    }
+
     @Override
     protected String getCreateStatement() {
         return "CREATE TABLE " + getName() + " (" + BaseColumns._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
@@ -143,11 +154,28 @@ public class MeasurementTable extends AbstractCyfaceMeasurementTable {
                 Log.d(TAG, "Upgrading event table from V15");
                 migrateDatabaseFromV15(database);
 
+                break; // onUpgrade is called incrementally by DatabaseHelper
+
+            case 16:
+                // This index was added in version 17
+                Log.d(TAG, "Upgrading measurement table from V16");
+                createIndex(database);
+
                 break; // onUpgrade is called incrementally by DatabaseHelper
         }
 
     }
 
+    /**
+     * Creates the {@link #INDEX_STATUS} if it does not exist yet. There are only a few measurements, so this is fast.
+     *
+     * @param database The {@code SQLiteDatabase} to create the index in
+     */
+    private void createIndex(final SQLiteDatabase database) {
+        database.execSQL(
+                "CREATE INDEX IF NOT EXISTS " + INDEX_STATUS + " ON " + getName() + " (" + COLUMN_STATUS + ");");
+    }
+
     /**
      * Adds timestamp columns to table.
      *
@@ -1,5 +1,6 @@
 package de.cyface.persistence;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 
 import android.content.ContentProvider;
@@ -8,20 +9,191 @@ import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.net.Uri;
+import android.os.Bundle;
 import android.provider.BaseColumns;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import de.cyface.persistence.model.Event;
+import de.cyface.persistence.model.GeoLocation;
+import de.cyface.persistence.model.GeoLocationAggregate;
+import de.cyface.persistence.model.Measurement;
+import de.cyface.persistence.model.MeasurementTimeRange;
 import de.cyface.utils.Validate;
 
 /**
  * A content provider for the databased used as cache for all measurements acquired via the mobile device prior to
  * transferring the data to the server.
+ * <p>
+ * The writes executed repeatedly while capturing are also available via {@link #call(String, String, Bundle)} with one
+ * of the {@code METHOD_*}s. They take their arguments as primitive values in the {@code extras} instead of
+ * {@link ContentValues} and are executed with precompiled statements. The {@code arg} is the content provider
+ * {@link Uri} of the table written to, which is notified about the change. Aggregates, which would otherwise require
+ * to load all rows, are available the same way.
  *
  * @author Klemens Muthmann
- * @version 1.1.5
+ * @author Armin Schnabel
+ * @version 1.5.0
  * @since 1.0.0
  */
 public final class MeasuringPointsContentProvider extends ContentProvider {
 
+    /**
+     * Inserts {@link GeoLocation}s in one transaction. Requires {@link #EXTRA_MEASUREMENT_ID} and, with one entry per
+     * {@code GeoLocation}, {@link #EXTRA_TIMESTAMPS}, {@link #EXTRA_LATITUDES}, {@link #EXTRA_LONGITUDES},
+     * {@link #EXTRA_SPEEDS} and {@link #EXTRA_ACCURACIES}. Returns the number of inserted rows as {@link #EXTRA_ROWS}.
+     */
+    public static final String METHOD_INSERT_GEO_LOCATIONS = "insertGeoLocations";
+    /**
+     * Inserts an {@link Event}. Requires {@link #EXTRA_MEASUREMENT_ID}, {@link #EXTRA_EVENT_TYPE},
+     * {@link #EXTRA_TIMESTAMP} and optionally {@link #EXTRA_EVENT_VALUE}. Returns the id of the new row as
+     * {@link #EXTRA_ROW_ID}.
+     */
+    public static final String METHOD_INSERT_EVENT = "insertEvent";
+    /**
+     * Updates the distance of a {@link Measurement}. Requires {@link #EXTRA_MEASUREMENT_ID} and
+     * {@link #EXTRA_DISTANCE}. Returns the number of updated rows as {@link #EXTRA_ROWS}.
+     */
+    public static final String METHOD_UPDATE_DISTANCE = "updateDistance";
+    /**
+     * Updates the status of a {@link Measurement}. Requires {@link #EXTRA_MEASUREMENT_ID} and {@link #EXTRA_STATUS}.
+     * Returns the number of updated rows as {@link #EXTRA_ROWS}.
+     */
+    public static final String METHOD_UPDATE_STATUS = "updateStatus";
+    /**
+     * Counts the rows of the table with the content provider {@link Uri} passed as {@code arg} which belong to a
+     * {@link Measurement}, without loading them. Requires {@link #EXTRA_MEASUREMENT_ID} and {@link #EXTRA_COLUMN}.
+     * Returns the number of rows as {@link #EXTRA_COUNT}.
+     */
+    public static final String METHOD_COUNT = "count";
+    /**
+     * Aggregates the {@link GeoLocation}s of a {@link Measurement} in the database, see
+     * {@link DatabaseHelper#aggregateGeoLocations(long)}. Requires {@link #EXTRA_MEASUREMENT_ID}. Returns the
+     * {@link GeoLocationAggregate} as {@link #EXTRA_AGGREGATE}.
+     */
+    public static final String METHOD_AGGREGATE_GEO_LOCATIONS = "aggregateGeoLocations";
+    /**
+     * Selects the {@link Measurement}s with {@link GeoLocation}s within an area, see
+     * {@link DatabaseHelper#loadMeasurementsInArea(double, double, double, double)}. Requires {@link #EXTRA_MIN_LAT},
+     * {@link #EXTRA_MIN_LON}, {@link #EXTRA_MAX_LAT} and {@link #EXTRA_MAX_LON}. Returns the
+     * {@link MeasurementTimeRange}s as {@link #EXTRA_TIME_RANGES}.
+     */
+    public static final String METHOD_LOAD_MEASUREMENTS_IN_AREA = "loadMeasurementsInArea";
+    /**
+     * Replaces the simplified {@link de.cyface.persistence.model.Track}s of a {@link Measurement} in one transaction,
+     * see {@link WriteStatements#replaceSimplifiedLocations}. Requires {@link #EXTRA_MEASUREMENT_ID},
+     * {@link #EXTRA_EXPECTED_COUNT}, {@link #EXTRA_LOCATION_COUNT}, {@link #EXTRA_FIRST_TRACK} and, with one entry per
+     * simplified {@link GeoLocation}, {@link #EXTRA_TRACKS}, {@link #EXTRA_LEVELS}, {@link #EXTRA_TIMESTAMPS},
+     * {@link #EXTRA_LATITUDES}, {@link #EXTRA_LONGITUDES}, {@link #EXTRA_SPEEDS} and {@link #EXTRA_ACCURACIES}. Returns
+     * the number of inserted rows or -1 if the {@code Track}s were replaced in the meantime as {@link #EXTRA_ROWS}.
+     */
+    public static final String METHOD_REPLACE_SIMPLIFIED_LOCATIONS = "replaceSimplifiedLocations";
+    /**
+     * The {@code long} id of the {@link Measurement} written to.
+     */
+    public static final String EXTRA_MEASUREMENT_ID = "measurementId";
+    /**
+     * The {@code long[]} timestamps of the {@link GeoLocation}s in milliseconds.
+     */
+    public static final String EXTRA_TIMESTAMPS = "timestamps";
+    /**
+     * The {@code double[]} latitudes of the {@link GeoLocation}s.
+     */
+    public static final String EXTRA_LATITUDES = "latitudes";
+    /**
+     * The {@code double[]} longitudes of the {@link GeoLocation}s.
+     */
+    public static final String EXTRA_LONGITUDES = "longitudes";
+    /**
+     * The {@code double[]} speeds of the {@link GeoLocation}s in meters per second.
+     */
+    public static final String EXTRA_SPEEDS = "speeds";
+    /**
+     * The {@code int[]} rounded accuracies of the {@link GeoLocation}s.
+     */
+    public static final String EXTRA_ACCURACIES = "accuracies";
+    /**
+     * The {@code String} database identifier of the {@link Event.EventType}.
+     */
+    public static final String EXTRA_EVENT_TYPE = "eventType";
+    /**
+     * The {@code long} timestamp of the {@link Event} in milliseconds.
+     */
+    public static final String EXTRA_TIMESTAMP = "timestamp";
+    /**
+     * The optional {@code String} value of the {@link Event}.
+     */
+    public static final String EXTRA_EVENT_VALUE = "eventValue";
+    /**
+     * The {@code double} distance of the {@link Measurement} in meters.
+     */
+    public static final String EXTRA_DISTANCE = "distance";
+    /**
+     * The {@code String} database identifier of the {@link de.cyface.persistence.model.MeasurementStatus}.
+     */
+    public static final String EXTRA_STATUS = "status";
+    /**
+     * The {@code int} number of inserted or updated rows.
+     */
+    public static final String EXTRA_ROWS = "rows";
+    /**
+     * The {@code long} id of the inserted row or -1 if an error occurred.
+     */
+    public static final String EXTRA_ROW_ID = "rowId";
+    /**
+     * The {@code String} name of the column which references the {@link Measurement}.
+     */
+    public static final String EXTRA_COLUMN = "column";
+    /**
+     * The {@code long} number of counted rows.
+     */
+    public static final String EXTRA_COUNT = "count";
+    /**
+     * The {@link GeoLocationAggregate} of a {@link Measurement}.
+     */
+    public static final String EXTRA_AGGREGATE = "aggregate";
+    /**
+     * The {@code double} southern bound of an area.
+     */
+    public static final String EXTRA_MIN_LAT = "minLat";
+    /**
+     * The {@code double} western bound of an area.
+     */
+    public static final String EXTRA_MIN_LON = "minLon";
+    /**
+     * The {@code double} northern bound of an area.
+     */
+    public static final String EXTRA_MAX_LAT = "maxLat";
+    /**
+     * The {@code double} eastern bound of an area.
+     */
+    public static final String EXTRA_MAX_LON = "maxLon";
+    /**
+     * The {@link MeasurementTimeRange}s of the {@link Measurement}s within an area.
+     */
+    public static final String EXTRA_TIME_RANGES = "timeRanges";
+    /**
+     * The {@code int} number of {@link GeoLocation}s the simplified {@link de.cyface.persistence.model.Track}s were
+     * created from before.
+     */
+    public static final String EXTRA_EXPECTED_COUNT = "expectedCount";
+    /**
+     * The {@code int} number of {@link GeoLocation}s the simplified {@link de.cyface.persistence.model.Track}s are
+     * created from.
+     */
+    public static final String EXTRA_LOCATION_COUNT = "locationCount";
+    /**
+     * The {@code int} index of the first {@link de.cyface.persistence.model.Track} to replace.
+     */
+    public static final String EXTRA_FIRST_TRACK = "firstTrack";
+    /**
+     * The {@code int[]} indices of the {@link de.cyface.persistence.model.Track}s of the {@link GeoLocation}s.
+     */
+    public static final String EXTRA_TRACKS = "tracks";
+    /**
+     * The {@code int[]} indices of the coarsest levels of detail the {@link GeoLocation}s are part of.
+     */
+    public static final String EXTRA_LEVELS = "levels";
+
     /**
      * A representation of the database manged by this <code>ContentProvider</code>.
      */
@@ -91,4 +263,84 @@ public final class MeasuringPointsContentProvider extends ContentProvider {
         context.getContentResolver().notifyChange(uri, null);
         return rowsUpdated;
     }
+
+    @Override
+    public Bundle call(@NonNull final String method, @Nullable final String arg, @Nullable final Bundle extras) {
+        final Bundle result = new Bundle();
+        switch (method) {
+            case METHOD_INSERT_GEO_LOCATIONS:
+                Validate.notNull(extras);
+                result.putInt(EXTRA_ROWS,
+                        database.getWriteStatements().insertGeoLocations(extras.getLong(EXTRA_MEASUREMENT_ID),
+                                extras.getLongArray(EXTRA_TIMESTAMPS), extras.getDoubleArray(EXTRA_LATITUDES),
+                                extras.getDoubleArray(EXTRA_LONGITUDES), extras.getDoubleArray(EXTRA_SPEEDS),
+                                extras.getIntArray(EXTRA_ACCURACIES)));
+                break;
+            case METHOD_INSERT_EVENT:
+                Validate.notNull(extras);
+                final String eventType = extras.getString(EXTRA_EVENT_TYPE);
+                Validate.notNull(eventType);
+                result.putLong(EXTRA_ROW_ID, database.getWriteStatements().insertEvent(
+                        extras.getLong(EXTRA_MEASUREMENT_ID), eventType, extras.getLong(EXTRA_TIMESTAMP),
+                        extras.getString(EXTRA_EVENT_VALUE)));
+                break;
+            case METHOD_UPDATE_DISTANCE:
+                Validate.notNull(extras);
+                result.putInt(EXTRA_ROWS, database.getWriteStatements()
+                        .updateDistance(extras.getLong(EXTRA_MEASUREMENT_ID), extras.getDouble(EXTRA_DISTANCE)));
+                break;
+            case METHOD_UPDATE_STATUS:
+                Validate.notNull(extras);
+                final String status = extras.getString(EXTRA_STATUS);
+                Validate.notNull(status);
+                result.putInt(EXTRA_ROWS, database.getWriteStatements()
+                        .updateStatus(extras.getLong(EXTRA_MEASUREMENT_ID), status));
+                break;
+            case METHOD_COUNT:
+                Validate.notNull(arg);
+                Validate.notNull(extras);
+                final String column = extras.getString(EXTRA_COLUMN);
+                Validate.notNull(column);
+                result.putLong(EXTRA_COUNT, database.count(Uri.parse(arg), column,
+                        extras.getLong(EXTRA_MEASUREMENT_ID)));
+                // Nothing changed
+                return result;
+            case METHOD_AGGREGATE_GEO_LOCATIONS:
+                Validate.notNull(extras);
+                result.putParcelable(EXTRA_AGGREGATE,
+                        database.aggregateGeoLocations(extras.getLong(EXTRA_MEASUREMENT_ID)));
+                // Nothing changed
+                return result;
+            case METHOD_LOAD_MEASUREMENTS_IN_AREA:
+                Validate.notNull(extras);
+                result.putParcelableArrayList(EXTRA_TIME_RANGES,
+                        new ArrayList<>(database.loadMeasurementsInArea(extras.getDouble(EXTRA_MIN_LAT),
+                                extras.getDouble(EXTRA_MIN_LON), extras.getDouble(EXTRA_MAX_LAT),
+                                extras.getDouble(EXTRA_MAX_LON))));
+                // Nothing changed
+                return result;
+            case METHOD_REPLACE_SIMPLIFIED_LOCATIONS:
+                Validate.notNull(extras);
+                final int rows = database.getWriteStatements().replaceSimplifiedLocations(
+                        extras.getLong(EXTRA_MEASUREMENT_ID), extras.getInt(EXTRA_EXPECTED_COUNT),
+                        extras.getInt(EXTRA_LOCATION_COUNT), extras.getInt(EXTRA_FIRST_TRACK),
+                        extras.getIntArray(EXTRA_TRACKS), extras.getIntArray(EXTRA_LEVELS),
+                        extras.getLongArray(EXTRA_TIMESTAMPS), extras.getDoubleArray(EXTRA_LATITUDES),
+                        extras.getDoubleArray(EXTRA_LONGITUDES), extras.getDoubleArray(EXTRA_SPEEDS),
+                        extras.getIntArray(EXTRA_ACCURACIES));
+                result.putInt(EXTRA_ROWS, rows);
+                if (rows == -1) {
+                    // Nothing changed
+                    return result;
+                }
+                break;
+            default:
+                return super.call(method, arg, extras);
+        }
+
+        if (arg != null) {
+            context.getContentResolver().notifyChange(Uri.parse(arg), null);
+        }
+        return result;
+    }
 }
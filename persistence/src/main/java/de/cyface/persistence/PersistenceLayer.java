@@ -31,10 +31,16 @@ import static de.cyface.persistence.model.MeasurementStatus.SYNCED;
 import static de.cyface.utils.CursorIsNullException.softCatchNullCursor;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import android.content.ContentProvider;
 import android.content.ContentResolver;
@@ -42,6 +48,7 @@ import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.net.Uri;
+import android.os.Bundle;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
@@ -49,14 +56,19 @@ import androidx.annotation.Nullable;
 
 import de.cyface.persistence.model.Event;
 import de.cyface.persistence.model.GeoLocation;
+import de.cyface.persistence.model.GeoLocationAggregate;
 import de.cyface.persistence.model.Measurement;
 import de.cyface.persistence.model.MeasurementStatus;
+import de.cyface.persistence.model.MeasurementSummary;
+import de.cyface.persistence.model.MeasurementTimeRange;
 import de.cyface.persistence.model.Modality;
 import de.cyface.persistence.model.Point3d;
 import de.cyface.persistence.model.Track;
 import de.cyface.persistence.serialization.MeasurementSerializer;
 import de.cyface.persistence.serialization.NoSuchFileException;
 import de.cyface.persistence.serialization.Point3dFile;
+import de.cyface.persistence.serialization.Point3dFileChecksums;
+import de.cyface.persistence.serialization.Point3dFileSegments;
 import de.cyface.utils.CursorIsNullException;
 import de.cyface.utils.Validate;
 
@@ -66,11 +78,27 @@ import de.cyface.utils.Validate;
  *
  * @author Klemens Muthmann
  * @author Armin Schnabel
- * @version 17.0.3
+ * @version 17.11.2
  * @since 2.0.0
  */
 public class PersistenceLayer<B extends PersistenceBehaviour> {
 
+    /**
+     * Simplifies the {@link Track}s of {@link Measurement}s in the background, see
+     * {@link #scheduleSimplifiedTracksUpdate(long)}. The thread is only kept alive for a while after the last task.
+     */
+    private static final ExecutorService TRACK_SIMPLIFIER = new ThreadPoolExecutor(0, 1, 30L, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                @Override
+                public Thread newThread(@NonNull final Runnable runnable) {
+                    return new Thread(runnable, "TrackSimplifier");
+                }
+            });
+    /**
+     * The initial number of {@link GeoLocation}s the arrays are allocated for which collect a {@link Track} to
+     * simplify.
+     */
+    private static final int INITIAL_TRACK_CAPACITY = 1_000;
     /**
      * The {@link Context} required to locate the app's internal storage directory.
      */
@@ -151,14 +179,30 @@ public class PersistenceLayer<B extends PersistenceBehaviour> {
      * @return The newly created {@code Measurement}.
      */
     public Measurement newMeasurement(@NonNull final Modality modality) {
+        return newMeasurement(modality, MeasurementSerializer.PERSISTENCE_FILE_FORMAT_VERSION);
+    }
+
+    /**
+     * Creates a new, {@link MeasurementStatus#OPEN} {@link Measurement} for the provided {@link Modality} which stores
+     * its sensor data in the provided persistence file format.
+     * <p>
+     * <b>ATTENTION:</b> This method should not be called from outside the SDK.
+     *
+     * @param modality The {@code Modality} to create a new {@code Measurement} for.
+     * @param persistenceFileFormatVersion The {@link MeasurementSerializer#PERSISTENCE_FILE_FORMAT_VERSION} of the
+     *            sensor data files of the new {@code Measurement}.
+     * @return The newly created {@code Measurement}.
+     */
+    public Measurement newMeasurement(@NonNull final Modality modality, final short persistenceFileFormatVersion) {
+        Validate.isTrue(MeasurementSerializer.isSupported(persistenceFileFormatVersion),
+                "Unsupported persistence file format version: " + persistenceFileFormatVersion);
 
         final long timestamp = System.currentTimeMillis();
 
         final ContentValues measurementValues = new ContentValues();
         measurementValues.put(COLUMN_MODALITY, modality.getDatabaseIdentifier());
         measurementValues.put(COLUMN_STATUS, MeasurementStatus.OPEN.getDatabaseIdentifier());
-        measurementValues.put(COLUMN_PERSISTENCE_FILE_FORMAT_VERSION,
-                MeasurementSerializer.PERSISTENCE_FILE_FORMAT_VERSION);
+        measurementValues.put(COLUMN_PERSISTENCE_FILE_FORMAT_VERSION, persistenceFileFormatVersion);
         measurementValues.put(COLUMN_DISTANCE, 0.0);
         measurementValues.put(COLUMN_TIMESTAMP, timestamp);
 
@@ -170,8 +214,7 @@ public class PersistenceLayer<B extends PersistenceBehaviour> {
 
             final long measurementId = Long.parseLong(resultUri.getLastPathSegment());
             persistenceBehaviour.onNewMeasurement(measurementId);
-            return new Measurement(measurementId, OPEN, modality, MeasurementSerializer.PERSISTENCE_FILE_FORMAT_VERSION,
-                    0.0, timestamp);
+            return new Measurement(measurementId, OPEN, modality, persistenceFileFormatVersion, 0.0, timestamp);
         }
     }
 
@@ -405,29 +448,33 @@ public class PersistenceLayer<B extends PersistenceBehaviour> {
         final long measurementId = measurement.getIdentifier();
         Validate.isTrue(loadMeasurementStatus(measurementId) == FINISHED);
         setStatus(measurementId, SYNCED, false);
+        final short fileFormatVersion = measurement.getFileFormatVersion();
 
         // TODO [CY-4359]: implement cyface variant where not only sensor data but also GeoLocations are deleted
 
         try {
             final File accelerationFile = Point3dFile.loadFile(context, fileAccessLayer, measurementId,
-                    Point3dFile.ACCELERATIONS_FOLDER_NAME, Point3dFile.ACCELERATIONS_FILE_EXTENSION).getFile();
-            Validate.isTrue(accelerationFile.delete());
+                    Point3dFile.ACCELERATIONS_FOLDER_NAME, Point3dFile.ACCELERATIONS_FILE_EXTENSION, fileFormatVersion)
+                    .getFile();
+            Point3dFileSegments.delete(accelerationFile);
         } catch (final NoSuchFileException e) {
             Log.v(TAG, "markAsSynchronized: No acceleration file found to delete, nothing to do");
         }
 
         try {
             final File rotationFile = Point3dFile.loadFile(context, fileAccessLayer, measurementId,
-                    Point3dFile.ROTATIONS_FOLDER_NAME, Point3dFile.ROTATION_FILE_EXTENSION).getFile();
-            Validate.isTrue(rotationFile.delete());
+                    Point3dFile.ROTATIONS_FOLDER_NAME, Point3dFile.ROTATION_FILE_EXTENSION, fileFormatVersion)
+                    .getFile();
+            Point3dFileSegments.delete(rotationFile);
         } catch (final NoSuchFileException e) {
             Log.v(TAG, "markAsSynchronized: No rotation file found to delete, nothing to do");
         }
 
         try {
             final File directionFile = Point3dFile.loadFile(context, fileAccessLayer, measurementId,
-                    Point3dFile.DIRECTIONS_FOLDER_NAME, Point3dFile.DIRECTION_FILE_EXTENSION).getFile();
-            Validate.isTrue(directionFile.delete());
+                    Point3dFile.DIRECTIONS_FOLDER_NAME, Point3dFile.DIRECTION_FILE_EXTENSION, fileFormatVersion)
+                    .getFile();
+            Point3dFileSegments.delete(directionFile);
         } catch (final NoSuchFileException e) {
             Log.v(TAG, "markAsSynchronized: No direction file found to delete, nothing to do");
         }
@@ -541,28 +588,62 @@ public class PersistenceLayer<B extends PersistenceBehaviour> {
         if (accelerationFolder.exists()) {
             final File accelerationFile = fileAccessLayer.getFilePath(context, measurementIdentifier,
                     Point3dFile.ACCELERATIONS_FOLDER_NAME, Point3dFile.ACCELERATIONS_FILE_EXTENSION);
-            if (accelerationFile.exists()) {
-                Validate.isTrue(accelerationFile.delete());
-            }
+            Point3dFileSegments.delete(accelerationFile);
         }
         if (rotationFolder.exists()) {
             final File rotationFile = fileAccessLayer.getFilePath(context, measurementIdentifier,
                     Point3dFile.ROTATIONS_FOLDER_NAME, Point3dFile.ROTATION_FILE_EXTENSION);
-            if (rotationFile.exists()) {
-                Validate.isTrue(rotationFile.delete());
-            }
+            Point3dFileSegments.delete(rotationFile);
         }
         if (directionFolder.exists()) {
             final File directionFile = fileAccessLayer.getFilePath(context, measurementIdentifier,
                     Point3dFile.DIRECTIONS_FOLDER_NAME, Point3dFile.DIRECTION_FILE_EXTENSION);
-            if (directionFile.exists()) {
-                Validate.isTrue(directionFile.delete());
+            Point3dFileSegments.delete(directionFile);
+        }
+    }
+
+    /**
+     * Verifies the {@link Point3dFile}s of a {@link Measurement} with their {@link Point3dFileChecksums}, see
+     * {@link Point3dFileChecksums#verify(File, short)}. Blocks which are incomplete or damaged are removed together
+     * with the data after them, so the synchronization only reads intact data.
+     * <p>
+     * Only call this when no data is appended to and no data is read from the {@code Measurement}, as it reads and may
+     * truncate the files. The capturing does this before the {@code MeasurementStatus} changes.
+     *
+     * @param measurementIdentifier The id of the {@code Measurement} to verify.
+     * @return The number of bytes removed from the files, {@code 0} if all files are intact.
+     * @throws CursorIsNullException If {@link ContentProvider} was inaccessible.
+     */
+    public long verifyPoint3dFiles(final long measurementIdentifier) throws CursorIsNullException {
+        final Measurement measurement = loadMeasurement(measurementIdentifier);
+        Validate.notNull("Measurement not found: " + measurementIdentifier, measurement);
+        final short fileFormatVersion = measurement.getFileFormatVersion();
+
+        final File[] files = new File[] {
+                fileAccessLayer.getFilePath(context, measurementIdentifier, Point3dFile.ACCELERATIONS_FOLDER_NAME,
+                        Point3dFile.ACCELERATIONS_FILE_EXTENSION),
+                fileAccessLayer.getFilePath(context, measurementIdentifier, Point3dFile.ROTATIONS_FOLDER_NAME,
+                        Point3dFile.ROTATION_FILE_EXTENSION),
+                fileAccessLayer.getFilePath(context, measurementIdentifier, Point3dFile.DIRECTIONS_FOLDER_NAME,
+                        Point3dFile.DIRECTION_FILE_EXTENSION)};
+        long removed = 0L;
+        for (final File file : files) {
+            if (!file.exists()) {
+                continue;
+            }
+            try {
+                removed += Point3dFileChecksums.verify(file, fileFormatVersion);
+            } catch (final IOException e) {
+                throw new IllegalStateException(e);
             }
         }
+        return removed;
     }
 
     /**
      * Loads the {@link Track}s for the provided {@link Measurement}.
+     * <p>
+     * This loads all {@code GeoLocation}s into memory. Use {@link #loadTrackReader(long)} for long measurements.
      *
      * TODO [CY-4438]: From the current implementations (MeasurementContentProviderClient loader and resolver.query) is
      * the loader the faster solution. However, we should upgrade the database access as Android changed it's API.
@@ -574,35 +655,16 @@ public class PersistenceLayer<B extends PersistenceBehaviour> {
      */
     @SuppressWarnings("unused") // May be used by SDK implementing app
     public List<Track> loadTracks(final long measurementIdentifier) throws CursorIsNullException {
-
-        Cursor geoLocationCursor = null;
-        Cursor eventCursor = null;
-        try {
-            eventCursor = loadEventsCursor(measurementIdentifier);
-            softCatchNullCursor(eventCursor);
-
-            // Load GeoLocations
-            geoLocationCursor = resolver.query(getGeoLocationsUri(), null,
-                    GeoLocationsTable.COLUMN_MEASUREMENT_FK + "=?",
-                    new String[] {Long.valueOf(measurementIdentifier).toString()},
-                    GeoLocationsTable.COLUMN_GEOLOCATION_TIME + " ASC");
-            softCatchNullCursor(geoLocationCursor);
-            if (geoLocationCursor.getCount() == 0) {
-                return Collections.emptyList();
-            }
-            return loadTracks(geoLocationCursor, eventCursor);
-        } finally {
-            if (geoLocationCursor != null) {
-                geoLocationCursor.close();
-            }
-            if (eventCursor != null) {
-                eventCursor.close();
-            }
+        try (final TrackReader reader = loadTrackReader(measurementIdentifier)) {
+            return loadTracks(reader);
         }
     }
 
     /**
      * Loads the "cleaned" {@link Track}s for the provided {@link Measurement}.
+     * <p>
+     * This loads all {@code GeoLocation}s into memory. Use {@link #loadTrackReader(long, LocationCleaningStrategy)}
+     * for long measurements.
      *
      * @param measurementIdentifier The id of the {@code Measurement} to load the track for.
      * @param locationCleaningStrategy The {@link LocationCleaningStrategy} used to filter the
@@ -614,29 +676,437 @@ public class PersistenceLayer<B extends PersistenceBehaviour> {
     @SuppressWarnings("unused") // Used by SDK implementing apps (SR, CY)
     public List<Track> loadTracks(final long measurementIdentifier,
             @NonNull final LocationCleaningStrategy locationCleaningStrategy) throws CursorIsNullException {
+        try (final TrackReader reader = loadTrackReader(measurementIdentifier, locationCleaningStrategy)) {
+            return loadTracks(reader);
+        }
+    }
 
-        Cursor geoLocationCursor = null;
-        Cursor eventCursor = null;
-        try {
-            eventCursor = loadEventsCursor(measurementIdentifier);
-            softCatchNullCursor(eventCursor);
-
-            geoLocationCursor = locationCleaningStrategy.loadCleanedLocations(resolver, measurementIdentifier,
-                    getGeoLocationsUri());
-            softCatchNullCursor(geoLocationCursor);
-            if (geoLocationCursor.getCount() == 0) {
-                return Collections.emptyList();
+    /**
+     * Provides lazy access to the {@link Track}s for the provided {@link Measurement}, see {@link TrackReader}.
+     * <p>
+     * <b>Attention: The caller needs to close the returned {@code TrackReader}, e.g. with a try-with-resources
+     * block.</b>
+     *
+     * @param measurementIdentifier The id of the {@code Measurement} to load the track for.
+     * @return The {@code TrackReader} positioned before the first sub-track.
+     * @throws CursorIsNullException when accessing the {@code ContentProvider} failed
+     */
+    @SuppressWarnings("unused") // Used by SDK implementing apps
+    @NonNull
+    public TrackReader loadTrackReader(final long measurementIdentifier) throws CursorIsNullException {
+        final Cursor geoLocationCursor = resolver.query(getGeoLocationsUri(), null,
+                GeoLocationsTable.COLUMN_MEASUREMENT_FK + "=?",
+                new String[] {Long.valueOf(measurementIdentifier).toString()},
+                GeoLocationsTable.COLUMN_GEOLOCATION_TIME + " ASC");
+        return createTrackReader(geoLocationCursor, measurementIdentifier);
+    }
+
+    /**
+     * Provides lazy access to the "cleaned" {@link Track}s for the provided {@link Measurement}, see
+     * {@link TrackReader}.
+     * <p>
+     * <b>Attention: The caller needs to close the returned {@code TrackReader}, e.g. with a try-with-resources
+     * block.</b>
+     *
+     * @param measurementIdentifier The id of the {@code Measurement} to load the track for.
+     * @param locationCleaningStrategy The {@link LocationCleaningStrategy} used to filter the
+     *            {@link GeoLocation}s
+     * @return The {@code TrackReader} positioned before the first sub-track.
+     * @throws CursorIsNullException when accessing the {@code ContentProvider} failed
+     */
+    @SuppressWarnings("unused") // Used by SDK implementing apps
+    @NonNull
+    public TrackReader loadTrackReader(final long measurementIdentifier,
+            @NonNull final LocationCleaningStrategy locationCleaningStrategy) throws CursorIsNullException {
+        final Cursor geoLocationCursor = locationCleaningStrategy.loadCleanedLocations(resolver,
+                measurementIdentifier, getGeoLocationsUri());
+        return createTrackReader(geoLocationCursor, measurementIdentifier);
+    }
+
+    /**
+     * Creates a {@link TrackReader} which slices the provided {@link GeoLocation}s with the {@link Event}s of the
+     * {@link Measurement}.
+     *
+     * @param geoLocationCursor The {@code GeoLocation}s of the {@code Measurement}, ordered by time. The cursor is
+     *            closed by the {@code TrackReader}, or here if the {@code TrackReader} can't be created.
+     * @param measurementIdentifier The id of the {@code Measurement} to load the {@code Event}s for.
+     * @return The {@code TrackReader}.
+     * @throws CursorIsNullException when accessing the {@code ContentProvider} failed
+     */
+    @NonNull
+    private TrackReader createTrackReader(@Nullable final Cursor geoLocationCursor, final long measurementIdentifier)
+            throws CursorIsNullException {
+        softCatchNullCursor(geoLocationCursor);
+        final Cursor eventCursor = loadEventsCursor(measurementIdentifier);
+        if (eventCursor == null) {
+            geoLocationCursor.close();
+        }
+        softCatchNullCursor(eventCursor);
+        return new TrackReader(geoLocationCursor, eventCursor);
+    }
+
+    /**
+     * Loads all sub-tracks of a {@link TrackReader} into memory.
+     *
+     * @param reader The {@code TrackReader} positioned before the first sub-track.
+     * @return The {@link Track}s.
+     */
+    @NonNull
+    private List<Track> loadTracks(@NonNull final TrackReader reader) {
+        final List<Track> tracks = new ArrayList<>();
+        while (reader.moveToNextTrack()) {
+            tracks.add(reader.loadTrack());
+        }
+        return tracks;
+    }
+
+    /**
+     * Aggregates the {@link GeoLocation}s of the {@link Track}s of the provided {@link Measurement}, i.e. the
+     * {@code GeoLocation}s which {@link #loadTracks(long)} would return, without loading them.
+     * <p>
+     * Use this instead of {@code #loadTracks(long)} when only the number of {@code GeoLocation}s, the first and last
+     * {@code GeoLocation}, the time span or the bounding box is required. They are calculated by the database, so this
+     * takes constant memory, independent of the length of the {@code Measurement}.
+     *
+     * @param measurementIdentifier The id of the {@code Measurement} to aggregate the {@code GeoLocation}s for.
+     * @return The {@link GeoLocationAggregate}. If no {@code GeoLocation} exists, the count is {@code 0} and the
+     *         start and end locations are {@code null}.
+     */
+    @NonNull
+    public GeoLocationAggregate aggregateGeoLocations(final long measurementIdentifier) {
+        final Bundle extras = new Bundle();
+        extras.putLong(MeasuringPointsContentProvider.EXTRA_MEASUREMENT_ID, measurementIdentifier);
+        final Bundle result = resolver.call(getGeoLocationsUri(),
+                MeasuringPointsContentProvider.METHOD_AGGREGATE_GEO_LOCATIONS, null, extras);
+        Validate.notNull("Provider call failed: " + MeasuringPointsContentProvider.METHOD_AGGREGATE_GEO_LOCATIONS,
+                result);
+        // The Bundle is unparceled with the class loader of the framework which does not know the SDK classes
+        result.setClassLoader(GeoLocationAggregate.class.getClassLoader());
+        final GeoLocationAggregate aggregate = result.getParcelable(MeasuringPointsContentProvider.EXTRA_AGGREGATE);
+        Validate.notNull(aggregate);
+        return aggregate;
+    }
+
+    /**
+     * Selects the {@link Measurement}s which passed through an area, e.g. to show them on the visible part of a map.
+     * <p>
+     * This uses a spatial index which is updated while the {@code Measurement}s are captured, so the
+     * {@link GeoLocation}s are not loaded. The index divides the coordinates into cells of 0.01 degrees, thus
+     * {@code GeoLocation}s up to one cell outside of the area are included. The {@code GeoLocation}s captured while a
+     * {@code Measurement} was paused are included, too.
+     *
+     * @param minLat The southern bound of the area.
+     * @param minLon The western bound of the area.
+     * @param maxLat The northern bound of the area.
+     * @param maxLon The eastern bound of the area. If this is smaller than {@code minLon} the area crosses the
+     *            antimeridian.
+     * @return The time range of each {@code Measurement} within the area, ordered by the id of the {@code Measurement}.
+     */
+    @SuppressWarnings("unused") // Used by implementing apps to show the measurements on a map
+    @NonNull
+    public List<MeasurementTimeRange> loadMeasurementsInArea(final double minLat, final double minLon,
+            final double maxLat, final double maxLon) {
+        final Bundle extras = new Bundle();
+        extras.putDouble(MeasuringPointsContentProvider.EXTRA_MIN_LAT, minLat);
+        extras.putDouble(MeasuringPointsContentProvider.EXTRA_MIN_LON, minLon);
+        extras.putDouble(MeasuringPointsContentProvider.EXTRA_MAX_LAT, maxLat);
+        extras.putDouble(MeasuringPointsContentProvider.EXTRA_MAX_LON, maxLon);
+        final Bundle result = resolver.call(getGeoLocationsUri(),
+                MeasuringPointsContentProvider.METHOD_LOAD_MEASUREMENTS_IN_AREA, null, extras);
+        Validate.notNull("Provider call failed: " + MeasuringPointsContentProvider.METHOD_LOAD_MEASUREMENTS_IN_AREA,
+                result);
+        // The Bundle is unparceled with the class loader of the framework which does not know the SDK classes
+        result.setClassLoader(MeasurementTimeRange.class.getClassLoader());
+        final List<MeasurementTimeRange> ranges = result
+                .getParcelableArrayList(MeasuringPointsContentProvider.EXTRA_TIME_RANGES);
+        Validate.notNull(ranges);
+        return ranges;
+    }
+
+    /**
+     * Loads the {@link MeasurementSummary}s of all {@link Measurement}s with {@link GeoLocation}s in one query.
+     * <p>
+     * The summaries are updated while the {@code Measurement}s are captured, so this is independent of the number of
+     * {@code GeoLocation}s and fast enough to show e.g. a list of all {@code Measurement}s.
+     *
+     * @return The summaries ordered by the id of their {@code Measurement}. {@code Measurement}s without
+     *         {@code GeoLocation}s have no summary.
+     * @throws CursorIsNullException If {@link ContentProvider} was inaccessible.
+     */
+    @SuppressWarnings("unused") // Used by implementing apps to list the measurements
+    @NonNull
+    public List<MeasurementSummary> loadMeasurementSummaries() throws CursorIsNullException {
+        try (final Cursor cursor = resolver.query(getMeasurementSummaryUri(), null, null, null,
+                MeasurementSummaryTable.COLUMN_MEASUREMENT_FK + " ASC")) {
+            softCatchNullCursor(cursor);
+
+            final List<MeasurementSummary> summaries = new ArrayList<>(cursor.getCount());
+            while (cursor.moveToNext()) {
+                summaries.add(loadMeasurementSummary(cursor));
             }
-            return loadTracks(geoLocationCursor, eventCursor);
+            return summaries;
+        }
+    }
 
-        } finally {
-            if (eventCursor != null) {
-                eventCursor.close();
+    /**
+     * Loads the {@link MeasurementSummary} of a {@link Measurement}.
+     *
+     * @param measurementIdentifier The id of the {@code Measurement} to load the summary for.
+     * @return The summary or {@code null} if the {@code Measurement} has no {@link GeoLocation}s.
+     * @throws CursorIsNullException If {@link ContentProvider} was inaccessible.
+     */
+    @Nullable
+    public MeasurementSummary loadMeasurementSummary(final long measurementIdentifier) throws CursorIsNullException {
+        try (final Cursor cursor = resolver.query(getMeasurementSummaryUri(), null,
+                MeasurementSummaryTable.COLUMN_MEASUREMENT_FK + "=?",
+                new String[] {String.valueOf(measurementIdentifier)}, null)) {
+            softCatchNullCursor(cursor);
+
+            return cursor.moveToFirst() ? loadMeasurementSummary(cursor) : null;
+        }
+    }
+
+    /**
+     * Loads the {@link Track}s of a {@link Measurement} simplified with the Douglas-Peucker algorithm, e.g. to draw
+     * them on a map.
+     * <p>
+     * The {@code Track}s are simplified at the levels of detail of the {@link TrackSimplifier#LEVEL_TOLERANCES} and
+     * the coarsest level within the {@code tolerance} is loaded. The levels are created in the background when a
+     * {@code Measurement} is paused or finished. If {@link GeoLocation}s were added since, the stored levels are
+     * returned and the update is scheduled, see {@link #scheduleSimplifiedTracksUpdate(long)}. If no levels were
+     * created yet, the original {@code Track}s are loaded instead.
+     *
+     * @param measurementIdentifier The id of the {@code Measurement} to load the {@code Track}s for.
+     * @param tolerance The maximal distance in meters between the simplified and the original {@code Track}s. If this
+     *            is smaller than the finest level, the original {@code Track}s are loaded.
+     * @return The simplified {@code Track}s as {@link #loadTracks(long)} returns them, but only with the
+     *         {@code GeoLocation}s of the selected level.
+     * @throws CursorIsNullException If {@link ContentProvider} was inaccessible.
+     */
+    @NonNull
+    public List<Track> loadSimplifiedTracks(final long measurementIdentifier, final double tolerance)
+            throws CursorIsNullException {
+        final int level = TrackSimplifier.levelFor(tolerance);
+        if (level == TrackSimplifier.NO_LEVEL) {
+            return loadTracks(measurementIdentifier);
+        }
+        final String[] measurementArgs = new String[] {String.valueOf(measurementIdentifier)};
+        try (final Cursor cursor = resolver.query(getMeasurementSummaryUri(),
+                new String[] {MeasurementSummaryTable.COLUMN_LOCATION_COUNT,
+                        MeasurementSummaryTable.COLUMN_SIMPLIFIED_LOCATION_COUNT},
+                MeasurementSummaryTable.COLUMN_MEASUREMENT_FK + "=?", measurementArgs, null)) {
+            softCatchNullCursor(cursor);
+            if (!cursor.moveToFirst()) {
+                // No GeoLocations
+                return new ArrayList<>();
+            }
+            if (cursor.getInt(0) != cursor.getInt(1)) {
+                scheduleSimplifiedTracksUpdate(measurementIdentifier);
+            }
+            if (cursor.getInt(1) == 0) {
+                return loadTracks(measurementIdentifier);
+            }
+        }
+
+        final List<Track> tracks = new ArrayList<>();
+        try (final Cursor cursor = resolver.query(getSimplifiedLocationsUri(),
+                new String[] {SimplifiedLocationsTable.COLUMN_TRACK, SimplifiedLocationsTable.COLUMN_LAT,
+                        SimplifiedLocationsTable.COLUMN_LON, SimplifiedLocationsTable.COLUMN_GEOLOCATION_TIME,
+                        SimplifiedLocationsTable.COLUMN_SPEED, SimplifiedLocationsTable.COLUMN_ACCURACY},
+                SimplifiedLocationsTable.COLUMN_MEASUREMENT_FK + "=? AND " + SimplifiedLocationsTable.COLUMN_LEVEL
+                        + ">=?",
+                new String[] {String.valueOf(measurementIdentifier), String.valueOf(level)},
+                SimplifiedLocationsTable.COLUMN_TRACK + " ASC, " + SimplifiedLocationsTable.COLUMN_GEOLOCATION_TIME
+                        + " ASC")) {
+            softCatchNullCursor(cursor);
+
+            Track track = null;
+            int trackIndex = -1;
+            while (cursor.moveToNext()) {
+                if (track == null || cursor.getInt(0) != trackIndex) {
+                    trackIndex = cursor.getInt(0);
+                    track = new Track();
+                    tracks.add(track);
+                }
+                track.add(new GeoLocation(cursor.getDouble(1), cursor.getDouble(2), cursor.getLong(3),
+                        cursor.getDouble(4), cursor.getFloat(5)));
+            }
+        }
+        return tracks;
+    }
+
+    /**
+     * Loads the {@link Track}s of a {@link Measurement} simplified for a web mercator map, i.e. without details smaller
+     * than a pixel, see {@link #loadSimplifiedTracks(long, double)}.
+     *
+     * @param measurementIdentifier The id of the {@code Measurement} to load the {@code Track}s for.
+     * @param zoomLevel The zoom level of the map, e.g. {@code 0} for the whole world and {@code 18} for streets.
+     * @return The simplified {@code Track}s.
+     * @throws CursorIsNullException If {@link ContentProvider} was inaccessible.
+     */
+    @NonNull
+    public List<Track> loadSimplifiedTracksForZoomLevel(final long measurementIdentifier, final int zoomLevel)
+            throws CursorIsNullException {
+        final MeasurementSummary summary = loadMeasurementSummary(measurementIdentifier);
+        if (summary == null) {
+            return new ArrayList<>();
+        }
+        return loadSimplifiedTracks(measurementIdentifier,
+                TrackSimplifier.toleranceForZoomLevel(zoomLevel, summary.getStartLat()));
+    }
+
+    /**
+     * Calls {@link #updateSimplifiedTracks(long)} on the {@link #TRACK_SIMPLIFIER} thread.
+     *
+     * @param measurementIdentifier The id of the {@link Measurement} to simplify the {@link Track}s of.
+     */
+    public void scheduleSimplifiedTracksUpdate(final long measurementIdentifier) {
+        TRACK_SIMPLIFIER.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    updateSimplifiedTracks(measurementIdentifier);
+                } catch (final CursorIsNullException e) {
+                    // Not critical, the update is scheduled again when the simplified Tracks are loaded
+                    Log.w(TAG, "Unable to simplify tracks of measurement " + measurementIdentifier, e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Creates the simplified {@link Track}s loaded by {@link #loadSimplifiedTracks(long, double)} if
+     * {@link GeoLocation}s were added since they were created.
+     * <p>
+     * This is incremental: the {@code Track}s which were simplified before are kept, except for the last one, which may
+     * have been continued. A {@code Measurement} which was resumed thus only simplifies the {@code Track}s captured
+     * since. The {@code Track}s are replaced in one transaction of the {@link MeasuringPointsContentProvider}, which
+     * skips the replacement if another thread or process replaced them in the meantime. Call this from a background
+     * thread, as it loads the {@code GeoLocation}s of these {@code Track}s.
+     *
+     * @param measurementIdentifier The id of the {@link Measurement} to simplify the {@code Track}s of.
+     * @throws CursorIsNullException If {@link ContentProvider} was inaccessible.
+     */
+    public void updateSimplifiedTracks(final long measurementIdentifier) throws CursorIsNullException {
+        final String[] measurementArgs = new String[] {String.valueOf(measurementIdentifier)};
+        final int locationCount;
+        final int simplifiedLocationCount;
+        try (final Cursor cursor = resolver.query(getMeasurementSummaryUri(),
+                new String[] {MeasurementSummaryTable.COLUMN_LOCATION_COUNT,
+                        MeasurementSummaryTable.COLUMN_SIMPLIFIED_LOCATION_COUNT},
+                MeasurementSummaryTable.COLUMN_MEASUREMENT_FK + "=?", measurementArgs, null)) {
+            softCatchNullCursor(cursor);
+            if (!cursor.moveToFirst() || cursor.getInt(0) == cursor.getInt(1)) {
+                // No GeoLocations or nothing changed
+                return;
+            }
+            locationCount = cursor.getInt(0);
+            simplifiedLocationCount = cursor.getInt(1);
+        }
+
+        // The count is reset when GeoLocations are deleted, so all Tracks are replaced
+        int firstTrack = 0;
+        if (simplifiedLocationCount > 0) {
+            try (final Cursor cursor = resolver.query(getSimplifiedLocationsUri(),
+                    new String[] {SimplifiedLocationsTable.COLUMN_TRACK},
+                    SimplifiedLocationsTable.COLUMN_MEASUREMENT_FK + "=?", measurementArgs,
+                    SimplifiedLocationsTable.COLUMN_TRACK + " DESC limit 1")) {
+                softCatchNullCursor(cursor);
+                if (cursor.moveToFirst()) {
+                    firstTrack = cursor.getInt(0);
+                }
             }
-            if (geoLocationCursor != null) {
-                geoLocationCursor.close();
+        }
+
+        final SimplifiedLocations simplifiedLocations = new SimplifiedLocations();
+        try (final TrackReader reader = loadTrackReader(measurementIdentifier)) {
+            for (int track = 0; reader.moveToNextTrack(); track++) {
+                if (track >= firstTrack) {
+                    simplifyTrack(reader, track, simplifiedLocations);
+                }
             }
         }
+
+        // GeoLocations added in the meantime are simplified with the next call as the count is lower
+        final Bundle extras = simplifiedLocations.toExtras();
+        extras.putLong(MeasuringPointsContentProvider.EXTRA_MEASUREMENT_ID, measurementIdentifier);
+        extras.putInt(MeasuringPointsContentProvider.EXTRA_EXPECTED_COUNT, simplifiedLocationCount);
+        extras.putInt(MeasuringPointsContentProvider.EXTRA_LOCATION_COUNT, locationCount);
+        extras.putInt(MeasuringPointsContentProvider.EXTRA_FIRST_TRACK, firstTrack);
+        final Bundle result = resolver.call(getSimplifiedLocationsUri(),
+                MeasuringPointsContentProvider.METHOD_REPLACE_SIMPLIFIED_LOCATIONS,
+                getSimplifiedLocationsUri().toString(), extras);
+        Validate.notNull("Provider call failed: " + MeasuringPointsContentProvider.METHOD_REPLACE_SIMPLIFIED_LOCATIONS,
+                result);
+        if (result.getInt(MeasuringPointsContentProvider.EXTRA_ROWS) == -1) {
+            Log.d(TAG, "Simplified tracks of measurement " + measurementIdentifier + " were replaced in the meantime");
+        }
+    }
+
+    /**
+     * Simplifies the current {@link Track} of a {@link TrackReader} and collects the {@link GeoLocation}s which are
+     * part of any level.
+     *
+     * @param reader The {@code TrackReader} positioned before the first {@code GeoLocation} of the {@code Track}.
+     * @param track The index of the {@code Track} within the {@code Measurement}.
+     * @param simplifiedLocations The {@code GeoLocation}s to add the simplified {@code GeoLocation}s to.
+     */
+    private void simplifyTrack(@NonNull final TrackReader reader, final int track,
+            @NonNull final SimplifiedLocations simplifiedLocations) {
+        // Primitive arrays instead of GeoLocations to limit the memory required for long Tracks
+        int size = 0;
+        long[] timestamps = new long[INITIAL_TRACK_CAPACITY];
+        double[] latitudes = new double[INITIAL_TRACK_CAPACITY];
+        double[] longitudes = new double[INITIAL_TRACK_CAPACITY];
+        double[] speeds = new double[INITIAL_TRACK_CAPACITY];
+        float[] accuracies = new float[INITIAL_TRACK_CAPACITY];
+        while (reader.moveToNext()) {
+            if (size == timestamps.length) {
+                timestamps = Arrays.copyOf(timestamps, size * 2);
+                latitudes = Arrays.copyOf(latitudes, size * 2);
+                longitudes = Arrays.copyOf(longitudes, size * 2);
+                speeds = Arrays.copyOf(speeds, size * 2);
+                accuracies = Arrays.copyOf(accuracies, size * 2);
+            }
+            timestamps[size] = reader.getTimestamp();
+            latitudes[size] = reader.getLat();
+            longitudes[size] = reader.getLon();
+            speeds[size] = reader.getSpeed();
+            accuracies[size] = reader.getAccuracy();
+            size++;
+        }
+
+        final int[] levels = TrackSimplifier.levels(latitudes, longitudes, size);
+        for (int i = 0; i < size; i++) {
+            if (levels[i] != TrackSimplifier.NO_LEVEL) {
+                simplifiedLocations.add(track, levels[i], timestamps[i], latitudes[i], longitudes[i], speeds[i],
+                        Math.round(accuracies[i]));
+            }
+        }
+    }
+
+    /**
+     * Loads a {@link MeasurementSummary} object from a {@link Cursor} which points to a {@code MeasurementSummary}.
+     *
+     * @param cursor a {@code Cursor} which points to a {@code MeasurementSummary}
+     * @return the {@code MeasurementSummary} of the {@code Cursor}
+     */
+    private MeasurementSummary loadMeasurementSummary(@NonNull final Cursor cursor) {
+        final int locationCount = cursor.getInt(cursor.getColumnIndex(MeasurementSummaryTable.COLUMN_LOCATION_COUNT));
+        final double speedSum = cursor.getDouble(cursor.getColumnIndex(MeasurementSummaryTable.COLUMN_SPEED_SUM));
+        return new MeasurementSummary(
+                cursor.getLong(cursor.getColumnIndex(MeasurementSummaryTable.COLUMN_MEASUREMENT_FK)), locationCount,
+                cursor.getLong(cursor.getColumnIndex(MeasurementSummaryTable.COLUMN_START_TIME)),
+                cursor.getDouble(cursor.getColumnIndex(MeasurementSummaryTable.COLUMN_START_LAT)),
+                cursor.getDouble(cursor.getColumnIndex(MeasurementSummaryTable.COLUMN_START_LON)),
+                cursor.getLong(cursor.getColumnIndex(MeasurementSummaryTable.COLUMN_END_TIME)),
+                cursor.getDouble(cursor.getColumnIndex(MeasurementSummaryTable.COLUMN_END_LAT)),
+                cursor.getDouble(cursor.getColumnIndex(MeasurementSummaryTable.COLUMN_END_LON)),
+                cursor.getDouble(cursor.getColumnIndex(MeasurementSummaryTable.COLUMN_MIN_LAT)),
+                cursor.getDouble(cursor.getColumnIndex(MeasurementSummaryTable.COLUMN_MAX_LAT)),
+                cursor.getDouble(cursor.getColumnIndex(MeasurementSummaryTable.COLUMN_MIN_LON)),
+                cursor.getDouble(cursor.getColumnIndex(MeasurementSummaryTable.COLUMN_MAX_LON)),
+                locationCount == 0 ? 0.0 : speedSum / locationCount);
     }
 
     /**
@@ -721,140 +1191,6 @@ public class PersistenceLayer<B extends PersistenceBehaviour> {
         }
     }
 
-    /**
-     * Loads the {@link Track}s for the provided {@link GeoLocation} cursor sliced using the provided {@link Event}
-     * cursor.
-     *
-     * @param geoLocationCursor The {@code GeoLocation} cursor which points to the locations to be loaded.
-     * @param eventCursor The {@code Event} cursor which points to the events annotation the corresponding
-     *            {@link Measurement}.
-     * @return The {@link Track}s for the corresponding {@code Measurement} loaded.
-     */
-    @NonNull
-    private List<Track> loadTracks(@NonNull final Cursor geoLocationCursor, @NonNull final Cursor eventCursor) {
-        final List<Track> tracks = new ArrayList<>();
-
-        // The geoLocationCursor always needs to point to the first GeoLocation of the next sub track
-        if (!geoLocationCursor.moveToNext()) {
-            return tracks;
-        }
-
-        // Slice Tracks before resume events
-        Long pauseEventTime = null;
-        while (eventCursor.moveToNext() && !geoLocationCursor.isAfterLast()) {
-            final Event.EventType eventType = Event.EventType
-                    .valueOf(eventCursor.getString(eventCursor.getColumnIndex(EventTable.COLUMN_TYPE)));
-
-            // Search for next resume event and capture it's previous pause event
-            if (eventType != Event.EventType.LIFECYCLE_RESUME) {
-                if (eventType == Event.EventType.LIFECYCLE_PAUSE) {
-                    pauseEventTime = eventCursor.getLong(eventCursor.getColumnIndex(EventTable.COLUMN_TIMESTAMP));
-                }
-                continue;
-            }
-            Validate.notNull(pauseEventTime);
-            final long resumeEventTime = eventCursor.getLong(eventCursor.getColumnIndex(EventTable.COLUMN_TIMESTAMP));
-
-            // Collect all GeoLocations until the pause event
-            final Track track = collectNextSubTrack(geoLocationCursor, pauseEventTime);
-            // Add sub-track to track
-            if (track.getGeoLocations().size() > 0) {
-                tracks.add(track);
-            }
-
-            // Pause reached: Move geoLocationCursor to the first location of the next sub-track
-            // We do this to ignore locations between pause and resume event (STAD-140)
-            moveCursorToFirstAfter(geoLocationCursor, resumeEventTime);
-        }
-
-        // Return if there is no tail (sub track ending at LIFECYCLE_STOP instead of LIFECYCLE_PAUSE)
-        if (geoLocationCursor.isAfterLast()) {
-            return tracks;
-        }
-
-        // Collect tail sub track
-        // This is ether the track between start[, pause] and stop or resume[, pause] and stop.
-        final Track track = new Track();
-        do {
-            final GeoLocation location = loadGeoLocation(geoLocationCursor);
-            if (location != null) {
-                track.add(location);
-            }
-
-        } while (geoLocationCursor.moveToNext());
-        Validate.isTrue(track.getGeoLocations().size() > 0);
-        tracks.add(track);
-        return tracks;
-    }
-
-    /**
-     * Collects a sub {@link Track} of a {@code Measurement}.
-     *
-     * @param geoLocationCursor The {@code Cursor} pointing to the {@code GeoLocation}s. The {@param geoLocationCursor}
-     *            must point to the first {@code GeoLocation} of the sub track to be collected.
-     * @param pauseEventTime the Unix timestamp of the {@link Event.EventType#LIFECYCLE_PAUSE} which defines the end of
-     *            this sub Track.
-     * @return The sub {@code Track}. The {@param geoLocationCursor} points to the first {@code GeoLocation} which is
-     *         later in time than the {@param pauseEventTime} or to the last GeoLocation if the earlier does not exist.
-     */
-    private Track collectNextSubTrack(@NonNull final Cursor geoLocationCursor, @NonNull final Long pauseEventTime) {
-        final Track track = new Track();
-
-        GeoLocation location = loadGeoLocation(geoLocationCursor);
-        while (location != null && location.getTimestamp() <= pauseEventTime) {
-
-            track.add(location);
-
-            // Load next GeoLocation to check it's timestamp in next iteration
-            geoLocationCursor.moveToNext();
-            location = loadGeoLocation(geoLocationCursor);
-        }
-
-        return track;
-    }
-
-    /**
-     * Moves the {@param geoLocationCursor} to the first GeoLocation starting at {@param resumeEventTime}.
-     * <p>
-     * If there is no such {@code GeoLocation} then the cursor points to {@link Cursor#isAfterLast()}.
-     *
-     * @param geoLocationCursor The {@code Cursor} pointing to the {@code GeoLocation}s.
-     * @param resumeEventTime the Unix timestamp, e.g. of {@link Event.EventType#LIFECYCLE_RESUME}
-     */
-    private void moveCursorToFirstAfter(@NonNull final Cursor geoLocationCursor, final long resumeEventTime) {
-
-        @Nullable
-        GeoLocation location = loadGeoLocation(geoLocationCursor);
-        while (location != null && location.getTimestamp() < resumeEventTime && geoLocationCursor.moveToNext()) {
-
-            // Load next location to check it's timestamp
-            location = loadGeoLocation(geoLocationCursor);
-        }
-    }
-
-    /**
-     * Loads the {@link GeoLocation} at the {@code Cursor}'s current position.
-     *
-     * @param geoLocationCursor the {@code Cursor} pointing to a {@code GeoLocation} in the database.
-     * @return the {@code GeoLocation} loaded or {@code Null} if the cursor points to the entry after the last one.
-     */
-    @Nullable
-    private GeoLocation loadGeoLocation(@NonNull final Cursor geoLocationCursor) {
-        if (geoLocationCursor.isAfterLast()) {
-            return null;
-        }
-
-        final double lat = geoLocationCursor.getDouble(geoLocationCursor.getColumnIndex(GeoLocationsTable.COLUMN_LAT));
-        final double lon = geoLocationCursor.getDouble(geoLocationCursor.getColumnIndex(GeoLocationsTable.COLUMN_LON));
-        final long timestamp = geoLocationCursor
-                .getLong(geoLocationCursor.getColumnIndex(GeoLocationsTable.COLUMN_GEOLOCATION_TIME));
-        final double speed = geoLocationCursor
-                .getDouble(geoLocationCursor.getColumnIndex(GeoLocationsTable.COLUMN_SPEED));
-        final float accuracy = geoLocationCursor
-                .getFloat(geoLocationCursor.getColumnIndex(GeoLocationsTable.COLUMN_ACCURACY));
-        return new GeoLocation(lat, lon, timestamp, speed, accuracy);
-    }
-
     /**
      * This method cleans up when the persistence layer is no longer needed by the caller.
      * <p>
@@ -890,6 +1226,20 @@ public class PersistenceLayer<B extends PersistenceBehaviour> {
         return Utils.getEventUri(authority);
     }
 
+    /**
+     * @return The content provider {@link Uri} for the {@link MeasurementSummaryTable}.
+     */
+    public Uri getMeasurementSummaryUri() {
+        return Utils.getMeasurementSummaryUri(authority);
+    }
+
+    /**
+     * @return The content provider {@link Uri} for the {@link SimplifiedLocationsTable}.
+     */
+    public Uri getSimplifiedLocationsUri() {
+        return Utils.getSimplifiedLocationsUri(authority);
+    }
+
     /**
      * @return The content provider URI for the {@link IdentifierTable}
      */
@@ -978,9 +1328,9 @@ public class PersistenceLayer<B extends PersistenceBehaviour> {
             final boolean allowCorruptedState)
             throws NoSuchMeasurementException, CursorIsNullException {
 
-        final ContentValues values = new ContentValues();
-        values.put(COLUMN_STATUS, newStatus.getDatabaseIdentifier());
-        updateMeasurement(measurementIdentifier, values);
+        final Bundle extras = new Bundle();
+        extras.putString(MeasuringPointsContentProvider.EXTRA_STATUS, newStatus.getDatabaseIdentifier());
+        updateMeasurement(measurementIdentifier, MeasuringPointsContentProvider.METHOD_UPDATE_STATUS, extras);
 
         // Make sure the database state **after** the status update is still valid
         switch (newStatus) {
@@ -1018,23 +1368,27 @@ public class PersistenceLayer<B extends PersistenceBehaviour> {
      */
     public void setDistance(final long measurementIdentifier, final double newDistance)
             throws NoSuchMeasurementException {
-        final ContentValues values = new ContentValues();
-        values.put(COLUMN_DISTANCE, newDistance);
-        updateMeasurement(measurementIdentifier, values);
+        final Bundle extras = new Bundle();
+        extras.putDouble(MeasuringPointsContentProvider.EXTRA_DISTANCE, newDistance);
+        updateMeasurement(measurementIdentifier, MeasuringPointsContentProvider.METHOD_UPDATE_DISTANCE, extras);
     }
 
     /**
-     * Updates the {@link Measurement#getDistance()} entry of the currently captured {@link Measurement}.
+     * Updates an entry of a {@link Measurement} via {@link MeasuringPointsContentProvider#call}.
      *
      * @param measurementIdentifier The id of the {@link Measurement} to be updated
-     * @param values The new {@link ContentValues} to be stored.
+     * @param method The {@code MeasuringPointsContentProvider#METHOD_UPDATE_*} to call.
+     * @param extras The new value to be stored.
      * @throws NoSuchMeasurementException if there was no {@code Measurement} with the id
      *             {@param measurementIdentifier}.
      */
-    private void updateMeasurement(final long measurementIdentifier, @NonNull final ContentValues values)
-            throws NoSuchMeasurementException {
+    private void updateMeasurement(final long measurementIdentifier, @NonNull final String method,
+            @NonNull final Bundle extras) throws NoSuchMeasurementException {
 
-        final int updatedRows = resolver.update(getMeasurementUri(), values, _ID + "=" + measurementIdentifier, null);
+        extras.putLong(MeasuringPointsContentProvider.EXTRA_MEASUREMENT_ID, measurementIdentifier);
+        final Bundle result = resolver.call(getMeasurementUri(), method, getMeasurementUri().toString(), extras);
+        Validate.notNull("Provider call failed: " + method, result);
+        final int updatedRows = result.getInt(MeasuringPointsContentProvider.EXTRA_ROWS);
         Validate.isTrue(updatedRows < 2, "Duplicate measurement id entries.");
         if (updatedRows == 0) {
             throw new NoSuchMeasurementException("The measurement could not be updated as it does not exist.");
@@ -1112,20 +1466,22 @@ public class PersistenceLayer<B extends PersistenceBehaviour> {
                 "Storing Event:" + eventType + (value == null ? "" : " (" + value + ")") + " for Measurement "
                         + measurement.getIdentifier() + " at " + timestamp);
 
-        final ContentValues contentValues = new ContentValues();
-        contentValues.put(EventTable.COLUMN_TYPE, eventType.getDatabaseIdentifier());
-        contentValues.put(EventTable.COLUMN_TIMESTAMP, timestamp);
-        contentValues.put(EventTable.COLUMN_MEASUREMENT_FK, measurement.getIdentifier());
+        final Bundle extras = new Bundle();
+        extras.putLong(MeasuringPointsContentProvider.EXTRA_MEASUREMENT_ID, measurement.getIdentifier());
+        extras.putString(MeasuringPointsContentProvider.EXTRA_EVENT_TYPE, eventType.getDatabaseIdentifier());
+        extras.putLong(MeasuringPointsContentProvider.EXTRA_TIMESTAMP, timestamp);
         if (value != null) {
             Validate.isTrue(!value.isEmpty());
-            contentValues.put(EventTable.COLUMN_VALUE, value);
+            extras.putString(MeasuringPointsContentProvider.EXTRA_EVENT_VALUE, value);
         }
 
-        final Uri resultUri = resolver.insert(getEventUri(), contentValues);
-        Validate.notNull("New Event could not be created!", resultUri);
-        Validate.notNull(resultUri.getLastPathSegment());
+        final Bundle result = resolver.call(getEventUri(), MeasuringPointsContentProvider.METHOD_INSERT_EVENT,
+                getEventUri().toString(), extras);
+        Validate.notNull("New Event could not be created!", result);
+        final long eventId = result.getLong(MeasuringPointsContentProvider.EXTRA_ROW_ID, -1L);
+        Validate.isTrue(eventId != -1L, "New Event could not be created!");
 
-        return Long.parseLong(resultUri.getLastPathSegment());
+        return eventId;
     }
 
     /**
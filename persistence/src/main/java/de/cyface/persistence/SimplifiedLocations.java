@@ -0,0 +1,104 @@
+/*
+ * Copyright 2021 Cyface GmbH
+ *
+ * This file is part of the Cyface SDK for Android.
+ *
+ * The Cyface SDK for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface SDK for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface SDK for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.persistence;
+
+import java.util.Arrays;
+
+import android.os.Bundle;
+
+import androidx.annotation.NonNull;
+
+import de.cyface.persistence.model.GeoLocation;
+import de.cyface.persistence.model.Track;
+
+/**
+ * Collects the simplified {@link GeoLocation}s of the {@link Track}s of a {@code Measurement} in primitive arrays, so
+ * they can be passed to {@link MeasuringPointsContentProvider#METHOD_REPLACE_SIMPLIFIED_LOCATIONS} at once.
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 6.2.0
+ */
+final class SimplifiedLocations {
+
+    /**
+     * The number of {@link GeoLocation}s the arrays are allocated for initially.
+     */
+    private static final int INITIAL_CAPACITY = 1_000;
+    /**
+     * The number of {@link GeoLocation}s added.
+     */
+    private int size;
+    private int[] tracks = new int[INITIAL_CAPACITY];
+    private int[] levels = new int[INITIAL_CAPACITY];
+    private long[] timestamps = new long[INITIAL_CAPACITY];
+    private double[] latitudes = new double[INITIAL_CAPACITY];
+    private double[] longitudes = new double[INITIAL_CAPACITY];
+    private double[] speeds = new double[INITIAL_CAPACITY];
+    private int[] accuracies = new int[INITIAL_CAPACITY];
+
+    /**
+     * Adds a simplified {@link GeoLocation}.
+     *
+     * @param track The index of the {@link Track} within the {@code Measurement}.
+     * @param level The index of the coarsest level the {@code GeoLocation} is part of.
+     * @param timestamp The timestamp in milliseconds.
+     * @param latitude The latitude.
+     * @param longitude The longitude.
+     * @param speed The speed in meters per second.
+     * @param accuracy The rounded accuracy.
+     */
+    void add(final int track, final int level, final long timestamp, final double latitude, final double longitude,
+            final double speed, final int accuracy) {
+        if (size == tracks.length) {
+            tracks = Arrays.copyOf(tracks, size * 2);
+            levels = Arrays.copyOf(levels, size * 2);
+            timestamps = Arrays.copyOf(timestamps, size * 2);
+            latitudes = Arrays.copyOf(latitudes, size * 2);
+            longitudes = Arrays.copyOf(longitudes, size * 2);
+            speeds = Arrays.copyOf(speeds, size * 2);
+            accuracies = Arrays.copyOf(accuracies, size * 2);
+        }
+        tracks[size] = track;
+        levels[size] = level;
+        timestamps[size] = timestamp;
+        latitudes[size] = latitude;
+        longitudes[size] = longitude;
+        speeds[size] = speed;
+        accuracies[size] = accuracy;
+        size++;
+    }
+
+    /**
+     * @return The {@code extras} of {@link MeasuringPointsContentProvider#METHOD_REPLACE_SIMPLIFIED_LOCATIONS} with
+     *         one entry per {@link GeoLocation}.
+     */
+    @NonNull
+    Bundle toExtras() {
+        final Bundle extras = new Bundle();
+        extras.putIntArray(MeasuringPointsContentProvider.EXTRA_TRACKS, Arrays.copyOf(tracks, size));
+        extras.putIntArray(MeasuringPointsContentProvider.EXTRA_LEVELS, Arrays.copyOf(levels, size));
+        extras.putLongArray(MeasuringPointsContentProvider.EXTRA_TIMESTAMPS, Arrays.copyOf(timestamps, size));
+        extras.putDoubleArray(MeasuringPointsContentProvider.EXTRA_LATITUDES, Arrays.copyOf(latitudes, size));
+        extras.putDoubleArray(MeasuringPointsContentProvider.EXTRA_LONGITUDES, Arrays.copyOf(longitudes, size));
+        extras.putDoubleArray(MeasuringPointsContentProvider.EXTRA_SPEEDS, Arrays.copyOf(speeds, size));
+        extras.putIntArray(MeasuringPointsContentProvider.EXTRA_ACCURACIES, Arrays.copyOf(accuracies, size));
+        return extras;
+    }
+}
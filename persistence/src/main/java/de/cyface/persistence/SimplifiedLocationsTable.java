@@ -0,0 +1,146 @@
+/*
+ * Copyright 2021 Cyface GmbH
+ *
+ * This file is part of the Cyface SDK for Android.
+ *
+ * The Cyface SDK for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface SDK for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface SDK for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.persistence;
+
+import static de.cyface.persistence.Constants.TAG;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.provider.BaseColumns;
+import android.util.Log;
+
+import de.cyface.persistence.model.GeoLocation;
+import de.cyface.persistence.model.Measurement;
+import de.cyface.persistence.model.Track;
+
+/**
+ * Table for storing the simplified {@link Track}s of {@link Measurement}s at the levels of detail of the
+ * {@link TrackSimplifier}.
+ * <p>
+ * As the levels are nested, each {@link GeoLocation} is only stored once with the coarsest level it is part of. A
+ * level is loaded by selecting all rows with a level equal to or coarser than the requested level.
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 6.2.0
+ */
+public class SimplifiedLocationsTable extends AbstractCyfaceMeasurementTable {
+
+    /**
+     * The path segment in the table URI identifying the {@link SimplifiedLocationsTable}.
+     */
+    final static String URI_PATH = "simplified_locations";
+    /**
+     * Column name for the column storing the foreign key referencing the {@link Measurement} of the
+     * {@link GeoLocation}.
+     */
+    public static final String COLUMN_MEASUREMENT_FK = "measurement_fk";
+    /**
+     * Column name for the column storing the index of the {@link Track} within the {@link Measurement}.
+     */
+    public static final String COLUMN_TRACK = "track";
+    /**
+     * Column name for the column storing the index of the coarsest level in {@link TrackSimplifier#LEVEL_TOLERANCES}
+     * the {@link GeoLocation} is part of.
+     */
+    public static final String COLUMN_LEVEL = "level";
+    /**
+     * Column name for the column storing the {@link GeoLocation} timestamp.
+     */
+    public static final String COLUMN_GEOLOCATION_TIME = "gps_time";
+    /**
+     * Column name for the column storing the {@link GeoLocation} latitude.
+     */
+    public static final String COLUMN_LAT = "lat";
+    /**
+     * Column name for the column storing the {@link GeoLocation} longitude.
+     */
+    public static final String COLUMN_LON = "lon";
+    /**
+     * Column name for the column storing the {@link GeoLocation} speed in meters per second.
+     */
+    public static final String COLUMN_SPEED = "speed";
+    /**
+     * Column name for the column storing the {@link GeoLocation} accuracy in centimeters.
+     */
+    public static final String COLUMN_ACCURACY = "accuracy";
+    /**
+     * An array containing all the column names used by a {@link SimplifiedLocationsTable}.
+     */
+    private static final String[] COLUMNS = {BaseColumns._ID, COLUMN_MEASUREMENT_FK, COLUMN_TRACK, COLUMN_LEVEL,
+            COLUMN_GEOLOCATION_TIME, COLUMN_LAT, COLUMN_LON, COLUMN_SPEED, COLUMN_ACCURACY};
+    /**
+     * The index which allows to load the simplified {@link Track}s of a {@link Measurement} ordered by time and to
+     * replace the {@code Track}s starting at a specific {@code Track} without scanning the whole table.
+     */
+    static final String INDEX_MEASUREMENT_FK_TRACK_GEOLOCATION_TIME = "simplified_locations_measurement_fk_track_time";
+
+    /**
+     * Provides a completely initialized object as a representation of a table containing simplified {@link Track}s
+     * in the database.
+     */
+    SimplifiedLocationsTable() {
+        super(URI_PATH);
+    }
+
+    @Override
+    public void onCreate(final SQLiteDatabase database) {
+        super.onCreate(database);
+        database.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_MEASUREMENT_FK_TRACK_GEOLOCATION_TIME + " ON "
+                + getName() + " (" + COLUMN_MEASUREMENT_FK + ", " + COLUMN_TRACK + ", " + COLUMN_GEOLOCATION_TIME
+                + ");");
+    }
+
+    @Override
+    protected String getCreateStatement() {
+        return "CREATE TABLE " + getName() + " (" + BaseColumns._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + COLUMN_MEASUREMENT_FK + " INTEGER NOT NULL, " + COLUMN_TRACK + " INTEGER NOT NULL, " + COLUMN_LEVEL
+                + " INTEGER NOT NULL, " + COLUMN_GEOLOCATION_TIME + " INTEGER NOT NULL, " + COLUMN_LAT
+                + " REAL NOT NULL, " + COLUMN_LON + " REAL NOT NULL, " + COLUMN_SPEED + " REAL NOT NULL, "
+                + COLUMN_ACCURACY + " INTEGER NOT NULL);";
+    }
+
+    /**
+     * Don't forget to update the {@link DatabaseHelper}'s {@code DATABASE_VERSION} if you upgrade this table.
+     * <p>
+     * The Upgrade is automatically executed in a transaction, do not wrap the code in another transaction!
+     * <p>
+     * This upgrades are called incrementally by {@link DatabaseHelper#onUpgrade(SQLiteDatabase, int, int)}.
+     * <p>
+     * Remaining documentation: {@link CyfaceMeasurementTable#onUpgrade}
+     */
+    @Override
+    public void onUpgrade(final SQLiteDatabase database, final int fromVersion, final int toVersion) {
+
+        // noinspection SwitchStatementWithTooFewBranches - for readability
+        switch (fromVersion) {
+
+            case 18:
+                // This table was added in version 19. The simplified tracks are created when they are loaded.
+                Log.d(TAG, "Creating simplified locations table from V18");
+                onCreate(database);
+
+                break; // onUpgrade is called incrementally by DatabaseHelper
+        }
+    }
+
+    @Override
+    protected String[] getDatabaseTableColumns() {
+        return COLUMNS;
+    }
+}
@@ -0,0 +1,304 @@
+/*
+ * Copyright 2021 Cyface GmbH
+ *
+ * This file is part of the Cyface SDK for Android.
+ *
+ * The Cyface SDK for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface SDK for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface SDK for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.persistence;
+
+import java.io.Closeable;
+
+import android.database.Cursor;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import de.cyface.persistence.model.Event;
+import de.cyface.persistence.model.GeoLocation;
+import de.cyface.persistence.model.Measurement;
+import de.cyface.persistence.model.Track;
+import de.cyface.utils.Validate;
+
+/**
+ * Reads the {@link Track}s of a {@link Measurement} lazily from a {@link GeoLocation} {@link Cursor}, like a
+ * {@code Cursor}: {@link #moveToNextTrack()} moves to the next sub-track and {@link #moveToNext()} to the next
+ * {@code GeoLocation} of that sub-track. Only the {@code GeoLocation} at the current position is loaded, so the memory
+ * used does not depend on the length of the {@code Measurement}.
+ * <p>
+ * The sub-tracks are sliced at the {@link Event.EventType#LIFECYCLE_PAUSE} and
+ * {@link Event.EventType#LIFECYCLE_RESUME} {@link Event}s. The {@code GeoLocation}s captured after a pause and before
+ * the following resume event are not part of any sub-track (STAD-140). Empty sub-tracks are skipped.
+ * <p>
+ * Usage:
+ *
+ * <pre>
+ * try (final TrackReader reader = persistence.loadTrackReader(measurementId)) {
+ *     while (reader.moveToNextTrack()) {
+ *         while (reader.moveToNext()) {
+ *             draw(reader.getLat(), reader.getLon());
+ *         }
+ *     }
+ * }
+ * </pre>
+ * <p>
+ * This class is not thread safe.
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 6.2.0
+ */
+public class TrackReader implements Closeable {
+
+    /**
+     * The {@link GeoLocation}s of the {@link Measurement}, ordered by time.
+     */
+    private final Cursor geoLocationCursor;
+    /**
+     * The {@link Event}s of the {@link Measurement}, ordered by time.
+     */
+    private final Cursor eventCursor;
+    private final int latColumn;
+    private final int lonColumn;
+    private final int timestampColumn;
+    private final int speedColumn;
+    private final int accuracyColumn;
+    private final int eventTypeColumn;
+    private final int eventTimestampColumn;
+    /**
+     * {@code True} if the {@link #geoLocationCursor} was moved to its first entry.
+     */
+    private boolean started;
+    /**
+     * {@code True} if the reader is positioned within a sub-track.
+     */
+    private boolean inTrack;
+    /**
+     * {@code True} if the {@link #geoLocationCursor} points to the first {@code GeoLocation} of the current sub-track,
+     * which was not yet returned by {@link #moveToNext()}.
+     */
+    private boolean beforeFirst;
+    /**
+     * {@code True} if {@link #moveToNext()} moved the {@link #geoLocationCursor} behind the current sub-track.
+     */
+    private boolean trackExhausted;
+    /**
+     * The timestamp of the last {@code GeoLocation} which may be part of the current sub-track, i.e. the time of the
+     * {@link Event.EventType#LIFECYCLE_PAUSE} which ends it.
+     */
+    private long trackEnd;
+    /**
+     * The timestamp of the first {@code GeoLocation} which may be part of the next sub-track, i.e. the time of the
+     * {@link Event.EventType#LIFECYCLE_RESUME} which follows the current sub-track.
+     */
+    private long nextTrackStart;
+    /**
+     * The time of the last {@link Event.EventType#LIFECYCLE_PAUSE} read from the {@link #eventCursor}.
+     */
+    @Nullable
+    private Long pauseEventTime;
+
+    /**
+     * Creates a new reader which takes over the provided {@link Cursor}s and closes them on {@link #close()}.
+     *
+     * @param geoLocationCursor The {@link GeoLocation}s of the {@link Measurement}, ordered by time.
+     * @param eventCursor The {@link Event}s of the {@link Measurement}, ordered by time.
+     */
+    TrackReader(@NonNull final Cursor geoLocationCursor, @NonNull final Cursor eventCursor) {
+        this.geoLocationCursor = geoLocationCursor;
+        this.eventCursor = eventCursor;
+        this.latColumn = geoLocationCursor.getColumnIndex(GeoLocationsTable.COLUMN_LAT);
+        this.lonColumn = geoLocationCursor.getColumnIndex(GeoLocationsTable.COLUMN_LON);
+        this.timestampColumn = geoLocationCursor.getColumnIndex(GeoLocationsTable.COLUMN_GEOLOCATION_TIME);
+        this.speedColumn = geoLocationCursor.getColumnIndex(GeoLocationsTable.COLUMN_SPEED);
+        this.accuracyColumn = geoLocationCursor.getColumnIndex(GeoLocationsTable.COLUMN_ACCURACY);
+        this.eventTypeColumn = eventCursor.getColumnIndex(EventTable.COLUMN_TYPE);
+        this.eventTimestampColumn = eventCursor.getColumnIndex(EventTable.COLUMN_TIMESTAMP);
+    }
+
+    /**
+     * Moves the reader to the next non-empty sub-track. The reader is positioned before the first {@code GeoLocation}
+     * of that sub-track. The {@code GeoLocation}s of the current sub-track which were not read are skipped.
+     *
+     * @return {@code False} if there is no further sub-track.
+     */
+    public boolean moveToNextTrack() {
+        if (!started) {
+            started = true;
+            if (!geoLocationCursor.moveToFirst()) {
+                return false;
+            }
+        } else if (inTrack) {
+            // Skip the rest of the current sub-track and the locations captured while paused
+            if (!trackExhausted) {
+                while (geoLocationCursor.moveToNext() && getTimestamp() <= trackEnd) {
+                    // Nothing to do
+                }
+            }
+            skipBefore(nextTrackStart);
+            inTrack = false;
+        }
+
+        while (!geoLocationCursor.isAfterLast()) {
+            // The tail sub-track, which ends at LIFECYCLE_STOP, contains all remaining locations
+            if (!moveToNextResumeEvent()) {
+                return startTrack(Long.MAX_VALUE, Long.MAX_VALUE);
+            }
+            Validate.notNull(pauseEventTime);
+            final long resumeEventTime = eventCursor.getLong(eventTimestampColumn);
+            if (getTimestamp() <= pauseEventTime) {
+                return startTrack(pauseEventTime, resumeEventTime);
+            }
+            // Empty sub-track: ignore locations between pause and resume event (STAD-140)
+            skipBefore(resumeEventTime);
+        }
+        return false;
+    }
+
+    /**
+     * Moves the reader to the next {@code GeoLocation} of the current sub-track.
+     *
+     * @return {@code False} if there is no further {@code GeoLocation} in the current sub-track.
+     */
+    public boolean moveToNext() {
+        if (!inTrack || trackExhausted) {
+            return false;
+        }
+        if (beforeFirst) {
+            beforeFirst = false;
+            return true;
+        }
+        if (!geoLocationCursor.moveToNext() || getTimestamp() > trackEnd) {
+            trackExhausted = true;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return The latitude of the current {@code GeoLocation}.
+     */
+    public double getLat() {
+        return geoLocationCursor.getDouble(latColumn);
+    }
+
+    /**
+     * @return The longitude of the current {@code GeoLocation}.
+     */
+    public double getLon() {
+        return geoLocationCursor.getDouble(lonColumn);
+    }
+
+    /**
+     * @return The timestamp of the current {@code GeoLocation} in milliseconds since 1.1.1970.
+     */
+    public long getTimestamp() {
+        return geoLocationCursor.getLong(timestampColumn);
+    }
+
+    /**
+     * @return The speed of the current {@code GeoLocation} in meters per second.
+     */
+    public double getSpeed() {
+        return geoLocationCursor.getDouble(speedColumn);
+    }
+
+    /**
+     * @return The accuracy of the current {@code GeoLocation}.
+     */
+    public float getAccuracy() {
+        return geoLocationCursor.getFloat(accuracyColumn);
+    }
+
+    /**
+     * Loads the current {@code GeoLocation} as object. Use the primitive getters like {@link #getLat()} to avoid the
+     * allocation.
+     *
+     * @return The current {@code GeoLocation}.
+     */
+    @NonNull
+    public GeoLocation getGeoLocation() {
+        return new GeoLocation(getLat(), getLon(), getTimestamp(), getSpeed(), getAccuracy());
+    }
+
+    /**
+     * Loads the current sub-track as {@link Track}. The reader is afterwards positioned at the last
+     * {@code GeoLocation} of the sub-track.
+     *
+     * @return The remaining {@code GeoLocation}s of the current sub-track.
+     */
+    @NonNull
+    public Track loadTrack() {
+        final Track track = new Track();
+        while (moveToNext()) {
+            track.add(getGeoLocation());
+        }
+        return track;
+    }
+
+    @Override
+    public void close() {
+        geoLocationCursor.close();
+        eventCursor.close();
+    }
+
+    /**
+     * Positions the reader before the first {@code GeoLocation} of a sub-track. The {@link #geoLocationCursor} must
+     * point to that {@code GeoLocation}.
+     *
+     * @param trackEnd The timestamp of the last {@code GeoLocation} which may be part of the sub-track.
+     * @param nextTrackStart The timestamp of the first {@code GeoLocation} which may be part of the next sub-track.
+     * @return {@code True}
+     */
+    private boolean startTrack(final long trackEnd, final long nextTrackStart) {
+        this.trackEnd = trackEnd;
+        this.nextTrackStart = nextTrackStart;
+        this.inTrack = true;
+        this.beforeFirst = true;
+        this.trackExhausted = false;
+        return true;
+    }
+
+    /**
+     * Moves the {@link #eventCursor} to the next {@link Event.EventType#LIFECYCLE_RESUME} and captures the time of
+     * the {@link Event.EventType#LIFECYCLE_PAUSE} before it.
+     *
+     * @return {@code False} if there is no further resume event.
+     */
+    private boolean moveToNextResumeEvent() {
+        while (eventCursor.moveToNext()) {
+            final Event.EventType eventType = Event.EventType.valueOf(eventCursor.getString(eventTypeColumn));
+            if (eventType == Event.EventType.LIFECYCLE_RESUME) {
+                return true;
+            }
+            if (eventType == Event.EventType.LIFECYCLE_PAUSE) {
+                pauseEventTime = eventCursor.getLong(eventTimestampColumn);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Moves the {@link #geoLocationCursor} to the first {@code GeoLocation} starting at {@param timestamp}.
+     * <p>
+     * If there is no such {@code GeoLocation} then the cursor points to {@link Cursor#isAfterLast()}.
+     *
+     * @param timestamp the Unix timestamp, e.g. of {@link Event.EventType#LIFECYCLE_RESUME}
+     */
+    private void skipBefore(final long timestamp) {
+        while (!geoLocationCursor.isAfterLast() && getTimestamp() < timestamp) {
+            geoLocationCursor.moveToNext();
+        }
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2021 Cyface GmbH
+ *
+ * This file is part of the Cyface SDK for Android.
+ *
+ * The Cyface SDK for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface SDK for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface SDK for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.persistence;
+
+import androidx.annotation.NonNull;
+
+import de.cyface.persistence.model.GeoLocation;
+import de.cyface.persistence.model.Track;
+import de.cyface.utils.Validate;
+
+/**
+ * Simplifies a {@link Track} with the Douglas-Peucker algorithm for all {@link #LEVEL_TOLERANCES} at once.
+ * <p>
+ * Instead of simplifying the {@code Track} once per tolerance, the algorithm is executed once and records for each
+ * {@link GeoLocation} the largest tolerance at which it is still kept. As Douglas-Peucker only splits a segment at a
+ * {@code GeoLocation} if it also split all enclosing segments, a {@code GeoLocation} is kept at tolerance {@code t} if
+ * this value is larger than {@code t}. Thus, the result for each tolerance is the same as simplifying the
+ * {@code Track} with that tolerance and the levels are nested: each level contains all {@code GeoLocation}s of the
+ * coarser levels.
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 6.2.0
+ */
+final class TrackSimplifier {
+
+    /**
+     * The maximal distance in meters between the simplified and the original {@link Track} of each level, from the
+     * finest level {@code 0} to the coarsest level.
+     */
+    static final double[] LEVEL_TOLERANCES = {2.0, 5.0, 10.0, 20.0, 50.0, 100.0, 200.0};
+    /**
+     * The level of {@link GeoLocation}s which are not part of any simplified level.
+     */
+    static final int NO_LEVEL = -1;
+    /**
+     * The mean earth radius in meters used to project the coordinates.
+     */
+    private static final double EARTH_RADIUS = 6_371_000.0;
+    /**
+     * The meters per pixel at the equator at zoom level {@code 0} of a map with tiles of 256 pixels, as used by the
+     * common web mercator maps.
+     */
+    private static final double METERS_PER_PIXEL_AT_ZOOM_ZERO = 156_543.03392;
+
+    /**
+     * Utility class, no instances.
+     */
+    private TrackSimplifier() {
+        // Nothing to do
+    }
+
+    /**
+     * Calculates the coarsest level each {@link GeoLocation} of a {@link Track} is part of.
+     * <p>
+     * The first and the last {@code GeoLocation} are part of all levels.
+     *
+     * @param latitudes The latitudes of the {@code GeoLocation}s of the {@code Track}, ordered by time.
+     * @param longitudes The longitudes of the {@code GeoLocation}s of the {@code Track}, ordered by time.
+     * @param size The number of {@code GeoLocation}s in the arrays.
+     * @return The index of the coarsest level in {@link #LEVEL_TOLERANCES} for each {@code GeoLocation} or
+     *         {@link #NO_LEVEL} if it's not part of any level.
+     */
+    @NonNull
+    static int[] levels(@NonNull final double[] latitudes, @NonNull final double[] longitudes, final int size) {
+        Validate.isTrue(latitudes.length >= size && longitudes.length >= size);
+        final int[] levels = new int[size];
+        if (size == 0) {
+            return levels;
+        }
+
+        // Project to a local plane in meters. This is precise enough for the extent of a Track.
+        final double cosLat = Math.cos(Math.toRadians(latitudes[0]));
+        final double[] x = new double[size];
+        final double[] y = new double[size];
+        for (int i = 0; i < size; i++) {
+            x[i] = Math.toRadians(longitudes[i]) * cosLat * EARTH_RADIUS;
+            y[i] = Math.toRadians(latitudes[i]) * EARTH_RADIUS;
+        }
+
+        // The largest tolerance at which each GeoLocation is kept
+        final double[] significance = new double[size];
+        significance[0] = Double.POSITIVE_INFINITY;
+        significance[size - 1] = Double.POSITIVE_INFINITY;
+
+        // Iterative instead of recursive, so long Tracks can't overflow the stack. Each entry is a segment to split.
+        final int[] firstStack = new int[size];
+        final int[] lastStack = new int[size];
+        int stackSize = 0;
+        if (size > 2) {
+            firstStack[stackSize] = 0;
+            lastStack[stackSize] = size - 1;
+            stackSize++;
+        }
+        while (stackSize > 0) {
+            stackSize--;
+            final int first = firstStack[stackSize];
+            final int last = lastStack[stackSize];
+
+            int farthest = first;
+            double maxDistance = -1.0;
+            for (int i = first + 1; i < last; i++) {
+                final double distance = distanceToSegment(x[i], y[i], x[first], y[first], x[last], y[last]);
+                if (distance > maxDistance) {
+                    maxDistance = distance;
+                    farthest = i;
+                }
+            }
+            // A GeoLocation is only kept if the segment it splits is kept, i.e. if both ends of the segment are kept
+            final double segmentSignificance = Math.min(significance[first], significance[last]);
+            significance[farthest] = Math.min(maxDistance, segmentSignificance);
+
+            if (farthest - first > 1) {
+                firstStack[stackSize] = first;
+                lastStack[stackSize] = farthest;
+                stackSize++;
+            }
+            if (last - farthest > 1) {
+                firstStack[stackSize] = farthest;
+                lastStack[stackSize] = last;
+                stackSize++;
+            }
+        }
+
+        for (int i = 0; i < size; i++) {
+            int level = NO_LEVEL;
+            while (level + 1 < LEVEL_TOLERANCES.length && significance[i] > LEVEL_TOLERANCES[level + 1]) {
+                level++;
+            }
+            levels[i] = level;
+        }
+        return levels;
+    }
+
+    /**
+     * Selects the coarsest level which does not deviate more than the provided tolerance from the original
+     * {@link Track}.
+     *
+     * @param tolerance The maximal distance in meters between the simplified and the original {@code Track}.
+     * @return The index of the level in {@link #LEVEL_TOLERANCES} or {@link #NO_LEVEL} if the tolerance is smaller
+     *         than the tolerance of the finest level.
+     */
+    static int levelFor(final double tolerance) {
+        int level = NO_LEVEL;
+        while (level + 1 < LEVEL_TOLERANCES.length && LEVEL_TOLERANCES[level + 1] <= tolerance) {
+            level++;
+        }
+        return level;
+    }
+
+    /**
+     * Calculates the tolerance which is not visible on a web mercator map, i.e. the size of one pixel.
+     *
+     * @param zoomLevel The zoom level of the map, e.g. {@code 0} for the whole world and {@code 18} for streets.
+     * @param latitude The latitude at which the map is shown.
+     * @return The tolerance in meters.
+     */
+    static double toleranceForZoomLevel(final int zoomLevel, final double latitude) {
+        Validate.isTrue(zoomLevel >= 0, "Illegal argument: zoomLevel must not be negative");
+        return METERS_PER_PIXEL_AT_ZOOM_ZERO * Math.cos(Math.toRadians(latitude)) / Math.pow(2, zoomLevel);
+    }
+
+    /**
+     * Calculates the distance between a point and a segment in a plane.
+     *
+     * @return The distance in the unit of the coordinates.
+     */
+    private static double distanceToSegment(final double x, final double y, final double startX, final double startY,
+            final double endX, final double endY) {
+        final double dx = endX - startX;
+        final double dy = endY - startY;
+        final double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared == 0.0 ? 0.0 : ((x - startX) * dx + (y - startY) * dy) / lengthSquared;
+        t = Math.max(0.0, Math.min(1.0, t));
+        return Math.hypot(x - (startX + t * dx), y - (startY + t * dy));
+    }
+}
@@ -0,0 +1,516 @@
+/*
+ * Copyright 2021 Cyface GmbH
+ *
+ * This file is part of the Cyface SDK for Android.
+ *
+ * The Cyface SDK for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface SDK for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface SDK for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.persistence;
+
+import java.util.List;
+
+import android.content.ContentValues;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.provider.BaseColumns;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import de.cyface.persistence.model.Event;
+import de.cyface.persistence.model.GeoLocation;
+import de.cyface.persistence.model.Measurement;
+import de.cyface.utils.Validate;
+
+/**
+ * The writes executed repeatedly while a {@link Measurement} is captured, as statements which are compiled once and
+ * reused. This avoids that {@link SQLiteDatabase#insert} and {@link SQLiteDatabase#update} build and compile the SQL
+ * for each {@link GeoLocation}, {@link Event}, distance and status update.
+ * <p>
+ * Inserting {@code GeoLocation}s also updates the {@link MeasurementSummaryTable} and the {@link LocationCellsTable}
+ * in the same transaction. The simplified {@link de.cyface.persistence.model.Track}s are replaced in one transaction
+ * as well, so readers never see a partially rebuilt level.
+ * <p>
+ * The statements are bound to the {@link SQLiteDatabase} they are compiled for. As a {@link SQLiteStatement} must not
+ * be used by multiple threads at once, all methods are synchronized. To avoid deadlocks, the monitor of this object is
+ * always acquired before the database connection: the methods which write in a transaction start it themselves and
+ * must not be called while the calling thread holds a transaction.
+ *
+ * @author Armin Schnabel
+ * @version 1.4.1
+ * @since 6.2.0
+ */
+final class WriteStatements {
+
+    /**
+     * The database the statements are compiled for.
+     */
+    private final SQLiteDatabase database;
+    /**
+     * Inserts a {@link GeoLocation}.
+     */
+    private final SQLiteStatement insertGeoLocation;
+    /**
+     * Replaces the simplified {@link de.cyface.persistence.model.Track}s of a {@link Measurement} starting at a
+     * specific {@code Track} in one transaction. The arrays contain one entry per simplified {@link GeoLocation}.
+     * <p>
+     * The number of simplified {@code GeoLocation}s in the {@link MeasurementSummaryTable} is compared and set in the
+     * same transaction: if it changed since the caller loaded it, another process or thread replaced the
+     * {@code Track}s in the meantime and nothing is written.
+     *
+     * @param measurementIdentifier The id of the {@link Measurement} the {@code GeoLocation}s belong to.
+     * @param expectedLocationCount The number of simplified {@code GeoLocation}s the caller started from.
+     * @param locationCount The number of {@code GeoLocation}s which are simplified after the replacement.
+     * @param firstTrack The index of the first {@code Track} to replace.
+     * @param tracks The indices of the {@code Track}s.
+     * @param levels The indices of the coarsest levels the {@code GeoLocation}s are part of.
+     * @param timestamps The timestamps in milliseconds.
+     * @param latitudes The latitudes.
+     * @param longitudes The longitudes.
+     * @param speeds The speeds in meters per second.
+     * @param accuracies The rounded accuracies.
+     * @return The number of inserted rows or -1 if the {@code Track}s were replaced in the meantime.
+     */
+    synchronized int replaceSimplifiedLocations(final long measurementIdentifier, final int expectedLocationCount,
+            final int locationCount, final int firstTrack, @NonNull final int[] tracks, @NonNull final int[] levels,
+            @NonNull final long[] timestamps, @NonNull final double[] latitudes, @NonNull final double[] longitudes,
+            @NonNull final double[] speeds, @NonNull final int[] accuracies) {
+        final int size = tracks.length;
+        Validate.isTrue(levels.length == size && timestamps.length == size && latitudes.length == size
+                && longitudes.length == size && speeds.length == size && accuracies.length == size,
+                "Simplified GeoLocation arrays differ in length");
+
+        database.beginTransaction();
+        try {
+            replaceSimplifiedLocationCount.bindLong(1, locationCount);
+            replaceSimplifiedLocationCount.bindLong(2, measurementIdentifier);
+            replaceSimplifiedLocationCount.bindLong(3, expectedLocationCount);
+            if (replaceSimplifiedLocationCount.executeUpdateDelete() != 1) {
+                return -1;
+            }
+
+            deleteSimplifiedLocations.bindLong(1, measurementIdentifier);
+            deleteSimplifiedLocations.bindLong(2, firstTrack);
+            deleteSimplifiedLocations.executeUpdateDelete();
+            for (int i = 0; i < size; i++) {
+                insertSimplifiedLocation.bindLong(1, measurementIdentifier);
+                insertSimplifiedLocation.bindLong(2, tracks[i]);
+                insertSimplifiedLocation.bindLong(3, levels[i]);
+                insertSimplifiedLocation.bindLong(4, timestamps[i]);
+                insertSimplifiedLocation.bindDouble(5, latitudes[i]);
+                insertSimplifiedLocation.bindDouble(6, longitudes[i]);
+                insertSimplifiedLocation.bindDouble(7, speeds[i]);
+                insertSimplifiedLocation.bindLong(8, accuracies[i]);
+                Validate.isTrue(insertSimplifiedLocation.executeInsert() != -1,
+                        "Failed to insert simplified GeoLocation");
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+        return size;
+    }
+
+    /**
+     * Inserts an {@link Event}.
+     */
+    private final SQLiteStatement insertEvent;
+    /**
+     * Updates the distance of a {@link Measurement}.
+     */
+    private final SQLiteStatement updateDistance;
+    /**
+     * Updates the status of a {@link Measurement}.
+     */
+    private final SQLiteStatement updateStatus;
+    /**
+     * Creates the {@link MeasurementSummaryTable} row of a {@link Measurement} if it does not exist yet.
+     */
+    private final SQLiteStatement insertSummary;
+    /**
+     * Adds the values of new {@link GeoLocation}s to the {@link MeasurementSummaryTable} row of a {@link Measurement}.
+     */
+    private final SQLiteStatement addToSummary;
+    /**
+     * Creates the {@link LocationCellsTable} row of a {@link Measurement} and cell if it does not exist yet.
+     */
+    private final SQLiteStatement insertCell;
+    /**
+     * Adds the values of new {@link GeoLocation}s to the {@link LocationCellsTable} row of a {@link Measurement} and
+     * cell.
+     */
+    private final SQLiteStatement addToCell;
+    /**
+     * Sets the number of simplified {@link GeoLocation}s of a {@link Measurement} if it still has the expected value.
+     */
+    private final SQLiteStatement replaceSimplifiedLocationCount;
+    /**
+     * Deletes the simplified {@link GeoLocation}s of a {@link Measurement} starting at a specific
+     * {@link de.cyface.persistence.model.Track}.
+     */
+    private final SQLiteStatement deleteSimplifiedLocations;
+    /**
+     * Inserts a simplified {@link GeoLocation}.
+     */
+    private final SQLiteStatement insertSimplifiedLocation;
+
+    /**
+     * Compiles the statements.
+     *
+     * @param database The database to compile the statements for.
+     */
+    WriteStatements(@NonNull final SQLiteDatabase database) {
+        this.database = database;
+        this.insertGeoLocation = database.compileStatement("INSERT INTO " + GeoLocationsTable.URI_PATH + " ("
+                + GeoLocationsTable.COLUMN_GEOLOCATION_TIME + ", " + GeoLocationsTable.COLUMN_LAT + ", "
+                + GeoLocationsTable.COLUMN_LON + ", " + GeoLocationsTable.COLUMN_SPEED + ", "
+                + GeoLocationsTable.COLUMN_ACCURACY + ", " + GeoLocationsTable.COLUMN_MEASUREMENT_FK
+                + ") VALUES (?, ?, ?, ?, ?, ?);");
+        this.insertEvent = database.compileStatement("INSERT INTO " + EventTable.URI_PATH + " ("
+                + EventTable.COLUMN_TIMESTAMP + ", " + EventTable.COLUMN_TYPE + ", " + EventTable.COLUMN_MEASUREMENT_FK
+                + ", " + EventTable.COLUMN_VALUE + ") VALUES (?, ?, ?, ?);");
+        this.updateDistance = database.compileStatement("UPDATE " + MeasurementTable.URI_PATH + " SET "
+                + MeasurementTable.COLUMN_DISTANCE + " = ? WHERE " + BaseColumns._ID + " = ?;");
+        this.updateStatus = database.compileStatement("UPDATE " + MeasurementTable.URI_PATH + " SET "
+                + MeasurementTable.COLUMN_STATUS + " = ? WHERE " + BaseColumns._ID + " = ?;");
+        this.insertSummary = database.compileStatement("INSERT OR IGNORE INTO " + MeasurementSummaryTable.URI_PATH
+                + " (" + MeasurementSummaryTable.COLUMN_MEASUREMENT_FK + ") VALUES (?);");
+        // All expressions of an UPDATE see the values before the update. The values are null in a new row.
+        final String isEmpty = MeasurementSummaryTable.COLUMN_LOCATION_COUNT + " = 0";
+        final String isNewStart = isEmpty + " OR ?1 < " + MeasurementSummaryTable.COLUMN_START_TIME;
+        final String isNewEnd = isEmpty + " OR ?4 >= " + MeasurementSummaryTable.COLUMN_END_TIME;
+        this.addToSummary = database.compileStatement("UPDATE " + MeasurementSummaryTable.URI_PATH + " SET "
+                + MeasurementSummaryTable.COLUMN_START_TIME + " = " + caseWhen(isNewStart, "?1",
+                        MeasurementSummaryTable.COLUMN_START_TIME)
+                + ", " + MeasurementSummaryTable.COLUMN_START_LAT + " = " + caseWhen(isNewStart, "?2",
+                        MeasurementSummaryTable.COLUMN_START_LAT)
+                + ", " + MeasurementSummaryTable.COLUMN_START_LON + " = " + caseWhen(isNewStart, "?3",
+                        MeasurementSummaryTable.COLUMN_START_LON)
+                + ", " + MeasurementSummaryTable.COLUMN_END_TIME + " = " + caseWhen(isNewEnd, "?4",
+                        MeasurementSummaryTable.COLUMN_END_TIME)
+                + ", " + MeasurementSummaryTable.COLUMN_END_LAT + " = " + caseWhen(isNewEnd, "?5",
+                        MeasurementSummaryTable.COLUMN_END_LAT)
+                + ", " + MeasurementSummaryTable.COLUMN_END_LON + " = " + caseWhen(isNewEnd, "?6",
+                        MeasurementSummaryTable.COLUMN_END_LON)
+                + ", " + MeasurementSummaryTable.COLUMN_MIN_LAT + " = " + caseWhen(isEmpty, "?7",
+                        "MIN(" + MeasurementSummaryTable.COLUMN_MIN_LAT + ", ?7)")
+                + ", " + MeasurementSummaryTable.COLUMN_MAX_LAT + " = " + caseWhen(isEmpty, "?8",
+                        "MAX(" + MeasurementSummaryTable.COLUMN_MAX_LAT + ", ?8)")
+                + ", " + MeasurementSummaryTable.COLUMN_MIN_LON + " = " + caseWhen(isEmpty, "?9",
+                        "MIN(" + MeasurementSummaryTable.COLUMN_MIN_LON + ", ?9)")
+                + ", " + MeasurementSummaryTable.COLUMN_MAX_LON + " = " + caseWhen(isEmpty, "?10",
+                        "MAX(" + MeasurementSummaryTable.COLUMN_MAX_LON + ", ?10)")
+                + ", " + MeasurementSummaryTable.COLUMN_LOCATION_COUNT + " = "
+                + MeasurementSummaryTable.COLUMN_LOCATION_COUNT + " + ?11, " + MeasurementSummaryTable.COLUMN_SPEED_SUM
+                + " = " + MeasurementSummaryTable.COLUMN_SPEED_SUM + " + ?12 WHERE "
+                + MeasurementSummaryTable.COLUMN_MEASUREMENT_FK + " = ?13;");
+        // The row is created with the times of the new GeoLocations, so MIN and MAX are correct for new rows
+        this.insertCell = database.compileStatement("INSERT OR IGNORE INTO " + LocationCellsTable.URI_PATH + " ("
+                + LocationCellsTable.COLUMN_MEASUREMENT_FK + ", " + LocationCellsTable.COLUMN_LAT_CELL + ", "
+                + LocationCellsTable.COLUMN_LON_CELL + ", " + LocationCellsTable.COLUMN_LOCATION_COUNT + ", "
+                + LocationCellsTable.COLUMN_START_TIME + ", " + LocationCellsTable.COLUMN_END_TIME
+                + ") VALUES (?, ?, ?, 0, ?, ?);");
+        this.addToCell = database.compileStatement("UPDATE " + LocationCellsTable.URI_PATH + " SET "
+                + LocationCellsTable.COLUMN_LOCATION_COUNT + " = " + LocationCellsTable.COLUMN_LOCATION_COUNT
+                + " + ?1, " + LocationCellsTable.COLUMN_START_TIME + " = MIN(" + LocationCellsTable.COLUMN_START_TIME
+                + ", ?2), " + LocationCellsTable.COLUMN_END_TIME + " = MAX(" + LocationCellsTable.COLUMN_END_TIME
+                + ", ?3) WHERE " + LocationCellsTable.COLUMN_LAT_CELL + " = ?4 AND "
+                + LocationCellsTable.COLUMN_LON_CELL + " = ?5 AND " + LocationCellsTable.COLUMN_MEASUREMENT_FK
+                + " = ?6;");
+        this.replaceSimplifiedLocationCount = database.compileStatement("UPDATE " + MeasurementSummaryTable.URI_PATH
+                + " SET " + MeasurementSummaryTable.COLUMN_SIMPLIFIED_LOCATION_COUNT + " = ?1 WHERE "
+                + MeasurementSummaryTable.COLUMN_MEASUREMENT_FK + " = ?2 AND "
+                + MeasurementSummaryTable.COLUMN_SIMPLIFIED_LOCATION_COUNT + " = ?3;");
+        this.deleteSimplifiedLocations = database.compileStatement("DELETE FROM " + SimplifiedLocationsTable.URI_PATH
+                + " WHERE " + SimplifiedLocationsTable.COLUMN_MEASUREMENT_FK + " = ? AND "
+                + SimplifiedLocationsTable.COLUMN_TRACK + " >= ?;");
+        this.insertSimplifiedLocation = database.compileStatement("INSERT INTO " + SimplifiedLocationsTable.URI_PATH
+                + " (" + SimplifiedLocationsTable.COLUMN_MEASUREMENT_FK + ", " + SimplifiedLocationsTable.COLUMN_TRACK
+                + ", " + SimplifiedLocationsTable.COLUMN_LEVEL + ", " + SimplifiedLocationsTable.COLUMN_GEOLOCATION_TIME
+                + ", " + SimplifiedLocationsTable.COLUMN_LAT + ", " + SimplifiedLocationsTable.COLUMN_LON + ", "
+                + SimplifiedLocationsTable.COLUMN_SPEED + ", " + SimplifiedLocationsTable.COLUMN_ACCURACY
+                + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?);");
+    }
+
+    /**
+     * @param database The database to check.
+     * @return {@code true} if the statements are compiled for the provided database.
+     */
+    boolean isFor(@NonNull final SQLiteDatabase database) {
+        return this.database == database;
+    }
+
+    /**
+     * Inserts {@link GeoLocation}s in one transaction. The arrays contain one entry per {@code GeoLocation}.
+     *
+     * @param measurementIdentifier The id of the {@link Measurement} the {@code GeoLocation}s belong to.
+     * @param timestamps The timestamps in milliseconds.
+     * @param latitudes The latitudes.
+     * @param longitudes The longitudes.
+     * @param speeds The speeds in meters per second.
+     * @param accuracies The rounded accuracies.
+     * @return The number of inserted rows.
+     */
+    synchronized int insertGeoLocations(final long measurementIdentifier, @NonNull final long[] timestamps,
+            @NonNull final double[] latitudes, @NonNull final double[] longitudes, @NonNull final double[] speeds,
+            @NonNull final int[] accuracies) {
+        final int size = timestamps.length;
+        Validate.isTrue(latitudes.length == size && longitudes.length == size && speeds.length == size
+                && accuracies.length == size, "GeoLocation arrays differ in length");
+
+        database.beginTransaction();
+        try {
+            for (int i = 0; i < size; i++) {
+                insertGeoLocation.bindLong(1, timestamps[i]);
+                insertGeoLocation.bindDouble(2, latitudes[i]);
+                insertGeoLocation.bindDouble(3, longitudes[i]);
+                insertGeoLocation.bindDouble(4, speeds[i]);
+                insertGeoLocation.bindLong(5, accuracies[i]);
+                insertGeoLocation.bindLong(6, measurementIdentifier);
+                Validate.isTrue(insertGeoLocation.executeInsert() != -1, "Failed to insert GeoLocation");
+            }
+            updateSummary(measurementIdentifier, timestamps, latitudes, longitudes, speeds);
+            updateCells(measurementIdentifier, timestamps, latitudes, longitudes);
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+        return size;
+    }
+
+    /**
+     * Inserts {@link GeoLocation}s provided as {@code ContentValues}, e.g. by {@code ContentResolver#insert} or
+     * {@code ContentResolver#bulkInsert}, and adds them to the summaries and cells of their {@link Measurement}s in one
+     * transaction.
+     *
+     * @param table The {@link GeoLocationsTable} to insert the rows with.
+     * @param values The values of the {@code GeoLocation}s to insert.
+     * @return The identifiers of the new rows or -1 for each row which was not inserted.
+     * @throws IllegalArgumentException If a row has no numeric value for a column which is required to update the
+     *             summary and the cells. No row is inserted in this case.
+     */
+    synchronized long[] insertGeoLocations(@NonNull final CyfaceMeasurementTable table,
+            @NonNull final List<ContentValues> values) {
+        for (int i = 0; i < values.size(); i++) {
+            final ContentValues row = values.get(i);
+            requireValue(row.getAsLong(GeoLocationsTable.COLUMN_MEASUREMENT_FK),
+                    GeoLocationsTable.COLUMN_MEASUREMENT_FK, i);
+            requireValue(row.getAsLong(GeoLocationsTable.COLUMN_GEOLOCATION_TIME),
+                    GeoLocationsTable.COLUMN_GEOLOCATION_TIME, i);
+            requireValue(row.getAsDouble(GeoLocationsTable.COLUMN_LAT), GeoLocationsTable.COLUMN_LAT, i);
+            requireValue(row.getAsDouble(GeoLocationsTable.COLUMN_LON), GeoLocationsTable.COLUMN_LON, i);
+            requireValue(row.getAsDouble(GeoLocationsTable.COLUMN_SPEED), GeoLocationsTable.COLUMN_SPEED, i);
+        }
+
+        database.beginTransaction();
+        try {
+            final long[] ret = table.insertBatch(database, values);
+            for (int i = 0; i < ret.length; i++) {
+                if (ret[i] == -1) {
+                    continue;
+                }
+                final ContentValues row = values.get(i);
+                final long measurementIdentifier = row.getAsLong(GeoLocationsTable.COLUMN_MEASUREMENT_FK);
+                final long[] timestamps = new long[] {row.getAsLong(GeoLocationsTable.COLUMN_GEOLOCATION_TIME)};
+                final double[] latitudes = new double[] {row.getAsDouble(GeoLocationsTable.COLUMN_LAT)};
+                final double[] longitudes = new double[] {row.getAsDouble(GeoLocationsTable.COLUMN_LON)};
+                updateSummary(measurementIdentifier, timestamps, latitudes, longitudes,
+                        new double[] {row.getAsDouble(GeoLocationsTable.COLUMN_SPEED)});
+                updateCells(measurementIdentifier, timestamps, latitudes, longitudes);
+            }
+            database.setTransactionSuccessful();
+            return ret;
+        } finally {
+            database.endTransaction();
+        }
+    }
+
+    /**
+     * Checks that a {@code ContentValues} row contains a value which is required to insert a {@link GeoLocation}.
+     *
+     * @param value The value as returned by {@link ContentValues#getAsLong(String)} or
+     *            {@link ContentValues#getAsDouble(String)}.
+     * @param column The name of the column of the value.
+     * @param row The index of the row within the inserted rows.
+     * @throws IllegalArgumentException If the value is {@code null}, i.e. missing or not numeric.
+     */
+    private static void requireValue(@Nullable final Number value, @NonNull final String column, final int row) {
+        if (value == null) {
+            throw new IllegalArgumentException(
+                    "Illegal argument: GeoLocation row " + row + " has no numeric value for " + column);
+        }
+    }
+
+    /**
+     * Adds {@link GeoLocation}s to the {@link MeasurementSummaryTable} row of a {@link Measurement}. The values of the
+     * {@code GeoLocation}s are aggregated first, so there is only one update per call.
+     * <p>
+     * Call this in the transaction which inserts the {@code GeoLocation}s.
+     *
+     * @param measurementIdentifier The id of the {@link Measurement} the {@code GeoLocation}s belong to.
+     * @param timestamps The timestamps in milliseconds.
+     * @param latitudes The latitudes.
+     * @param longitudes The longitudes.
+     * @param speeds The speeds in meters per second.
+     */
+    private void updateSummary(final long measurementIdentifier, @NonNull final long[] timestamps,
+            @NonNull final double[] latitudes, @NonNull final double[] longitudes, @NonNull final double[] speeds) {
+        final int size = timestamps.length;
+        if (size == 0) {
+            return;
+        }
+
+        // Of multiple GeoLocations with the same timestamp, the first inserted is the start and the last the end
+        int start = 0;
+        int end = 0;
+        double minLat = latitudes[0];
+        double maxLat = latitudes[0];
+        double minLon = longitudes[0];
+        double maxLon = longitudes[0];
+        double speedSum = 0.0;
+        for (int i = 0; i < size; i++) {
+            if (timestamps[i] < timestamps[start]) {
+                start = i;
+            }
+            if (timestamps[i] >= timestamps[end]) {
+                end = i;
+            }
+            minLat = Math.min(minLat, latitudes[i]);
+            maxLat = Math.max(maxLat, latitudes[i]);
+            minLon = Math.min(minLon, longitudes[i]);
+            maxLon = Math.max(maxLon, longitudes[i]);
+            speedSum += speeds[i];
+        }
+
+        insertSummary.bindLong(1, measurementIdentifier);
+        insertSummary.executeInsert();
+        addToSummary.bindLong(1, timestamps[start]);
+        addToSummary.bindDouble(2, latitudes[start]);
+        addToSummary.bindDouble(3, longitudes[start]);
+        addToSummary.bindLong(4, timestamps[end]);
+        addToSummary.bindDouble(5, latitudes[end]);
+        addToSummary.bindDouble(6, longitudes[end]);
+        addToSummary.bindDouble(7, minLat);
+        addToSummary.bindDouble(8, maxLat);
+        addToSummary.bindDouble(9, minLon);
+        addToSummary.bindDouble(10, maxLon);
+        addToSummary.bindLong(11, size);
+        addToSummary.bindDouble(12, speedSum);
+        addToSummary.bindLong(13, measurementIdentifier);
+        Validate.isTrue(addToSummary.executeUpdateDelete() == 1, "Failed to update measurement summary");
+    }
+
+    /**
+     * Adds {@link GeoLocation}s to the {@link LocationCellsTable} rows of a {@link Measurement}. Consecutive
+     * {@code GeoLocation}s within the same cell are aggregated first, so there is usually only one update per call.
+     * <p>
+     * Call this in the transaction which inserts the {@code GeoLocation}s.
+     *
+     * @param measurementIdentifier The id of the {@link Measurement} the {@code GeoLocation}s belong to.
+     * @param timestamps The timestamps in milliseconds.
+     * @param latitudes The latitudes.
+     * @param longitudes The longitudes.
+     */
+    private void updateCells(final long measurementIdentifier, @NonNull final long[] timestamps,
+            @NonNull final double[] latitudes, @NonNull final double[] longitudes) {
+        int first = 0;
+        while (first < timestamps.length) {
+            final int latCell = LocationCellsTable.latitudeCell(latitudes[first]);
+            final int lonCell = LocationCellsTable.longitudeCell(longitudes[first]);
+            long startTime = timestamps[first];
+            long endTime = timestamps[first];
+            int end = first + 1;
+            while (end < timestamps.length && LocationCellsTable.latitudeCell(latitudes[end]) == latCell
+                    && LocationCellsTable.longitudeCell(longitudes[end]) == lonCell) {
+                startTime = Math.min(startTime, timestamps[end]);
+                endTime = Math.max(endTime, timestamps[end]);
+                end++;
+            }
+
+            insertCell.bindLong(1, measurementIdentifier);
+            insertCell.bindLong(2, latCell);
+            insertCell.bindLong(3, lonCell);
+            insertCell.bindLong(4, startTime);
+            insertCell.bindLong(5, endTime);
+            insertCell.executeInsert();
+            addToCell.bindLong(1, end - first);
+            addToCell.bindLong(2, startTime);
+            addToCell.bindLong(3, endTime);
+            addToCell.bindLong(4, latCell);
+            addToCell.bindLong(5, lonCell);
+            addToCell.bindLong(6, measurementIdentifier);
+            Validate.isTrue(addToCell.executeUpdateDelete() == 1, "Failed to update location cell");
+            first = end;
+        }
+    }
+
+    /**
+     * Inserts an {@link Event}.
+     *
+     * @param measurementIdentifier The id of the {@link Measurement} the {@code Event} belongs to.
+     * @param type The {@link Event.EventType#getDatabaseIdentifier()}.
+     * @param timestamp The timestamp in milliseconds.
+     * @param value The optional {@link Event#getValue()}.
+     * @return The id of the inserted row or -1 if an error occurred.
+     */
+    synchronized long insertEvent(final long measurementIdentifier, @NonNull final String type, final long timestamp,
+            @Nullable final String value) {
+        insertEvent.bindLong(1, timestamp);
+        insertEvent.bindString(2, type);
+        insertEvent.bindLong(3, measurementIdentifier);
+        if (value == null) {
+            insertEvent.bindNull(4);
+        } else {
+            insertEvent.bindString(4, value);
+        }
+        return insertEvent.executeInsert();
+    }
+
+    /**
+     * Updates the distance of a {@link Measurement}.
+     *
+     * @param measurementIdentifier The id of the {@code Measurement} to update.
+     * @param distance The new distance in meters.
+     * @return The number of updated rows.
+     */
+    synchronized int updateDistance(final long measurementIdentifier, final double distance) {
+        updateDistance.bindDouble(1, distance);
+        updateDistance.bindLong(2, measurementIdentifier);
+        return updateDistance.executeUpdateDelete();
+    }
+
+    /**
+     * Updates the status of a {@link Measurement}.
+     *
+     * @param measurementIdentifier The id of the {@code Measurement} to update.
+     * @param status The {@link de.cyface.persistence.model.MeasurementStatus#getDatabaseIdentifier()}.
+     * @return The number of updated rows.
+     */
+    synchronized int updateStatus(final long measurementIdentifier, @NonNull final String status) {
+        updateStatus.bindString(1, status);
+        updateStatus.bindLong(2, measurementIdentifier);
+        return updateStatus.executeUpdateDelete();
+    }
+
+    /**
+     * @param condition The condition of the {@code CASE} expression.
+     * @param then The value if the {@code condition} is true.
+     * @param otherwise The value else.
+     * @return An SQL {@code CASE} expression.
+     */
+    private static String caseWhen(@NonNull final String condition, @NonNull final String then,
+            @NonNull final String otherwise) {
+        return "CASE WHEN " + condition + " THEN " + then + " ELSE " + otherwise + " END";
+    }
+}
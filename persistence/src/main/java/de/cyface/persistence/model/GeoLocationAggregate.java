@@ -0,0 +1,217 @@
+/*
+ * Copyright 2021 Cyface GmbH
+ *
+ * This file is part of the Cyface SDK for Android.
+ *
+ * The Cyface SDK for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface SDK for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface SDK for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.persistence.model;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Aggregated values of the {@link GeoLocation}s of a {@link Measurement} which are part of its {@link Track}s, i.e.
+ * without the {@code GeoLocation}s captured between a {@link Event.EventType#LIFECYCLE_PAUSE} and the following
+ * {@link Event.EventType#LIFECYCLE_RESUME}.
+ * <p>
+ * The values are calculated by the database, so the {@code GeoLocation}s don't have to be loaded.
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 6.2.0
+ */
+public class GeoLocationAggregate implements Parcelable {
+
+    /**
+     * The number of {@code GeoLocation}s.
+     */
+    private final int count;
+    /**
+     * The first {@code GeoLocation} or {@code null} if there is none.
+     */
+    @Nullable
+    private final GeoLocation startLocation;
+    /**
+     * The last {@code GeoLocation} or {@code null} if there is none.
+     */
+    @Nullable
+    private final GeoLocation endLocation;
+    /**
+     * The southern bound of the bounding box or {@code 0.0} if there is no {@code GeoLocation}.
+     */
+    private final double minLat;
+    /**
+     * The northern bound of the bounding box or {@code 0.0} if there is no {@code GeoLocation}.
+     */
+    private final double maxLat;
+    /**
+     * The western bound of the bounding box or {@code 0.0} if there is no {@code GeoLocation}.
+     */
+    private final double minLon;
+    /**
+     * The eastern bound of the bounding box or {@code 0.0} if there is no {@code GeoLocation}.
+     */
+    private final double maxLon;
+
+    /**
+     * Creates a new completely initialized instance of this class.
+     *
+     * @param count The number of {@code GeoLocation}s.
+     * @param startLocation The first {@code GeoLocation} or {@code null} if there is none.
+     * @param endLocation The last {@code GeoLocation} or {@code null} if there is none.
+     * @param minLat The southern bound of the bounding box.
+     * @param maxLat The northern bound of the bounding box.
+     * @param minLon The western bound of the bounding box.
+     * @param maxLon The eastern bound of the bounding box.
+     */
+    public GeoLocationAggregate(final int count, @Nullable final GeoLocation startLocation,
+            @Nullable final GeoLocation endLocation, final double minLat, final double maxLat, final double minLon,
+            final double maxLon) {
+        this.count = count;
+        this.startLocation = startLocation;
+        this.endLocation = endLocation;
+        this.minLat = minLat;
+        this.maxLat = maxLat;
+        this.minLon = minLon;
+        this.maxLon = maxLon;
+    }
+
+    /**
+     * @return The number of {@code GeoLocation}s.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @return The first {@code GeoLocation} or {@code null} if there is none.
+     */
+    @Nullable
+    public GeoLocation getStartLocation() {
+        return startLocation;
+    }
+
+    /**
+     * @return The last {@code GeoLocation} or {@code null} if there is none.
+     */
+    @Nullable
+    public GeoLocation getEndLocation() {
+        return endLocation;
+    }
+
+    /**
+     * @return The time between the first and the last {@code GeoLocation} in milliseconds or {@code 0} if there is no
+     *         {@code GeoLocation}. This includes the time the {@code Measurement} was paused.
+     */
+    public long getTimeSpan() {
+        return startLocation == null || endLocation == null ? 0L
+                : endLocation.getTimestamp() - startLocation.getTimestamp();
+    }
+
+    /**
+     * @return The southern bound of the bounding box or {@code 0.0} if there is no {@code GeoLocation}.
+     */
+    public double getMinLat() {
+        return minLat;
+    }
+
+    /**
+     * @return The northern bound of the bounding box or {@code 0.0} if there is no {@code GeoLocation}.
+     */
+    public double getMaxLat() {
+        return maxLat;
+    }
+
+    /**
+     * @return The western bound of the bounding box or {@code 0.0} if there is no {@code GeoLocation}.
+     */
+    public double getMinLon() {
+        return minLon;
+    }
+
+    /**
+     * @return The eastern bound of the bounding box or {@code 0.0} if there is no {@code GeoLocation}.
+     */
+    public double getMaxLon() {
+        return maxLon;
+    }
+
+    /*
+     * MARK: Parcelable Interface
+     */
+
+    /**
+     * Constructor as required by <code>Parcelable</code> implementation.
+     *
+     * @param in A <code>Parcel</code> that is a serialized version of a <code>GeoLocationAggregate</code>.
+     */
+    protected GeoLocationAggregate(@NonNull final Parcel in) {
+        count = in.readInt();
+        startLocation = in.readParcelable(GeoLocation.class.getClassLoader());
+        endLocation = in.readParcelable(GeoLocation.class.getClassLoader());
+        minLat = in.readDouble();
+        maxLat = in.readDouble();
+        minLon = in.readDouble();
+        maxLon = in.readDouble();
+    }
+
+    /**
+     * The <code>Parcelable</code> creator as required by the Android Parcelable specification.
+     */
+    public static final Creator<GeoLocationAggregate> CREATOR = new Creator<GeoLocationAggregate>() {
+        @Override
+        public GeoLocationAggregate createFromParcel(Parcel in) {
+            return new GeoLocationAggregate(in);
+        }
+
+        @Override
+        public GeoLocationAggregate[] newArray(int size) {
+            return new GeoLocationAggregate[size];
+        }
+    };
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        dest.writeInt(count);
+        dest.writeParcelable(startLocation, flags);
+        dest.writeParcelable(endLocation, flags);
+        dest.writeDouble(minLat);
+        dest.writeDouble(maxLat);
+        dest.writeDouble(minLon);
+        dest.writeDouble(maxLon);
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "GeoLocationAggregate{" +
+                "count=" + count +
+                ", startLocation=" + startLocation +
+                ", endLocation=" + endLocation +
+                ", minLat=" + minLat +
+                ", maxLat=" + maxLat +
+                ", minLon=" + minLon +
+                ", maxLon=" + maxLon +
+                '}';
+    }
+}
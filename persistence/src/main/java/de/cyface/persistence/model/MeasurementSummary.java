@@ -0,0 +1,245 @@
+/*
+ * Copyright 2021 Cyface GmbH
+ *
+ * This file is part of the Cyface SDK for Android.
+ *
+ * The Cyface SDK for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface SDK for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface SDK for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.persistence.model;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Summary of all {@link GeoLocation}s stored for a {@link Measurement}, which is updated while the
+ * {@code Measurement} is captured.
+ * <p>
+ * Unlike the {@link GeoLocationAggregate} this includes the {@code GeoLocation}s captured between a
+ * {@link Event.EventType#LIFECYCLE_PAUSE} and the following {@link Event.EventType#LIFECYCLE_RESUME}. Use it for
+ * overviews like a list of {@code Measurement}s and the {@code GeoLocationAggregate} where the values have to match
+ * the {@link Track}s.
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 6.2.0
+ */
+public class MeasurementSummary {
+
+    /**
+     * The device wide unique identifier of the {@code Measurement} summarized.
+     */
+    private final long measurementIdentifier;
+    /**
+     * The number of {@code GeoLocation}s.
+     */
+    private final int locationCount;
+    /**
+     * The timestamp of the first {@code GeoLocation} in milliseconds since 1.1.1970.
+     */
+    private final long startTime;
+    /**
+     * The latitude of the first {@code GeoLocation}.
+     */
+    private final double startLat;
+    /**
+     * The longitude of the first {@code GeoLocation}.
+     */
+    private final double startLon;
+    /**
+     * The timestamp of the last {@code GeoLocation} in milliseconds since 1.1.1970.
+     */
+    private final long endTime;
+    /**
+     * The latitude of the last {@code GeoLocation}.
+     */
+    private final double endLat;
+    /**
+     * The longitude of the last {@code GeoLocation}.
+     */
+    private final double endLon;
+    /**
+     * The southern bound of the bounding box.
+     */
+    private final double minLat;
+    /**
+     * The northern bound of the bounding box.
+     */
+    private final double maxLat;
+    /**
+     * The western bound of the bounding box.
+     */
+    private final double minLon;
+    /**
+     * The eastern bound of the bounding box.
+     */
+    private final double maxLon;
+    /**
+     * The average speed of the {@code GeoLocation}s in meters per second.
+     */
+    private final double averageSpeed;
+
+    /**
+     * Creates a new completely initialized instance of this class.
+     *
+     * @param measurementIdentifier The device wide unique identifier of the {@code Measurement} summarized.
+     * @param locationCount The number of {@code GeoLocation}s.
+     * @param startTime The timestamp of the first {@code GeoLocation} in milliseconds since 1.1.1970.
+     * @param startLat The latitude of the first {@code GeoLocation}.
+     * @param startLon The longitude of the first {@code GeoLocation}.
+     * @param endTime The timestamp of the last {@code GeoLocation} in milliseconds since 1.1.1970.
+     * @param endLat The latitude of the last {@code GeoLocation}.
+     * @param endLon The longitude of the last {@code GeoLocation}.
+     * @param minLat The southern bound of the bounding box.
+     * @param maxLat The northern bound of the bounding box.
+     * @param minLon The western bound of the bounding box.
+     * @param maxLon The eastern bound of the bounding box.
+     * @param averageSpeed The average speed of the {@code GeoLocation}s in meters per second.
+     */
+    public MeasurementSummary(final long measurementIdentifier, final int locationCount, final long startTime,
+            final double startLat, final double startLon, final long endTime, final double endLat,
+            final double endLon, final double minLat, final double maxLat, final double minLon, final double maxLon,
+            final double averageSpeed) {
+        this.measurementIdentifier = measurementIdentifier;
+        this.locationCount = locationCount;
+        this.startTime = startTime;
+        this.startLat = startLat;
+        this.startLon = startLon;
+        this.endTime = endTime;
+        this.endLat = endLat;
+        this.endLon = endLon;
+        this.minLat = minLat;
+        this.maxLat = maxLat;
+        this.minLon = minLon;
+        this.maxLon = maxLon;
+        this.averageSpeed = averageSpeed;
+    }
+
+    /**
+     * @return The device wide unique identifier of the {@code Measurement} summarized.
+     */
+    public long getMeasurementIdentifier() {
+        return measurementIdentifier;
+    }
+
+    /**
+     * @return The number of {@code GeoLocation}s.
+     */
+    public int getLocationCount() {
+        return locationCount;
+    }
+
+    /**
+     * @return The timestamp of the first {@code GeoLocation} in milliseconds since 1.1.1970.
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * @return The latitude of the first {@code GeoLocation}.
+     */
+    public double getStartLat() {
+        return startLat;
+    }
+
+    /**
+     * @return The longitude of the first {@code GeoLocation}.
+     */
+    public double getStartLon() {
+        return startLon;
+    }
+
+    /**
+     * @return The timestamp of the last {@code GeoLocation} in milliseconds since 1.1.1970.
+     */
+    public long getEndTime() {
+        return endTime;
+    }
+
+    /**
+     * @return The latitude of the last {@code GeoLocation}.
+     */
+    public double getEndLat() {
+        return endLat;
+    }
+
+    /**
+     * @return The longitude of the last {@code GeoLocation}.
+     */
+    public double getEndLon() {
+        return endLon;
+    }
+
+    /**
+     * @return The time between the first and the last {@code GeoLocation} in milliseconds. This includes the time the
+     *         {@code Measurement} was paused.
+     */
+    public long getDuration() {
+        return endTime - startTime;
+    }
+
+    /**
+     * @return The southern bound of the bounding box.
+     */
+    public double getMinLat() {
+        return minLat;
+    }
+
+    /**
+     * @return The northern bound of the bounding box.
+     */
+    public double getMaxLat() {
+        return maxLat;
+    }
+
+    /**
+     * @return The western bound of the bounding box.
+     */
+    public double getMinLon() {
+        return minLon;
+    }
+
+    /**
+     * @return The eastern bound of the bounding box.
+     */
+    public double getMaxLon() {
+        return maxLon;
+    }
+
+    /**
+     * @return The average speed of the {@code GeoLocation}s in meters per second.
+     */
+    public double getAverageSpeed() {
+        return averageSpeed;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "MeasurementSummary{" +
+                "measurementIdentifier=" + measurementIdentifier +
+                ", locationCount=" + locationCount +
+                ", startTime=" + startTime +
+                ", startLat=" + startLat +
+                ", startLon=" + startLon +
+                ", endTime=" + endTime +
+                ", endLat=" + endLat +
+                ", endLon=" + endLon +
+                ", minLat=" + minLat +
+                ", maxLat=" + maxLat +
+                ", minLon=" + minLon +
+                ", maxLon=" + maxLon +
+                ", averageSpeed=" + averageSpeed +
+                '}';
+    }
+}
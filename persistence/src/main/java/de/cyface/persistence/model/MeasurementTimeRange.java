@@ -0,0 +1,151 @@
+/*
+ * Copyright 2021 Cyface GmbH
+ *
+ * This file is part of the Cyface SDK for Android.
+ *
+ * The Cyface SDK for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface SDK for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface SDK for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.persistence.model;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import androidx.annotation.NonNull;
+
+/**
+ * The time range in which a {@link Measurement} captured {@link GeoLocation}s within an area, e.g. to show the
+ * {@code Measurement}s passing through the visible part of a map.
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 6.2.0
+ */
+public class MeasurementTimeRange implements Parcelable {
+
+    /**
+     * The device wide unique identifier of the {@code Measurement}.
+     */
+    private final long measurementIdentifier;
+    /**
+     * The timestamp of the first {@code GeoLocation} within the area in milliseconds since 1.1.1970.
+     */
+    private final long startTime;
+    /**
+     * The timestamp of the last {@code GeoLocation} within the area in milliseconds since 1.1.1970.
+     */
+    private final long endTime;
+    /**
+     * The number of {@code GeoLocation}s within the area.
+     */
+    private final int locationCount;
+
+    /**
+     * Creates a new completely initialized instance of this class.
+     *
+     * @param measurementIdentifier The device wide unique identifier of the {@code Measurement}.
+     * @param startTime The timestamp of the first {@code GeoLocation} within the area in milliseconds since 1.1.1970.
+     * @param endTime The timestamp of the last {@code GeoLocation} within the area in milliseconds since 1.1.1970.
+     * @param locationCount The number of {@code GeoLocation}s within the area.
+     */
+    public MeasurementTimeRange(final long measurementIdentifier, final long startTime, final long endTime,
+            final int locationCount) {
+        this.measurementIdentifier = measurementIdentifier;
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.locationCount = locationCount;
+    }
+
+    /**
+     * @return The device wide unique identifier of the {@code Measurement}.
+     */
+    public long getMeasurementIdentifier() {
+        return measurementIdentifier;
+    }
+
+    /**
+     * @return The timestamp of the first {@code GeoLocation} within the area in milliseconds since 1.1.1970.
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * @return The timestamp of the last {@code GeoLocation} within the area in milliseconds since 1.1.1970.
+     */
+    public long getEndTime() {
+        return endTime;
+    }
+
+    /**
+     * @return The number of {@code GeoLocation}s within the area.
+     */
+    public int getLocationCount() {
+        return locationCount;
+    }
+
+    /*
+     * MARK: Parcelable Interface
+     */
+
+    /**
+     * Constructor as required by <code>Parcelable</code> implementation.
+     *
+     * @param in A <code>Parcel</code> that is a serialized version of a <code>MeasurementTimeRange</code>.
+     */
+    protected MeasurementTimeRange(@NonNull final Parcel in) {
+        measurementIdentifier = in.readLong();
+        startTime = in.readLong();
+        endTime = in.readLong();
+        locationCount = in.readInt();
+    }
+
+    /**
+     * The <code>Parcelable</code> creator as required by the Android Parcelable specification.
+     */
+    public static final Creator<MeasurementTimeRange> CREATOR = new Creator<MeasurementTimeRange>() {
+        @Override
+        public MeasurementTimeRange createFromParcel(Parcel in) {
+            return new MeasurementTimeRange(in);
+        }
+
+        @Override
+        public MeasurementTimeRange[] newArray(int size) {
+            return new MeasurementTimeRange[size];
+        }
+    };
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        dest.writeLong(measurementIdentifier);
+        dest.writeLong(startTime);
+        dest.writeLong(endTime);
+        dest.writeInt(locationCount);
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "MeasurementTimeRange{" +
+                "measurementIdentifier=" + measurementIdentifier +
+                ", startTime=" + startTime +
+                ", endTime=" + endTime +
+                ", locationCount=" + locationCount +
+                '}';
+    }
+}
@@ -0,0 +1,322 @@
+/*
+ * Copyright 2021 Cyface GmbH
+ *
+ * This file is part of the Cyface SDK for Android.
+ *
+ * The Cyface SDK for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface SDK for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface SDK for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.persistence.model;
+
+import static de.cyface.persistence.serialization.ByteSizes.FLOAT_BYTES;
+import static de.cyface.persistence.serialization.ByteSizes.INT_BYTES;
+import static de.cyface.persistence.serialization.ByteSizes.LONG_BYTES;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+import androidx.annotation.NonNull;
+
+/**
+ * An immutable, columnar batch of {@link Point3d} samples such as accelerations, rotations or directions.
+ * <p>
+ * The samples are stored as one primitive array per component. A batch may be a view on a range of the arrays of
+ * another batch, which is why {@link #subBatch(int, int)} does not copy any data.
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 6.2.0
+ */
+public final class Point3dBatch {
+
+    /**
+     * A batch without any samples.
+     */
+    public static final Point3dBatch EMPTY = new Point3dBatch(new long[0], new float[0], new float[0], new float[0],
+            0, 0);
+    /**
+     * The number of bytes required to serialize one sample with {@link #writeTo(ByteBuffer)}.
+     */
+    private static final int BYTES_PER_SAMPLE = LONG_BYTES + 3 * FLOAT_BYTES;
+    /**
+     * The Unix timestamps in milliseconds of the samples.
+     */
+    private final long[] timestamps;
+    /**
+     * The x components of the samples.
+     */
+    private final float[] xs;
+    /**
+     * The y components of the samples.
+     */
+    private final float[] ys;
+    /**
+     * The z components of the samples.
+     */
+    private final float[] zs;
+    /**
+     * The index of the first sample of this batch within the arrays.
+     */
+    private final int offset;
+    /**
+     * The number of samples in this batch.
+     */
+    private final int size;
+
+    /**
+     * Creates a new batch on a range of the provided arrays. The arrays are not copied and must not be changed
+     * afterwards.
+     *
+     * @param timestamps The Unix timestamps in milliseconds of the samples.
+     * @param xs The x components of the samples.
+     * @param ys The y components of the samples.
+     * @param zs The z components of the samples.
+     * @param offset The index of the first sample of this batch within the arrays.
+     * @param size The number of samples in this batch.
+     */
+    Point3dBatch(@NonNull final long[] timestamps, @NonNull final float[] xs, @NonNull final float[] ys,
+            @NonNull final float[] zs, final int offset, final int size) {
+        if (offset < 0 || size < 0 || offset + size > timestamps.length || timestamps.length != xs.length
+                || xs.length != ys.length || ys.length != zs.length) {
+            throw new IllegalArgumentException(
+                    "Illegal argument: invalid range " + offset + "+" + size + " of " + timestamps.length);
+        }
+        this.timestamps = timestamps;
+        this.xs = xs;
+        this.ys = ys;
+        this.zs = zs;
+        this.offset = offset;
+        this.size = size;
+    }
+
+    /**
+     * Creates a new batch containing a copy of the provided {@link Point3d}s.
+     *
+     * @param points The {@code Point3d}s to copy into this batch.
+     */
+    public Point3dBatch(@NonNull final List<Point3d> points) {
+        this.size = points.size();
+        this.offset = 0;
+        this.timestamps = new long[size];
+        this.xs = new float[size];
+        this.ys = new float[size];
+        this.zs = new float[size];
+        int i = 0;
+        for (final Point3d point : points) {
+            timestamps[i] = point.getTimestamp();
+            xs[i] = point.getX();
+            ys[i] = point.getY();
+            zs[i] = point.getZ();
+            i++;
+        }
+    }
+
+    /**
+     * @return The number of samples in this batch.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param index The index of the sample within this batch.
+     * @return The Unix timestamp in milliseconds of the sample at the provided index.
+     */
+    public long getTimestamp(final int index) {
+        return timestamps[arrayIndex(index)];
+    }
+
+    /**
+     * @param index The index of the sample within this batch.
+     * @return The x component of the sample at the provided index.
+     */
+    public float getX(final int index) {
+        return xs[arrayIndex(index)];
+    }
+
+    /**
+     * @param index The index of the sample within this batch.
+     * @return The y component of the sample at the provided index.
+     */
+    public float getY(final int index) {
+        return ys[arrayIndex(index)];
+    }
+
+    /**
+     * @param index The index of the sample within this batch.
+     * @return The z component of the sample at the provided index.
+     */
+    public float getZ(final int index) {
+        return zs[arrayIndex(index)];
+    }
+
+    /**
+     * Converts an index within this batch into an index within the underlying arrays.
+     *
+     * @param index The index within this batch.
+     * @return The index within the arrays.
+     */
+    private int arrayIndex(final int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return offset + index;
+    }
+
+    /**
+     * Provides a view on a range of this batch. This does not copy any samples.
+     *
+     * @param fromIndex The low endpoint (inclusive) of the range.
+     * @param toIndex The high endpoint (exclusive) of the range.
+     * @return The view on the range.
+     */
+    @NonNull
+    public Point3dBatch subBatch(final int fromIndex, final int toIndex) {
+        if (fromIndex < 0 || toIndex > size || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException("Range: [" + fromIndex + ", " + toIndex + "), Size: " + size);
+        }
+        return new Point3dBatch(timestamps, xs, ys, zs, offset + fromIndex, toIndex - fromIndex);
+    }
+
+    /**
+     * @return The number of bytes {@link #writeTo(ByteBuffer)} writes for this batch.
+     */
+    public int serializedSize() {
+        return INT_BYTES + size * BYTES_PER_SAMPLE;
+    }
+
+    /**
+     * Writes this batch as one contiguous block of bytes: the number of samples followed by all timestamps and all x,
+     * y and z components. The {@link ByteBuffer#order()} of the provided buffer is used.
+     * <p>
+     * This format is only used to transfer batches between processes on the same device. It's not the format used to
+     * persist the samples.
+     *
+     * @param buffer The buffer to write to, starting at its current position. The position is advanced by
+     *            {@link #serializedSize()} bytes.
+     */
+    public void writeTo(@NonNull final ByteBuffer buffer) {
+        buffer.putInt(size);
+        buffer.asLongBuffer().put(timestamps, offset, size);
+        buffer.position(buffer.position() + size * LONG_BYTES);
+        buffer.asFloatBuffer().put(xs, offset, size);
+        buffer.position(buffer.position() + size * FLOAT_BYTES);
+        buffer.asFloatBuffer().put(ys, offset, size);
+        buffer.position(buffer.position() + size * FLOAT_BYTES);
+        buffer.asFloatBuffer().put(zs, offset, size);
+        buffer.position(buffer.position() + size * FLOAT_BYTES);
+    }
+
+    /**
+     * Reads a batch written by {@link #writeTo(ByteBuffer)}.
+     *
+     * @param buffer The buffer to read from, starting at its current position. The position is advanced by the number
+     *            of bytes read.
+     * @return The batch read.
+     */
+    @NonNull
+    public static Point3dBatch readFrom(@NonNull final ByteBuffer buffer) {
+        final int size = buffer.getInt();
+        if (size == 0) {
+            return EMPTY;
+        }
+        final long[] timestamps = new long[size];
+        final float[] xs = new float[size];
+        final float[] ys = new float[size];
+        final float[] zs = new float[size];
+        buffer.asLongBuffer().get(timestamps);
+        buffer.position(buffer.position() + size * LONG_BYTES);
+        buffer.asFloatBuffer().get(xs);
+        buffer.position(buffer.position() + size * FLOAT_BYTES);
+        buffer.asFloatBuffer().get(ys);
+        buffer.position(buffer.position() + size * FLOAT_BYTES);
+        buffer.asFloatBuffer().get(zs);
+        buffer.position(buffer.position() + size * FLOAT_BYTES);
+        return new Point3dBatch(timestamps, xs, ys, zs, 0, size);
+    }
+
+    /**
+     * Provides a read-only {@link List} view on the samples of this batch. The {@link Point3d} objects are only
+     * created when they are accessed, so this should only be used where the object API is required.
+     *
+     * @return The view on this batch.
+     */
+    @NonNull
+    public List<Point3d> asList() {
+        return new Point3dListView();
+    }
+
+    /*
+     * MARK: Object Methods
+     */
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (o == null || getClass() != o.getClass())
+            return false;
+
+        final Point3dBatch that = (Point3dBatch)o;
+        if (size != that.size)
+            return false;
+        for (int i = 0; i < size; i++) {
+            final int a = offset + i;
+            final int b = that.offset + i;
+            if (timestamps[a] != that.timestamps[b] || Float.compare(xs[a], that.xs[b]) != 0
+                    || Float.compare(ys[a], that.ys[b]) != 0 || Float.compare(zs[a], that.zs[b]) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = size;
+        for (int i = offset; i < offset + size; i++) {
+            result = 31 * result + (int)(timestamps[i] ^ (timestamps[i] >>> 32));
+            result = 31 * result + Float.floatToIntBits(xs[i]);
+            result = 31 * result + Float.floatToIntBits(ys[i]);
+            result = 31 * result + Float.floatToIntBits(zs[i]);
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "Point3dBatch{" + "size=" + size + '}';
+    }
+
+    /**
+     * A read-only {@link List} view on the enclosing {@link Point3dBatch}.
+     *
+     * @author Armin Schnabel
+     * @version 1.0.0
+     * @since 6.2.0
+     */
+    private final class Point3dListView extends AbstractList<Point3d> implements RandomAccess {
+
+        @Override
+        public Point3d get(final int index) {
+            return new Point3d(getX(index), getY(index), getZ(index), getTimestamp(index));
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
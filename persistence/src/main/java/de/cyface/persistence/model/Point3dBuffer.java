@@ -0,0 +1,216 @@
+/*
+ * Copyright 2021 Cyface GmbH
+ *
+ * This file is part of the Cyface SDK for Android.
+ *
+ * The Cyface SDK for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface SDK for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface SDK for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.persistence.model;
+
+import java.util.Arrays;
+
+import androidx.annotation.NonNull;
+
+/**
+ * A growable buffer for {@link Point3d} samples which stores the samples as primitive arrays (struct of arrays)
+ * instead of one object per sample.
+ * <p>
+ * Adding a sample does not allocate any objects as long as the {@link #capacity()} is not exceeded. This is used by
+ * the capturing process which receives sensor events with up to 200 Hz per sensor.
+ * <p>
+ * This class is not thread safe. The caller must synchronize the access, as the {@code CapturingProcess} does.
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 6.2.0
+ */
+public final class Point3dBuffer {
+
+    /**
+     * The capacity used when no capacity is specified.
+     */
+    public static final int DEFAULT_CAPACITY = 256;
+    /**
+     * The Unix timestamps in milliseconds of the samples.
+     */
+    private long[] timestamps;
+    /**
+     * The x components of the samples.
+     */
+    private float[] xs;
+    /**
+     * The y components of the samples.
+     */
+    private float[] ys;
+    /**
+     * The z components of the samples.
+     */
+    private float[] zs;
+    /**
+     * The number of samples currently stored in this buffer.
+     */
+    private int size;
+
+    /**
+     * Creates a new empty buffer with the {@link #DEFAULT_CAPACITY}.
+     */
+    public Point3dBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a new empty buffer.
+     *
+     * @param capacity The number of samples which can be added before the buffer needs to grow.
+     */
+    public Point3dBuffer(final int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Illegal argument: capacity was less than 1: " + capacity);
+        }
+        this.timestamps = new long[capacity];
+        this.xs = new float[capacity];
+        this.ys = new float[capacity];
+        this.zs = new float[capacity];
+        this.size = 0;
+    }
+
+    /**
+     * Adds a sample to the end of this buffer.
+     *
+     * @param timestamp The Unix timestamp in milliseconds at which the sample was measured.
+     * @param x The x component of the sample.
+     * @param y The y component of the sample.
+     * @param z The z component of the sample.
+     */
+    public void add(final long timestamp, final float x, final float y, final float z) {
+        if (size == timestamps.length) {
+            grow();
+        }
+        timestamps[size] = timestamp;
+        xs[size] = x;
+        ys[size] = y;
+        zs[size] = z;
+        size++;
+    }
+
+    /**
+     * Adds a {@link Point3d} to the end of this buffer.
+     *
+     * @param point The {@code Point3d} to add.
+     */
+    public void add(@NonNull final Point3d point) {
+        add(point.getTimestamp(), point.getX(), point.getY(), point.getZ());
+    }
+
+    /**
+     * Doubles the capacity of this buffer. This is only required when more samples arrive between two hand-offs than
+     * in the previous interval.
+     */
+    private void grow() {
+        final int newCapacity = timestamps.length * 2;
+        timestamps = Arrays.copyOf(timestamps, newCapacity);
+        xs = Arrays.copyOf(xs, newCapacity);
+        ys = Arrays.copyOf(ys, newCapacity);
+        zs = Arrays.copyOf(zs, newCapacity);
+    }
+
+    /**
+     * Removes all samples from this buffer. The capacity is kept so that the buffer can be refilled without
+     * allocations.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * @return The number of samples stored in this buffer.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return The number of samples which can be stored without growing the buffer.
+     */
+    public int capacity() {
+        return timestamps.length;
+    }
+
+    /**
+     * @param index The index of the sample.
+     * @return The Unix timestamp in milliseconds of the sample at the provided index.
+     */
+    public long getTimestamp(final int index) {
+        checkIndex(index);
+        return timestamps[index];
+    }
+
+    /**
+     * @param index The index of the sample.
+     * @return The x component of the sample at the provided index.
+     */
+    public float getX(final int index) {
+        checkIndex(index);
+        return xs[index];
+    }
+
+    /**
+     * @param index The index of the sample.
+     * @return The y component of the sample at the provided index.
+     */
+    public float getY(final int index) {
+        checkIndex(index);
+        return ys[index];
+    }
+
+    /**
+     * @param index The index of the sample.
+     * @return The z component of the sample at the provided index.
+     */
+    public float getZ(final int index) {
+        checkIndex(index);
+        return zs[index];
+    }
+
+    /**
+     * Makes sure the provided index points to a sample stored in this buffer.
+     *
+     * @param index The index to check.
+     */
+    private void checkIndex(final int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    /**
+     * Hands the samples of this buffer over as an immutable {@link Point3dBatch}. The arrays are not copied: this
+     * buffer must not be changed anymore afterwards, which is why the caller has to replace it with a new buffer.
+     *
+     * @return The batch containing the samples of this buffer.
+     */
+    @NonNull
+    public Point3dBatch toBatch() {
+        return new Point3dBatch(timestamps, xs, ys, zs, 0, size);
+    }
+
+    /*
+     * MARK: Object Methods
+     */
+
+    @Override
+    public String toString() {
+        return "Point3dBuffer{" + "size=" + size + '}';
+    }
+}
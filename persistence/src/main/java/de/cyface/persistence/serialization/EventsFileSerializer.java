@@ -21,6 +21,7 @@ package de.cyface.persistence.serialization;
 import static de.cyface.persistence.AbstractCyfaceMeasurementTable.DATABASE_QUERY_LIMIT;
 import static de.cyface.persistence.Constants.DEFAULT_CHARSET;
 import static de.cyface.persistence.Constants.TAG;
+import static de.cyface.persistence.MeasurementContentProviderClient.BEFORE_FIRST_PAGE;
 import static de.cyface.persistence.model.Event.EventType.LIFECYCLE_PAUSE;
 import static de.cyface.persistence.model.Event.EventType.LIFECYCLE_RESUME;
 import static de.cyface.persistence.model.Event.EventType.LIFECYCLE_START;
@@ -42,6 +43,7 @@ import android.content.ContentResolver;
 import android.database.Cursor;
 import android.net.Uri;
 import android.os.RemoteException;
+import android.provider.BaseColumns;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
@@ -80,7 +82,7 @@ import de.cyface.utils.Validate;
  * WARNING: This implementation loads all data from one measurement into memory. So be careful with large measurements.
  *
  * @author Armin Schnabel
- * @version 1.0.1
+ * @version 1.1.0
  * @since 5.0.0-beta1
  */
 public class EventsFileSerializer {
@@ -259,9 +261,21 @@ public class EventsFileSerializer {
 
             // Serialize Events
             final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            for (int startIndex = 0; startIndex < eventCount; startIndex += DATABASE_QUERY_LIMIT) {
-                eventsCursor = loader.loadEvents(startIndex, DATABASE_QUERY_LIMIT);
+            // Keyset pagination: each page starts after the last Event of the previous page
+            long afterTimestamp = BEFORE_FIRST_PAGE;
+            long afterId = BEFORE_FIRST_PAGE;
+            for (int loaded = 0; loaded < eventCount; loaded += eventsCursor.getCount()) {
+                if (eventsCursor != null) {
+                    eventsCursor.close();
+                }
+                eventsCursor = loader.loadEvents(afterTimestamp, afterId, DATABASE_QUERY_LIMIT);
+                if (eventsCursor.getCount() == 0) {
+                    break; // Events were deleted after counting
+                }
                 outputStream.write(serializeEvents(eventsCursor));
+                eventsCursor.moveToLast();
+                afterTimestamp = eventsCursor.getLong(eventsCursor.getColumnIndex(EventTable.COLUMN_TIMESTAMP));
+                afterId = eventsCursor.getLong(eventsCursor.getColumnIndex(BaseColumns._ID));
             }
             serializedEvents = outputStream.toByteArray();
             Log.v(TAG, String.format("Serialized %s Events for synchronization.",
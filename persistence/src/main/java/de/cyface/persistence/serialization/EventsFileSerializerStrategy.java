@@ -20,6 +20,7 @@ package de.cyface.persistence.serialization;
 
 import static de.cyface.persistence.AbstractCyfaceMeasurementTable.DATABASE_QUERY_LIMIT;
 import static de.cyface.persistence.Constants.TAG;
+import static de.cyface.persistence.MeasurementContentProviderClient.BEFORE_FIRST_PAGE;
 import static de.cyface.persistence.serialization.EventsFileSerializer.serializeEventTransferFileHeader;
 import static de.cyface.persistence.serialization.EventsFileSerializer.serializeEvents;
 
@@ -30,6 +31,7 @@ import java.io.IOException;
 import android.database.Cursor;
 import android.net.Uri;
 import android.os.RemoteException;
+import android.provider.BaseColumns;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
@@ -45,7 +47,7 @@ import de.cyface.utils.CursorIsNullException;
  * files.
  *
  * @author Armin Schnabel
- * @version 1.0.0
+ * @version 1.1.0
  * @since 5.0.0-beta1
  */
 public class EventsFileSerializerStrategy implements FileSerializerStrategy {
@@ -67,9 +69,21 @@ public class EventsFileSerializerStrategy implements FileSerializerStrategy {
 
             // Serialize Events
             final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            for (int startIndex = 0; startIndex < eventCount; startIndex += DATABASE_QUERY_LIMIT) {
-                eventsCursor = loader.loadEvents(startIndex, DATABASE_QUERY_LIMIT);
+            // Keyset pagination: each page starts after the last Event of the previous page
+            long afterTimestamp = BEFORE_FIRST_PAGE;
+            long afterId = BEFORE_FIRST_PAGE;
+            for (int loaded = 0; loaded < eventCount; loaded += eventsCursor.getCount()) {
+                if (eventsCursor != null) {
+                    eventsCursor.close();
+                }
+                eventsCursor = loader.loadEvents(afterTimestamp, afterId, DATABASE_QUERY_LIMIT);
+                if (eventsCursor.getCount() == 0) {
+                    break; // Events were deleted after counting
+                }
                 outputStream.write(serializeEvents(eventsCursor));
+                eventsCursor.moveToLast();
+                afterTimestamp = eventsCursor.getLong(eventsCursor.getColumnIndex(EventTable.COLUMN_TIMESTAMP));
+                afterId = eventsCursor.getLong(eventsCursor.getColumnIndex(BaseColumns._ID));
             }
             serializedEvents = outputStream.toByteArray();
             Log.v(TAG, String.format("Serialized %s Events for synchronization.",
@@ -20,36 +20,52 @@ package de.cyface.persistence.serialization;
 
 import static de.cyface.persistence.AbstractCyfaceMeasurementTable.DATABASE_QUERY_LIMIT;
 import static de.cyface.persistence.Constants.TAG;
-import static de.cyface.persistence.serialization.MeasurementSerializer.BYTES_IN_ONE_POINT_3D_ENTRY;
+import static de.cyface.persistence.MeasurementContentProviderClient.BEFORE_FIRST_PAGE;
+import static de.cyface.persistence.serialization.MeasurementSerializer.BYTES_IN_ONE_GEO_LOCATION_ENTRY;
 
 import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 
+import android.content.ContentProvider;
 import android.database.Cursor;
 import android.net.Uri;
 import android.os.RemoteException;
+import android.provider.BaseColumns;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import de.cyface.persistence.DefaultFileAccess;
 import de.cyface.persistence.GeoLocationsTable;
 import de.cyface.persistence.MeasurementContentProviderClient;
 import de.cyface.persistence.PersistenceLayer;
+import de.cyface.persistence.model.GeoLocation;
 import de.cyface.persistence.model.Measurement;
 import de.cyface.utils.CursorIsNullException;
 import de.cyface.utils.Validate;
 
 /**
  * {@code FileSerializerStrategy} implementation for {@link MeasurementSerializer#TRANSFER_FILE_FORMAT_VERSION} files.
+ * <p>
+ * {@link Point3dFile}s in the {@link MeasurementSerializer#PERSISTENCE_FILE_FORMAT_VERSION_1} are already in the
+ * sample format of the transfer file and are copied. Newer versions are converted while writing.
+ * <p>
+ * {@code Point3dFile}s in the {@link MeasurementSerializer#PERSISTENCE_FILE_FORMAT_VERSION_4} were compressed while
+ * they were captured and are copied into the compressed transfer file, see
+ * {@link #loadPrecompressed(BufferedOutputStream, MeasurementContentProviderClient, long, PersistenceLayer)}.
+ * <p>
+ * The {@code Point3dFile}s are read through a {@link Point3dFileReader}, so a damaged segment only loses the data
+ * after the damage within that segment instead of failing the synchronization.
  *
  * @author Armin Schnabel
- * @version 1.0.0
+ * @version 3.2.0
  * @since 5.0.0-beta1
  */
-public class MeasurementFileSerializerStrategy implements FileSerializerStrategy {
+public class MeasurementFileSerializerStrategy implements PrecompressedFileSerializerStrategy {
 
     @Override
     public void loadSerialized(@NonNull final BufferedOutputStream bufferedOutputStream,
@@ -61,24 +77,170 @@ public class MeasurementFileSerializerStrategy implements FileSerializerStrategy
         long bytesSerialized = 0;
 
         // GeoLocations
+        final byte[] serializedGeoLocations = serializeGeoLocations(loader);
+        final int geoLocationCount = serializedGeoLocations.length / BYTES_IN_ONE_GEO_LOCATION_ENTRY;
+        bytesSerialized += serializedGeoLocations.length;
+
+        // Get already serialized Point3dFiles
+        final File accelerationFile = getFilePath(persistence, measurementIdentifier,
+                Point3dFile.ACCELERATIONS_FOLDER_NAME, Point3dFile.ACCELERATIONS_FILE_EXTENSION);
+        final File rotationFile = getFilePath(persistence, measurementIdentifier, Point3dFile.ROTATIONS_FOLDER_NAME,
+                Point3dFile.ROTATION_FILE_EXTENSION);
+        final File directionFile = getFilePath(persistence, measurementIdentifier, Point3dFile.DIRECTIONS_FOLDER_NAME,
+                Point3dFile.DIRECTION_FILE_EXTENSION);
+
+        final Measurement measurement = persistence.loadMeasurement(measurementIdentifier);
+        Validate.notNull("Measurement not found: " + measurementIdentifier, measurement);
+        final short persistenceFileFormatVersion = measurement.getFileFormatVersion();
+        // The points are counted and written from the same readers, so the binary header matches the written points
+        try (final Point3dFileReader accelerations = openReader(accelerationFile, persistenceFileFormatVersion);
+                final Point3dFileReader rotations = openReader(rotationFile, persistenceFileFormatVersion);
+                final Point3dFileReader directions = openReader(directionFile, persistenceFileFormatVersion)) {
+
+            // Generate transfer file header
+            final byte[] transferFileHeader = MeasurementSerializer.serializeTransferFileHeader(geoLocationCount,
+                    measurement, countPoints(accelerations), countPoints(rotations), countPoints(directions));
+            Log.v(TAG, String.format("Serialized %s binaryHeader for synchronization.",
+                    DefaultFileAccess.humanReadableByteCount(transferFileHeader.length, true)));
+            bytesSerialized += transferFileHeader.length;
+
+            // Assemble bytes to transfer via buffered stream to avoid OOM
+            // The stream must be closed by the called in a finally catch
+            bufferedOutputStream.write(transferFileHeader);
+            bufferedOutputStream.write(serializedGeoLocations);
+
+            if (accelerations != null) {
+                Log.v(TAG, String.format("Serializing %d accelerations for synchronization.",
+                        accelerations.getSampleCount()));
+                bytesSerialized += accelerations.writeAsTransferFormat(bufferedOutputStream);
+            }
+            if (rotations != null) {
+                Log.v(TAG, String.format("Serializing %d rotations for synchronization.",
+                        rotations.getSampleCount()));
+                bytesSerialized += rotations.writeAsTransferFormat(bufferedOutputStream);
+            }
+            if (directions != null) {
+                Log.v(TAG, String.format("Serializing %d directions for synchronization.",
+                        directions.getSampleCount()));
+                bytesSerialized += directions.writeAsTransferFormat(bufferedOutputStream);
+            }
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+
+        try {
+            bufferedOutputStream.flush();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+
+        Log.d(TAG, String.format("Serialized %s",
+                DefaultFileAccess.humanReadableByteCount(bytesSerialized, true)));
+    }
+
+    @Override
+    public boolean loadPrecompressed(@NonNull final BufferedOutputStream bufferedOutputStream,
+            @NonNull final MeasurementContentProviderClient loader, final long measurementIdentifier,
+            @NonNull final PersistenceLayer persistence) throws CursorIsNullException {
+
+        final Measurement measurement = persistence.loadMeasurement(measurementIdentifier);
+        Validate.notNull("Measurement not found: " + measurementIdentifier, measurement);
+        if (measurement.getFileFormatVersion() != MeasurementSerializer.PERSISTENCE_FILE_FORMAT_VERSION_4) {
+            return false;
+        }
+
+        final byte[] serializedGeoLocations = serializeGeoLocations(loader);
+        final int geoLocationCount = serializedGeoLocations.length / BYTES_IN_ONE_GEO_LOCATION_ENTRY;
+        final File accelerationFile = getFilePath(persistence, measurementIdentifier,
+                Point3dFile.ACCELERATIONS_FOLDER_NAME, Point3dFile.ACCELERATIONS_FILE_EXTENSION);
+        final File rotationFile = getFilePath(persistence, measurementIdentifier, Point3dFile.ROTATIONS_FOLDER_NAME,
+                Point3dFile.ROTATION_FILE_EXTENSION);
+        final File directionFile = getFilePath(persistence, measurementIdentifier, Point3dFile.DIRECTIONS_FOLDER_NAME,
+                Point3dFile.DIRECTION_FILE_EXTENSION);
+        final short persistenceFileFormatVersion = measurement.getFileFormatVersion();
+
+        // Only the header and the GeoLocations are compressed, the sensor data is already compressed
+        try (final Point3dFileReader accelerations = openReader(accelerationFile, persistenceFileFormatVersion);
+                final Point3dFileReader rotations = openReader(rotationFile, persistenceFileFormatVersion);
+                final Point3dFileReader directions = openReader(directionFile, persistenceFileFormatVersion)) {
+            final byte[] transferFileHeader = MeasurementSerializer.serializeTransferFileHeader(geoLocationCount,
+                    measurement, countPoints(accelerations), countPoints(rotations), countPoints(directions));
+            final byte[] uncompressed = new byte[transferFileHeader.length + serializedGeoLocations.length];
+            System.arraycopy(transferFileHeader, 0, uncompressed, 0, transferFileHeader.length);
+            System.arraycopy(serializedGeoLocations, 0, uncompressed, transferFileHeader.length,
+                    serializedGeoLocations.length);
+            long bytesWritten = writeSegment(bufferedOutputStream, Point3dDeflateCodec.deflateSegment(uncompressed));
+            if (accelerations != null) {
+                bytesWritten += accelerations.writeDeflateSegments(bufferedOutputStream);
+            }
+            if (rotations != null) {
+                bytesWritten += rotations.writeDeflateSegments(bufferedOutputStream);
+            }
+            if (directions != null) {
+                bytesWritten += directions.writeDeflateSegments(bufferedOutputStream);
+            }
+            bytesWritten += writeSegment(bufferedOutputStream, Point3dDeflateCodec.FINAL_BLOCK);
+            bufferedOutputStream.flush();
+
+            Log.d(TAG, String.format("Copied %s of precompressed data",
+                    DefaultFileAccess.humanReadableByteCount(bytesWritten, true)));
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return true;
+    }
+
+    /**
+     * Writes the provided deflate segment.
+     *
+     * @param outputStream The stream to write to.
+     * @param segment The segment to write.
+     * @return The number of bytes written.
+     * @throws IOException If writing failed.
+     */
+    private long writeSegment(@NonNull final OutputStream outputStream, @NonNull final byte[] segment)
+            throws IOException {
+        outputStream.write(segment);
+        return segment.length;
+    }
+
+    /**
+     * Serializes the {@link GeoLocation}s of a {@link Measurement}.
+     *
+     * @param loader The loader providing access to the {@code GeoLocation}s of the {@code Measurement}.
+     * @return The serialized {@code GeoLocation}s.
+     * @throws CursorIsNullException If {@link ContentProvider} was inaccessible.
+     */
+    private byte[] serializeGeoLocations(@NonNull final MeasurementContentProviderClient loader)
+            throws CursorIsNullException {
         Cursor geoLocationsCursor = null;
-        final byte[] serializedGeoLocations;
-        final int geoLocationCount;
         try {
             final Uri geoLocationTableUri = loader.createGeoLocationTableUri();
-            geoLocationCount = loader.countData(geoLocationTableUri, GeoLocationsTable.COLUMN_MEASUREMENT_FK);
+            final int geoLocationCount = loader.countData(geoLocationTableUri,
+                    GeoLocationsTable.COLUMN_MEASUREMENT_FK);
 
-            // Serialize GeoLocations
             final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            for (int startIndex = 0; startIndex < geoLocationCount; startIndex += DATABASE_QUERY_LIMIT) {
-                geoLocationsCursor = loader.loadGeoLocations(startIndex, DATABASE_QUERY_LIMIT);
+            // Keyset pagination: each page starts after the last GeoLocation of the previous page
+            long afterTimestamp = BEFORE_FIRST_PAGE;
+            long afterId = BEFORE_FIRST_PAGE;
+            for (int loaded = 0; loaded < geoLocationCount; loaded += geoLocationsCursor.getCount()) {
+                if (geoLocationsCursor != null) {
+                    geoLocationsCursor.close();
+                }
+                geoLocationsCursor = loader.loadGeoLocations(afterTimestamp, afterId, DATABASE_QUERY_LIMIT);
+                if (geoLocationsCursor.getCount() == 0) {
+                    break; // GeoLocations were deleted after counting
+                }
                 outputStream.write(MeasurementSerializer.serializeGeoLocations(geoLocationsCursor));
+                geoLocationsCursor.moveToLast();
+                afterTimestamp = geoLocationsCursor
+                        .getLong(geoLocationsCursor.getColumnIndex(GeoLocationsTable.COLUMN_GEOLOCATION_TIME));
+                afterId = geoLocationsCursor.getLong(geoLocationsCursor.getColumnIndex(BaseColumns._ID));
             }
-            serializedGeoLocations = outputStream.toByteArray();
+            final byte[] serializedGeoLocations = outputStream.toByteArray();
             Log.v(TAG, String.format("Serialized %s geoLocations for synchronization.",
                     DefaultFileAccess.humanReadableByteCount(serializedGeoLocations.length, true)));
-            bytesSerialized += serializedGeoLocations.length;
-
+            return serializedGeoLocations;
         } catch (final RemoteException | IOException e) {
             throw new IllegalStateException(e);
         } finally {
@@ -86,82 +248,54 @@ public class MeasurementFileSerializerStrategy implements FileSerializerStrategy
                 geoLocationsCursor.close();
             }
         }
+    }
 
-        // Get already serialized Point3dFiles
-        final File accelerationFile = persistence.getFileAccessLayer().getFilePath(persistence.getContext(),
-                measurementIdentifier,
-                Point3dFile.ACCELERATIONS_FOLDER_NAME, Point3dFile.ACCELERATIONS_FILE_EXTENSION);
-        final File rotationFile = persistence.getFileAccessLayer().getFilePath(persistence.getContext(),
-                measurementIdentifier,
-                Point3dFile.ROTATIONS_FOLDER_NAME, Point3dFile.ROTATION_FILE_EXTENSION);
-        final File directionFile = persistence.getFileAccessLayer().getFilePath(persistence.getContext(),
-                measurementIdentifier,
-                Point3dFile.DIRECTIONS_FOLDER_NAME, Point3dFile.DIRECTION_FILE_EXTENSION);
-
-        // Calculate how many points the files contain (for the binary header)
-        int accelerationsCount = 0;
-        int rotationsCount = 0;
-        int directionsCount = 0;
-        // noinspection ConstantConditions // can happen in tests
-        if (accelerationFile != null && accelerationFile.exists()) {
-            accelerationsCount = (int)(accelerationFile.length() / BYTES_IN_ONE_POINT_3D_ENTRY);
-            Validate.isTrue(accelerationsCount * BYTES_IN_ONE_POINT_3D_ENTRY == accelerationFile.length());
-        }
-        // noinspection ConstantConditions // can happen in tests
-        if (rotationFile != null && rotationFile.exists()) {
-            rotationsCount = (int)(rotationFile.length() / BYTES_IN_ONE_POINT_3D_ENTRY);
-            Validate.isTrue(rotationsCount * BYTES_IN_ONE_POINT_3D_ENTRY == rotationFile.length());
-        }
-        // noinspection ConstantConditions // can happen in tests
-        if (directionFile != null && directionFile.exists()) {
-            directionsCount = (int)(directionFile.length() / BYTES_IN_ONE_POINT_3D_ENTRY);
-            Validate.isTrue(directionsCount * BYTES_IN_ONE_POINT_3D_ENTRY == directionFile.length());
-        }
-
-        // Generate transfer file header
-        final Measurement measurement = persistence.loadMeasurement(measurementIdentifier);
-        final byte[] transferFileHeader = MeasurementSerializer.serializeTransferFileHeader(geoLocationCount,
-                measurement, accelerationsCount,
-                rotationsCount, directionsCount);
-        Log.v(TAG, String.format("Serialized %s binaryHeader for synchronization.",
-                DefaultFileAccess.humanReadableByteCount(transferFileHeader.length, true)));
-        bytesSerialized += transferFileHeader.length;
-
-        // Assemble bytes to transfer via buffered stream to avoid OOM
-        try {
-            // The stream must be closed by the called in a finally catch
-            bufferedOutputStream.write(transferFileHeader);
-            bufferedOutputStream.write(serializedGeoLocations);
-        } catch (final IOException e) {
-            throw new IllegalStateException(e);
-        }
+    /**
+     * @param persistence The {@link PersistenceLayer} to access the files.
+     * @param measurementIdentifier The id of the {@link Measurement} of the file.
+     * @param folderName The folder name defining the {@code Point3d} type of the file.
+     * @param fileExtension The extension of the file type.
+     * @return The {@link Point3dFile} path, which may not exist.
+     */
+    private File getFilePath(@NonNull final PersistenceLayer persistence, final long measurementIdentifier,
+            @NonNull final String folderName, @NonNull final String fileExtension) {
+        return persistence.getFileAccessLayer().getFilePath(persistence.getContext(), measurementIdentifier,
+                folderName, fileExtension);
+    }
 
-        if (accelerationsCount > 0) {
-            Log.v(TAG, String.format("Serializing %s accelerations for synchronization.",
-                    DefaultFileAccess.humanReadableByteCount(accelerationFile.length(), true)));
-            bytesSerialized += accelerationFile.length();
-            persistence.getFileAccessLayer().writeToOutputStream(accelerationFile, bufferedOutputStream);
-        }
-        if (rotationsCount > 0) {
-            Log.v(TAG, String.format("Serializing %s rotations for synchronization.",
-                    DefaultFileAccess.humanReadableByteCount(rotationFile.length(), true)));
-            bytesSerialized += rotationFile.length();
-            persistence.getFileAccessLayer().writeToOutputStream(rotationFile, bufferedOutputStream);
-        }
-        if (directionsCount > 0) {
-            Log.v(TAG, String.format("Serializing %s directions for synchronization.",
-                    DefaultFileAccess.humanReadableByteCount(directionFile.length(), true)));
-            bytesSerialized += directionFile.length();
-            persistence.getFileAccessLayer().writeToOutputStream(directionFile, bufferedOutputStream);
+    /**
+     * Opens a {@link Point3dFileReader} for the provided {@link Point3dFile}.
+     *
+     * @param file The file to read or {@code null} if there is no such file.
+     * @param persistenceFileFormatVersion The {@link MeasurementSerializer#PERSISTENCE_FILE_FORMAT_VERSION} of the
+     *            file.
+     * @return The opened reader or {@code null} if the file does not exist.
+     * @throws IOException If the file could not be opened.
+     */
+    @Nullable
+    private Point3dFileReader openReader(final File file, final short persistenceFileFormatVersion)
+            throws IOException {
+        // noinspection ConstantConditions // can happen in tests
+        if (file == null || !file.exists()) {
+            return null;
         }
+        return new Point3dFileReader(file, persistenceFileFormatVersion);
+    }
 
-        try {
-            bufferedOutputStream.flush();
-        } catch (IOException e) {
-            throw new IllegalStateException(e);
+    /**
+     * Counts the {@code Point3d}s of a {@link Point3dFile}.
+     * <p>
+     * Only complete blocks or samples are counted, so damaged segments of the file don't fail the synchronization.
+     *
+     * @param reader The reader of the file or {@code null} if there is no such file.
+     * @return The number of points in the file.
+     */
+    private int countPoints(@Nullable final Point3dFileReader reader) {
+        if (reader == null) {
+            return 0;
         }
-
-        Log.d(TAG, String.format("Serialized %s",
-                DefaultFileAccess.humanReadableByteCount(bytesSerialized, true)));
+        final long count = reader.getSampleCount();
+        Validate.isTrue(count <= Integer.MAX_VALUE, "Too many points: " + count);
+        return (int)count;
     }
 }
@@ -25,12 +25,11 @@ import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.util.List;
-import java.util.zip.Deflater;
-import java.util.zip.DeflaterOutputStream;
 import java.util.zip.Inflater;
 
 import android.content.ContentProvider;
@@ -47,6 +46,7 @@ import de.cyface.persistence.PersistenceLayer;
 import de.cyface.persistence.model.GeoLocation;
 import de.cyface.persistence.model.Measurement;
 import de.cyface.persistence.model.Point3d;
+import de.cyface.persistence.model.Point3dBatch;
 import de.cyface.utils.CursorIsNullException;
 import de.cyface.utils.Validate;
 
@@ -69,17 +69,19 @@ import de.cyface.utils.Validate;
  * <li>All directions as: 8 Bytes long timestamp, 8 Bytes double x direction, 8 Bytes double y direction, 8 Bytes double
  * z direction</li>
  * </ul>
- * WARNING: This implementation loads all data from one measurement into memory. So be careful with large measurements.
+ * The {@link Point3d}s are streamed from their files, so only the serialized {@link GeoLocation}s of one measurement
+ * are held in memory.
  *
  * @author Klemens Muthmann
  * @author Armin Schnabel
- * @version 7.0.1
+ * @version 8.4.2
  * @since 2.0.0
  */
 public final class MeasurementSerializer {
 
     /**
-     * A constant with the number of bytes for one uncompressed {@link Point3d} entry in the Cyface binary format.
+     * A constant with the number of bytes for one uncompressed {@link Point3d} entry in the Cyface binary format, i.e.
+     * in the {@link #TRANSFER_FILE_FORMAT_VERSION} and the {@link #PERSISTENCE_FILE_FORMAT_VERSION_1}.
      */
     public static final int BYTES_IN_ONE_POINT_3D_ENTRY = ByteSizes.LONG_BYTES + 3 * ByteSizes.DOUBLE_BYTES;
     /**
@@ -91,8 +93,36 @@ public final class MeasurementSerializer {
      * The current version of the file format used to persist {@link Point3d} data.
      * It's stored in each {@link Measurement}'s {@link MeasurementTable} entry and allows to have stored and process
      * measurements and files with different {@code #PERSISTENCE_FILE_FORMAT_VERSION} at the same time.
+     * <p>
+     * This is the {@link #PERSISTENCE_FILE_FORMAT_VERSION_3}, as it uses the least storage on the device. The
+     * {@link #PERSISTENCE_FILE_FORMAT_VERSION_4} is only used when it's requested explicitly.
+     */
+    public final static short PERSISTENCE_FILE_FORMAT_VERSION = 3;
+    /**
+     * The first version of the file format used to persist {@link Point3d} data. The data is stored in the same format
+     * as in the {@link #TRANSFER_FILE_FORMAT_VERSION}, see {@link #serialize(Point3dBatch)}. Measurements captured
+     * before the {@link #PERSISTENCE_FILE_FORMAT_VERSION_2} was introduced still use this format.
+     */
+    public final static short PERSISTENCE_FILE_FORMAT_VERSION_1 = 1;
+    /**
+     * The block based file format with {@code float} values and varint encoded timestamp deltas, see
+     * {@link Point3dBlockSerializer}.
+     */
+    public final static short PERSISTENCE_FILE_FORMAT_VERSION_2 = 2;
+    /**
+     * The block based file format with XOR compressed values and delta-of-delta encoded timestamps, see
+     * {@link Point3dXorCodec}.
      */
-    public final static short PERSISTENCE_FILE_FORMAT_VERSION = 1;
+    public final static short PERSISTENCE_FILE_FORMAT_VERSION_3 = 3;
+    /**
+     * The block based file format with the samples of each block compressed into a deflate segment which can be
+     * copied into the compressed transfer file, see {@link Point3dDeflateCodec}.
+     * <p>
+     * Deflating each block on its own loses the delta and XOR coding of the {@link #PERSISTENCE_FILE_FORMAT_VERSION_3},
+     * so the files are larger. In exchange the synchronization does not need to decode and compress the data again.
+     * Compare the sizes for a recorded ride with {@code Point3dXorCodecTest#benchmarkCompression} before using it.
+     */
+    public final static short PERSISTENCE_FILE_FORMAT_VERSION_4 = 4;
     /**
      * A constant with the number of bytes for the header of the {@link #TRANSFER_FILE_FORMAT_VERSION} file.
      */
@@ -110,6 +140,10 @@ public final class MeasurementSerializer {
      * constructor.
      */
     public static final boolean COMPRESSION_NOWRAP = true;
+    /**
+     * The compression level used for the transfer file.
+     */
+    static final int DEFLATER_LEVEL = 5; // 'cause Steve Jobs said so
     /**
      * The prefix of the filename used to store compressed files for serialization.
      */
@@ -165,11 +199,46 @@ public final class MeasurementSerializer {
         return compressedTempFile;
     }
 
+    /**
+     * Writes the {@link Measurement} with the provided identifier from the persistence layer serialized and compressed
+     * in the {@link MeasurementSerializer#TRANSFER_FILE_FORMAT_VERSION} format to the provided stream, e.g. to upload
+     * it without writing it to a temp file first. The data written is the content of the file written by
+     * {@link #writeSerializedCompressed(MeasurementContentProviderClient, long, PersistenceLayer,
+     * FileSerializerStrategy)}.
+     *
+     * @param outputStream The stream to write the data to. It's not closed, so more data can be written to it.
+     * @param loader {@link MeasurementContentProviderClient} to load the {@code Measurement} data from the database.
+     * @param measurementId The id of the {@link Measurement} to load
+     * @param persistenceLayer The {@link PersistenceLayer} to load the file based {@code Measurement} data from
+     * @param fileSerializerStrategy The {@link FileSerializerStrategy} used to load Measurement data in the serialized
+     *            format.
+     * @throws CursorIsNullException If {@link ContentProvider} was inaccessible.
+     * @throws IOException If writing to the stream failed.
+     */
+    public void writeSerializedCompressed(@NonNull final OutputStream outputStream,
+            @NonNull final MeasurementContentProviderClient loader, final long measurementId,
+            @NonNull final PersistenceLayer persistenceLayer,
+            @NonNull final FileSerializerStrategy fileSerializerStrategy) throws CursorIsNullException, IOException {
+        loadSerializedCompressed(new FilterOutputStream(outputStream) {
+            @Override
+            public void write(@NonNull final byte[] b, final int off, final int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                // Only the streams wrapping this stream are closed
+                flush();
+            }
+        }, loader, measurementId, persistenceLayer, fileSerializerStrategy);
+    }
+
     /**
      * Writes the {@link Measurement} with the provided identifier from the persistence layer serialized and compressed
      * in the {@link MeasurementSerializer#TRANSFER_FILE_FORMAT_VERSION} format, ready to be transferred.
      * <p>
-     * The Deflater ZLIB (RFC-1950) compression is used.
+     * The data is compressed as raw DEFLATE (RFC-1951) stream without ZLIB header or checksum, see
+     * {@link #COMPRESSION_NOWRAP}. The data is compressed in parallel, see {@link ParallelDeflaterOutputStream}.
      *
      * @param fileOutputStream the {@link FileInputStream} to write the compressed data to
      * @param loader {@link MeasurementContentProviderClient} to load the {@code Measurement} data from the database.
@@ -193,10 +262,20 @@ public final class MeasurementSerializer {
         // Wrapping the streams with Buffered streams for performance reasons
         final BufferedOutputStream bufferedFileOutputStream = new BufferedOutputStream(fileOutputStream);
 
-        final int DEFLATER_LEVEL = 5; // 'cause Steve Jobs said so
-        final Deflater compressor = new Deflater(DEFLATER_LEVEL, COMPRESSION_NOWRAP);
-        // As we wrap the injected outputStream with Deflater the serialized data is automatically compressed
-        final DeflaterOutputStream deflaterStream = new DeflaterOutputStream(bufferedFileOutputStream, compressor);
+        // Data which was compressed while it was captured is only copied
+        if (fileSerializerStrategy instanceof PrecompressedFileSerializerStrategy
+                && ((PrecompressedFileSerializerStrategy)fileSerializerStrategy)
+                        .loadPrecompressed(bufferedFileOutputStream, loader, measurementId, persistenceLayer)) {
+            bufferedFileOutputStream.flush();
+            Log.d(TAG, "loadSerializedCompressed: copied precompressed data after "
+                    + ((System.currentTimeMillis() - startTimestamp) / 1000) + " s");
+            return;
+        }
+
+        // As we wrap the injected outputStream with a deflater the serialized data is automatically compressed,
+        // using all cores as this takes minutes for large measurements
+        final ParallelDeflaterOutputStream deflaterStream = new ParallelDeflaterOutputStream(bufferedFileOutputStream,
+                DEFLATER_LEVEL);
 
         // This architecture catches the IOException thrown by the close() called in the finally without IDE warning
         try (BufferedOutputStream bufferedDeflaterOutputStream = new BufferedOutputStream(deflaterStream)) {
@@ -248,14 +327,60 @@ public final class MeasurementSerializer {
      * @return A <code>byte</code> array containing all the data.
      */
     public static byte[] serialize(final @NonNull List<Point3d> dataPoints) {
+        return serialize(new Point3dBatch(dataPoints));
+    }
+
+    /**
+     * Serializes the provided {@link Point3dBatch} in the format of the provided persistence file format version.
+     *
+     * @param dataPoints The points to serialize.
+     * @param persistenceFileFormatVersion The {@link #PERSISTENCE_FILE_FORMAT_VERSION} of the file the points are
+     *            appended to.
+     * @return A <code>byte</code> array containing all the data.
+     */
+    public static byte[] serialize(final @NonNull Point3dBatch dataPoints, final short persistenceFileFormatVersion) {
+        switch (persistenceFileFormatVersion) {
+            case PERSISTENCE_FILE_FORMAT_VERSION_1:
+                return serialize(dataPoints);
+            case PERSISTENCE_FILE_FORMAT_VERSION_2:
+            case PERSISTENCE_FILE_FORMAT_VERSION_3:
+            case PERSISTENCE_FILE_FORMAT_VERSION_4:
+                return Point3dBlockSerializer.serialize(dataPoints, persistenceFileFormatVersion);
+            default:
+                throw new IllegalArgumentException(
+                        "Unsupported persistence file format version: " + persistenceFileFormatVersion);
+        }
+    }
+
+    /**
+     * @param persistenceFileFormatVersion The persistence file format version to check.
+     * @return {@code true} if {@link Point3d} data in the provided version can be read and appended.
+     */
+    public static boolean isSupported(final short persistenceFileFormatVersion) {
+        return persistenceFileFormatVersion == PERSISTENCE_FILE_FORMAT_VERSION_1
+                || persistenceFileFormatVersion == PERSISTENCE_FILE_FORMAT_VERSION_2
+                || persistenceFileFormatVersion == PERSISTENCE_FILE_FORMAT_VERSION_3
+                || persistenceFileFormatVersion == PERSISTENCE_FILE_FORMAT_VERSION_4;
+    }
+
+    /**
+     * Serializes the provided {@link Point3dBatch} without creating an object per {@link Point3d}.
+     * <p>
+     * This is the format of the {@link #TRANSFER_FILE_FORMAT_VERSION} and the
+     * {@link #PERSISTENCE_FILE_FORMAT_VERSION_1}.
+     *
+     * @param dataPoints The points to serialize.
+     * @return A <code>byte</code> array containing all the data.
+     */
+    public static byte[] serialize(final @NonNull Point3dBatch dataPoints) {
         Log.v(TAG, String.format("Serializing %d Point3d points!", dataPoints.size()));
 
         final ByteBuffer buffer = ByteBuffer.allocate(dataPoints.size() * BYTES_IN_ONE_POINT_3D_ENTRY);
-        for (final Point3d point : dataPoints) {
-            buffer.putLong(point.getTimestamp());
-            buffer.putDouble(point.getX());
-            buffer.putDouble(point.getY());
-            buffer.putDouble(point.getZ());
+        for (int i = 0; i < dataPoints.size(); i++) {
+            buffer.putLong(dataPoints.getTimestamp(i));
+            buffer.putDouble(dataPoints.getX(i));
+            buffer.putDouble(dataPoints.getY(i));
+            buffer.putDouble(dataPoints.getZ(i));
         }
 
         byte[] payload = new byte[buffer.capacity()];
@@ -279,7 +404,7 @@ public final class MeasurementSerializer {
      */
     static byte[] serializeTransferFileHeader(final int geoLocationCount, final Measurement measurement,
             final int accelerationsCount, final int rotationsCount, final int directionsCount) {
-        Validate.isTrue(measurement.getFileFormatVersion() == PERSISTENCE_FILE_FORMAT_VERSION, "Unsupported");
+        Validate.isTrue(isSupported(measurement.getFileFormatVersion()), "Unsupported");
 
         byte[] ret = new byte[18];
         ret[0] = (byte)(TRANSFER_FILE_FORMAT_VERSION >> 8);
@@ -0,0 +1,283 @@
+/*
+ * Copyright 2021 Cyface GmbH
+ *
+ * This file is part of the Cyface SDK for Android.
+ *
+ * The Cyface SDK for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface SDK for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface SDK for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.persistence.serialization;
+
+import static de.cyface.persistence.serialization.MeasurementSerializer.COMPRESSION_NOWRAP;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.Deflater;
+
+import androidx.annotation.NonNull;
+import de.cyface.utils.Validate;
+
+/**
+ * An {@link OutputStream} which compresses the data written to it into one raw deflate stream, like a
+ * {@link java.util.zip.DeflaterOutputStream} with a {@link Deflater} created with
+ * {@link MeasurementSerializer#COMPRESSION_NOWRAP}, but uses multiple threads.
+ * <p>
+ * The data is split into blocks of {@link #BLOCK_SIZE} bytes which are compressed in parallel. Each block is compressed
+ * by a new {@code Deflater} with the last 32 KiB of the previous block as preset dictionary, so the compression ratio
+ * is about the same as with one {@code Deflater}. All blocks but the last are flushed with {@link Deflater#SYNC_FLUSH},
+ * so they end at a byte boundary and can be concatenated. The last block is finished, which terminates the stream.
+ * Thus, the output is one valid raw deflate stream which is decompressed by any {@code Inflater} created with
+ * {@code COMPRESSION_NOWRAP}. Data which fits into one block is compressed exactly like by one {@code Deflater}.
+ * <p>
+ * This class is not thread safe.
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 6.2.0
+ */
+public final class ParallelDeflaterOutputStream extends FilterOutputStream {
+
+    /**
+     * The number of uncompressed bytes per block.
+     */
+    static final int BLOCK_SIZE = 128 * 1024;
+    /**
+     * The maximal distance of a back-reference in a deflate stream and, thus, the size of the preset dictionary.
+     */
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+    /**
+     * The compression level of the {@link Deflater}s.
+     */
+    private final int level;
+    /**
+     * The number of uncompressed bytes per block.
+     */
+    private final int blockSize;
+    /**
+     * The threads which compress the blocks.
+     */
+    private final ExecutorService executor;
+    /**
+     * The maximal number of blocks which are compressed or wait to be written, which limits the memory usage.
+     */
+    private final int maxPendingBlocks;
+    /**
+     * The compressed blocks in the order in which they are written.
+     */
+    private final ArrayDeque<Future<byte[]>> pendingBlocks;
+    /**
+     * The block which is filled with the written data.
+     */
+    private byte[] block;
+    /**
+     * The number of bytes in the {@link #block}.
+     */
+    private int blockLength;
+    /**
+     * The previous block, which contains the dictionary of the {@link #block}, or {@code null} for the first block.
+     */
+    private byte[] previousBlock;
+    /**
+     * {@code true} after {@link #close()} was called.
+     */
+    private boolean closed;
+
+    /**
+     * Creates a stream which compresses with one thread per available processor.
+     *
+     * @param out The stream to write the compressed data to. It's closed when this stream is closed.
+     * @param level The compression level of the {@link Deflater}s.
+     */
+    public ParallelDeflaterOutputStream(@NonNull final OutputStream out, final int level) {
+        this(out, level, Runtime.getRuntime().availableProcessors(), BLOCK_SIZE);
+    }
+
+    /**
+     * @param out The stream to write the compressed data to. It's closed when this stream is closed.
+     * @param level The compression level of the {@link Deflater}s.
+     * @param threads The number of threads which compress the blocks.
+     * @param blockSize The number of uncompressed bytes per block.
+     */
+    ParallelDeflaterOutputStream(@NonNull final OutputStream out, final int level, final int threads,
+            final int blockSize) {
+        super(out);
+        Validate.isTrue(threads > 0, "Illegal argument: threads must be positive");
+        Validate.isTrue(blockSize >= DICTIONARY_SIZE, "Illegal argument: blockSize must not be smaller than "
+                + DICTIONARY_SIZE);
+        this.level = level;
+        this.blockSize = blockSize;
+        this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(@NonNull final Runnable runnable) {
+                final Thread thread = new Thread(runnable, "ParallelDeflater");
+                // Don't keep the process alive when the stream is not closed
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.maxPendingBlocks = 2 * threads;
+        this.pendingBlocks = new ArrayDeque<>(maxPendingBlocks);
+        this.block = new byte[blockSize];
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        write(new byte[] {(byte)b}, 0, 1);
+    }
+
+    @Override
+    public void write(@NonNull final byte[] b, final int off, final int len) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        Validate.isTrue(off >= 0 && len >= 0 && off + len <= b.length, "Illegal offset or length");
+        int written = 0;
+        while (written < len) {
+            // A full block is only compressed when more data follows, as the last block is compressed differently
+            if (blockLength == blockSize) {
+                submitBlock(false);
+            }
+            final int bytes = Math.min(len - written, blockSize - blockLength);
+            System.arraycopy(b, off + written, block, blockLength, bytes);
+            blockLength += bytes;
+            written += bytes;
+        }
+    }
+
+    /**
+     * Writes the blocks which are already compressed to the underlying stream and flushes it. The data of the block
+     * which is not yet full is not flushed, as this would require an additional flush marker.
+     *
+     * @throws IOException If writing to the underlying stream failed.
+     */
+    @Override
+    public void flush() throws IOException {
+        while (!pendingBlocks.isEmpty() && pendingBlocks.peekFirst().isDone()) {
+            writeNextBlock();
+        }
+        out.flush();
+    }
+
+    /**
+     * Compresses the remaining data, writes the end of the deflate stream and closes the underlying stream.
+     *
+     * @throws IOException If writing to or closing the underlying stream failed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            submitBlock(true);
+            while (!pendingBlocks.isEmpty()) {
+                writeNextBlock();
+            }
+        } finally {
+            executor.shutdownNow();
+            out.close();
+        }
+    }
+
+    /**
+     * Hands the {@link #block} to the {@link #executor} for compression and starts a new block. If too many blocks
+     * are pending, this waits until the next block is compressed and writes it.
+     *
+     * @param last {@code true} if this is the last block, which terminates the deflate stream.
+     * @throws IOException If writing a compressed block to the underlying stream failed.
+     */
+    private void submitBlock(final boolean last) throws IOException {
+        if (pendingBlocks.size() == maxPendingBlocks) {
+            writeNextBlock();
+        }
+        final byte[] data = block;
+        final int length = blockLength;
+        final byte[] dictionary = previousBlock;
+        pendingBlocks.addLast(executor.submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() {
+                return deflate(data, length, dictionary, last);
+            }
+        }));
+        previousBlock = data;
+        // The submitted block is still read by the compression of this and the next block
+        block = last ? null : new byte[blockSize];
+        blockLength = 0;
+    }
+
+    /**
+     * Waits until the next block is compressed and writes it to the underlying stream.
+     *
+     * @throws IOException If the compression failed or writing to the underlying stream failed.
+     */
+    private void writeNextBlock() throws IOException {
+        final Future<byte[]> next = pendingBlocks.removeFirst();
+        try {
+            out.write(next.get());
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for compression");
+        } catch (final ExecutionException e) {
+            throw new IOException("Compression failed", e.getCause());
+        }
+    }
+
+    /**
+     * Compresses one block.
+     *
+     * @param data The block to compress.
+     * @param length The number of bytes of the block.
+     * @param dictionary The previous block, which is full, or {@code null} for the first block.
+     * @param last {@code true} if this is the last block, which is finished instead of flushed.
+     * @return The compressed block.
+     */
+    private byte[] deflate(@NonNull final byte[] data, final int length, final byte[] dictionary,
+            final boolean last) {
+        final Deflater deflater = new Deflater(level, COMPRESSION_NOWRAP);
+        try {
+            if (dictionary != null) {
+                deflater.setDictionary(dictionary, dictionary.length - DICTIONARY_SIZE, DICTIONARY_SIZE);
+            }
+            deflater.setInput(data, 0, length);
+            final ByteArrayOutputStream output = new ByteArrayOutputStream(length / 2 + 64);
+            final byte[] buffer = new byte[16 * 1024];
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    output.write(buffer, 0, deflater.deflate(buffer));
+                }
+            } else {
+                int bytes;
+                // A full buffer means there may be more output for the flush
+                do {
+                    bytes = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    output.write(buffer, 0, bytes);
+                } while (bytes == buffer.length);
+            }
+            return output.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+}
@@ -0,0 +1,384 @@
+/*
+ * Copyright 2021 Cyface GmbH
+ *
+ * This file is part of the Cyface SDK for Android.
+ *
+ * The Cyface SDK for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface SDK for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface SDK for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.persistence.serialization;
+
+import static de.cyface.persistence.serialization.ByteSizes.FLOAT_BYTES;
+import static de.cyface.persistence.serialization.ByteSizes.INT_BYTES;
+import static de.cyface.persistence.serialization.ByteSizes.LONG_BYTES;
+import static de.cyface.persistence.serialization.MeasurementSerializer.PERSISTENCE_FILE_FORMAT_VERSION_2;
+import static de.cyface.persistence.serialization.MeasurementSerializer.PERSISTENCE_FILE_FORMAT_VERSION_3;
+import static de.cyface.persistence.serialization.MeasurementSerializer.PERSISTENCE_FILE_FORMAT_VERSION_4;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import androidx.annotation.NonNull;
+import de.cyface.persistence.model.Point3d;
+import de.cyface.persistence.model.Point3dBatch;
+import de.cyface.persistence.model.Point3dBuffer;
+
+/**
+ * Serializes {@link Point3d}s in the block based {@link MeasurementSerializer#PERSISTENCE_FILE_FORMAT_VERSION_2},
+ * {@link MeasurementSerializer#PERSISTENCE_FILE_FORMAT_VERSION_3} and
+ * {@link MeasurementSerializer#PERSISTENCE_FILE_FORMAT_VERSION_4}.
+ * <p>
+ * A file consists of blocks, one per appended {@link Point3dBatch}. All values are stored in big endian:
+ * <ul>
+ * <li>4 Bytes integer number of samples in the block</li>
+ * <li>4 Bytes integer number of bytes of the samples following the block header</li>
+ * <li>8 Bytes long timestamp of the first sample, the block base</li>
+ * <li>The samples, encoded depending on the version</li>
+ * </ul>
+ * In version 2 each sample is stored as zig-zag encoded varint of the difference to the previous timestamp (or the
+ * base), 4 Bytes float x, 4 Bytes float y, 4 Bytes float z. The {@code Point3d} values are captured as {@code float},
+ * so storing them as {@code float} is lossless. At the usual sensor frequencies the timestamp deltas require one or two
+ * bytes which results in about 14 instead of the 32 bytes per sample of the
+ * {@link MeasurementSerializer#PERSISTENCE_FILE_FORMAT_VERSION_1}.
+ * <p>
+ * In version 3 the samples are compressed by the {@link Point3dXorCodec}, in version 4 by the
+ * {@link Point3dDeflateCodec}.
+ *
+ * @author Armin Schnabel
+ * @version 2.2.0
+ * @since 6.2.0
+ */
+public final class Point3dBlockSerializer {
+
+    /**
+     * The number of bytes of the header of each block.
+     */
+    public static final int BYTES_IN_BLOCK_HEADER = 2 * INT_BYTES + LONG_BYTES;
+    /**
+     * The maximal number of bytes of one sample in version 2: a varint encoded {@code long} and three {@code float}s.
+     */
+    private static final int MAX_BYTES_PER_SAMPLE = 10 + 3 * FLOAT_BYTES;
+
+    /**
+     * Private constructor to avoid instantiation of utility class.
+     */
+    private Point3dBlockSerializer() {
+        // Nothing to do here.
+    }
+
+    /**
+     * Serializes the provided {@link Point3dBatch} as one block.
+     *
+     * @param batch The data to serialize.
+     * @param persistenceFileFormatVersion The block based version to serialize the data in.
+     * @return The serialized block or an empty array if the batch is empty.
+     */
+    public static byte[] serialize(@NonNull final Point3dBatch batch, final short persistenceFileFormatVersion) {
+        final int size = batch.size();
+        if (size == 0) {
+            return new byte[0];
+        }
+        final long base = batch.getTimestamp(0);
+
+        final ByteBuffer buffer;
+        switch (persistenceFileFormatVersion) {
+            case PERSISTENCE_FILE_FORMAT_VERSION_2:
+                buffer = ByteBuffer.allocate(BYTES_IN_BLOCK_HEADER + size * MAX_BYTES_PER_SAMPLE);
+                buffer.position(BYTES_IN_BLOCK_HEADER);
+                long previousTimestamp = base;
+                for (int i = 0; i < size; i++) {
+                    final long timestamp = batch.getTimestamp(i);
+                    writeVarLong(buffer, zigZagEncode(timestamp - previousTimestamp));
+                    buffer.putFloat(batch.getX(i));
+                    buffer.putFloat(batch.getY(i));
+                    buffer.putFloat(batch.getZ(i));
+                    previousTimestamp = timestamp;
+                }
+                break;
+            case PERSISTENCE_FILE_FORMAT_VERSION_3:
+                final byte[] samples = Point3dXorCodec.encode(batch, base);
+                buffer = ByteBuffer.allocate(BYTES_IN_BLOCK_HEADER + samples.length);
+                buffer.position(BYTES_IN_BLOCK_HEADER);
+                buffer.put(samples);
+                break;
+            case PERSISTENCE_FILE_FORMAT_VERSION_4:
+                final byte[] segment = Point3dDeflateCodec.encode(batch);
+                buffer = ByteBuffer.allocate(BYTES_IN_BLOCK_HEADER + segment.length);
+                buffer.position(BYTES_IN_BLOCK_HEADER);
+                buffer.put(segment);
+                break;
+            default:
+                throw new IllegalArgumentException(
+                        "Unsupported block based file format version: " + persistenceFileFormatVersion);
+        }
+        final int length = buffer.position();
+        buffer.putInt(0, size);
+        buffer.putInt(INT_BYTES, length - BYTES_IN_BLOCK_HEADER);
+        buffer.putLong(2 * INT_BYTES, base);
+
+        if (length == buffer.capacity()) {
+            return buffer.array();
+        }
+        final byte[] payload = new byte[length];
+        System.arraycopy(buffer.array(), 0, payload, 0, length);
+        return payload;
+    }
+
+    /**
+     * Deserializes all blocks of the provided data.
+     *
+     * @param data The serialized blocks, e.g. the content of a {@link Point3dFile}.
+     * @param persistenceFileFormatVersion The block based version the data was serialized in.
+     * @return The deserialized data.
+     */
+    public static Point3dBatch deserialize(@NonNull final byte[] data, final short persistenceFileFormatVersion) {
+        final ByteBuffer buffer = ByteBuffer.wrap(data);
+        final Point3dBuffer points = new Point3dBuffer();
+        while (buffer.hasRemaining()) {
+            final int size = buffer.getInt();
+            final int length = buffer.getInt();
+            final long base = buffer.getLong();
+            final int end = buffer.position() + length;
+            decodeSamples(buffer, length, size, base, persistenceFileFormatVersion, points);
+            buffer.position(end);
+        }
+        return points.toBatch();
+    }
+
+    /**
+     * Counts the samples in the provided file by reading the block headers only. This works for all block based
+     * versions.
+     *
+     * @param file The file to read.
+     * @return The number of samples in the file.
+     * @throws IOException If the file could not be read.
+     */
+    public static int countSamples(@NonNull final File file) throws IOException {
+        int count = 0;
+        try (final DataInputStream inputStream = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                final int size;
+                try {
+                    size = inputStream.readInt();
+                } catch (final EOFException e) {
+                    return count;
+                }
+                final int length = inputStream.readInt();
+                inputStream.readLong();
+                skipFully(inputStream, length);
+                count += size;
+            }
+        }
+    }
+
+    /**
+     * Converts the blocks of the provided file into the sample format of the
+     * {@link MeasurementSerializer#TRANSFER_FILE_FORMAT_VERSION} and writes them to the provided stream.
+     * <p>
+     * Only one block is kept in memory at a time.
+     *
+     * @param file The file to read.
+     * @param persistenceFileFormatVersion The block based version the file was serialized in.
+     * @param outputStream The stream to write to. It's not closed by this method.
+     * @return The number of bytes written.
+     * @throws IOException If reading or writing failed.
+     */
+    public static long writeAsTransferFormat(@NonNull final File file, final short persistenceFileFormatVersion,
+            @NonNull final OutputStream outputStream) throws IOException {
+        long bytesWritten = 0;
+        try (final DataInputStream inputStream = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            byte[] samples = new byte[0];
+            ByteBuffer output = ByteBuffer.allocate(0);
+            final Point3dBuffer points = new Point3dBuffer();
+            while (true) {
+                final int size;
+                try {
+                    size = inputStream.readInt();
+                } catch (final EOFException e) {
+                    return bytesWritten;
+                }
+                final int length = inputStream.readInt();
+                final long base = inputStream.readLong();
+                if (samples.length < length) {
+                    samples = new byte[length];
+                }
+                inputStream.readFully(samples, 0, length);
+                points.clear();
+                decodeSamples(ByteBuffer.wrap(samples, 0, length), length, size, base, persistenceFileFormatVersion,
+                        points);
+
+                final int outputLength = size * MeasurementSerializer.BYTES_IN_ONE_POINT_3D_ENTRY;
+                if (output.capacity() < outputLength) {
+                    output = ByteBuffer.allocate(outputLength);
+                }
+                output.clear();
+                for (int i = 0; i < size; i++) {
+                    output.putLong(points.getTimestamp(i));
+                    output.putDouble(points.getX(i));
+                    output.putDouble(points.getY(i));
+                    output.putDouble(points.getZ(i));
+                }
+                outputStream.write(output.array(), 0, outputLength);
+                bytesWritten += outputLength;
+            }
+        }
+    }
+
+    /**
+     * Writes the deflate segments of all blocks of the provided
+     * {@link MeasurementSerializer#PERSISTENCE_FILE_FORMAT_VERSION_4} file to the provided stream without
+     * decompressing them, see {@link Point3dDeflateCodec}.
+     *
+     * @param file The file to read.
+     * @param outputStream The stream to write to. It's not closed by this method.
+     * @return The number of bytes written.
+     * @throws IOException If reading or writing failed.
+     */
+    static long writeDeflateSegments(@NonNull final File file, @NonNull final OutputStream outputStream)
+            throws IOException {
+        long bytesWritten = 0;
+        try (final DataInputStream inputStream = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            byte[] segment = new byte[0];
+            while (true) {
+                try {
+                    inputStream.readInt();
+                } catch (final EOFException e) {
+                    return bytesWritten;
+                }
+                final int length = inputStream.readInt();
+                inputStream.readLong();
+                if (segment.length < length) {
+                    segment = new byte[length];
+                }
+                inputStream.readFully(segment, 0, length);
+                outputStream.write(segment, 0, length);
+                bytesWritten += length;
+            }
+        }
+    }
+
+    /**
+     * Decodes the samples of one block.
+     *
+     * @param input The buffer positioned at the first sample of the block.
+     * @param length The number of bytes of the samples of the block.
+     * @param size The number of samples in the block.
+     * @param base The base timestamp of the block.
+     * @param persistenceFileFormatVersion The block based version the block was serialized in.
+     * @param output The buffer to add the decoded samples to.
+     */
+    static void decodeSamples(@NonNull final ByteBuffer input, final int length, final int size,
+            final long base, final short persistenceFileFormatVersion, @NonNull final Point3dBuffer output) {
+        switch (persistenceFileFormatVersion) {
+            case PERSISTENCE_FILE_FORMAT_VERSION_2:
+                long timestamp = base;
+                for (int i = 0; i < size; i++) {
+                    timestamp += zigZagDecode(readVarLong(input));
+                    output.add(timestamp, input.getFloat(), input.getFloat(), input.getFloat());
+                }
+                break;
+            case PERSISTENCE_FILE_FORMAT_VERSION_3:
+                Point3dXorCodec.decode(input, size, base, output);
+                break;
+            case PERSISTENCE_FILE_FORMAT_VERSION_4:
+                Point3dDeflateCodec.decode(input, length, size, output);
+                break;
+            default:
+                throw new IllegalArgumentException(
+                        "Unsupported block based file format version: " + persistenceFileFormatVersion);
+        }
+    }
+
+    /**
+     * Skips exactly the provided number of bytes.
+     *
+     * @param inputStream The stream to skip bytes from.
+     * @param bytes The number of bytes to skip.
+     * @throws IOException If the stream ended before all bytes were skipped.
+     */
+    private static void skipFully(@NonNull final DataInputStream inputStream, final int bytes) throws IOException {
+        int remaining = bytes;
+        while (remaining > 0) {
+            final int skipped = inputStream.skipBytes(remaining);
+            if (skipped <= 0) {
+                throw new EOFException("Unexpected end of block, " + remaining + " bytes missing.");
+            }
+            remaining -= skipped;
+        }
+    }
+
+    /**
+     * Maps signed values to unsigned values so that values with a small absolute value have a short varint encoding.
+     *
+     * @param value The value to encode.
+     * @return The encoded value.
+     */
+    static long zigZagEncode(final long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    /**
+     * Reverses {@link #zigZagEncode(long)}.
+     *
+     * @param value The encoded value.
+     * @return The decoded value.
+     */
+    static long zigZagDecode(final long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Writes the provided value as varint, i.e. 7 bits per byte with the highest bit set when more bytes follow.
+     *
+     * @param buffer The buffer to write to.
+     * @param value The value to write, interpreted as unsigned.
+     */
+    static void writeVarLong(@NonNull final ByteBuffer buffer, final long value) {
+        long remaining = value;
+        while ((remaining & ~0x7FL) != 0) {
+            buffer.put((byte)((remaining & 0x7F) | 0x80));
+            remaining >>>= 7;
+        }
+        buffer.put((byte)remaining);
+    }
+
+    /**
+     * Reads a value written by {@link #writeVarLong(ByteBuffer, long)}.
+     *
+     * @param buffer The buffer to read from.
+     * @return The value read.
+     */
+    static long readVarLong(@NonNull final ByteBuffer buffer) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            if (shift > 63) {
+                throw new IllegalStateException("Malformed varint");
+            }
+            b = buffer.get();
+            value |= (long)(b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2021 Cyface GmbH
+ *
+ * This file is part of the Cyface SDK for Android.
+ *
+ * The Cyface SDK for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface SDK for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface SDK for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.persistence.serialization;
+
+import static de.cyface.persistence.serialization.MeasurementSerializer.BYTES_IN_ONE_POINT_3D_ENTRY;
+import static de.cyface.persistence.serialization.MeasurementSerializer.COMPRESSION_NOWRAP;
+import static de.cyface.persistence.serialization.MeasurementSerializer.DEFLATER_LEVEL;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import androidx.annotation.NonNull;
+import de.cyface.persistence.model.Point3dBatch;
+import de.cyface.persistence.model.Point3dBuffer;
+
+/**
+ * Codec for the samples of one block of the {@link MeasurementSerializer#PERSISTENCE_FILE_FORMAT_VERSION_4}.
+ * <p>
+ * The samples are stored in the sample format of the {@link MeasurementSerializer#TRANSFER_FILE_FORMAT_VERSION},
+ * compressed as one raw deflate segment: the output of a new {@link Deflater} which is flushed with
+ * {@link Deflater#SYNC_FLUSH} instead of being finished. Such a segment ends at a byte boundary, contains no final
+ * deflate block and does not reference data of other segments. Thus, the segments of all blocks can be concatenated
+ * into one deflate stream, which is terminated by {@link #FINAL_BLOCK}. This allows to create the compressed transfer
+ * file without compressing the sensor data again.
+ * <p>
+ * As the samples are not reduced to {@code float}s and deltas like in the
+ * {@link MeasurementSerializer#PERSISTENCE_FILE_FORMAT_VERSION_3}, the files are usually larger. Measurements which
+ * should use less storage can be created in the older format, see
+ * {@link de.cyface.persistence.PersistenceLayer#newMeasurement(de.cyface.persistence.model.Modality, short)}.
+ *
+ * @author Armin Schnabel
+ * @version 1.0.1
+ * @since 6.2.0
+ */
+final class Point3dDeflateCodec {
+
+    /**
+     * An empty final deflate block which terminates a stream of concatenated segments.
+     */
+    static final byte[] FINAL_BLOCK = finalBlock();
+
+    /**
+     * Private constructor to avoid instantiation of utility class.
+     */
+    private Point3dDeflateCodec() {
+        // Nothing to do here.
+    }
+
+    /**
+     * Encodes the samples of the provided batch.
+     *
+     * @param batch The data to encode.
+     * @return The samples as raw deflate segment.
+     */
+    static byte[] encode(@NonNull final Point3dBatch batch) {
+        return deflateSegment(MeasurementSerializer.serialize(batch));
+    }
+
+    /**
+     * Decodes samples written by {@link #encode(Point3dBatch)}.
+     *
+     * @param input The buffer positioned at the first byte of the segment. Afterwards it's positioned after the
+     *            segment.
+     * @param length The number of bytes of the segment.
+     * @param size The number of samples to decode.
+     * @param output The buffer to add the decoded samples to.
+     */
+    static void decode(@NonNull final ByteBuffer input, final int length, final int size,
+            @NonNull final Point3dBuffer output) {
+        final byte[] samples = new byte[size * BYTES_IN_ONE_POINT_3D_ENTRY];
+        final Inflater inflater = new Inflater(COMPRESSION_NOWRAP);
+        try {
+            inflater.setInput(input.array(), input.arrayOffset() + input.position(), length);
+            int inflated = 0;
+            while (inflated < samples.length) {
+                final int bytes = inflater.inflate(samples, inflated, samples.length - inflated);
+                if (bytes == 0 && (inflater.needsInput() || inflater.finished())) {
+                    throw new IllegalStateException(
+                            "Deflate segment ended after " + inflated + " of " + samples.length + " bytes.");
+                }
+                inflated += bytes;
+            }
+        } catch (final DataFormatException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            inflater.end();
+        }
+        input.position(input.position() + length);
+
+        final ByteBuffer buffer = ByteBuffer.wrap(samples);
+        for (int i = 0; i < size; i++) {
+            output.add(buffer.getLong(), (float)buffer.getDouble(), (float)buffer.getDouble(),
+                    (float)buffer.getDouble());
+        }
+    }
+
+    /**
+     * Compresses the provided data into a raw deflate segment which can be concatenated with other segments.
+     *
+     * @param data The data to compress.
+     * @return The compressed data.
+     */
+    static byte[] deflateSegment(@NonNull final byte[] data) {
+        final Deflater deflater = new Deflater(DEFLATER_LEVEL, COMPRESSION_NOWRAP);
+        try {
+            deflater.setInput(data);
+            final ByteArrayOutputStream output = new ByteArrayOutputStream(data.length / 2 + 64);
+            final byte[] buffer = new byte[8 * 1024];
+            int bytes;
+            // A full buffer means there may be more output for the flush
+            do {
+                bytes = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                output.write(buffer, 0, bytes);
+            } while (bytes == buffer.length);
+            return output.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * @return An empty final deflate block.
+     */
+    private static byte[] finalBlock() {
+        final Deflater deflater = new Deflater(DEFLATER_LEVEL, COMPRESSION_NOWRAP);
+        try {
+            deflater.finish();
+            final byte[] buffer = new byte[16];
+            final int bytes = deflater.deflate(buffer);
+            final byte[] block = new byte[bytes];
+            System.arraycopy(buffer, 0, block, 0, bytes);
+            return block;
+        } finally {
+            deflater.end();
+        }
+    }
+}
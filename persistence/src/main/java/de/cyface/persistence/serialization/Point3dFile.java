@@ -19,6 +19,7 @@
 package de.cyface.persistence.serialization;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.List;
 
 import android.content.Context;
@@ -28,15 +29,24 @@ import de.cyface.persistence.DefaultFileAccess;
 import de.cyface.persistence.FileAccessLayer;
 import de.cyface.persistence.model.Measurement;
 import de.cyface.persistence.model.Point3d;
+import de.cyface.persistence.model.Point3dBatch;
+import de.cyface.utils.Validate;
 
 /**
  * The file format to persist {@link Point3d}s such as accelerations, rotations and directions.
+ * <p>
+ * The data is split into segments, see {@link Point3dFileSegments}. The {@link #getFile()} is the first segment.
+ * <p>
+ * Since 6.2.0 this implements {@code FileSupport<Point3dBatch>} instead of {@code FileSupport<List<Point3d>>}, so the
+ * captured data is serialized without creating a {@code Point3d} per sample. Code which references this class as
+ * {@code FileSupport<List<Point3d>>} has to be migrated. The {@code List} based {@link #append(List)} and
+ * {@link #serialize(List)} are still available and convert the data to a {@link Point3dBatch}.
  *
  * @author Armin Schnabel
- * @version 4.0.1
+ * @version 7.0.0
  * @since 3.0.0
  */
-public class Point3dFile implements FileSupport<List<Point3d>> {
+public class Point3dFile implements FileSupport<Point3dBatch> {
 
     /**
      * The name of the folder containing acceleration data. Separating the files of each {@code Point3dFile} type should
@@ -80,6 +90,10 @@ public class Point3dFile implements FileSupport<List<Point3d>> {
      * The {@link FileAccessLayer} used to interact with files.
      */
     private FileAccessLayer fileAccessLayer;
+    /**
+     * The {@link MeasurementSerializer#PERSISTENCE_FILE_FORMAT_VERSION} of the data in this file.
+     */
+    private final short persistenceFileFormatVersion;
 
     /**
      * Constructor which actually creates a new {@link File} in the persistence layer.
@@ -91,35 +105,108 @@ public class Point3dFile implements FileSupport<List<Point3d>> {
      */
     public Point3dFile(@NonNull final Context context, final long measurementId, @NonNull final String folderName,
             @NonNull final String fileExtension) {
+        this(context, measurementId, folderName, fileExtension, MeasurementSerializer.PERSISTENCE_FILE_FORMAT_VERSION);
+    }
+
+    /**
+     * Constructor which actually creates a new {@link File} in the persistence layer or references the existing file
+     * of a {@link Measurement} which was captured with a previous
+     * {@link MeasurementSerializer#PERSISTENCE_FILE_FORMAT_VERSION}.
+     *
+     * @param context The {@link Context} required to access the underlying persistence layer.
+     * @param measurementId the identifier of the {@link Measurement} for which the file is to be created
+     * @param folderName The folder name defining the {@link Point3d} type of the file
+     * @param fileExtension the extension of the file type
+     * @param persistenceFileFormatVersion The {@code PERSISTENCE_FILE_FORMAT_VERSION} of the {@code Measurement}, see
+     *            {@link Measurement#getFileFormatVersion()}.
+     */
+    public Point3dFile(@NonNull final Context context, final long measurementId, @NonNull final String folderName,
+            @NonNull final String fileExtension, final short persistenceFileFormatVersion) {
+        Validate.isTrue(MeasurementSerializer.isSupported(persistenceFileFormatVersion),
+                "Unsupported persistence file format version: " + persistenceFileFormatVersion);
         this.fileAccessLayer = new DefaultFileAccess();
         this.file = fileAccessLayer.createFile(context, measurementId, folderName, fileExtension);
         this.measurementId = measurementId;
+        this.persistenceFileFormatVersion = persistenceFileFormatVersion;
     }
 
     /**
      * Constructor to reference an existing {@link Point3dFile}.
      *
+     * @param fileAccessLayer The {@link FileAccessLayer} used to interact with the file.
      * @param measurementId the identifier of the measurement for this file
      * @param file The already existing file which represents the {@link Point3dFile}
+     * @param persistenceFileFormatVersion The {@link MeasurementSerializer#PERSISTENCE_FILE_FORMAT_VERSION} of the
+     *            data in the file.
      */
-    private Point3dFile(final long measurementId, @NonNull final File file) {
+    private Point3dFile(@NonNull final FileAccessLayer fileAccessLayer, final long measurementId,
+            @NonNull final File file, final short persistenceFileFormatVersion) {
+        this.fileAccessLayer = fileAccessLayer;
         this.file = file;
         this.measurementId = measurementId;
+        this.persistenceFileFormatVersion = persistenceFileFormatVersion;
     }
 
     public File getFile() {
         return file;
     }
 
+    /**
+     * Opens a {@link Point3dFileAppender} which keeps this file open until it's closed. Use this instead of
+     * {@link #append(Point3dBatch)} when data is appended repeatedly, e.g. during data capturing.
+     *
+     * @return The opened appender. The caller is responsible for closing it.
+     * @throws IOException If the file could not be opened for writing or its segments could not be loaded.
+     */
+    public Point3dFileAppender openAppender() throws IOException {
+        return new Point3dFileAppender(file, persistenceFileFormatVersion);
+    }
+
+    /**
+     * Opens a {@link Point3dFileReader} to read the data of a time range without loading the whole file.
+     *
+     * @return The opened reader. The caller is responsible for closing it.
+     * @throws IOException If the file could not be opened or the data which is not in the {@link Point3dFileIndex}
+     *             could not be read.
+     */
+    public Point3dFileReader openReader() throws IOException {
+        return new Point3dFileReader(file, persistenceFileFormatVersion);
+    }
+
     @Override
-    public void append(final List<Point3d> dataPoints) {
+    public void append(final Point3dBatch dataPoints) {
         final byte[] data = serialize(dataPoints);
-        fileAccessLayer.write(file, data, true);
+        final File segmentFile;
+        try {
+            segmentFile = Point3dFileSegments.load(file).getActiveSegmentFile();
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+        fileAccessLayer.write(segmentFile, data, true);
     }
 
     @Override
-    public byte[] serialize(final List<Point3d> dataPoints) {
-        return MeasurementSerializer.serialize(dataPoints);
+    public byte[] serialize(final Point3dBatch dataPoints) {
+        return MeasurementSerializer.serialize(dataPoints, persistenceFileFormatVersion);
+    }
+
+    /**
+     * Appends {@link Point3d}s to this file, see {@link #append(Point3dBatch)}.
+     *
+     * @param dataPoints The data to append.
+     */
+    public void append(@NonNull final List<Point3d> dataPoints) {
+        append(new Point3dBatch(dataPoints));
+    }
+
+    /**
+     * Serializes {@link Point3d}s, see {@link #serialize(Point3dBatch)}.
+     *
+     * @param dataPoints The data to serialize.
+     * @return The data in the Cyface binary format.
+     */
+    public byte[] serialize(@NonNull final List<Point3d> dataPoints) {
+        return serialize(new Point3dBatch(dataPoints));
     }
 
     /**
@@ -130,18 +217,22 @@ public class Point3dFile implements FileSupport<List<Point3d>> {
      * @param measurementId the identifier of the measurement for which the file is to be found
      * @param folderName The folder name defining the {@link Point3d} type of the file
      * @param fileExtension the extension of the file type
+     * @param persistenceFileFormatVersion The {@link MeasurementSerializer#PERSISTENCE_FILE_FORMAT_VERSION} of the
+     *            {@code Measurement}, see {@link Measurement#getFileFormatVersion()}.
      * @return the {@link Point3dFile} link to the file
      * @throws NoSuchFileException if there is no such file
      */
     public static Point3dFile loadFile(@NonNull final Context context, @NonNull FileAccessLayer fileAccessLayer,
-            final long measurementId, @NonNull final String folderName, @NonNull final String fileExtension)
-            throws NoSuchFileException {
+            final long measurementId, @NonNull final String folderName, @NonNull final String fileExtension,
+            final short persistenceFileFormatVersion) throws NoSuchFileException {
+        Validate.isTrue(MeasurementSerializer.isSupported(persistenceFileFormatVersion),
+                "Unsupported persistence file format version: " + persistenceFileFormatVersion);
 
         final File file = fileAccessLayer.getFilePath(context, measurementId, folderName, fileExtension);
         if (!file.exists()) {
             throw new NoSuchFileException("The follow file could not be loaded: " + file.getPath());
         }
 
-        return new Point3dFile(measurementId, file);
+        return new Point3dFile(fileAccessLayer, measurementId, file, persistenceFileFormatVersion);
     }
 }
\ No newline at end of file
@@ -0,0 +1,354 @@
+/*
+ * Copyright 2021 Cyface GmbH
+ *
+ * This file is part of the Cyface SDK for Android.
+ *
+ * The Cyface SDK for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface SDK for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface SDK for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.persistence.serialization;
+
+import static de.cyface.persistence.Constants.TAG;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import de.cyface.persistence.model.Point3dBatch;
+import de.cyface.utils.Validate;
+
+/**
+ * Appends {@link Point3dBatch}es to a {@link Point3dFile} through a {@link FileChannel} which stays open until
+ * {@link #close()} is called.
+ * <p>
+ * In contrast to {@link Point3dFile#append(Point3dBatch)}, which opens and closes the file for each batch, this is
+ * meant to be used for the whole capturing of a measurement. When multiple batches are appended at once they are
+ * written with one gathering write instead of one write per batch.
+ * <p>
+ * The data is appended to the active segment, see {@link Point3dFileSegments}. When the active segment reached its
+ * maximal size, it's closed and the data is appended to the next segment.
+ * <p>
+ * After the data is written, one entry per appended batch is added to the {@link Point3dFileIndex} of the segment.
+ * Before the first batch is appended to a segment, the index file is synchronized with the data already in the
+ * segment. As the data can always be read without index, a failure to write the index only disables the indexing for
+ * this appender.
+ * <p>
+ * Afterwards, one entry per appended batch is added to the {@link Point3dFileChecksums} of the segment, which allow to
+ * detect damaged blocks. A failure to write the checksums only disables the checksums for this appender.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author Armin Schnabel
+ * @version 1.4.1
+ * @since 6.2.0
+ */
+public final class Point3dFileAppender implements Closeable {
+
+    /**
+     * The file the data is appended to, which is the first segment.
+     */
+    private final File file;
+    /**
+     * The {@link MeasurementSerializer#PERSISTENCE_FILE_FORMAT_VERSION} in which the data is appended.
+     */
+    private final short persistenceFileFormatVersion;
+    /**
+     * The number of bytes after which the active segment is closed.
+     */
+    private final long maxSegmentBytes;
+    /**
+     * The segments of the {@link #file}.
+     */
+    private final Point3dFileSegments segments;
+    /**
+     * Calculates the checksums of the appended blocks.
+     */
+    private final CRC32 crc = new CRC32();
+    /**
+     * The file of the active segment.
+     */
+    private File segmentFile;
+    /**
+     * The channel to append the data to the active segment.
+     */
+    private FileChannel channel;
+    /**
+     * The channel to append the {@link Point3dFileIndex} entries to or {@code null} if the index file was not yet
+     * synchronized with the data of the active segment.
+     */
+    private FileChannel indexChannel;
+    /**
+     * {@code false} if writing the {@link Point3dFileIndex} failed, in which case no entries are added anymore.
+     */
+    private boolean indexing = true;
+    /**
+     * The channel to append the {@link Point3dFileChecksums} entries to or {@code null} if the checksum file was not
+     * yet opened for the active segment.
+     */
+    private FileChannel checksumChannel;
+    /**
+     * {@code false} if writing the {@link Point3dFileChecksums} failed, in which case no entries are added anymore.
+     */
+    private boolean checksumming = true;
+
+    /**
+     * Opens the provided file for appending in the current
+     * {@link MeasurementSerializer#PERSISTENCE_FILE_FORMAT_VERSION}.
+     *
+     * @param file The existing file to append to.
+     * @throws IOException If the file could not be opened for writing or its segments could not be loaded.
+     */
+    public Point3dFileAppender(@NonNull final File file) throws IOException {
+        this(file, MeasurementSerializer.PERSISTENCE_FILE_FORMAT_VERSION);
+    }
+
+    /**
+     * Opens the provided file for appending.
+     *
+     * @param file The existing file to append to.
+     * @param persistenceFileFormatVersion The {@link MeasurementSerializer#PERSISTENCE_FILE_FORMAT_VERSION} of the
+     *            data already in the file.
+     * @throws IOException If the file could not be opened for writing or its segments could not be loaded.
+     */
+    public Point3dFileAppender(@NonNull final File file, final short persistenceFileFormatVersion)
+            throws IOException {
+        this(file, persistenceFileFormatVersion, Point3dFileSegments.MAX_SEGMENT_BYTES);
+    }
+
+    /**
+     * Opens the provided file for appending.
+     *
+     * @param file The existing file to append to.
+     * @param persistenceFileFormatVersion The {@link MeasurementSerializer#PERSISTENCE_FILE_FORMAT_VERSION} of the
+     *            data already in the file.
+     * @param maxSegmentBytes The number of bytes after which the active segment is closed.
+     * @throws IOException If the file could not be opened for writing or its segments could not be loaded.
+     */
+    Point3dFileAppender(@NonNull final File file, final short persistenceFileFormatVersion,
+            final long maxSegmentBytes) throws IOException {
+        Validate.isTrue(file.exists(), "Failed to open file for appending as it does not exist: " + file.getPath());
+        Validate.isTrue(MeasurementSerializer.isSupported(persistenceFileFormatVersion),
+                "Unsupported persistence file format version: " + persistenceFileFormatVersion);
+        Validate.isTrue(maxSegmentBytes > 0, "Illegal argument: maxSegmentBytes must be positive");
+        this.file = file;
+        this.persistenceFileFormatVersion = persistenceFileFormatVersion;
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.segments = Point3dFileSegments.load(file);
+        openSegment();
+    }
+
+    /**
+     * Appends the provided batches in the order provided.
+     *
+     * @param batches The batches to append.
+     * @throws IOException If writing to the file failed, e.g. as there is no space left on the device.
+     */
+    public synchronized void append(@NonNull final Point3dBatch... batches) throws IOException {
+        if (channel.size() >= maxSegmentBytes) {
+            closeSegment();
+        }
+        if (indexing && indexChannel == null) {
+            openIndex();
+        }
+        if (checksumming && checksumChannel == null) {
+            openChecksums();
+        }
+        final long startPosition = channel.size();
+        long position = startPosition;
+
+        final ByteBuffer[] buffers = new ByteBuffer[batches.length];
+        final ByteBuffer entries = ByteBuffer.allocate(batches.length * Point3dFileIndex.BYTES_IN_ENTRY);
+        final ByteBuffer checksums = ByteBuffer.allocate(batches.length * Point3dFileChecksums.BYTES_IN_ENTRY);
+        long remaining = 0;
+        for (int i = 0; i < batches.length; i++) {
+            buffers[i] = ByteBuffer.wrap(MeasurementSerializer.serialize(batches[i], persistenceFileFormatVersion));
+            final int length = buffers[i].remaining();
+            // Empty batches are not written
+            if (length > 0) {
+                Point3dFileIndex.putEntry(entries, batches[i].getTimestamp(0), position, batches[i].size(), length);
+                if (checksumChannel != null) {
+                    Point3dFileChecksums.putEntry(checksums, position, buffers[i], crc);
+                }
+                position += length;
+            }
+            remaining += length;
+        }
+
+        // A gathering write may write less than requested, e.g. when it is interrupted
+        try {
+            while (remaining > 0) {
+                remaining -= channel.write(buffers);
+            }
+        } catch (final IOException e) {
+            rollback(startPosition);
+            throw e;
+        }
+
+        // The entries are written after the data so they never reference data which was not written
+        if (indexChannel != null) {
+            entries.flip();
+            try {
+                while (entries.hasRemaining()) {
+                    indexChannel.write(entries);
+                }
+            } catch (final IOException e) {
+                Log.w(TAG, "Failed to write index, disabling indexing of " + segmentFile.getPath(), e);
+                indexing = false;
+                closeIndex();
+            }
+        }
+        if (checksumChannel != null) {
+            checksums.flip();
+            try {
+                while (checksums.hasRemaining()) {
+                    checksumChannel.write(checksums);
+                }
+            } catch (final IOException e) {
+                Log.w(TAG, "Failed to write checksums, disabling checksums of " + segmentFile.getPath(), e);
+                checksumming = false;
+                closeChecksums();
+            }
+        }
+    }
+
+    /**
+     * Removes the data of a failed append, so the segment, its {@link Point3dFileIndex} and its
+     * {@link Point3dFileChecksums} stay in sync. As the entries are only written after the data, they are unchanged.
+     * <p>
+     * If the data cannot be removed, e.g. because the channel was closed by an interrupt, the index is synchronized
+     * with the partially written data on the next append. The incomplete block is removed by
+     * {@link Point3dFileChecksums#verify(File, short)}.
+     *
+     * @param startPosition The size of the active segment before the failed append.
+     */
+    private void rollback(final long startPosition) {
+        try {
+            channel.truncate(startPosition);
+        } catch (final IOException e) {
+            Log.w(TAG, "Failed to remove partially appended data of " + segmentFile.getPath(), e);
+            closeIndex();
+            closeChecksums();
+        }
+    }
+
+    /**
+     * Opens the active segment for appending.
+     *
+     * @throws IOException If the segment could not be created or opened.
+     */
+    private void openSegment() throws IOException {
+        segmentFile = segments.getActiveSegmentFile();
+        // The next segment is created after the previous segment was closed, which may have been interrupted
+        if (!segmentFile.exists() && !segmentFile.createNewFile()) {
+            throw new IOException("Failed to create segment: " + segmentFile.getPath());
+        }
+        channel = new FileOutputStream(segmentFile, true).getChannel();
+    }
+
+    /**
+     * Closes the active segment and opens the next segment for appending.
+     *
+     * @throws IOException If the manifest could not be written or the next segment could not be opened.
+     */
+    private void closeSegment() throws IOException {
+        closeIndex();
+        closeChecksums();
+        final long length = channel.size();
+        final long sampleCount;
+        try (final FileChannel data = new FileInputStream(segmentFile).getChannel()) {
+            sampleCount = Point3dFileIndex.load(segmentFile, data, length, persistenceFileFormatVersion)
+                    .getSampleCount();
+        }
+        Validate.isTrue(sampleCount <= Integer.MAX_VALUE, "Too many samples: " + sampleCount);
+        segments.closeActiveSegment(length, (int)sampleCount);
+        channel.close();
+        openSegment();
+    }
+
+    /**
+     * Synchronizes the {@link Point3dFileIndex} with the data of the active segment and opens it for appending.
+     */
+    private void openIndex() {
+        try {
+            Point3dFileIndex.update(segmentFile, persistenceFileFormatVersion);
+            indexChannel = new FileOutputStream(Point3dFileIndex.getIndexFile(segmentFile), true).getChannel();
+        } catch (final IOException e) {
+            Log.w(TAG, "Failed to update index, disabling indexing of " + segmentFile.getPath(), e);
+            indexing = false;
+        }
+    }
+
+    /**
+     * Closes the channel of the {@link Point3dFileIndex} if it is open.
+     */
+    private void closeIndex() {
+        if (indexChannel == null) {
+            return;
+        }
+        try {
+            indexChannel.close();
+        } catch (final IOException e) {
+            Log.w(TAG, "Failed to close index of " + segmentFile.getPath(), e);
+        }
+        indexChannel = null;
+    }
+
+    /**
+     * Opens the {@link Point3dFileChecksums} of the active segment for appending.
+     */
+    private void openChecksums() {
+        try {
+            checksumChannel = Point3dFileChecksums.openForAppending(segmentFile);
+        } catch (final IOException e) {
+            Log.w(TAG, "Failed to open checksums, disabling checksums of " + segmentFile.getPath(), e);
+            checksumming = false;
+        }
+    }
+
+    /**
+     * Closes the channel of the {@link Point3dFileChecksums} if it is open.
+     */
+    private void closeChecksums() {
+        if (checksumChannel == null) {
+            return;
+        }
+        try {
+            checksumChannel.close();
+        } catch (final IOException e) {
+            Log.w(TAG, "Failed to close checksums of " + segmentFile.getPath(), e);
+        }
+        checksumChannel = null;
+    }
+
+    /**
+     * @return The file the data is appended to, which is the first segment.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        closeIndex();
+        closeChecksums();
+        channel.close();
+    }
+}
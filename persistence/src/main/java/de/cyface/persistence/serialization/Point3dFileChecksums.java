@@ -0,0 +1,258 @@
+/*
+ * Copyright 2021 Cyface GmbH
+ *
+ * This file is part of the Cyface SDK for Android.
+ *
+ * The Cyface SDK for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface SDK for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface SDK for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.persistence.serialization;
+
+import static de.cyface.persistence.Constants.TAG;
+import static de.cyface.persistence.serialization.ByteSizes.INT_BYTES;
+import static de.cyface.persistence.serialization.ByteSizes.LONG_BYTES;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import de.cyface.utils.Validate;
+
+/**
+ * Checksums of the blocks of a {@link Point3dFile} segment, stored in a sidecar file next to the segment file, see
+ * {@link #getChecksumFile(File)}.
+ * <p>
+ * The {@link Point3dFileAppender} adds one entry per appended block, see {@link Point3dBlockSerializer}, or per
+ * appended batch in the {@link MeasurementSerializer#PERSISTENCE_FILE_FORMAT_VERSION_1}. All values are stored in big
+ * endian:
+ * <ul>
+ * <li>8 Bytes long position of the block in the segment file</li>
+ * <li>4 Bytes integer number of bytes of the block</li>
+ * <li>4 Bytes integer CRC-32 of the bytes of the block</li>
+ * </ul>
+ * The checksums are optional: data without checksum, e.g. files captured before checksums were added or data appended
+ * via {@link Point3dFile#append(Point3dBatch)}, is only checked for complete blocks, see {@link Point3dFileIndex}.
+ * <p>
+ * {@link #verify(File, short)} truncates each segment before the first block which is incomplete or does not match its
+ * checksum, e.g. when the app was killed while appending. It reads each block once, so it is linear in the file size.
+ * <p>
+ * This class is not thread safe.
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 6.2.0
+ */
+public final class Point3dFileChecksums {
+
+    /**
+     * The file extension which is added to the name of the segment file to get the name of the checksum file.
+     */
+    public static final String FILE_EXTENSION = "crc";
+    /**
+     * The number of bytes of each entry in the checksum file.
+     */
+    static final int BYTES_IN_ENTRY = LONG_BYTES + 2 * INT_BYTES;
+
+    /**
+     * Utility class, no instances.
+     */
+    private Point3dFileChecksums() {
+        // Nothing to do
+    }
+
+    /**
+     * @param file The segment file of a {@link Point3dFile}.
+     * @return The checksum file of the provided segment file. The file may not exist.
+     */
+    @NonNull
+    public static File getChecksumFile(@NonNull final File file) {
+        return new File(file.getPath() + "." + FILE_EXTENSION);
+    }
+
+    /**
+     * Opens the checksum file of a segment for appending. An incomplete entry at the end of the file, e.g. when the
+     * app was killed while appending, is removed.
+     *
+     * @param file The segment file.
+     * @return The opened channel. The caller is responsible for closing it.
+     * @throws IOException If the checksum file could not be opened.
+     */
+    @NonNull
+    static FileChannel openForAppending(@NonNull final File file) throws IOException {
+        final FileChannel channel = new FileOutputStream(getChecksumFile(file), true).getChannel();
+        try {
+            channel.truncate(channel.size() - channel.size() % BYTES_IN_ENTRY);
+        } catch (final IOException e) {
+            channel.close();
+            throw e;
+        }
+        return channel;
+    }
+
+    /**
+     * Adds an entry for a block to the provided buffer in the format of the checksum file.
+     *
+     * @param buffer The buffer to add the entry to.
+     * @param position The position of the block in the segment file.
+     * @param block The bytes of the block from its position to its limit. The buffer must be backed by an array. Its
+     *            position is not changed.
+     * @param crc The {@link CRC32} instance to calculate the checksum with.
+     */
+    static void putEntry(@NonNull final ByteBuffer buffer, final long position, @NonNull final ByteBuffer block,
+            @NonNull final CRC32 crc) {
+        buffer.putLong(position);
+        buffer.putInt(block.remaining());
+        buffer.putInt(checksum(block, crc));
+    }
+
+    /**
+     * Truncates each segment of a {@link Point3dFile} before the first block which is incomplete or does not match its
+     * checksum. The {@link Point3dFileIndex} and the checksum file of a truncated segment are synchronized with the
+     * truncated data.
+     * <p>
+     * Only call this when no {@link Point3dFileAppender} is open for the file, e.g. after the capturing was stopped.
+     *
+     * @param file The data file of the {@link Point3dFile}, which is the first segment.
+     * @param persistenceFileFormatVersion The {@link MeasurementSerializer#PERSISTENCE_FILE_FORMAT_VERSION} of the
+     *            data.
+     * @return The number of bytes removed from all segments, {@code 0} if the file is intact.
+     * @throws IOException If a segment could not be read or truncated.
+     */
+    public static long verify(@NonNull final File file, final short persistenceFileFormatVersion) throws IOException {
+        Validate.isTrue(MeasurementSerializer.isSupported(persistenceFileFormatVersion),
+                "Unsupported persistence file format version: " + persistenceFileFormatVersion);
+        final Point3dFileSegments segments = Point3dFileSegments.load(file);
+        final CRC32 crc = new CRC32();
+        long removed = 0L;
+        for (int i = 0; i < segments.getSegmentCount(); i++) {
+            final File segmentFile = Point3dFileSegments.getSegmentFile(file, i);
+            if (!segmentFile.exists()) {
+                continue;
+            }
+            removed += verifySegment(segmentFile, segments.getLength(i), persistenceFileFormatVersion, crc);
+        }
+        return removed;
+    }
+
+    /**
+     * Truncates a segment before the first block which is incomplete or does not match its checksum.
+     *
+     * @param file The segment file.
+     * @param length The number of bytes of the segment which contain data, see
+     *            {@link Point3dFileSegments#getLength(int)}.
+     * @param persistenceFileFormatVersion The {@link MeasurementSerializer#PERSISTENCE_FILE_FORMAT_VERSION} of the
+     *            data.
+     * @param crc The {@link CRC32} instance to calculate the checksums with.
+     * @return The number of bytes removed from the segment.
+     * @throws IOException If the segment could not be read or truncated.
+     */
+    private static long verifySegment(@NonNull final File file, final long length,
+            final short persistenceFileFormatVersion, @NonNull final CRC32 crc) throws IOException {
+        final long size;
+        long validEnd;
+        int validEntries = 0;
+        try (final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            final FileChannel data = randomAccessFile.getChannel();
+            size = data.size();
+            // The index only contains complete blocks
+            final Point3dFileIndex index = Point3dFileIndex.load(file, data, length, persistenceFileFormatVersion);
+            final int last = index.size() - 1;
+            validEnd = last < 0 ? 0L : index.getPosition(last) + index.getLength(last);
+
+            final ByteBuffer entries = readChecksumFile(getChecksumFile(file));
+            ByteBuffer block = ByteBuffer.allocate(0);
+            while (entries.hasRemaining()) {
+                final long position = entries.getLong();
+                final int blockLength = entries.getInt();
+                final int checksum = entries.getInt();
+                if (position < 0 || blockLength <= 0 || position + blockLength > validEnd) {
+                    validEnd = Math.max(0L, Math.min(validEnd, position));
+                    break;
+                }
+                if (block.capacity() < blockLength) {
+                    block = ByteBuffer.allocate(blockLength);
+                }
+                block.clear();
+                block.limit(blockLength);
+                Point3dFileIndex.readFully(data, block, position);
+                block.flip();
+                if (checksum(block, crc) != checksum) {
+                    Log.w(TAG, "Checksum mismatch at position " + position + " of " + file.getPath());
+                    validEnd = position;
+                    break;
+                }
+                validEntries++;
+            }
+
+            if (validEnd == size) {
+                return 0L;
+            }
+            Log.w(TAG, "Truncating " + file.getPath() + " from " + size + " to " + validEnd + " bytes");
+            data.truncate(validEnd);
+        }
+
+        Point3dFileIndex.update(file, persistenceFileFormatVersion);
+        final File checksumFile = getChecksumFile(file);
+        if (checksumFile.exists()) {
+            try (final RandomAccessFile output = new RandomAccessFile(checksumFile, "rw")) {
+                output.setLength((long)validEntries * BYTES_IN_ENTRY);
+            }
+        }
+        return size - validEnd;
+    }
+
+    /**
+     * Reads the complete entries of a checksum file.
+     *
+     * @param checksumFile The checksum file to read.
+     * @return The entries from position to limit, which is empty if the file does not exist.
+     * @throws IOException If the checksum file could not be read.
+     */
+    @NonNull
+    private static ByteBuffer readChecksumFile(@NonNull final File checksumFile) throws IOException {
+        if (!checksumFile.exists()) {
+            return ByteBuffer.allocate(0);
+        }
+        try (final FileChannel channel = new FileInputStream(checksumFile).getChannel()) {
+            final long entries = channel.size() / BYTES_IN_ENTRY;
+            Validate.isTrue(entries <= Integer.MAX_VALUE / BYTES_IN_ENTRY, "Too many entries: " + entries);
+            final ByteBuffer buffer = ByteBuffer.allocate((int)entries * BYTES_IN_ENTRY);
+            Point3dFileIndex.readFully(channel, buffer, 0L);
+            buffer.flip();
+            return buffer;
+        }
+    }
+
+    /**
+     * Calculates the checksum of a block.
+     *
+     * @param block The bytes of the block from its position to its limit. The buffer must be backed by an array. Its
+     *            position is not changed.
+     * @param crc The {@link CRC32} instance to calculate the checksum with.
+     * @return The lower 32 bits of the CRC-32 of the block.
+     */
+    private static int checksum(@NonNull final ByteBuffer block, @NonNull final CRC32 crc) {
+        crc.reset();
+        // CRC32.update(ByteBuffer) requires API 26
+        crc.update(block.array(), block.arrayOffset() + block.position(), block.remaining());
+        return (int)crc.getValue();
+    }
+}
@@ -0,0 +1,425 @@
+/*
+ * Copyright 2021 Cyface GmbH
+ *
+ * This file is part of the Cyface SDK for Android.
+ *
+ * The Cyface SDK for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface SDK for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface SDK for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.persistence.serialization;
+
+import static de.cyface.persistence.Constants.TAG;
+import static de.cyface.persistence.serialization.ByteSizes.INT_BYTES;
+import static de.cyface.persistence.serialization.ByteSizes.LONG_BYTES;
+import static de.cyface.persistence.serialization.MeasurementSerializer.BYTES_IN_ONE_POINT_3D_ENTRY;
+import static de.cyface.persistence.serialization.MeasurementSerializer.PERSISTENCE_FILE_FORMAT_VERSION_1;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import de.cyface.persistence.model.Point3d;
+import de.cyface.persistence.model.Point3dBatch;
+import de.cyface.persistence.model.Point3dBuffer;
+import de.cyface.utils.Validate;
+
+/**
+ * A sparse time index of a {@link Point3dFile}, stored in a sidecar file next to the data file, see
+ * {@link #getIndexFile(File)}.
+ * <p>
+ * The index contains one entry per appended block, see {@link Point3dBlockSerializer}, or per appended batch in the
+ * {@link MeasurementSerializer#PERSISTENCE_FILE_FORMAT_VERSION_1}. All values are stored in big endian:
+ * <ul>
+ * <li>8 Bytes long timestamp of the first {@link Point3d} of the entry</li>
+ * <li>8 Bytes long position of the entry in the data file</li>
+ * <li>4 Bytes integer number of samples of the entry</li>
+ * <li>4 Bytes integer number of bytes of the entry in the data file</li>
+ * </ul>
+ * As the samples are stored in the order of their timestamps, a time range is found by a binary search over the
+ * entries, independent of the encoding of the data.
+ * <p>
+ * The index is written by the {@link Point3dFileAppender} after the data was written. The data file stays the only
+ * source of truth: Entries which do not fit the data file are dropped and data which is not indexed, e.g. when the
+ * index file was lost or the data was appended via {@link Point3dFile#append(Point3dBatch)}, is indexed by scanning
+ * the data file from the last indexed entry. Only the appender persists these repairs, so there is always one writer
+ * of the index file.
+ * <p>
+ * This class is not thread safe.
+ *
+ * @author Armin Schnabel
+ * @version 1.1.0
+ * @since 6.2.0
+ */
+public final class Point3dFileIndex {
+
+    /**
+     * The file extension which is added to the name of the data file to get the name of the index file.
+     */
+    public static final String FILE_EXTENSION = "idx";
+    /**
+     * The number of bytes of each entry in the index file.
+     */
+    static final int BYTES_IN_ENTRY = 2 * LONG_BYTES + 2 * INT_BYTES;
+    /**
+     * The number of samples per entry when a {@link MeasurementSerializer#PERSISTENCE_FILE_FORMAT_VERSION_1} file is
+     * indexed by scanning it, as the boundaries of the appended batches are not known.
+     */
+    private static final int SAMPLES_PER_SCANNED_ENTRY = Point3dBuffer.DEFAULT_CAPACITY;
+    /**
+     * The timestamp of the first sample of each entry.
+     */
+    private long[] timestamps;
+    /**
+     * The position of each entry in the data file.
+     */
+    private long[] positions;
+    /**
+     * The number of samples of each entry.
+     */
+    private int[] sampleCounts;
+    /**
+     * The number of bytes of each entry in the data file.
+     */
+    private int[] lengths;
+    /**
+     * The number of entries.
+     */
+    private int size;
+    /**
+     * The number of samples of all entries.
+     */
+    private long sampleCount;
+    /**
+     * The position in the data file after the last entry.
+     */
+    private long end;
+
+    /**
+     * Creates an empty index.
+     */
+    private Point3dFileIndex() {
+        this.timestamps = new long[64];
+        this.positions = new long[64];
+        this.sampleCounts = new int[64];
+        this.lengths = new int[64];
+    }
+
+    /**
+     * @param file The data file of a {@link Point3dFile}.
+     * @return The index file of the provided data file. The file may not exist.
+     */
+    @NonNull
+    public static File getIndexFile(@NonNull final File file) {
+        return new File(file.getPath() + "." + FILE_EXTENSION);
+    }
+
+    /**
+     * Loads the index of a data file and indexes the data which is not yet in the index file.
+     * <p>
+     * The repaired index is not written to the index file, see {@link #update(File, short)}.
+     *
+     * @param file The data file.
+     * @param data The opened channel of the data file.
+     * @param persistenceFileFormatVersion The {@link MeasurementSerializer#PERSISTENCE_FILE_FORMAT_VERSION} of the
+     *            data.
+     * @return The loaded index.
+     * @throws IOException If the data file could not be read.
+     */
+    @NonNull
+    static Point3dFileIndex load(@NonNull final File file, @NonNull final FileChannel data,
+            final short persistenceFileFormatVersion) throws IOException {
+        return load(file, data, data.size(), persistenceFileFormatVersion);
+    }
+
+    /**
+     * Loads the index of the first bytes of a data file and indexes the data which is not yet in the index file.
+     * <p>
+     * The repaired index is not written to the index file, see {@link #update(File, short)}.
+     *
+     * @param file The data file.
+     * @param data The opened channel of the data file.
+     * @param length The number of bytes at the beginning of the data file to index. Data after these bytes is ignored.
+     * @param persistenceFileFormatVersion The {@link MeasurementSerializer#PERSISTENCE_FILE_FORMAT_VERSION} of the
+     *            data.
+     * @return The loaded index.
+     * @throws IOException If the data file could not be read.
+     */
+    @NonNull
+    static Point3dFileIndex load(@NonNull final File file, @NonNull final FileChannel data, final long length,
+            final short persistenceFileFormatVersion) throws IOException {
+        final Point3dFileIndex index = new Point3dFileIndex();
+        final long dataSize = Math.min(length, data.size());
+        index.readIndexFile(getIndexFile(file), dataSize);
+        index.scan(file, data, dataSize, persistenceFileFormatVersion);
+        return index;
+    }
+
+    /**
+     * Synchronizes the index file with the data file: entries which do not fit the data file are removed and the data
+     * which is not yet indexed is added.
+     *
+     * @param file The data file.
+     * @param persistenceFileFormatVersion The {@link MeasurementSerializer#PERSISTENCE_FILE_FORMAT_VERSION} of the
+     *            data.
+     * @throws IOException If the data file could not be read or the index file could not be written.
+     */
+    static void update(@NonNull final File file, final short persistenceFileFormatVersion) throws IOException {
+        final File indexFile = getIndexFile(file);
+        final Point3dFileIndex index = new Point3dFileIndex();
+        try (final FileChannel data = new FileInputStream(file).getChannel()) {
+            final long dataSize = data.size();
+            index.readIndexFile(indexFile, dataSize);
+            final int valid = index.size;
+            index.scan(file, data, dataSize, persistenceFileFormatVersion);
+
+            final ByteBuffer entries = ByteBuffer.allocate((index.size - valid) * BYTES_IN_ENTRY);
+            for (int i = valid; i < index.size; i++) {
+                putEntry(entries, index.timestamps[i], index.positions[i], index.sampleCounts[i], index.lengths[i]);
+            }
+            entries.flip();
+            try (final RandomAccessFile output = new RandomAccessFile(indexFile, "rw")) {
+                final long validLength = (long)valid * BYTES_IN_ENTRY;
+                output.setLength(validLength);
+                final FileChannel channel = output.getChannel();
+                channel.position(validLength);
+                while (entries.hasRemaining()) {
+                    channel.write(entries);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds an entry to the provided buffer in the format of the index file.
+     *
+     * @param buffer The buffer to add the entry to.
+     * @param timestamp The timestamp of the first sample of the entry.
+     * @param position The position of the entry in the data file.
+     * @param sampleCount The number of samples of the entry.
+     * @param length The number of bytes of the entry in the data file.
+     */
+    static void putEntry(@NonNull final ByteBuffer buffer, final long timestamp, final long position,
+            final int sampleCount, final int length) {
+        buffer.putLong(timestamp);
+        buffer.putLong(position);
+        buffer.putInt(sampleCount);
+        buffer.putInt(length);
+    }
+
+    /**
+     * Reads the valid entries of the index file. Reading stops at the first entry which does not fit the data file.
+     *
+     * @param indexFile The index file to read.
+     * @param dataSize The size of the data file in bytes.
+     */
+    private void readIndexFile(@NonNull final File indexFile, final long dataSize) {
+        if (!indexFile.exists()) {
+            return;
+        }
+        final ByteBuffer buffer;
+        try (final FileChannel channel = new FileInputStream(indexFile).getChannel()) {
+            // Each entry references at least one block header or sample, more entries cannot match the data
+            final long entries = Math.min(channel.size() / BYTES_IN_ENTRY,
+                    dataSize / Point3dBlockSerializer.BYTES_IN_BLOCK_HEADER);
+            Validate.isTrue(entries <= Integer.MAX_VALUE / BYTES_IN_ENTRY, "Too many index entries: " + entries);
+            buffer = ByteBuffer.allocate((int)entries * BYTES_IN_ENTRY);
+            readFully(channel, buffer, 0L);
+            buffer.flip();
+        } catch (final IOException e) {
+            Log.w(TAG, "Ignoring index file which could not be read: " + indexFile.getPath(), e);
+            return;
+        }
+
+        long previousTimestamp = Long.MIN_VALUE;
+        while (buffer.hasRemaining()) {
+            final long timestamp = buffer.getLong();
+            final long position = buffer.getLong();
+            final int count = buffer.getInt();
+            final int length = buffer.getInt();
+            if (timestamp < previousTimestamp || position < end || count < 0 || length <= 0
+                    || position + length > dataSize) {
+                Log.w(TAG, "Ignoring index entries which do not match the data from entry " + size + ": "
+                        + indexFile.getPath());
+                return;
+            }
+            add(timestamp, position, count, length);
+            previousTimestamp = timestamp;
+        }
+    }
+
+    /**
+     * Adds the data after the last entry by scanning the data file. Scanning stops at an incomplete block at the end
+     * of the file, e.g. when the app was killed while appending.
+     *
+     * @param file The data file, for logging.
+     * @param data The opened channel of the data file.
+     * @param dataSize The size of the data file in bytes.
+     * @param persistenceFileFormatVersion The {@link MeasurementSerializer#PERSISTENCE_FILE_FORMAT_VERSION} of the
+     *            data.
+     * @throws IOException If the data file could not be read.
+     */
+    private void scan(@NonNull final File file, @NonNull final FileChannel data, final long dataSize,
+            final short persistenceFileFormatVersion) throws IOException {
+        long position = end;
+        if (persistenceFileFormatVersion == PERSISTENCE_FILE_FORMAT_VERSION_1) {
+            final ByteBuffer timestamp = ByteBuffer.allocate(LONG_BYTES);
+            while (position + BYTES_IN_ONE_POINT_3D_ENTRY <= dataSize) {
+                final int count = (int)Math.min(SAMPLES_PER_SCANNED_ENTRY,
+                        (dataSize - position) / BYTES_IN_ONE_POINT_3D_ENTRY);
+                timestamp.clear();
+                readFully(data, timestamp, position);
+                add(timestamp.getLong(0), position, count, count * BYTES_IN_ONE_POINT_3D_ENTRY);
+                position += count * BYTES_IN_ONE_POINT_3D_ENTRY;
+            }
+        } else {
+            final ByteBuffer header = ByteBuffer.allocate(Point3dBlockSerializer.BYTES_IN_BLOCK_HEADER);
+            while (position + Point3dBlockSerializer.BYTES_IN_BLOCK_HEADER <= dataSize) {
+                header.clear();
+                readFully(data, header, position);
+                final int count = header.getInt(0);
+                final int length = Point3dBlockSerializer.BYTES_IN_BLOCK_HEADER + header.getInt(INT_BYTES);
+                if (count < 0 || length < Point3dBlockSerializer.BYTES_IN_BLOCK_HEADER
+                        || position + length > dataSize) {
+                    break;
+                }
+                add(header.getLong(2 * INT_BYTES), position, count, length);
+                position += length;
+            }
+        }
+        if (position != dataSize) {
+            Log.w(TAG, "Ignoring incomplete block at the end of " + file.getPath() + ": " + (dataSize - position)
+                    + " bytes");
+        }
+    }
+
+    /**
+     * Adds an entry to this index.
+     *
+     * @param timestamp The timestamp of the first sample of the entry.
+     * @param position The position of the entry in the data file.
+     * @param count The number of samples of the entry.
+     * @param length The number of bytes of the entry in the data file.
+     */
+    private void add(final long timestamp, final long position, final int count, final int length) {
+        if (size == timestamps.length) {
+            timestamps = Arrays.copyOf(timestamps, size * 2);
+            positions = Arrays.copyOf(positions, size * 2);
+            sampleCounts = Arrays.copyOf(sampleCounts, size * 2);
+            lengths = Arrays.copyOf(lengths, size * 2);
+        }
+        timestamps[size] = timestamp;
+        positions[size] = position;
+        sampleCounts[size] = count;
+        lengths[size] = length;
+        size++;
+        sampleCount += count;
+        end = position + length;
+    }
+
+    /**
+     * Searches the last entry which starts before the provided timestamp.
+     * <p>
+     * As multiple samples can have the same timestamp, the samples of a timestamp can start in the entry before the
+     * entry starting with that timestamp.
+     *
+     * @param timestamp The Unix timestamp in milliseconds to search for.
+     * @return The index of the entry or {@code -1} if no entry starts before the {@code timestamp}.
+     */
+    int lastIndexBefore(final long timestamp) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (timestamps[middle] < timestamp) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low - 1;
+    }
+
+    /**
+     * @return The number of entries.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return The number of samples of all entries.
+     */
+    long getSampleCount() {
+        return sampleCount;
+    }
+
+    /**
+     * @param index The index of the entry.
+     * @return The timestamp of the first sample of the entry.
+     */
+    long getTimestamp(final int index) {
+        return timestamps[index];
+    }
+
+    /**
+     * @param index The index of the entry.
+     * @return The position of the entry in the data file.
+     */
+    long getPosition(final int index) {
+        return positions[index];
+    }
+
+    /**
+     * @param index The index of the entry.
+     * @return The number of samples of the entry.
+     */
+    int getSampleCount(final int index) {
+        return sampleCounts[index];
+    }
+
+    /**
+     * @param index The index of the entry.
+     * @return The number of bytes of the entry in the data file.
+     */
+    int getLength(final int index) {
+        return lengths[index];
+    }
+
+    /**
+     * Fills the remaining bytes of the provided buffer with the data at the provided position of the file.
+     *
+     * @param channel The channel to read from.
+     * @param buffer The buffer to fill.
+     * @param position The position in the file to read from.
+     * @throws IOException If the file could not be read or ended before the buffer was filled.
+     */
+    static void readFully(@NonNull final FileChannel channel, @NonNull final ByteBuffer buffer, final long position)
+            throws IOException {
+        final int start = buffer.position();
+        while (buffer.hasRemaining()) {
+            // Positional reads do not change the position of the channel, so they may be used concurrently
+            final int read = channel.read(buffer, position + buffer.position() - start);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of file at position " + position);
+            }
+        }
+    }
+}
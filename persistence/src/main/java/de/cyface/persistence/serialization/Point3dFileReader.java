@@ -0,0 +1,340 @@
+/*
+ * Copyright 2021 Cyface GmbH
+ *
+ * This file is part of the Cyface SDK for Android.
+ *
+ * The Cyface SDK for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface SDK for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface SDK for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.persistence.serialization;
+
+import static de.cyface.persistence.Constants.TAG;
+import static de.cyface.persistence.serialization.ByteSizes.INT_BYTES;
+import static de.cyface.persistence.serialization.MeasurementSerializer.BYTES_IN_ONE_POINT_3D_ENTRY;
+import static de.cyface.persistence.serialization.MeasurementSerializer.PERSISTENCE_FILE_FORMAT_VERSION_1;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import de.cyface.persistence.FileTransfer;
+import de.cyface.persistence.model.Point3d;
+import de.cyface.persistence.model.Point3dBatch;
+import de.cyface.persistence.model.Point3dBuffer;
+import de.cyface.utils.Validate;
+
+/**
+ * Reads the {@link Point3d}s of a time range from a {@link Point3dFile} without loading the rest of the file.
+ * <p>
+ * The entries of the time range are found by a binary search over the {@link Point3dFileIndex} of each segment, see
+ * {@link Point3dFileSegments}, which are loaded when the reader is opened. Afterwards only the blocks or batches
+ * overlapping the requested time range are read and decoded, independent of the encoding of the data. When an index
+ * file is missing or incomplete, the data which is not indexed is indexed by scanning the segment.
+ * <p>
+ * The file is read with positional {@link FileChannel} reads instead of being memory mapped, as a mapping of a large
+ * recording may not fit into the address space of 32 bit devices. Data appended after the reader was opened is
+ * ignored, as is an incomplete block at the end of a segment, e.g. when the app was killed while appending. A damaged
+ * segment does not affect the data of the other segments.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author Armin Schnabel
+ * @version 1.3.0
+ * @since 6.2.0
+ */
+public final class Point3dFileReader implements Closeable {
+
+    /**
+     * The file of each segment or {@code null} if the segment does not exist.
+     */
+    private final File[] segmentFiles;
+    /**
+     * The channel to read the data of each segment from or {@code null} if the segment does not exist.
+     */
+    private final FileChannel[] channels;
+    /**
+     * The index of the data of each segment or {@code null} if the segment does not exist.
+     */
+    private final Point3dFileIndex[] indexes;
+    /**
+     * The {@link MeasurementSerializer#PERSISTENCE_FILE_FORMAT_VERSION} in which the data is stored.
+     */
+    private final short persistenceFileFormatVersion;
+    /**
+     * The buffer to read the entries into, which grows with the size of the entries.
+     */
+    private ByteBuffer buffer = ByteBuffer.allocate(0);
+
+    /**
+     * Opens the segments of the provided file and loads their {@link Point3dFileIndex}.
+     *
+     * @param file The file to read, which is the first segment.
+     * @param persistenceFileFormatVersion The {@link MeasurementSerializer#PERSISTENCE_FILE_FORMAT_VERSION} of the
+     *            data in the file.
+     * @throws FileNotFoundException If the file does not exist.
+     * @throws IOException If the segments or the data which is not indexed could not be read.
+     */
+    public Point3dFileReader(@NonNull final File file, final short persistenceFileFormatVersion) throws IOException {
+        Validate.isTrue(MeasurementSerializer.isSupported(persistenceFileFormatVersion),
+                "Unsupported persistence file format version: " + persistenceFileFormatVersion);
+        this.persistenceFileFormatVersion = persistenceFileFormatVersion;
+        final Point3dFileSegments segments = Point3dFileSegments.load(file);
+        final int segmentCount = segments.getSegmentCount();
+        this.segmentFiles = new File[segmentCount];
+        this.channels = new FileChannel[segmentCount];
+        this.indexes = new Point3dFileIndex[segmentCount];
+        try {
+            for (int i = 0; i < segmentCount; i++) {
+                final File segmentFile = Point3dFileSegments.getSegmentFile(file, i);
+                // The active segment is created after the previous segment was closed, which may have been interrupted
+                if (i > 0 && !segmentFile.exists()) {
+                    continue;
+                }
+                segmentFiles[i] = segmentFile;
+                channels[i] = new FileInputStream(segmentFile).getChannel();
+                indexes[i] = Point3dFileIndex.load(segmentFile, channels[i], segments.getLength(i),
+                        persistenceFileFormatVersion);
+                if (i < segmentCount - 1 && indexes[i].getSampleCount() != segments.getSampleCount(i)) {
+                    Log.w(TAG, "Segment " + segmentFile.getPath() + " is damaged: "
+                            + indexes[i].getSampleCount() + " of " + segments.getSampleCount(i) + " samples found");
+                }
+            }
+        } catch (final IOException | RuntimeException e) {
+            closeChannels();
+            throw e;
+        }
+    }
+
+    /**
+     * @return The number of samples in the file when it was opened.
+     */
+    public long getSampleCount() {
+        long sampleCount = 0;
+        for (final Point3dFileIndex index : indexes) {
+            if (index != null) {
+                sampleCount += index.getSampleCount();
+            }
+        }
+        return sampleCount;
+    }
+
+    /**
+     * Reads the samples of a time range.
+     *
+     * @param fromTimestamp The Unix timestamp in milliseconds of the start of the time range, inclusive.
+     * @param toTimestamp The Unix timestamp in milliseconds of the end of the time range, exclusive.
+     * @return The samples within the time range, ordered by time.
+     * @throws IOException If the file could not be read or does not match its index.
+     */
+    @NonNull
+    public synchronized Point3dBatch read(final long fromTimestamp, final long toTimestamp) throws IOException {
+        Validate.isTrue(fromTimestamp <= toTimestamp, "Illegal argument: fromTimestamp must not be after toTimestamp");
+        final Point3dBuffer points = new Point3dBuffer();
+        final Point3dBuffer entry = new Point3dBuffer();
+        for (int segment = 0; segment < indexes.length; segment++) {
+            final Point3dFileIndex index = indexes[segment];
+            if (index == null || index.size() == 0 || startsBefore(segment + 1, fromTimestamp)) {
+                continue;
+            }
+            if (index.getTimestamp(0) >= toTimestamp) {
+                break;
+            }
+
+            for (int i = Math.max(0, index.lastIndexBefore(fromTimestamp)); i < index.size()
+                    && index.getTimestamp(i) < toTimestamp; i++) {
+                entry.clear();
+                decode(segment, i, readEntry(segment, i), entry);
+                for (int j = 0; j < entry.size(); j++) {
+                    final long timestamp = entry.getTimestamp(j);
+                    if (timestamp >= fromTimestamp && timestamp < toTimestamp) {
+                        points.add(timestamp, entry.getX(j), entry.getY(j), entry.getZ(j));
+                    }
+                }
+            }
+        }
+        return points.toBatch();
+    }
+
+    /**
+     * Writes all samples in the sample format of the {@link MeasurementSerializer#TRANSFER_FILE_FORMAT_VERSION} to the
+     * provided stream. Only one entry of the {@link Point3dFileIndex} is kept in memory at a time.
+     *
+     * @param outputStream The stream to write to. It's not closed by this method.
+     * @return The number of bytes written, which is {@link #getSampleCount()} times
+     *         {@link MeasurementSerializer#BYTES_IN_ONE_POINT_3D_ENTRY}.
+     * @throws IOException If reading or writing failed or the file does not match its index.
+     */
+    public synchronized long writeAsTransferFormat(@NonNull final OutputStream outputStream) throws IOException {
+        long bytesWritten = 0;
+        final Point3dBuffer entry = new Point3dBuffer();
+        ByteBuffer output = ByteBuffer.allocate(0);
+        for (int segment = 0; segment < indexes.length; segment++) {
+            if (indexes[segment] == null) {
+                continue;
+            }
+            for (int i = 0; i < indexes[segment].size(); i++) {
+                if (persistenceFileFormatVersion == PERSISTENCE_FILE_FORMAT_VERSION_1) {
+                    // The samples are already in the transfer format
+                    bytesWritten += FileTransfer.transfer(channels[segment], indexes[segment].getPosition(i),
+                            indexes[segment].getLength(i), outputStream);
+                    continue;
+                }
+
+                final ByteBuffer input = readEntry(segment, i);
+                entry.clear();
+                decode(segment, i, input, entry);
+                final int outputLength = entry.size() * BYTES_IN_ONE_POINT_3D_ENTRY;
+                if (output.capacity() < outputLength) {
+                    output = ByteBuffer.allocate(outputLength);
+                }
+                output.clear();
+                for (int j = 0; j < entry.size(); j++) {
+                    output.putLong(entry.getTimestamp(j));
+                    output.putDouble(entry.getX(j));
+                    output.putDouble(entry.getY(j));
+                    output.putDouble(entry.getZ(j));
+                }
+                outputStream.write(output.array(), 0, outputLength);
+                bytesWritten += outputLength;
+            }
+        }
+        return bytesWritten;
+    }
+
+    /**
+     * Writes the deflate segments of all blocks of a {@link MeasurementSerializer#PERSISTENCE_FILE_FORMAT_VERSION_4}
+     * file to the provided stream without decompressing them, see {@link Point3dDeflateCodec}.
+     *
+     * @param outputStream The stream to write to. It's not closed by this method.
+     * @return The number of bytes written.
+     * @throws IOException If reading or writing failed.
+     */
+    synchronized long writeDeflateSegments(@NonNull final OutputStream outputStream) throws IOException {
+        Validate.isTrue(persistenceFileFormatVersion == MeasurementSerializer.PERSISTENCE_FILE_FORMAT_VERSION_4,
+                "Unsupported persistence file format version: " + persistenceFileFormatVersion);
+        long bytesWritten = 0;
+        // Only the block headers are read, the deflate segments are copied without loading whole blocks
+        final ByteBuffer header = ByteBuffer.allocate(Point3dBlockSerializer.BYTES_IN_BLOCK_HEADER);
+        for (int segment = 0; segment < indexes.length; segment++) {
+            if (indexes[segment] == null) {
+                continue;
+            }
+            for (int i = 0; i < indexes[segment].size(); i++) {
+                final long position = indexes[segment].getPosition(i);
+                final int length = indexes[segment].getLength(i) - Point3dBlockSerializer.BYTES_IN_BLOCK_HEADER;
+                header.clear();
+                Point3dFileIndex.readFully(channels[segment], header, position);
+                if (header.getInt(INT_BYTES) != length) {
+                    throw new IOException("The data does not match the index: " + segmentFiles[segment].getPath());
+                }
+                bytesWritten += FileTransfer.transfer(channels[segment],
+                        position + Point3dBlockSerializer.BYTES_IN_BLOCK_HEADER, length, outputStream);
+            }
+        }
+        return bytesWritten;
+    }
+
+    /**
+     * @param segment The number of a segment.
+     * @param timestamp The Unix timestamp in milliseconds to check.
+     * @return {@code true} if a segment starting with the provided one exists which starts before the
+     *         {@code timestamp}, i.e. all samples of the segments before end before the {@code timestamp}.
+     */
+    private boolean startsBefore(final int segment, final long timestamp) {
+        for (int i = segment; i < indexes.length; i++) {
+            if (indexes[i] != null && indexes[i].size() > 0) {
+                return indexes[i].getTimestamp(0) < timestamp;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads the bytes of one entry of the {@link Point3dFileIndex}.
+     *
+     * @param segment The number of the segment of the entry.
+     * @param index The index of the entry.
+     * @return A buffer containing the bytes of the entry, which is overwritten by the next call.
+     * @throws IOException If the file could not be read.
+     */
+    @NonNull
+    private ByteBuffer readEntry(final int segment, final int index) throws IOException {
+        final int length = indexes[segment].getLength(index);
+        if (buffer.capacity() < length) {
+            buffer = ByteBuffer.allocate(length);
+        }
+        buffer.clear();
+        buffer.limit(length);
+        Point3dFileIndex.readFully(channels[segment], buffer, indexes[segment].getPosition(index));
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Decodes the samples of one entry of the {@link Point3dFileIndex}.
+     *
+     * @param segment The number of the segment of the entry.
+     * @param index The index of the entry.
+     * @param input The buffer containing the bytes of the entry.
+     * @param output The buffer to add the decoded samples to.
+     * @throws IOException If the data does not match the index.
+     */
+    private void decode(final int segment, final int index, @NonNull final ByteBuffer input,
+            @NonNull final Point3dBuffer output) throws IOException {
+        final int sampleCount = indexes[segment].getSampleCount(index);
+        if (persistenceFileFormatVersion == PERSISTENCE_FILE_FORMAT_VERSION_1) {
+            if (input.remaining() != sampleCount * BYTES_IN_ONE_POINT_3D_ENTRY) {
+                throw new IOException("The data does not match the index: " + segmentFiles[segment].getPath());
+            }
+            for (int i = 0; i < sampleCount; i++) {
+                output.add(input.getLong(), (float)input.getDouble(), (float)input.getDouble(),
+                        (float)input.getDouble());
+            }
+            return;
+        }
+
+        final int size = input.getInt();
+        final int length = input.getInt();
+        final long base = input.getLong();
+        if (size != sampleCount || length != input.remaining()) {
+            throw new IOException("The data does not match the index: " + segmentFiles[segment].getPath());
+        }
+        Point3dBlockSerializer.decodeSamples(input, length, size, base, persistenceFileFormatVersion, output);
+    }
+
+    /**
+     * Closes the channels of all segments which were opened.
+     *
+     * @throws IOException If a channel could not be closed.
+     */
+    private void closeChannels() throws IOException {
+        for (final FileChannel channel : channels) {
+            if (channel != null) {
+                channel.close();
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        closeChannels();
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright 2021 Cyface GmbH
+ *
+ * This file is part of the Cyface SDK for Android.
+ *
+ * The Cyface SDK for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface SDK for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface SDK for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.persistence.serialization;
+
+import static de.cyface.persistence.Constants.TAG;
+import static de.cyface.persistence.serialization.ByteSizes.INT_BYTES;
+import static de.cyface.persistence.serialization.ByteSizes.LONG_BYTES;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import de.cyface.utils.Validate;
+
+/**
+ * The segments of a {@link Point3dFile}.
+ * <p>
+ * The data of a {@code Point3dFile} is split into segment files of about {@link #MAX_SEGMENT_BYTES}, so a damaged
+ * segment, e.g. by a truncated write, does not affect the other segments and segments can be processed independently.
+ * The first segment is the data file itself, so files captured before the data was segmented are files with one
+ * segment. The following segments are stored next to it, see {@link #getSegmentFile(File, int)}.
+ * <p>
+ * A manifest file, see {@link #getManifestFile(File)}, contains one entry per closed segment. The segment after the
+ * closed segments is the active segment to which data is appended. All values are stored in big endian:
+ * <ul>
+ * <li>8 Bytes long number of bytes of the segment</li>
+ * <li>4 Bytes integer number of samples in the segment</li>
+ * </ul>
+ * Data which was written to a closed segment after its length was added to the manifest is ignored.
+ * <p>
+ * This class is not thread safe.
+ *
+ * @author Armin Schnabel
+ * @version 1.1.0
+ * @since 6.2.0
+ */
+public final class Point3dFileSegments {
+
+    /**
+     * The file extension which is added to the name of the data file to get the name of the manifest file.
+     */
+    public static final String MANIFEST_FILE_EXTENSION = "manifest";
+    /**
+     * The number of bytes after which the {@link Point3dFileAppender} closes a segment and continues with the next
+     * segment. As data is only appended as a whole, segments can be slightly larger.
+     */
+    static final long MAX_SEGMENT_BYTES = 1024L * 1024L;
+    /**
+     * The number of bytes of each entry in the manifest file.
+     */
+    private static final int BYTES_IN_MANIFEST_ENTRY = LONG_BYTES + INT_BYTES;
+    /**
+     * The data file, which is the first segment.
+     */
+    private final File file;
+    /**
+     * The number of bytes of each closed segment.
+     */
+    private long[] lengths;
+    /**
+     * The number of samples in each closed segment.
+     */
+    private int[] sampleCounts;
+    /**
+     * The number of closed segments, which is also the number of the active segment.
+     */
+    private int closedSegments;
+
+    /**
+     * Creates a new instance without closed segments.
+     *
+     * @param file The data file, which is the first segment.
+     */
+    private Point3dFileSegments(@NonNull final File file) {
+        this.file = file;
+        this.lengths = new long[8];
+        this.sampleCounts = new int[8];
+    }
+
+    /**
+     * Loads the segments of a data file from its manifest file. An incomplete entry at the end of the manifest, e.g.
+     * when the app was killed while closing a segment, is ignored.
+     *
+     * @param file The data file.
+     * @return The loaded segments.
+     * @throws IOException If the manifest file exists but could not be read.
+     */
+    @NonNull
+    static Point3dFileSegments load(@NonNull final File file) throws IOException {
+        final Point3dFileSegments segments = new Point3dFileSegments(file);
+        final File manifestFile = getManifestFile(file);
+        if (!manifestFile.exists()) {
+            return segments;
+        }
+
+        try (final FileChannel channel = new FileInputStream(manifestFile).getChannel()) {
+            final long entries = channel.size() / BYTES_IN_MANIFEST_ENTRY;
+            Validate.isTrue(entries <= Integer.MAX_VALUE / BYTES_IN_MANIFEST_ENTRY, "Too many segments: " + entries);
+            final ByteBuffer buffer = ByteBuffer.allocate((int)entries * BYTES_IN_MANIFEST_ENTRY);
+            Point3dFileIndex.readFully(channel, buffer, 0L);
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                final long length = buffer.getLong();
+                final int sampleCount = buffer.getInt();
+                Validate.isTrue(length >= 0 && sampleCount >= 0,
+                        "Invalid manifest entry " + segments.closedSegments + ": " + manifestFile.getPath());
+                segments.add(length, sampleCount);
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * @param file The data file of a {@link Point3dFile}.
+     * @param segment The number of the segment, starting at {@code 0}.
+     * @return The file of the segment. The file may not exist.
+     */
+    @NonNull
+    public static File getSegmentFile(@NonNull final File file, final int segment) {
+        Validate.isTrue(segment >= 0, "Illegal segment: " + segment);
+        return segment == 0 ? file : new File(file.getPath() + "." + segment);
+    }
+
+    /**
+     * @param file The data file of a {@link Point3dFile}.
+     * @return The manifest file of the provided data file. The file may not exist.
+     */
+    @NonNull
+    public static File getManifestFile(@NonNull final File file) {
+        return new File(file.getPath() + "." + MANIFEST_FILE_EXTENSION);
+    }
+
+    /**
+     * Deletes all segments of a data file together with their {@link Point3dFileIndex}, their
+     * {@link Point3dFileChecksums} and the manifest file.
+     *
+     * @param file The data file of a {@link Point3dFile}.
+     */
+    public static void delete(@NonNull final File file) {
+        final int segmentCount;
+        try {
+            segmentCount = load(file).getSegmentCount();
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+        for (int i = 0; i < segmentCount; i++) {
+            final File segmentFile = getSegmentFile(file, i);
+            deleteIfExists(segmentFile);
+            deleteIfExists(Point3dFileIndex.getIndexFile(segmentFile));
+            deleteIfExists(Point3dFileChecksums.getChecksumFile(segmentFile));
+        }
+        // The manifest is deleted last so the segments are still found if this is interrupted
+        deleteIfExists(getManifestFile(file));
+    }
+
+    /**
+     * Deletes a file if it exists.
+     *
+     * @param file The file to delete.
+     */
+    private static void deleteIfExists(@NonNull final File file) {
+        if (file.exists()) {
+            Validate.isTrue(file.delete(), "Failed to delete " + file.getPath());
+        }
+    }
+
+    /**
+     * Closes the active segment by adding its length to the manifest file. Afterwards data is appended to the next
+     * segment.
+     *
+     * @param length The number of bytes of the active segment.
+     * @param sampleCount The number of samples in the active segment.
+     * @throws IOException If the manifest file could not be written.
+     */
+    void closeActiveSegment(final long length, final int sampleCount) throws IOException {
+        final ByteBuffer entry = ByteBuffer.allocate(BYTES_IN_MANIFEST_ENTRY);
+        entry.putLong(length);
+        entry.putInt(sampleCount);
+        entry.flip();
+        try (final FileChannel channel = new FileOutputStream(getManifestFile(file), true).getChannel()) {
+            // Overwrites an incomplete entry of an interrupted write
+            channel.truncate((long)closedSegments * BYTES_IN_MANIFEST_ENTRY);
+            while (entry.hasRemaining()) {
+                channel.write(entry);
+            }
+        }
+        add(length, sampleCount);
+        Log.d(TAG, "Closed segment " + (closedSegments - 1) + " of " + file.getPath() + ": " + length + " bytes, "
+                + sampleCount + " samples");
+    }
+
+    /**
+     * Adds a closed segment.
+     *
+     * @param length The number of bytes of the segment.
+     * @param sampleCount The number of samples in the segment.
+     */
+    private void add(final long length, final int sampleCount) {
+        if (closedSegments == lengths.length) {
+            lengths = Arrays.copyOf(lengths, closedSegments * 2);
+            sampleCounts = Arrays.copyOf(sampleCounts, closedSegments * 2);
+        }
+        lengths[closedSegments] = length;
+        sampleCounts[closedSegments] = sampleCount;
+        closedSegments++;
+    }
+
+    /**
+     * @return The number of segments, including the active segment.
+     */
+    int getSegmentCount() {
+        return closedSegments + 1;
+    }
+
+    /**
+     * @return The file of the segment to which data is appended. The file may not exist if the app was killed while
+     *         closing the previous segment.
+     */
+    @NonNull
+    File getActiveSegmentFile() {
+        return getSegmentFile(file, closedSegments);
+    }
+
+    /**
+     * @param segment The number of a closed segment.
+     * @return The number of samples in the segment when it was closed.
+     */
+    int getSampleCount(final int segment) {
+        Validate.isTrue(segment < closedSegments, "Not a closed segment: " + segment);
+        return sampleCounts[segment];
+    }
+
+    /**
+     * @param segment The number of the segment.
+     * @return The number of bytes of the segment which contain data or {@code Long.MAX_VALUE} for the active segment.
+     */
+    long getLength(final int segment) {
+        return segment < closedSegments ? lengths[segment] : Long.MAX_VALUE;
+    }
+}
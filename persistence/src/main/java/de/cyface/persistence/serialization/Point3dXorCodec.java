@@ -0,0 +1,322 @@
+/*
+ * Copyright 2021 Cyface GmbH
+ *
+ * This file is part of the Cyface SDK for Android.
+ *
+ * The Cyface SDK for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface SDK for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface SDK for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.persistence.serialization;
+
+import java.nio.ByteBuffer;
+
+import androidx.annotation.NonNull;
+import de.cyface.persistence.model.Point3d;
+import de.cyface.persistence.model.Point3dBatch;
+import de.cyface.persistence.model.Point3dBuffer;
+
+/**
+ * Lossless time series codec for the samples of one block of the
+ * {@link MeasurementSerializer#PERSISTENCE_FILE_FORMAT_VERSION_3}, following the compression of the Gorilla time series
+ * database (Pelkonen et al., VLDB 2015).
+ * <p>
+ * The samples are written as one bit stream, most significant bit first:
+ * <ul>
+ * <li>The timestamp as delta-of-delta to the previous sample (starting at the block base with a delta of zero):
+ * {@code 0} for no change, {@code 10} + 7 bits, {@code 110} + 9 bits, {@code 1110} + 12 bits or {@code 1111} + 64
+ * bits.</li>
+ * <li>The x, y and z value, each as XOR with the previous value of the same axis: {@code 0} if equal, {@code 10} +
+ * the meaningful bits if they fit into the window of the previous value or {@code 11} + 5 bits leading zeros + 5 bits
+ * length + the meaningful bits.</li>
+ * </ul>
+ * In contrast to the original the values are encoded as 32 bit {@code float}s as this is the precision they are
+ * captured in.
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 6.2.0
+ */
+final class Point3dXorCodec {
+
+    /**
+     * The number of axes of a {@link Point3d}.
+     */
+    private static final int AXES = 3;
+    /**
+     * The value of the previous leading zeros before the first value was written, which disables the reuse of the
+     * window for the first value.
+     */
+    private static final int NO_WINDOW = Integer.MAX_VALUE;
+
+    /**
+     * Private constructor to avoid instantiation of utility class.
+     */
+    private Point3dXorCodec() {
+        // Nothing to do here.
+    }
+
+    /**
+     * Encodes the samples of the provided batch.
+     *
+     * @param batch The data to encode.
+     * @param baseTimestamp The timestamp the first delta is calculated against.
+     * @return The encoded samples, padded with zero bits to full bytes.
+     */
+    static byte[] encode(@NonNull final Point3dBatch batch, final long baseTimestamp) {
+        final int size = batch.size();
+        // About 10 bytes per sample for usual sensor data, the output grows if required
+        final BitOutput output = new BitOutput(size * 10 + 16);
+
+        long previousTimestamp = baseTimestamp;
+        long previousDelta = 0L;
+        final int[] previousBits = new int[AXES];
+        final int[] previousLeading = new int[] {NO_WINDOW, NO_WINDOW, NO_WINDOW};
+        final int[] previousTrailing = new int[AXES];
+        for (int i = 0; i < size; i++) {
+            final long timestamp = batch.getTimestamp(i);
+            final long delta = timestamp - previousTimestamp;
+            writeDeltaOfDelta(output, delta - previousDelta);
+            previousTimestamp = timestamp;
+            previousDelta = delta;
+
+            for (int axis = 0; axis < AXES; axis++) {
+                final float value = axis == 0 ? batch.getX(i) : axis == 1 ? batch.getY(i) : batch.getZ(i);
+                final int bits = Float.floatToRawIntBits(value);
+                final int xor = bits ^ previousBits[axis];
+                previousBits[axis] = bits;
+                if (xor == 0) {
+                    output.writeBits(0, 1);
+                    continue;
+                }
+
+                final int leading = Integer.numberOfLeadingZeros(xor);
+                final int trailing = Integer.numberOfTrailingZeros(xor);
+                if (leading >= previousLeading[axis] && trailing >= previousTrailing[axis]) {
+                    output.writeBits(0b10, 2);
+                    output.writeBits(xor >>> previousTrailing[axis],
+                            Integer.SIZE - previousLeading[axis] - previousTrailing[axis]);
+                } else {
+                    final int meaningful = Integer.SIZE - leading - trailing;
+                    output.writeBits(0b11, 2);
+                    output.writeBits(leading, 5);
+                    output.writeBits(meaningful - 1, 5);
+                    output.writeBits(xor >>> trailing, meaningful);
+                    previousLeading[axis] = leading;
+                    previousTrailing[axis] = trailing;
+                }
+            }
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * Decodes samples written by {@link #encode(Point3dBatch, long)}.
+     *
+     * @param input The buffer positioned at the first byte of the encoded samples. Afterwards it's positioned after
+     *            the last byte read, which may be before the padding bits of the last byte.
+     * @param size The number of samples to decode.
+     * @param baseTimestamp The timestamp the first delta was calculated against.
+     * @param output The buffer to add the decoded samples to.
+     */
+    static void decode(@NonNull final ByteBuffer input, final int size, final long baseTimestamp,
+            @NonNull final Point3dBuffer output) {
+        final BitInput bits = new BitInput(input);
+
+        long timestamp = baseTimestamp;
+        long delta = 0L;
+        final int[] previousBits = new int[AXES];
+        final int[] previousLeading = new int[AXES];
+        final int[] previousTrailing = new int[AXES];
+        final float[] values = new float[AXES];
+        for (int i = 0; i < size; i++) {
+            delta += readDeltaOfDelta(bits);
+            timestamp += delta;
+
+            for (int axis = 0; axis < AXES; axis++) {
+                if (bits.readBits(1) != 0) {
+                    final int xor;
+                    if (bits.readBits(1) == 0) {
+                        final int meaningful = Integer.SIZE - previousLeading[axis] - previousTrailing[axis];
+                        xor = (int)bits.readBits(meaningful) << previousTrailing[axis];
+                    } else {
+                        final int leading = (int)bits.readBits(5);
+                        final int meaningful = (int)bits.readBits(5) + 1;
+                        final int trailing = Integer.SIZE - leading - meaningful;
+                        xor = (int)bits.readBits(meaningful) << trailing;
+                        previousLeading[axis] = leading;
+                        previousTrailing[axis] = trailing;
+                    }
+                    previousBits[axis] ^= xor;
+                }
+                values[axis] = Float.intBitsToFloat(previousBits[axis]);
+            }
+            output.add(timestamp, values[0], values[1], values[2]);
+        }
+    }
+
+    /**
+     * Writes the difference between two consecutive timestamp deltas.
+     *
+     * @param output The stream to write to.
+     * @param deltaOfDelta The value to write.
+     */
+    private static void writeDeltaOfDelta(@NonNull final BitOutput output, final long deltaOfDelta) {
+        if (deltaOfDelta == 0) {
+            output.writeBits(0, 1);
+        } else if (deltaOfDelta >= -63 && deltaOfDelta <= 64) {
+            output.writeBits(0b10, 2);
+            output.writeBits(deltaOfDelta + 63, 7);
+        } else if (deltaOfDelta >= -255 && deltaOfDelta <= 256) {
+            output.writeBits(0b110, 3);
+            output.writeBits(deltaOfDelta + 255, 9);
+        } else if (deltaOfDelta >= -2047 && deltaOfDelta <= 2048) {
+            output.writeBits(0b1110, 4);
+            output.writeBits(deltaOfDelta + 2047, 12);
+        } else {
+            output.writeBits(0b1111, 4);
+            output.writeBits(deltaOfDelta >>> Integer.SIZE, Integer.SIZE);
+            output.writeBits(deltaOfDelta, Integer.SIZE);
+        }
+    }
+
+    /**
+     * Reads a value written by {@link #writeDeltaOfDelta(BitOutput, long)}.
+     *
+     * @param input The stream to read from.
+     * @return The difference between two consecutive timestamp deltas.
+     */
+    private static long readDeltaOfDelta(@NonNull final BitInput input) {
+        if (input.readBits(1) == 0) {
+            return 0L;
+        }
+        if (input.readBits(1) == 0) {
+            return input.readBits(7) - 63;
+        }
+        if (input.readBits(1) == 0) {
+            return input.readBits(9) - 255;
+        }
+        if (input.readBits(1) == 0) {
+            return input.readBits(12) - 2047;
+        }
+        return (input.readBits(Integer.SIZE) << Integer.SIZE) | input.readBits(Integer.SIZE);
+    }
+
+    /**
+     * A growing stream of bits, written most significant bit first.
+     *
+     * @author Armin Schnabel
+     * @version 1.0.0
+     * @since 6.2.0
+     */
+    private static final class BitOutput {
+        /**
+         * The bytes written so far.
+         */
+        private byte[] bytes;
+        /**
+         * The number of bytes written to {@link #bytes}.
+         */
+        private int size;
+        /**
+         * The bits not yet written to {@link #bytes}, aligned to the least significant bit.
+         */
+        private long pending;
+        /**
+         * The number of bits in {@link #pending}, always less than 8 between two calls.
+         */
+        private int pendingBits;
+
+        /**
+         * @param capacity The initial number of bytes which can be written before the stream grows.
+         */
+        private BitOutput(final int capacity) {
+            this.bytes = new byte[capacity];
+        }
+
+        /**
+         * Writes the least significant bits of the provided value.
+         *
+         * @param value The value to write.
+         * @param count The number of bits to write, between 1 and 32.
+         */
+        private void writeBits(final long value, final int count) {
+            pending = (pending << count) | (value & ((1L << count) - 1));
+            pendingBits += count;
+            while (pendingBits >= Byte.SIZE) {
+                pendingBits -= Byte.SIZE;
+                if (size == bytes.length) {
+                    final byte[] grown = new byte[bytes.length * 2];
+                    System.arraycopy(bytes, 0, grown, 0, size);
+                    bytes = grown;
+                }
+                bytes[size++] = (byte)(pending >>> pendingBits);
+            }
+        }
+
+        /**
+         * @return The bits written, padded with zero bits to full bytes.
+         */
+        private byte[] toByteArray() {
+            if (pendingBits > 0) {
+                writeBits(0, Byte.SIZE - pendingBits);
+            }
+            final byte[] result = new byte[size];
+            System.arraycopy(bytes, 0, result, 0, size);
+            return result;
+        }
+    }
+
+    /**
+     * Reads a stream of bits written by a {@link BitOutput}.
+     *
+     * @author Armin Schnabel
+     * @version 1.0.0
+     * @since 6.2.0
+     */
+    private static final class BitInput {
+        /**
+         * The buffer to read the bytes from.
+         */
+        private final ByteBuffer input;
+        /**
+         * The bits read from the {@link #input} but not yet returned, aligned to the least significant bit.
+         */
+        private long pending;
+        /**
+         * The number of bits in {@link #pending}, always less than 8 between two calls.
+         */
+        private int pendingBits;
+
+        /**
+         * @param input The buffer to read the bytes from.
+         */
+        private BitInput(@NonNull final ByteBuffer input) {
+            this.input = input;
+        }
+
+        /**
+         * Reads the provided number of bits.
+         *
+         * @param count The number of bits to read, between 1 and 32.
+         * @return The bits read, aligned to the least significant bit.
+         */
+        private long readBits(final int count) {
+            while (pendingBits < count) {
+                pending = (pending << Byte.SIZE) | (input.get() & 0xFF);
+                pendingBits += Byte.SIZE;
+            }
+            pendingBits -= count;
+            return (pending >>> pendingBits) & ((1L << count) - 1);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2021 Cyface GmbH
+ *
+ * This file is part of the Cyface SDK for Android.
+ *
+ * The Cyface SDK for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface SDK for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface SDK for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.persistence.serialization;
+
+import java.io.BufferedOutputStream;
+
+import android.content.ContentProvider;
+
+import androidx.annotation.NonNull;
+
+import de.cyface.persistence.MeasurementContentProviderClient;
+import de.cyface.persistence.PersistenceLayer;
+import de.cyface.persistence.model.Measurement;
+import de.cyface.utils.CursorIsNullException;
+
+/**
+ * Interface for {@link FileSerializerStrategy}s which can provide Measurement data which was already compressed while
+ * it was captured. This avoids compressing the whole {@link Measurement} again when it's synchronized.
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 6.2.0
+ */
+public interface PrecompressedFileSerializerStrategy extends FileSerializerStrategy {
+
+    /**
+     * Writes the data of a {@link Measurement} serialized and compressed, ready to be transferred, if the data was
+     * compressed while it was captured.
+     * <p>
+     * <b>ATTENTION:</b> The caller must make sure the {@param bufferedOutputStream} is closed when no longer needed
+     * or the app crashes.
+     *
+     * @param bufferedOutputStream The stream to which the compressed data is written.
+     * @param loader The loader providing access to the {@link ContentProvider} storing the {@code Measurement} data.
+     * @param measurementIdentifier The id of the {@code Measurement} to load
+     * @param persistence The {@code PersistenceLayer} to access file based data
+     * @return {@code false} if the data was not compressed while it was captured. In this case nothing was written and
+     *         {@link #loadSerialized(BufferedOutputStream, MeasurementContentProviderClient, long, PersistenceLayer)}
+     *         must be used instead.
+     * @throws CursorIsNullException If {@link ContentProvider} was inaccessible.
+     */
+    boolean loadPrecompressed(@NonNull final BufferedOutputStream bufferedOutputStream,
+            @NonNull final MeasurementContentProviderClient loader, final long measurementIdentifier,
+            @NonNull final PersistenceLayer persistence) throws CursorIsNullException;
+}
@@ -21,11 +21,16 @@ package de.cyface.persistence;
 import static de.cyface.testutils.SharedTestUtils.generateGeoLocation;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+
+import java.util.Locale;
 
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Ignore;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.robolectric.RobolectricTestRunner;
@@ -37,6 +42,7 @@ import android.database.sqlite.SQLiteCursor;
 import android.database.sqlite.SQLiteCursorDriver;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteQuery;
+import android.database.sqlite.SQLiteStatement;
 import android.os.Build;
 import android.provider.BaseColumns;
 
@@ -54,7 +60,7 @@ import de.cyface.testutils.SharedTestUtils;
  * open it with *DB Browser for SQLite* and use File > Export > Database to SQL file.
  *
  * @author Armin Schnabel
- * @version 1.4.1
+ * @version 1.8.0
  * @since 4.0.0
  */
 @RunWith(RobolectricTestRunner.class)
@@ -127,6 +133,132 @@ public class DatabaseHelperTest {
         db.close();
     }
 
+    /**
+     * Test adding the {@link LocationCellsTable} in Database V20.
+     * <p>
+     * We test that the cells of the existing measurements are calculated from their {@code GeoLocation}s and that
+     * the cells within an area are selected via the index.
+     */
+    @Test
+    public void testMigrationV19ToV20() {
+
+        // Arrange
+        // This is simpler than copying and adjusting the code from previous versions
+        createV15Database(db);
+        addDatabaseV15Measurement(db, 43L, 3);
+        oocut.onUpgrade(db, 15, 19);
+
+        // Act
+        oocut.onUpgrade(db, 19, 20);
+
+        // Assert
+        try (final Cursor cursor = db.rawQuery("SELECT measurement_fk, SUM(location_count), MIN(start_time), "
+                + "MAX(end_time) FROM location_cells GROUP BY measurement_fk", null)) {
+            assertThat(cursor.getCount(), is(equalTo(1)));
+            cursor.moveToFirst();
+            assertThat(cursor.getLong(0), is(equalTo(43L)));
+            assertThat(cursor.getInt(1), is(equalTo(3)));
+            assertThat(cursor.getLong(2), is(equalTo(1551431485000L)));
+            assertThat(cursor.getLong(3), is(equalTo(1551431485002L)));
+        }
+        // The GROUP BY of the few selected rows uses a temporary B-tree, which is not asserted here
+        assertUsesIndex("SELECT measurement_fk, start_time FROM location_cells WHERE lat_cell BETWEEN 14105 AND 14106 "
+                + "AND (lon_cell >= 19373 AND lon_cell <= 19374)", "location_cells_cell");
+    }
+
+    /**
+     * Test adding the {@link SimplifiedLocationsTable} in Database V19.
+     * <p>
+     * We test that the existing {@code MeasurementSummary}s are marked as not simplified yet.
+     */
+    @Test
+    public void testMigrationV18ToV19() {
+
+        // Arrange
+        // This is simpler than copying and adjusting the code from previous versions
+        createV15Database(db);
+        addDatabaseV15Measurement(db, 43L, 3);
+        oocut.onUpgrade(db, 15, 18);
+
+        // Act
+        oocut.onUpgrade(db, 18, 19);
+
+        // Assert
+        try (final Cursor cursor = db.query("measurement_summaries", null, null, null, null, null, null)) {
+            assertThat(cursor.getCount(), is(equalTo(1)));
+            cursor.moveToFirst();
+            assertThat(cursor.getInt(cursor.getColumnIndex("location_count")), is(equalTo(3)));
+            assertThat(cursor.getInt(cursor.getColumnIndex("simplified_location_count")), is(equalTo(0)));
+        }
+        try (final Cursor cursor = db.query("simplified_locations", null, null, null, null, null, null)) {
+            assertThat(cursor.getCount(), is(equalTo(0)));
+        }
+        assertUsesIndex("SELECT * FROM simplified_locations WHERE measurement_fk = 43 AND level >= 2 "
+                + "ORDER BY track ASC, gps_time ASC", "simplified_locations_measurement_fk_track_time");
+    }
+
+    /**
+     * Test upgrading to Database V18 which adds the {@link MeasurementSummaryTable}.
+     * <p>
+     * We test that the summaries of the existing measurements are calculated from their {@code GeoLocation}s.
+     */
+    @Test
+    public void testMigrationV17ToV18() {
+
+        // Arrange
+        // This is simpler than copying and adjusting the code from previous versions
+        createV15Database(db);
+        addDatabaseV15Measurement(db, 43L, 3);
+        oocut.onUpgrade(db, 15, 17);
+
+        // Act
+        oocut.onUpgrade(db, 17, 18);
+
+        // Assert
+        try (final Cursor cursor = db.query("measurement_summaries", null, null, null, null, null, null)) {
+            assertThat(cursor.getCount(), is(equalTo(1)));
+            cursor.moveToFirst();
+            assertThat(cursor.getLong(cursor.getColumnIndex("measurement_fk")), is(equalTo(43L)));
+            assertThat(cursor.getInt(cursor.getColumnIndex("location_count")), is(equalTo(3)));
+            assertThat(cursor.getLong(cursor.getColumnIndex("start_time")), is(equalTo(1551431485000L)));
+            assertThat(cursor.getLong(cursor.getColumnIndex("end_time")), is(equalTo(1551431485002L)));
+            assertThat(cursor.getDouble(cursor.getColumnIndex("min_lat")), is(closeTo(51.05210394, 0.0)));
+            assertThat(cursor.getDouble(cursor.getColumnIndex("speed_sum")), is(closeTo(0.0, 0.0)));
+        }
+    }
+
+    /**
+     * Test upgrading the {@link GeoLocationsTable}, {@link EventTable} and {@link MeasurementTable} to Database V17.
+     * <p>
+     * We test that the data of a measurement is loaded via the new indexes instead of scanning and sorting the tables.
+     */
+    @Test
+    public void testMigrationV16ToV17() {
+
+        // Arrange
+        // This is simpler than copying and adjusting the code from previous versions
+        createV15Database(db);
+        addDatabaseV15Measurement(db, 43L, 3);
+        oocut.onUpgrade(db, 15, 16);
+
+        // Act
+        oocut.onUpgrade(db, 16, 17);
+
+        // Assert the data still exists and is loaded via the indexes
+        try (final Cursor cursor = db.query("locations", null, null, null, null, null, null)) {
+            assertThat(cursor.getCount(), is(equalTo(3)));
+        }
+        assertUsesIndex("SELECT * FROM locations WHERE measurement_fk = 43 ORDER BY gps_time ASC",
+                GeoLocationsTable.INDEX_MEASUREMENT_FK_GEOLOCATION_TIME);
+        assertUsesIndex("SELECT COUNT(*) FROM locations WHERE measurement_fk = 43",
+                GeoLocationsTable.INDEX_MEASUREMENT_FK_GEOLOCATION_TIME);
+        assertUsesIndex("DELETE FROM locations WHERE measurement_fk = 43",
+                GeoLocationsTable.INDEX_MEASUREMENT_FK_GEOLOCATION_TIME);
+        assertUsesIndex("SELECT * FROM events WHERE measurement_fk = 43 AND type = 'LIFECYCLE_START' "
+                + "ORDER BY timestamp ASC", EventTable.INDEX_MEASUREMENT_FK_TIMESTAMP);
+        assertUsesIndex("SELECT * FROM measurements WHERE status = 'OPEN'", MeasurementTable.INDEX_STATUS);
+    }
+
     /**
      * Test upgrading the {@link MeasurementTable} to Database V16.
      * <p>
@@ -313,7 +445,106 @@ public class DatabaseHelperTest {
         // Act
         oocut.onCreate(db);
 
-        // Assert - currently only checking that there is not exception
+        // Assert
+        assertUsesIndex("SELECT * FROM locations WHERE measurement_fk = 1 ORDER BY gps_time ASC",
+                GeoLocationsTable.INDEX_MEASUREMENT_FK_GEOLOCATION_TIME);
+        assertUsesIndex("SELECT * FROM events WHERE measurement_fk = 1 ORDER BY timestamp ASC",
+                EventTable.INDEX_MEASUREMENT_FK_TIMESTAMP);
+        assertUsesIndex("SELECT * FROM measurements WHERE status = 'OPEN'", MeasurementTable.INDEX_STATUS);
+    }
+
+    /**
+     * Compares the time to load the {@link GeoLocation}s of one {@link Measurement} before and after the upgrade to
+     * Database V17 on a database with 1 million {@code GeoLocation}s, and the time the upgrade takes.
+     * <p>
+     * This is ignored as it's a benchmark which is executed manually.
+     */
+    @Test
+    @Ignore("Benchmark, execute manually")
+    public void benchmarkMigrationV16ToV17() {
+        // Arrange - 1.000 measurements with 1.000 locations each, inserted interleaved as when capturing one after
+        // another with some locations inserted out of order
+        final int measurements = 1_000;
+        final int locationsPerMeasurement = 1_000;
+        oocut.onCreate(db);
+        db.execSQL("DROP INDEX " + GeoLocationsTable.INDEX_MEASUREMENT_FK_GEOLOCATION_TIME);
+        db.execSQL("DROP INDEX " + EventTable.INDEX_MEASUREMENT_FK_TIMESTAMP);
+        db.execSQL("DROP INDEX " + MeasurementTable.INDEX_STATUS);
+        final SQLiteStatement insert = db.compileStatement("INSERT INTO locations "
+                + "(gps_time, lat, lon, speed, accuracy, measurement_fk) VALUES (?, 51.05, 13.73, 3.0, 500, ?)");
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < locationsPerMeasurement; i++) {
+                for (int measurement = 1; measurement <= measurements; measurement++) {
+                    insert.bindLong(1, DEFAULT_GEOLOCATION_TIMESTAMP + (locationsPerMeasurement - i) * 1_000L);
+                    insert.bindLong(2, measurement);
+                    insert.executeInsert();
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        // Act
+        final long withoutIndex = timeLoadTrack(measurements / 2);
+        final long upgradeStart = System.nanoTime();
+        db.beginTransaction();
+        try {
+            oocut.onUpgrade(db, 16, 17);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        final long upgradeNanos = System.nanoTime() - upgradeStart;
+        final long withIndex = timeLoadTrack(measurements / 2);
+
+        // Assert
+        System.out.println(String.format(Locale.US, "%d locations: upgrade %.0f ms, load track %.2f ms before and "
+                + "%.2f ms after the upgrade", measurements * locationsPerMeasurement, upgradeNanos / 1e6,
+                withoutIndex / 1e6, withIndex / 1e6));
+        assertUsesIndex("SELECT * FROM locations WHERE measurement_fk = 1 ORDER BY gps_time ASC",
+                GeoLocationsTable.INDEX_MEASUREMENT_FK_GEOLOCATION_TIME);
+    }
+
+    /**
+     * Loads the {@link GeoLocation}s of a {@link Measurement} as {@code PersistenceLayer#loadTracks} does.
+     *
+     * @param measurementId The id of the {@code Measurement} to load.
+     * @return The average time in nanoseconds to load the locations.
+     */
+    private long timeLoadTrack(final long measurementId) {
+        final int rounds = 10;
+        final long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            try (final Cursor cursor = db.query("locations", null, "measurement_fk = ?",
+                    new String[] {String.valueOf(measurementId)}, null, null, "gps_time ASC")) {
+                while (cursor.moveToNext()) {
+                    cursor.getLong(cursor.getColumnIndex("gps_time"));
+                }
+            }
+        }
+        return (System.nanoTime() - start) / rounds;
+    }
+
+    /**
+     * Asserts that SQLite executes the provided statement by searching the provided index instead of scanning the
+     * table, and that it does not sort the result in a temporary b-tree.
+     *
+     * @param sql The statement to check.
+     * @param index The name of the index to be used.
+     */
+    private void assertUsesIndex(@NonNull final String sql, @NonNull final String index) {
+        final StringBuilder plan = new StringBuilder();
+        try (final Cursor cursor = db.rawQuery("EXPLAIN QUERY PLAN " + sql, null)) {
+            while (cursor.moveToNext()) {
+                plan.append(cursor.getString(cursor.getColumnIndex("detail"))).append('\n');
+            }
+        }
+        // e.g. "SEARCH TABLE locations USING [COVERING ]INDEX <index> (measurement_fk=?)"
+        assertThat(plan.toString(), containsString("SEARCH"));
+        assertThat(plan.toString(), containsString("INDEX " + index));
+        assertThat(plan.toString(), not(containsString("TEMP B-TREE")));
     }
 
     /**
@@ -341,6 +572,9 @@ public class DatabaseHelperTest {
         db.execSQL("CREATE TABLE locations (_id INTEGER PRIMARY KEY AUTOINCREMENT, gps_time INTEGER NOT NULL, "
                 + "lat REAL NOT NULL, lon REAL NOT NULL, speed REAL NOT NULL, accuracy INTEGER NOT NULL, "
                 + "measurement_fk INTEGER NOT NULL);");
+        // Create EventTable
+        db.execSQL("CREATE TABLE events (_id INTEGER PRIMARY KEY AUTOINCREMENT, timestamp INTEGER NOT NULL, "
+                + "type TEXT NOT NULL, measurement_fk INTEGER, value TEXT);");
 
         // Insert sample android_metadata table entry (exists in SQLite export)
         db.execSQL("INSERT INTO android_metadata (locale) VALUES ('de_DE');");
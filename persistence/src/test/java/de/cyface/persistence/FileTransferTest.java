@@ -0,0 +1,208 @@
+/*
+ * Copyright 2021 Cyface GmbH
+ *
+ * This file is part of the Cyface SDK for Android.
+ *
+ * The Cyface SDK for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface SDK for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface SDK for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.persistence;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.Ignore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests that the {@link FileTransfer} copies exactly the requested range, both through the Java heap and via
+ * {@code FileChannel#transferTo}.
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 6.2.0
+ */
+public class FileTransferTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Tests that a range which is not a multiple of the buffer size is copied to a stream and to a file.
+     */
+    @Test
+    public void testTransfer() throws IOException {
+        // Arrange
+        final byte[] data = randomBytes(3 * FileTransfer.BUFFER_SIZE + 123);
+        final File file = write(data);
+        final int position = 17;
+        final int count = data.length - 2 * position;
+        final byte[] expected = Arrays.copyOfRange(data, position, position + count);
+        final ByteArrayOutputStream streamSink = new ByteArrayOutputStream();
+        final File fileSink = folder.newFile("sink");
+
+        // Act
+        final long streamed;
+        final long transferred;
+        try (final FileChannel channel = new FileInputStream(file).getChannel();
+                final FileOutputStream fileOutputStream = new FileOutputStream(fileSink)) {
+            streamed = FileTransfer.transfer(channel, position, count, streamSink);
+            transferred = FileTransfer.transfer(channel, position, count, fileOutputStream);
+        }
+
+        // Assert
+        assertThat(streamed, is(equalTo((long)count)));
+        assertThat(streamSink.toByteArray(), is(equalTo(expected)));
+        assertThat(transferred, is(equalTo((long)count)));
+        assertThat(Files.readAllBytes(fileSink.toPath()), is(equalTo(expected)));
+    }
+
+    /**
+     * Tests that copying more bytes than the file contains fails instead of copying less.
+     */
+    @Test(expected = EOFException.class)
+    public void testTransfer_endOfFile() throws IOException {
+        // Arrange
+        final File file = write(randomBytes(100));
+
+        // Act
+        try (final FileChannel channel = new FileInputStream(file).getChannel()) {
+            FileTransfer.transfer(channel, 50L, 51L, new ByteArrayOutputStream());
+        }
+    }
+
+    /**
+     * Compares the throughput and the allocated heap of the {@link FileTransfer} with the copy loop based on
+     * {@code InputStream#available()} used before, when copying to a {@link BufferedOutputStream} as during
+     * serialization and upload and when copying to a file.
+     * <p>
+     * This is ignored as it's a benchmark which is executed manually.
+     */
+    @Test
+    @Ignore("Benchmark, execute manually")
+    public void benchmarkTransfer() throws IOException {
+        // About 3 hours of data at 100 Hz in the transfer format
+        final File file = write(randomBytes(32 * 1_000_000));
+        final int rounds = 10;
+
+        for (int variant = 0; variant < 4; variant++) {
+            final boolean legacy = variant % 2 == 0;
+            final boolean toFile = variant >= 2;
+            final long allocatedBefore = allocatedBytes();
+            final long start = System.nanoTime();
+            for (int round = 0; round < rounds; round++) {
+                try (final OutputStream sink = toFile ? new FileOutputStream(folder.newFile())
+                        : new BufferedOutputStream(new DiscardingOutputStream())) {
+                    if (legacy) {
+                        legacyTransfer(file, sink);
+                    } else {
+                        FileTransfer.transfer(file, sink);
+                    }
+                }
+            }
+            final long nanos = System.nanoTime() - start;
+            final long allocated = allocatedBefore < 0 ? -1L : allocatedBytes() - allocatedBefore;
+            System.out.println(String.format(Locale.US, "%s to %s: %.1f MB/s, %d KB allocated per copy",
+                    legacy ? "Legacy" : "FileTransfer", toFile ? "file" : "stream",
+                    file.length() * rounds / (nanos / 1e3), allocated < 0 ? -1L : allocated / rounds / 1024));
+        }
+    }
+
+    /**
+     * Copies a file like {@code DefaultFileAccess#writeToOutputStream} did before the {@link FileTransfer}.
+     *
+     * @param file The file to copy.
+     * @param outputStream The stream to copy to.
+     */
+    private static void legacyTransfer(final File file, final OutputStream outputStream) throws IOException {
+        try (final FileInputStream fileInputStream = new FileInputStream(file)) {
+            final int maxBufferSize = 1024 * 1024;
+            int bufferSize = Math.min(fileInputStream.available(), maxBufferSize);
+            final byte[] buffer = new byte[bufferSize];
+            int bytesRead = fileInputStream.read(buffer, 0, bufferSize);
+            while (bytesRead > 0) {
+                outputStream.write(buffer, 0, bytesRead);
+                bufferSize = Math.min(fileInputStream.available(), maxBufferSize);
+                bytesRead = fileInputStream.read(buffer, 0, bufferSize);
+            }
+        }
+    }
+
+    /**
+     * @return The number of bytes allocated on the heap by the current thread or {@code -1} if not supported.
+     */
+    private static long allocatedBytes() {
+        final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean)bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1L;
+    }
+
+    /**
+     * @param length The number of bytes to generate.
+     * @return Random bytes, seeded with the {@code length}.
+     */
+    private static byte[] randomBytes(final int length) {
+        final byte[] data = new byte[length];
+        new Random(length).nextBytes(data);
+        return data;
+    }
+
+    /**
+     * @param data The bytes to write.
+     * @return A new file containing the provided bytes.
+     */
+    private File write(final byte[] data) throws IOException {
+        final File file = folder.newFile();
+        try (final FileOutputStream outputStream = new FileOutputStream(file)) {
+            outputStream.write(data);
+        }
+        return file;
+    }
+
+    /**
+     * A stream which discards all data, like a network connection which is faster than the copy.
+     */
+    private static final class DiscardingOutputStream extends OutputStream {
+
+        @Override
+        public void write(final int b) {
+            // Nothing to do
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) {
+            // Nothing to do
+        }
+    }
+}
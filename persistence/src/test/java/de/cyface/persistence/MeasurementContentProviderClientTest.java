@@ -0,0 +1,240 @@
+/*
+ * Copyright 2021 Cyface GmbH
+ *
+ * This file is part of the Cyface SDK for Android.
+ *
+ * The Cyface SDK for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface SDK for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface SDK for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.persistence;
+
+import static de.cyface.persistence.MeasurementContentProviderClient.BEFORE_FIRST_PAGE;
+import static de.cyface.persistence.TestUtils.AUTHORITY;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import android.content.ContentProviderClient;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.RemoteException;
+import android.provider.BaseColumns;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import de.cyface.persistence.model.MeasurementStatus;
+import de.cyface.persistence.model.Modality;
+import de.cyface.utils.Validate;
+
+/**
+ * Tests the keyset pagination of the {@link MeasurementContentProviderClient} and compares its cost per page with
+ * {@code LIMIT/OFFSET} pagination.
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 6.2.0
+ */
+@RunWith(RobolectricTestRunner.class)
+// Config.NONE: To avoid warning
+// sdk: To be able to execute tests with Java 8 (instead of 9)
+@Config(manifest = Config.NONE, sdk = Build.VERSION_CODES.O_MR1)
+public class MeasurementContentProviderClientTest {
+
+    private ContentProviderClient client;
+
+    @Before
+    public void setUp() {
+        Robolectric.buildContentProvider(MeasuringPointsContentProvider.class).create(AUTHORITY);
+        final Context context = ApplicationProvider.getApplicationContext();
+        client = context.getContentResolver().acquireContentProviderClient(AUTHORITY);
+        Validate.notNull(client);
+    }
+
+    @After
+    public void tearDown() {
+        client.close();
+    }
+
+    /**
+     * Tests that the pages contain each {@code GeoLocation} of the measurement exactly once, ordered by time, also when
+     * multiple {@code GeoLocation}s have the same timestamp and are not inserted in time order.
+     */
+    @Test
+    public void testLoadGeoLocations_pagesAreStable() throws RemoteException {
+        // Arrange
+        final long measurementId = insertMeasurement();
+        final long otherMeasurementId = insertMeasurement();
+        final long[] timestamps = new long[] {5L, 1L, 3L, 3L, 3L, 2L, 4L};
+        insertGeoLocations(measurementId, timestamps);
+        insertGeoLocations(otherMeasurementId, timestamps);
+        final MeasurementContentProviderClient oocut = new MeasurementContentProviderClient(measurementId, client,
+                AUTHORITY);
+
+        // Act
+        final long[] loaded = new long[timestamps.length];
+        int count = 0;
+        int pages = 0;
+        long afterTimestamp = BEFORE_FIRST_PAGE;
+        long afterId = BEFORE_FIRST_PAGE;
+        while (true) {
+            try (final Cursor cursor = oocut.loadGeoLocations(afterTimestamp, afterId, 2)) {
+                if (cursor.getCount() == 0) {
+                    break;
+                }
+                pages++;
+                while (cursor.moveToNext()) {
+                    afterTimestamp = cursor.getLong(cursor.getColumnIndex(GeoLocationsTable.COLUMN_GEOLOCATION_TIME));
+                    afterId = cursor.getLong(cursor.getColumnIndex(BaseColumns._ID));
+                    loaded[count++] = afterTimestamp;
+                }
+            }
+        }
+
+        // Assert
+        final long[] expected = Arrays.copyOf(timestamps, timestamps.length);
+        Arrays.sort(expected);
+        assertThat(pages, is(equalTo(4)));
+        assertThat(count, is(equalTo(timestamps.length)));
+        assertThat(loaded, is(equalTo(expected)));
+    }
+
+    /**
+     * Compares the time per page of {@code LIMIT/OFFSET} pagination, as used before, with the keyset pagination of the
+     * {@link MeasurementContentProviderClient} for a measurement with 500k {@code GeoLocation}s.
+     * <p>
+     * With {@code OFFSET} SQLite steps over all rows of the previous pages, so the time per page grows with the page
+     * number and loading the whole measurement is O(n²). With keyset pagination the time per page stays constant.
+     * <p>
+     * This is ignored as it's a benchmark which is executed manually.
+     */
+    @Test
+    @Ignore("Benchmark, execute manually")
+    public void benchmarkPagination() throws RemoteException {
+        // Arrange
+        final int locations = 500_000;
+        final int pageSize = AbstractCyfaceMeasurementTable.DATABASE_QUERY_LIMIT;
+        final long measurementId = insertMeasurement();
+        final int insertBatchSize = 10_000;
+        for (int i = 0; i < locations; i += insertBatchSize) {
+            final long[] timestamps = new long[insertBatchSize];
+            for (int j = 0; j < insertBatchSize; j++) {
+                timestamps[j] = i + j;
+            }
+            insertGeoLocations(measurementId, timestamps);
+        }
+        final MeasurementContentProviderClient oocut = new MeasurementContentProviderClient(measurementId, client,
+                AUTHORITY);
+        final Uri uri = Utils.getGeoLocationsUri(AUTHORITY);
+        final String[] projection = new String[] {GeoLocationsTable.COLUMN_GEOLOCATION_TIME,
+                GeoLocationsTable.COLUMN_LAT, GeoLocationsTable.COLUMN_LON, GeoLocationsTable.COLUMN_SPEED,
+                GeoLocationsTable.COLUMN_ACCURACY};
+        final String selection = GeoLocationsTable.COLUMN_MEASUREMENT_FK + "=?";
+        final String[] selectionArgs = new String[] {String.valueOf(measurementId)};
+
+        // Act
+        final int pages = locations / pageSize;
+        final long[] offsetNanos = new long[pages];
+        for (int page = 0; page < pages; page++) {
+            final long start = System.nanoTime();
+            try (final Cursor cursor = client.query(uri, projection, selection, selectionArgs,
+                    GeoLocationsTable.COLUMN_MEASUREMENT_FK + " ASC limit " + pageSize + " offset "
+                            + page * pageSize)) {
+                Validate.notNull(cursor);
+                Validate.isTrue(cursor.getCount() == pageSize);
+            }
+            offsetNanos[page] = System.nanoTime() - start;
+        }
+        final long[] keysetNanos = new long[pages];
+        long afterTimestamp = BEFORE_FIRST_PAGE;
+        long afterId = BEFORE_FIRST_PAGE;
+        for (int page = 0; page < pages; page++) {
+            final long start = System.nanoTime();
+            try (final Cursor cursor = oocut.loadGeoLocations(afterTimestamp, afterId, pageSize)) {
+                Validate.isTrue(cursor.getCount() == pageSize);
+                cursor.moveToLast();
+                afterTimestamp = cursor.getLong(cursor.getColumnIndex(GeoLocationsTable.COLUMN_GEOLOCATION_TIME));
+                afterId = cursor.getLong(cursor.getColumnIndex(BaseColumns._ID));
+            }
+            keysetNanos[page] = System.nanoTime() - start;
+        }
+
+        // Assert
+        System.out.println("page;offset ms;keyset ms");
+        for (int page = 0; page < pages; page += pages / 10) {
+            System.out.println(String.format(Locale.US, "%d;%.1f;%.1f", page, offsetNanos[page] / 1e6,
+                    keysetNanos[page] / 1e6));
+        }
+        System.out.println(String.format(Locale.US, "total;%.0f;%.0f", sum(offsetNanos) / 1e6, sum(keysetNanos) / 1e6));
+    }
+
+    /**
+     * @return The id of the new measurement.
+     * @throws RemoteException If the content provider is not accessible.
+     */
+    private long insertMeasurement() throws RemoteException {
+        final ContentValues values = new ContentValues();
+        values.put(MeasurementTable.COLUMN_STATUS, MeasurementStatus.FINISHED.getDatabaseIdentifier());
+        values.put(MeasurementTable.COLUMN_MODALITY, Modality.BICYCLE.getDatabaseIdentifier());
+        values.put(MeasurementTable.COLUMN_PERSISTENCE_FILE_FORMAT_VERSION, (short)1);
+        values.put(MeasurementTable.COLUMN_DISTANCE, 0.0);
+        values.put(MeasurementTable.COLUMN_TIMESTAMP, 1L);
+        final Uri result = client.insert(Utils.getMeasurementUri(AUTHORITY), values);
+        Validate.notNull("Measurement insertion failed!", result);
+        return Long.parseLong(result.getLastPathSegment());
+    }
+
+    /**
+     * Inserts one {@code GeoLocation} per timestamp in the provided order.
+     *
+     * @param measurementId The id of the measurement to insert the {@code GeoLocation}s for.
+     * @param timestamps The timestamps of the {@code GeoLocation}s.
+     * @throws RemoteException If the content provider is not accessible.
+     */
+    private void insertGeoLocations(final long measurementId, final long[] timestamps) throws RemoteException {
+        final double[] values = new double[timestamps.length];
+        Arrays.fill(values, 1.0);
+        final Bundle extras = new Bundle();
+        extras.putLong(MeasuringPointsContentProvider.EXTRA_MEASUREMENT_ID, measurementId);
+        extras.putLongArray(MeasuringPointsContentProvider.EXTRA_TIMESTAMPS, timestamps);
+        extras.putDoubleArray(MeasuringPointsContentProvider.EXTRA_LATITUDES, values);
+        extras.putDoubleArray(MeasuringPointsContentProvider.EXTRA_LONGITUDES, values);
+        extras.putDoubleArray(MeasuringPointsContentProvider.EXTRA_SPEEDS, values);
+        extras.putIntArray(MeasuringPointsContentProvider.EXTRA_ACCURACIES, new int[timestamps.length]);
+        client.call(MeasuringPointsContentProvider.METHOD_INSERT_GEO_LOCATIONS,
+                Utils.getGeoLocationsUri(AUTHORITY).toString(), extras);
+    }
+
+    private static long sum(final long[] values) {
+        long sum = 0;
+        for (final long value : values) {
+            sum += value;
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,494 @@
+/*
+ * Copyright 2021 Cyface GmbH
+ *
+ * This file is part of the Cyface SDK for Android.
+ *
+ * The Cyface SDK for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface SDK for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface SDK for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.persistence;
+
+import static de.cyface.persistence.TestUtils.AUTHORITY;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.Bundle;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import de.cyface.persistence.model.Event;
+import de.cyface.persistence.model.GeoLocation;
+import de.cyface.persistence.model.GeoLocationAggregate;
+import de.cyface.persistence.model.Measurement;
+import de.cyface.persistence.model.MeasurementSummary;
+import de.cyface.persistence.model.MeasurementTimeRange;
+import de.cyface.persistence.model.Modality;
+import de.cyface.persistence.model.Track;
+import de.cyface.persistence.serialization.MeasurementSerializer;
+import de.cyface.utils.CursorIsNullException;
+
+/**
+ * Tests the access to the {@link Track}s of a {@link Measurement} via the {@link PersistenceLayer}.
+ *
+ * @author Armin Schnabel
+ * @version 1.6.1
+ * @since 6.2.0
+ */
+@RunWith(RobolectricTestRunner.class)
+// Config.NONE: To avoid warning
+// sdk: To be able to execute tests with Java 8 (instead of 9)
+@Config(manifest = Config.NONE, sdk = Build.VERSION_CODES.O_MR1)
+public class PersistenceLayerTest {
+
+    /**
+     * The object of the class under test
+     */
+    private PersistenceLayer<DefaultPersistenceBehaviour> oocut;
+
+    @Before
+    public void setUp() {
+        Robolectric.buildContentProvider(MeasuringPointsContentProvider.class).create(AUTHORITY);
+        final Context context = ApplicationProvider.getApplicationContext();
+        oocut = new PersistenceLayer<>(context, context.getContentResolver(), AUTHORITY,
+                new DefaultPersistenceBehaviour());
+    }
+
+    /**
+     * Tests the aggregate of a {@link Measurement} which was paused. The {@code GeoLocation}s captured after the pause
+     * and before the resume event are not part of the {@link Track}s and, thus, not aggregated.
+     */
+    @Test
+    public void testAggregateGeoLocations() throws CursorIsNullException {
+        // Arrange
+        final Measurement measurement = oocut.newMeasurement(Modality.BICYCLE);
+        oocut.logEvent(Event.EventType.LIFECYCLE_START, measurement, 0L, null);
+        oocut.logEvent(Event.EventType.LIFECYCLE_PAUSE, measurement, 5L, null);
+        oocut.logEvent(Event.EventType.LIFECYCLE_RESUME, measurement, 10L, null);
+        oocut.logEvent(Event.EventType.LIFECYCLE_STOP, measurement, 20L, null);
+        // The largest latitude is captured while paused
+        final double[] latitudes = new double[] {51.1, 51.3, 51.2, 51.9, 51.0};
+        insertGeoLocations(measurement.getIdentifier(), new long[] {1L, 5L, 7L, 9L, 19L}, latitudes);
+
+        // Act
+        final GeoLocationAggregate aggregate = oocut.aggregateGeoLocations(measurement.getIdentifier());
+
+        // Assert
+        final List<Track> tracks = oocut.loadTracks(measurement.getIdentifier());
+        assertThat(tracks.size(), is(equalTo(2)));
+        final List<GeoLocation> lastTrack = tracks.get(1).getGeoLocations();
+        assertThat(aggregate.getCount(),
+                is(equalTo(tracks.get(0).getGeoLocations().size() + lastTrack.size())));
+        assertThat(aggregate.getCount(), is(equalTo(3)));
+        assertThat(aggregate.getStartLocation(), is(equalTo(tracks.get(0).getGeoLocations().get(0))));
+        assertThat(aggregate.getEndLocation(), is(equalTo(lastTrack.get(lastTrack.size() - 1))));
+        assertThat(aggregate.getTimeSpan(), is(equalTo(18L)));
+        assertThat(aggregate.getMinLat(), is(closeTo(51.0, 0.0)));
+        assertThat(aggregate.getMaxLat(), is(closeTo(51.3, 0.0)));
+        assertThat(aggregate.getMinLon(), is(closeTo(13.0, 0.0)));
+        assertThat(aggregate.getMaxLon(), is(closeTo(13.0, 0.0)));
+    }
+
+    /**
+     * Tests the aggregate of a {@link Measurement} without {@code GeoLocation}s.
+     */
+    @Test
+    public void testAggregateGeoLocations_withoutGeoLocations() {
+        // Arrange
+        final Measurement measurement = oocut.newMeasurement(Modality.BICYCLE);
+
+        // Act
+        final GeoLocationAggregate aggregate = oocut.aggregateGeoLocations(measurement.getIdentifier());
+
+        // Assert
+        assertThat(aggregate.getCount(), is(equalTo(0)));
+        assertThat(aggregate.getStartLocation(), is(nullValue()));
+        assertThat(aggregate.getEndLocation(), is(nullValue()));
+        assertThat(aggregate.getTimeSpan(), is(equalTo(0L)));
+    }
+
+    /**
+     * Tests that a {@link Measurement} keeps the persistence file format version it was created with.
+     */
+    @Test
+    public void testNewMeasurement_withFileFormatVersion() throws CursorIsNullException {
+        // Act
+        final Measurement measurement = oocut.newMeasurement(Modality.BICYCLE,
+                MeasurementSerializer.PERSISTENCE_FILE_FORMAT_VERSION_4);
+
+        // Assert
+        assertThat(measurement.getFileFormatVersion(),
+                is(equalTo(MeasurementSerializer.PERSISTENCE_FILE_FORMAT_VERSION_4)));
+        assertThat(oocut.loadMeasurement(measurement.getIdentifier()).getFileFormatVersion(),
+                is(equalTo(MeasurementSerializer.PERSISTENCE_FILE_FORMAT_VERSION_4)));
+    }
+
+    /**
+     * Tests that the {@link TrackReader} slices the {@code GeoLocation}s at the pause and resume events, also when a
+     * sub-track is empty or not read completely.
+     */
+    @Test
+    public void testLoadTrackReader() throws CursorIsNullException {
+        // Arrange
+        final Measurement measurement = oocut.newMeasurement(Modality.BICYCLE);
+        oocut.logEvent(Event.EventType.LIFECYCLE_START, measurement, 0L, null);
+        oocut.logEvent(Event.EventType.LIFECYCLE_PAUSE, measurement, 5L, null);
+        oocut.logEvent(Event.EventType.LIFECYCLE_RESUME, measurement, 10L, null);
+        // No location is captured in this sub-track
+        oocut.logEvent(Event.EventType.LIFECYCLE_PAUSE, measurement, 11L, null);
+        oocut.logEvent(Event.EventType.LIFECYCLE_RESUME, measurement, 15L, null);
+        oocut.logEvent(Event.EventType.LIFECYCLE_STOP, measurement, 30L, null);
+        final long[] timestamps = new long[] {1L, 3L, 5L, 7L, 12L, 16L, 20L, 29L};
+        final double[] latitudes = new double[timestamps.length];
+        Arrays.fill(latitudes, 51.0);
+        insertGeoLocations(measurement.getIdentifier(), timestamps, latitudes);
+
+        // Act
+        final List<Long> firstTrack = new ArrayList<>();
+        final List<Long> secondTrack = new ArrayList<>();
+        final boolean hasThirdTrack;
+        try (final TrackReader reader = oocut.loadTrackReader(measurement.getIdentifier())) {
+            assertThat(reader.moveToNextTrack(), is(true));
+            // Only read the first location of the first sub-track
+            assertThat(reader.moveToNext(), is(true));
+            firstTrack.add(reader.getTimestamp());
+            assertThat(reader.moveToNextTrack(), is(true));
+            while (reader.moveToNext()) {
+                secondTrack.add(reader.getTimestamp());
+            }
+            hasThirdTrack = reader.moveToNextTrack();
+        }
+
+        // Assert
+        assertThat(firstTrack, is(equalTo(Collections.singletonList(1L))));
+        assertThat(secondTrack, is(equalTo(Arrays.asList(16L, 20L, 29L))));
+        assertThat(hasThirdTrack, is(false));
+        final List<Track> tracks = oocut.loadTracks(measurement.getIdentifier());
+        assertThat(tracks.size(), is(equalTo(2)));
+        assertThat(tracks.get(0).getGeoLocations().size(), is(equalTo(3)));
+        assertThat(tracks.get(1).getGeoLocations().get(0).getTimestamp(), is(equalTo(16L)));
+    }
+
+    /**
+     * Tests that the {@link MeasurementSummary}s are updated when {@code GeoLocation}s are inserted and removed with
+     * their {@link Measurement}.
+     */
+    @Test
+    public void testLoadMeasurementSummaries() throws CursorIsNullException {
+        // Arrange
+        final Measurement measurement = oocut.newMeasurement(Modality.BICYCLE);
+        final Measurement otherMeasurement = oocut.newMeasurement(Modality.BICYCLE);
+        final Measurement emptyMeasurement = oocut.newMeasurement(Modality.BICYCLE);
+        insertGeoLocations(measurement.getIdentifier(), new long[] {1L, 5L}, new double[] {51.1, 51.3});
+        insertGeoLocations(measurement.getIdentifier(), new long[] {7L}, new double[] {51.2});
+        insertGeoLocations(otherMeasurement.getIdentifier(), new long[] {2L}, new double[] {51.0});
+
+        // Act
+        final List<MeasurementSummary> summaries = oocut.loadMeasurementSummaries();
+        oocut.delete(otherMeasurement.getIdentifier());
+
+        // Assert
+        assertThat(summaries.size(), is(equalTo(2)));
+        final MeasurementSummary summary = summaries.get(0);
+        assertThat(summary.getMeasurementIdentifier(), is(equalTo(measurement.getIdentifier())));
+        assertThat(summary.getLocationCount(), is(equalTo(3)));
+        assertThat(summary.getDuration(), is(equalTo(6L)));
+        assertThat(summary.getStartLat(), is(closeTo(51.1, 0.0)));
+        assertThat(summary.getEndLat(), is(closeTo(51.2, 0.0)));
+        assertThat(summary.getMaxLat(), is(closeTo(51.3, 0.0)));
+        assertThat(summary.getAverageSpeed(), is(closeTo(0.0, 0.0)));
+        assertThat(summaries.get(1).getMeasurementIdentifier(), is(equalTo(otherMeasurement.getIdentifier())));
+        assertThat(oocut.loadMeasurementSummary(otherMeasurement.getIdentifier()), is(nullValue()));
+        assertThat(oocut.loadMeasurementSummary(emptyMeasurement.getIdentifier()), is(nullValue()));
+        assertThat(oocut.loadMeasurementSummaries().size(), is(equalTo(1)));
+    }
+
+    /**
+     * Tests that the simplified {@link Track}s only contain the {@code GeoLocation}s required for the tolerance and
+     * that the stored {@code Track}s are loaded until the {@code Track}s captured after a resume are simplified.
+     */
+    @Test
+    public void testLoadSimplifiedTracks() throws CursorIsNullException {
+        // Arrange
+        final Measurement measurement = oocut.newMeasurement(Modality.BICYCLE);
+        final long measurementId = measurement.getIdentifier();
+        oocut.logEvent(Event.EventType.LIFECYCLE_START, measurement, 0L, null);
+        // The third location is about 33 m and the second and fourth about 17 m off the simplified line
+        insertGeoLocations(measurementId, new long[] {1L, 2L, 3L, 4L, 5L},
+                new double[] {51.0, 51.0, 51.0003, 51.0, 51.0}, new double[] {13.0, 13.0025, 13.005, 13.0075, 13.01});
+        oocut.logEvent(Event.EventType.LIFECYCLE_PAUSE, measurement, 10L, null);
+        oocut.updateSimplifiedTracks(measurementId);
+        oocut.logEvent(Event.EventType.LIFECYCLE_RESUME, measurement, 20L, null);
+        insertGeoLocations(measurementId, new long[] {21L, 22L, 23L}, new double[] {51.001, 51.001, 51.001},
+                new double[] {13.0, 13.001, 13.002});
+        oocut.logEvent(Event.EventType.LIFECYCLE_STOP, measurement, 30L, null);
+
+        // Act
+        final List<Track> storedTracks = oocut.loadSimplifiedTracks(measurementId, 20.0);
+        oocut.updateSimplifiedTracks(measurementId);
+        final List<Track> coarseTracks = oocut.loadSimplifiedTracks(measurementId, 20.0);
+        final List<Track> fineTracks = oocut.loadSimplifiedTracks(measurementId, 10.0);
+        final List<Track> originalTracks = oocut.loadSimplifiedTracks(measurementId, 1.0);
+        final List<Track> worldTracks = oocut.loadSimplifiedTracksForZoomLevel(measurementId, 0);
+
+        // Assert
+        assertThat(storedTracks.size(), is(equalTo(1)));
+        assertThat(coarseTracks.size(), is(equalTo(2)));
+        final List<GeoLocation> coarseTrack = coarseTracks.get(0).getGeoLocations();
+        assertThat(coarseTrack.size(), is(equalTo(3)));
+        assertThat(coarseTrack.get(0).getTimestamp(), is(equalTo(1L)));
+        assertThat(coarseTrack.get(1).getTimestamp(), is(equalTo(3L)));
+        assertThat(coarseTrack.get(2).getTimestamp(), is(equalTo(5L)));
+        assertThat(coarseTracks.get(1).getGeoLocations().size(), is(equalTo(2)));
+        assertThat(fineTracks.get(0).getGeoLocations().size(), is(equalTo(5)));
+        assertThat(fineTracks.get(1).getGeoLocations().size(), is(equalTo(2)));
+        assertThat(originalTracks, is(equalTo(oocut.loadTracks(measurementId))));
+        assertThat(worldTracks.size(), is(equalTo(2)));
+        assertThat(worldTracks.get(0).getGeoLocations().size(), is(equalTo(2)));
+        assertThat(worldTracks.get(1).getGeoLocations().get(1).getTimestamp(), is(equalTo(23L)));
+    }
+
+    /**
+     * Tests that the original {@link Track}s are loaded as long as no simplified {@code Track}s were created and that
+     * simplified {@code Track}s are not replaced based on an outdated state.
+     */
+    @Test
+    public void testReplaceSimplifiedLocations() throws CursorIsNullException {
+        // Arrange
+        final Measurement measurement = oocut.newMeasurement(Modality.BICYCLE);
+        final long measurementId = measurement.getIdentifier();
+        oocut.logEvent(Event.EventType.LIFECYCLE_START, measurement, 0L, null);
+        insertGeoLocations(measurementId, new long[] {1L, 2L, 3L}, new double[] {51.0, 51.0003, 51.0},
+                new double[] {13.0, 13.005, 13.01});
+        final List<Track> originalTracks = oocut.loadTracks(measurementId);
+        final Bundle extras = new Bundle();
+        extras.putLong(MeasuringPointsContentProvider.EXTRA_MEASUREMENT_ID, measurementId);
+        // The simplified Tracks were created from no GeoLocations before
+        extras.putInt(MeasuringPointsContentProvider.EXTRA_EXPECTED_COUNT, 0);
+        extras.putInt(MeasuringPointsContentProvider.EXTRA_LOCATION_COUNT, 3);
+        extras.putInt(MeasuringPointsContentProvider.EXTRA_FIRST_TRACK, 0);
+        extras.putIntArray(MeasuringPointsContentProvider.EXTRA_TRACKS, new int[0]);
+        extras.putIntArray(MeasuringPointsContentProvider.EXTRA_LEVELS, new int[0]);
+        extras.putLongArray(MeasuringPointsContentProvider.EXTRA_TIMESTAMPS, new long[0]);
+        extras.putDoubleArray(MeasuringPointsContentProvider.EXTRA_LATITUDES, new double[0]);
+        extras.putDoubleArray(MeasuringPointsContentProvider.EXTRA_LONGITUDES, new double[0]);
+        extras.putDoubleArray(MeasuringPointsContentProvider.EXTRA_SPEEDS, new double[0]);
+        extras.putIntArray(MeasuringPointsContentProvider.EXTRA_ACCURACIES, new int[0]);
+
+        // Act
+        final List<Track> notSimplifiedTracks = oocut.loadSimplifiedTracks(measurementId, 20.0);
+        oocut.updateSimplifiedTracks(measurementId);
+        final Bundle result = oocut.getResolver().call(oocut.getSimplifiedLocationsUri(),
+                MeasuringPointsContentProvider.METHOD_REPLACE_SIMPLIFIED_LOCATIONS,
+                oocut.getSimplifiedLocationsUri().toString(), extras);
+
+        // Assert
+        assertThat(notSimplifiedTracks, is(equalTo(originalTracks)));
+        assertThat(result.getInt(MeasuringPointsContentProvider.EXTRA_ROWS), is(equalTo(-1)));
+        final List<Track> simplifiedTracks = oocut.loadSimplifiedTracks(measurementId, 20.0);
+        assertThat(simplifiedTracks.size(), is(equalTo(1)));
+        assertThat(simplifiedTracks.get(0).getGeoLocations().size(), is(equalTo(3)));
+    }
+
+    /**
+     * Tests that the {@link Measurement}s passing through an area are found and removed when they are deleted.
+     */
+    @Test
+    public void testLoadMeasurementsInArea() {
+        // Arrange
+        final Measurement measurement = oocut.newMeasurement(Modality.BICYCLE);
+        final Measurement otherMeasurement = oocut.newMeasurement(Modality.BICYCLE);
+        final Measurement antimeridianMeasurement = oocut.newMeasurement(Modality.BICYCLE);
+        insertGeoLocations(measurement.getIdentifier(), new long[] {1L, 2L, 10L}, new double[] {51.0, 51.001, 51.0},
+                new double[] {13.0, 13.001, 13.5});
+        insertGeoLocations(otherMeasurement.getIdentifier(), new long[] {5L}, new double[] {52.0});
+        insertGeoLocations(antimeridianMeasurement.getIdentifier(), new long[] {7L}, new double[] {0.0},
+                new double[] {179.995});
+
+        // Act
+        final List<MeasurementTimeRange> ranges = oocut.loadMeasurementsInArea(50.99, 12.99, 51.01, 13.01);
+        final List<MeasurementTimeRange> antimeridianRanges = oocut.loadMeasurementsInArea(-1.0, 179.9, 1.0, -179.9);
+        oocut.delete(measurement.getIdentifier());
+
+        // Assert
+        assertThat(ranges.size(), is(equalTo(1)));
+        assertThat(ranges.get(0).getMeasurementIdentifier(), is(equalTo(measurement.getIdentifier())));
+        assertThat(ranges.get(0).getStartTime(), is(equalTo(1L)));
+        assertThat(ranges.get(0).getEndTime(), is(equalTo(2L)));
+        assertThat(ranges.get(0).getLocationCount(), is(equalTo(2)));
+        assertThat(antimeridianRanges.size(), is(equalTo(1)));
+        assertThat(antimeridianRanges.get(0).getMeasurementIdentifier(),
+                is(equalTo(antimeridianMeasurement.getIdentifier())));
+        assertThat(oocut.loadMeasurementsInArea(50.99, 12.99, 51.01, 13.01).size(), is(equalTo(0)));
+        assertThat(oocut.loadMeasurementsInArea(-90.0, -180.0, 90.0, 180.0).size(), is(equalTo(2)));
+    }
+
+    /**
+     * Compares the time required to find the {@link Measurement}s passing through an area via
+     * {@link PersistenceLayer#loadTrackReader(long)} and {@link PersistenceLayer#loadMeasurementsInArea}, with 2,000
+     * {@code Measurement}s spread over a city.
+     * <p>
+     * This is ignored as it's a benchmark which is executed manually.
+     */
+    @Test
+    @Ignore("Benchmark, execute manually")
+    public void benchmarkLoadMeasurementsInArea() throws CursorIsNullException {
+        // Arrange
+        final int measurements = 2_000;
+        final int locationsPerMeasurement = 300;
+        final Random random = new Random(42L);
+        for (int i = 0; i < measurements; i++) {
+            final Measurement measurement = oocut.newMeasurement(Modality.BICYCLE);
+            oocut.logEvent(Event.EventType.LIFECYCLE_START, measurement, 0L, null);
+            final long[] timestamps = new long[locationsPerMeasurement];
+            final double[] latitudes = new double[locationsPerMeasurement];
+            final double[] longitudes = new double[locationsPerMeasurement];
+            for (int j = 0; j < locationsPerMeasurement; j++) {
+                // A random walk of about 5 m per second within 0.2 degrees
+                timestamps[j] = j * 1_000L;
+                latitudes[j] = j == 0 ? 51.0 + random.nextDouble() * 0.2
+                        : latitudes[j - 1] + random.nextGaussian() * 5e-5;
+                longitudes[j] = j == 0 ? 13.6 + random.nextDouble() * 0.2
+                        : longitudes[j - 1] + random.nextGaussian() * 7e-5;
+            }
+            insertGeoLocations(measurement.getIdentifier(), timestamps, latitudes, longitudes);
+        }
+        final double minLat = 51.05;
+        final double minLon = 13.70;
+        final double maxLat = 51.07;
+        final double maxLon = 13.73;
+
+        // Act
+        final long readerStart = System.nanoTime();
+        int readerMatches = 0;
+        for (final Measurement measurement : oocut.loadMeasurements()) {
+            try (final TrackReader reader = oocut.loadTrackReader(measurement.getIdentifier())) {
+                boolean matches = false;
+                while (!matches && reader.moveToNextTrack()) {
+                    while (reader.moveToNext()) {
+                        if (reader.getLat() >= minLat && reader.getLat() <= maxLat && reader.getLon() >= minLon
+                                && reader.getLon() <= maxLon) {
+                            matches = true;
+                            break;
+                        }
+                    }
+                }
+                readerMatches += matches ? 1 : 0;
+            }
+        }
+        final long readerNanos = System.nanoTime() - readerStart;
+        final long indexStart = System.nanoTime();
+        final List<MeasurementTimeRange> ranges = oocut.loadMeasurementsInArea(minLat, minLon, maxLat, maxLon);
+        final long indexNanos = System.nanoTime() - indexStart;
+
+        // Assert - the index may include measurements up to one cell outside of the area
+        assertThat(ranges.size() >= readerMatches, is(true));
+        System.out.println(String.format(Locale.US,
+                "loadTrackReader: %.1f ms (%d), loadMeasurementsInArea: %.1f ms (%d)", readerNanos / 1e6,
+                readerMatches, indexNanos / 1e6, ranges.size()));
+    }
+
+    /**
+     * Compares the time required to collect the synchronization meta data of a 14 hour measurement via
+     * {@link PersistenceLayer#loadTracks(long)} and {@link PersistenceLayer#aggregateGeoLocations(long)}.
+     * <p>
+     * This is ignored as it's a benchmark which is executed manually.
+     */
+    @Test
+    @Ignore("Benchmark, execute manually")
+    public void benchmarkAggregateGeoLocations() throws CursorIsNullException {
+        // Arrange
+        final Measurement measurement = oocut.newMeasurement(Modality.BICYCLE);
+        final int locations = 50_000; // 1 Hz
+        final int insertBatchSize = 10_000;
+        for (int i = 0; i < locations; i += insertBatchSize) {
+            final long[] timestamps = new long[insertBatchSize];
+            final double[] latitudes = new double[insertBatchSize];
+            for (int j = 0; j < insertBatchSize; j++) {
+                timestamps[j] = (i + j) * 1_000L;
+                latitudes[j] = 51.0 + (i + j) * 1e-6;
+            }
+            insertGeoLocations(measurement.getIdentifier(), timestamps, latitudes);
+        }
+
+        // Act
+        final long tracksStart = System.nanoTime();
+        final List<Track> tracks = oocut.loadTracks(measurement.getIdentifier());
+        int count = 0;
+        for (final Track track : tracks) {
+            count += track.getGeoLocations().size();
+        }
+        final long tracksNanos = System.nanoTime() - tracksStart;
+        final long aggregateStart = System.nanoTime();
+        final GeoLocationAggregate aggregate = oocut.aggregateGeoLocations(measurement.getIdentifier());
+        final long aggregateNanos = System.nanoTime() - aggregateStart;
+
+        // Assert
+        assertThat(aggregate.getCount(), is(equalTo(count)));
+        System.out.println(String.format(Locale.US, "loadTracks: %.1f ms, aggregateGeoLocations: %.1f ms",
+                tracksNanos / 1e6, aggregateNanos / 1e6));
+    }
+
+    /**
+     * Inserts one {@code GeoLocation} per timestamp.
+     *
+     * @param measurementId The id of the measurement to insert the {@code GeoLocation}s for.
+     * @param timestamps The timestamps of the {@code GeoLocation}s.
+     * @param latitudes The latitudes of the {@code GeoLocation}s.
+     */
+    private void insertGeoLocations(final long measurementId, final long[] timestamps, final double[] latitudes) {
+        final double[] longitudes = new double[timestamps.length];
+        Arrays.fill(longitudes, 13.0);
+        insertGeoLocations(measurementId, timestamps, latitudes, longitudes);
+    }
+
+    /**
+     * Inserts one {@code GeoLocation} per timestamp.
+     *
+     * @param measurementId The id of the measurement to insert the {@code GeoLocation}s for.
+     * @param timestamps The timestamps of the {@code GeoLocation}s.
+     * @param latitudes The latitudes of the {@code GeoLocation}s.
+     * @param longitudes The longitudes of the {@code GeoLocation}s.
+     */
+    private void insertGeoLocations(final long measurementId, final long[] timestamps, final double[] latitudes,
+            final double[] longitudes) {
+        final Bundle extras = new Bundle();
+        extras.putLong(MeasuringPointsContentProvider.EXTRA_MEASUREMENT_ID, measurementId);
+        extras.putLongArray(MeasuringPointsContentProvider.EXTRA_TIMESTAMPS, timestamps);
+        extras.putDoubleArray(MeasuringPointsContentProvider.EXTRA_LATITUDES, latitudes);
+        extras.putDoubleArray(MeasuringPointsContentProvider.EXTRA_LONGITUDES, longitudes);
+        extras.putDoubleArray(MeasuringPointsContentProvider.EXTRA_SPEEDS, new double[timestamps.length]);
+        extras.putIntArray(MeasuringPointsContentProvider.EXTRA_ACCURACIES, new int[timestamps.length]);
+        oocut.getResolver().call(oocut.getGeoLocationsUri(), MeasuringPointsContentProvider.METHOD_INSERT_GEO_LOCATIONS,
+                oocut.getGeoLocationsUri().toString(), extras);
+    }
+}
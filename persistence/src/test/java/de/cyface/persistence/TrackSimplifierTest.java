@@ -0,0 +1,134 @@
+/*
+ * Copyright 2021 Cyface GmbH
+ *
+ * This file is part of the Cyface SDK for Android.
+ *
+ * The Cyface SDK for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface SDK for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface SDK for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.persistence;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.cyface.persistence.model.Track;
+
+/**
+ * Tests that the {@link TrackSimplifier} calculates the same levels as simplifying a {@link Track} once per tolerance.
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 6.2.0
+ */
+public class TrackSimplifierTest {
+
+    /**
+     * Compares the levels of random {@link Track}s with the classic recursive Douglas-Peucker algorithm.
+     */
+    @Test
+    public void testLevels() {
+        final Random random = new Random(42L);
+        for (int run = 0; run < 100; run++) {
+            // Arrange
+            final int size = random.nextInt(200);
+            final double[] latitudes = new double[size + 10];
+            final double[] longitudes = new double[size + 10];
+            for (int i = 0; i < size; i++) {
+                // A random walk with steps of up to about 100 m
+                latitudes[i] = i == 0 ? 51.0 : latitudes[i - 1] + (random.nextDouble() - 0.5) * 0.002;
+                longitudes[i] = i == 0 ? 13.0 : longitudes[i - 1] + (random.nextDouble() - 0.5) * 0.003;
+            }
+
+            // Act
+            final int[] levels = TrackSimplifier.levels(latitudes, longitudes, size);
+
+            // Assert
+            assertThat(levels.length, is(equalTo(size)));
+            for (int level = 0; level < TrackSimplifier.LEVEL_TOLERANCES.length; level++) {
+                final boolean[] expected = simplify(latitudes, longitudes, size,
+                        TrackSimplifier.LEVEL_TOLERANCES[level]);
+                for (int i = 0; i < size; i++) {
+                    assertThat("Run " + run + ", level " + level + ", location " + i, levels[i] >= level,
+                            is(equalTo(expected[i])));
+                }
+            }
+        }
+    }
+
+    /**
+     * Tests the selection of the level for a tolerance and the tolerance for a map zoom level.
+     */
+    @Test
+    public void testLevelFor() {
+        assertThat(TrackSimplifier.levelFor(1.0), is(equalTo(TrackSimplifier.NO_LEVEL)));
+        assertThat(TrackSimplifier.levelFor(2.0), is(equalTo(0)));
+        assertThat(TrackSimplifier.levelFor(49.0), is(equalTo(3)));
+        assertThat(TrackSimplifier.levelFor(1_000.0), is(equalTo(TrackSimplifier.LEVEL_TOLERANCES.length - 1)));
+        assertThat(TrackSimplifier.toleranceForZoomLevel(0, 0.0), is(closeTo(156_543.03392, 1e-6)));
+        assertThat(TrackSimplifier.toleranceForZoomLevel(17, 60.0), is(closeTo(0.597, 0.001)));
+    }
+
+    /**
+     * Simplifies a {@link Track} with the recursive Douglas-Peucker algorithm in the same projection as the
+     * {@link TrackSimplifier}.
+     *
+     * @return {@code true} for each location which is kept.
+     */
+    private static boolean[] simplify(final double[] latitudes, final double[] longitudes, final int size,
+            final double tolerance) {
+        final boolean[] kept = new boolean[size];
+        if (size == 0) {
+            return kept;
+        }
+        final double cosLat = Math.cos(Math.toRadians(latitudes[0]));
+        final double[] x = new double[size];
+        final double[] y = new double[size];
+        for (int i = 0; i < size; i++) {
+            x[i] = Math.toRadians(longitudes[i]) * cosLat * 6_371_000.0;
+            y[i] = Math.toRadians(latitudes[i]) * 6_371_000.0;
+        }
+        kept[0] = true;
+        kept[size - 1] = true;
+        simplify(x, y, 0, size - 1, tolerance, kept);
+        return kept;
+    }
+
+    private static void simplify(final double[] x, final double[] y, final int first, final int last,
+            final double tolerance, final boolean[] kept) {
+        int farthest = first;
+        double maxDistance = -1.0;
+        for (int i = first + 1; i < last; i++) {
+            final double dx = x[last] - x[first];
+            final double dy = y[last] - y[first];
+            final double lengthSquared = dx * dx + dy * dy;
+            double t = lengthSquared == 0.0 ? 0.0 : ((x[i] - x[first]) * dx + (y[i] - y[first]) * dy) / lengthSquared;
+            t = Math.max(0.0, Math.min(1.0, t));
+            final double distance = Math.hypot(x[i] - (x[first] + t * dx), y[i] - (y[first] + t * dy));
+            if (distance > maxDistance) {
+                maxDistance = distance;
+                farthest = i;
+            }
+        }
+        if (maxDistance > tolerance) {
+            kept[farthest] = true;
+            simplify(x, y, first, farthest, tolerance, kept);
+            simplify(x, y, farthest, last, tolerance, kept);
+        }
+    }
+}
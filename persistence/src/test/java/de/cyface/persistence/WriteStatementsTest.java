@@ -0,0 +1,344 @@
+/*
+ * Copyright 2021 Cyface GmbH
+ *
+ * This file is part of the Cyface SDK for Android.
+ *
+ * The Cyface SDK for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface SDK for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface SDK for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.persistence;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Build;
+import android.provider.BaseColumns;
+
+import de.cyface.persistence.model.MeasurementStatus;
+import de.cyface.persistence.model.Modality;
+
+/**
+ * Tests that the {@link WriteStatements} write the same rows as the generic {@link SQLiteDatabase} methods and
+ * compares their latency.
+ *
+ * @author Armin Schnabel
+ * @version 1.3.0
+ * @since 6.2.0
+ */
+@RunWith(RobolectricTestRunner.class)
+// Config.NONE: To avoid warning
+// sdk: To be able to execute tests with Java 8 (instead of 9)
+@Config(manifest = Config.NONE, sdk = Build.VERSION_CODES.O_MR1)
+public class WriteStatementsTest {
+
+    private SQLiteDatabase db;
+    private MeasurementTable measurementTable;
+    private GeoLocationsTable geoLocationsTable;
+    private EventTable eventTable;
+    private MeasurementSummaryTable measurementSummaryTable;
+    private LocationCellsTable locationCellsTable;
+    /**
+     * The object of the class under test
+     */
+    private WriteStatements oocut;
+    private long measurementId;
+
+    @Before
+    public void setUp() {
+        // Create a memory-backed database which is destroyed on close
+        db = SQLiteDatabase.create(null);
+        measurementTable = new MeasurementTable();
+        geoLocationsTable = new GeoLocationsTable();
+        eventTable = new EventTable();
+        measurementSummaryTable = new MeasurementSummaryTable();
+        locationCellsTable = new LocationCellsTable();
+        measurementTable.onCreate(db);
+        geoLocationsTable.onCreate(db);
+        eventTable.onCreate(db);
+        measurementSummaryTable.onCreate(db);
+        locationCellsTable.onCreate(db);
+        measurementId = insertMeasurement();
+        oocut = new WriteStatements(db);
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    /**
+     * Tests that the statements write and update the expected columns.
+     */
+    @Test
+    public void testWrites() {
+        // Act
+        final int inserted = oocut.insertGeoLocations(measurementId, new long[] {1L, 2L}, new double[] {51.1, 51.2},
+                new double[] {13.1, 13.2}, new double[] {3.0, 4.0}, new int[] {5, 6});
+        final long eventId = oocut.insertEvent(measurementId, "LIFECYCLE_START", 7L, null);
+        final int distanceUpdates = oocut.updateDistance(measurementId, 8.5);
+        final int statusUpdates = oocut.updateStatus(measurementId, MeasurementStatus.PAUSED.getDatabaseIdentifier());
+        final int unknownMeasurementUpdates = oocut.updateDistance(measurementId + 1, 1.0);
+
+        // Assert
+        assertThat(inserted, is(equalTo(2)));
+        assertThat(distanceUpdates, is(equalTo(1)));
+        assertThat(statusUpdates, is(equalTo(1)));
+        assertThat(unknownMeasurementUpdates, is(equalTo(0)));
+        try (final Cursor cursor = geoLocationsTable.query(db, null, null, null,
+                GeoLocationsTable.COLUMN_GEOLOCATION_TIME + " ASC")) {
+            assertThat(cursor.getCount(), is(equalTo(2)));
+            cursor.moveToLast();
+            assertThat(cursor.getLong(cursor.getColumnIndex(GeoLocationsTable.COLUMN_GEOLOCATION_TIME)),
+                    is(equalTo(2L)));
+            assertThat(cursor.getDouble(cursor.getColumnIndex(GeoLocationsTable.COLUMN_LAT)), is(closeTo(51.2, 0.0)));
+            assertThat(cursor.getDouble(cursor.getColumnIndex(GeoLocationsTable.COLUMN_LON)), is(closeTo(13.2, 0.0)));
+            assertThat(cursor.getDouble(cursor.getColumnIndex(GeoLocationsTable.COLUMN_SPEED)), is(closeTo(4.0, 0.0)));
+            assertThat(cursor.getInt(cursor.getColumnIndex(GeoLocationsTable.COLUMN_ACCURACY)), is(equalTo(6)));
+            assertThat(cursor.getLong(cursor.getColumnIndex(GeoLocationsTable.COLUMN_MEASUREMENT_FK)),
+                    is(equalTo(measurementId)));
+        }
+        try (final Cursor cursor = eventTable.query(db, null, BaseColumns._ID + "=" + eventId, null, null)) {
+            assertThat(cursor.getCount(), is(equalTo(1)));
+            cursor.moveToFirst();
+            assertThat(cursor.getString(cursor.getColumnIndex(EventTable.COLUMN_TYPE)), is(equalTo("LIFECYCLE_START")));
+            assertThat(cursor.getLong(cursor.getColumnIndex(EventTable.COLUMN_TIMESTAMP)), is(equalTo(7L)));
+            assertThat(cursor.getString(cursor.getColumnIndex(EventTable.COLUMN_VALUE)), is(nullValue()));
+        }
+        try (final Cursor cursor = measurementTable.query(db, null, BaseColumns._ID + "=" + measurementId, null,
+                null)) {
+            cursor.moveToFirst();
+            assertThat(cursor.getDouble(cursor.getColumnIndex(MeasurementTable.COLUMN_DISTANCE)),
+                    is(closeTo(8.5, 0.0)));
+            assertThat(cursor.getString(cursor.getColumnIndex(MeasurementTable.COLUMN_STATUS)),
+                    is(equalTo(MeasurementStatus.PAUSED.getDatabaseIdentifier())));
+        }
+    }
+
+    /**
+     * Tests that inserting {@code GeoLocation}s updates the summary of the {@code Measurement} as if it was calculated
+     * from all of its {@code GeoLocation}s.
+     */
+    @Test
+    public void testInsertGeoLocations_updatesSummary() {
+        // Act - the second batch contains an earlier and a later location
+        oocut.insertGeoLocations(measurementId, new long[] {5L, 6L}, new double[] {51.1, 51.2},
+                new double[] {13.1, 13.2}, new double[] {2.0, 4.0}, new int[] {5, 5});
+        oocut.insertGeoLocations(measurementId, new long[] {9L, 3L, 7L}, new double[] {51.4, 51.0, 51.3},
+                new double[] {13.4, 13.0, 13.3}, new double[] {6.0, 0.0, 3.0}, new int[] {5, 5, 5});
+
+        // Assert
+        try (final Cursor cursor = measurementSummaryTable.query(db, null, null, null, null)) {
+            assertThat(cursor.getCount(), is(equalTo(1)));
+            cursor.moveToFirst();
+            assertThat(cursor.getInt(cursor.getColumnIndex(MeasurementSummaryTable.COLUMN_LOCATION_COUNT)),
+                    is(equalTo(5)));
+            assertThat(cursor.getLong(cursor.getColumnIndex(MeasurementSummaryTable.COLUMN_START_TIME)),
+                    is(equalTo(3L)));
+            assertThat(cursor.getLong(cursor.getColumnIndex(MeasurementSummaryTable.COLUMN_END_TIME)),
+                    is(equalTo(9L)));
+            assertThat(cursor.getDouble(cursor.getColumnIndex(MeasurementSummaryTable.COLUMN_START_LAT)),
+                    is(closeTo(51.0, 0.0)));
+            assertThat(cursor.getDouble(cursor.getColumnIndex(MeasurementSummaryTable.COLUMN_END_LON)),
+                    is(closeTo(13.4, 0.0)));
+            assertThat(cursor.getDouble(cursor.getColumnIndex(MeasurementSummaryTable.COLUMN_MIN_LAT)),
+                    is(closeTo(51.0, 0.0)));
+            assertThat(cursor.getDouble(cursor.getColumnIndex(MeasurementSummaryTable.COLUMN_MAX_LON)),
+                    is(closeTo(13.4, 0.0)));
+            assertThat(cursor.getDouble(cursor.getColumnIndex(MeasurementSummaryTable.COLUMN_SPEED_SUM)),
+                    is(closeTo(15.0, 0.0)));
+        }
+    }
+
+    /**
+     * Tests that inserting {@code GeoLocation}s updates the {@link LocationCellsTable} rows of the cells they are in,
+     * also when a {@code Measurement} returns to a cell.
+     */
+    @Test
+    public void testInsertGeoLocations_updatesCells() {
+        // Act
+        oocut.insertGeoLocations(measurementId, new long[] {5L, 6L, 7L}, new double[] {51.0001, 51.0002, 51.02},
+                new double[] {13.0001, 13.0002, 13.0}, new double[] {0.0, 0.0, 0.0}, new int[] {5, 5, 5});
+        oocut.insertGeoLocations(measurementId, new long[] {3L}, new double[] {51.0003}, new double[] {13.0003},
+                new double[] {0.0}, new int[] {5});
+
+        // Assert
+        try (final Cursor cursor = locationCellsTable.query(db, null, null, null,
+                LocationCellsTable.COLUMN_LAT_CELL + " ASC")) {
+            assertThat(cursor.getCount(), is(equalTo(2)));
+            cursor.moveToFirst();
+            assertThat(cursor.getInt(cursor.getColumnIndex(LocationCellsTable.COLUMN_LAT_CELL)),
+                    is(equalTo(LocationCellsTable.latitudeCell(51.0))));
+            assertThat(cursor.getInt(cursor.getColumnIndex(LocationCellsTable.COLUMN_LON_CELL)),
+                    is(equalTo(LocationCellsTable.longitudeCell(13.0))));
+            assertThat(cursor.getInt(cursor.getColumnIndex(LocationCellsTable.COLUMN_LOCATION_COUNT)),
+                    is(equalTo(3)));
+            assertThat(cursor.getLong(cursor.getColumnIndex(LocationCellsTable.COLUMN_START_TIME)), is(equalTo(3L)));
+            assertThat(cursor.getLong(cursor.getColumnIndex(LocationCellsTable.COLUMN_END_TIME)), is(equalTo(6L)));
+            cursor.moveToNext();
+            assertThat(cursor.getInt(cursor.getColumnIndex(LocationCellsTable.COLUMN_LOCATION_COUNT)),
+                    is(equalTo(1)));
+            assertThat(cursor.getLong(cursor.getColumnIndex(LocationCellsTable.COLUMN_START_TIME)), is(equalTo(7L)));
+        }
+    }
+
+    /**
+     * Tests that inserting {@code ContentValues} without a value required for the summary fails with a descriptive
+     * exception and without inserting any row.
+     */
+    @Test
+    public void testInsertGeoLocations_missingValue() {
+        // Arrange
+        final ContentValues valid = geoLocation(1L);
+        final ContentValues withoutSpeed = geoLocation(2L);
+        withoutSpeed.remove(GeoLocationsTable.COLUMN_SPEED);
+
+        // Act
+        IllegalArgumentException exception = null;
+        try {
+            oocut.insertGeoLocations(geoLocationsTable, Arrays.asList(valid, withoutSpeed));
+        } catch (final IllegalArgumentException e) {
+            exception = e;
+        }
+
+        // Assert
+        assertThat(exception != null && exception.getMessage().contains(GeoLocationsTable.COLUMN_SPEED), is(true));
+        try (final Cursor cursor = geoLocationsTable.query(db, null, null, null, null)) {
+            assertThat(cursor.getCount(), is(equalTo(0)));
+        }
+    }
+
+    /**
+     * Compares the latency per write of the generic {@link SQLiteDatabase#insert} and {@link SQLiteDatabase#update},
+     * as used by the {@link ContentValues} based methods of the {@link MeasuringPointsContentProvider}, with the
+     * {@link WriteStatements}.
+     * <p>
+     * This only measures the database side. The {@code ContentProvider} call across processes adds the same Binder
+     * overhead to both paths, except that a {@code Bundle} with primitive values is smaller to parcel than
+     * {@code ContentValues}. For numbers of a specific device, run the same code in an instrumented test.
+     * <p>
+     * This is ignored as it's a benchmark which is executed manually.
+     */
+    @Test
+    @Ignore("Benchmark, execute manually")
+    public void benchmarkWriteLatency() {
+        final int writes = 5_000;
+        // Warm up both paths
+        writeGeneric(writes / 10);
+        writeCompiled(writes / 10);
+
+        final long genericStart = System.nanoTime();
+        writeGeneric(writes);
+        final long genericNanos = System.nanoTime() - genericStart;
+        final long compiledStart = System.nanoTime();
+        writeCompiled(writes);
+        final long compiledNanos = System.nanoTime() - compiledStart;
+
+        // Each iteration writes a location, an event, the distance and the status
+        final int writesPerIteration = 4;
+        System.out.println(String.format(Locale.US, "Generic insert/update: %.1f µs per write",
+                genericNanos / 1e3 / (writes * writesPerIteration)));
+        System.out.println(String.format(Locale.US, "Compiled statements: %.1f µs per write",
+                compiledNanos / 1e3 / (writes * writesPerIteration)));
+    }
+
+    /**
+     * Writes via the generic {@link SQLiteDatabase} methods used by the {@link CyfaceMeasurementTable}s.
+     *
+     * @param iterations The number of times each write is executed.
+     */
+    private void writeGeneric(final int iterations) {
+        final String byId = BaseColumns._ID + "=" + measurementId;
+        for (int i = 0; i < iterations; i++) {
+            geoLocationsTable.insertRow(db, geoLocation(i));
+
+            final ContentValues event = new ContentValues();
+            event.put(EventTable.COLUMN_TYPE, "LIFECYCLE_START");
+            event.put(EventTable.COLUMN_TIMESTAMP, (long)i);
+            event.put(EventTable.COLUMN_MEASUREMENT_FK, measurementId);
+            eventTable.insertRow(db, event);
+
+            final ContentValues distance = new ContentValues();
+            distance.put(MeasurementTable.COLUMN_DISTANCE, (double)i);
+            measurementTable.update(db, distance, byId, null);
+
+            final ContentValues status = new ContentValues();
+            status.put(MeasurementTable.COLUMN_STATUS, MeasurementStatus.OPEN.getDatabaseIdentifier());
+            measurementTable.update(db, status, byId, null);
+        }
+    }
+
+    /**
+     * Writes via the {@link WriteStatements}.
+     *
+     * @param iterations The number of times each write is executed.
+     */
+    private void writeCompiled(final int iterations) {
+        final long[] timestamp = new long[1];
+        final double[] lat = new double[] {51.0};
+        final double[] lon = new double[] {13.0};
+        final double[] speed = new double[] {3.0};
+        final int[] accuracy = new int[] {5};
+        for (int i = 0; i < iterations; i++) {
+            timestamp[0] = i;
+            oocut.insertGeoLocations(measurementId, timestamp, lat, lon, speed, accuracy);
+            oocut.insertEvent(measurementId, "LIFECYCLE_START", i, null);
+            oocut.updateDistance(measurementId, i);
+            oocut.updateStatus(measurementId, MeasurementStatus.OPEN.getDatabaseIdentifier());
+        }
+    }
+
+    /**
+     * @param timestamp The timestamp of the {@code GeoLocation}.
+     * @return The values of a {@code GeoLocation} of the test {@code Measurement}.
+     */
+    private ContentValues geoLocation(final long timestamp) {
+        final ContentValues location = new ContentValues();
+        location.put(GeoLocationsTable.COLUMN_GEOLOCATION_TIME, timestamp);
+        location.put(GeoLocationsTable.COLUMN_LAT, 51.0);
+        location.put(GeoLocationsTable.COLUMN_LON, 13.0);
+        location.put(GeoLocationsTable.COLUMN_SPEED, 3.0);
+        location.put(GeoLocationsTable.COLUMN_ACCURACY, 5);
+        location.put(GeoLocationsTable.COLUMN_MEASUREMENT_FK, measurementId);
+        return location;
+    }
+
+    /**
+     * @return The id of the new measurement.
+     */
+    private long insertMeasurement() {
+        final ContentValues values = new ContentValues();
+        values.put(MeasurementTable.COLUMN_STATUS, MeasurementStatus.OPEN.getDatabaseIdentifier());
+        values.put(MeasurementTable.COLUMN_MODALITY, Modality.BICYCLE.getDatabaseIdentifier());
+        values.put(MeasurementTable.COLUMN_PERSISTENCE_FILE_FORMAT_VERSION, (short)1);
+        values.put(MeasurementTable.COLUMN_DISTANCE, 0.0);
+        values.put(MeasurementTable.COLUMN_TIMESTAMP, 1L);
+        return measurementTable.insertRow(db, values);
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2021 Cyface GmbH
+ *
+ * This file is part of the Cyface SDK for Android.
+ *
+ * The Cyface SDK for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface SDK for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface SDK for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.persistence.serialization;
+
+import static de.cyface.persistence.serialization.MeasurementSerializer.COMPRESSION_NOWRAP;
+import static de.cyface.persistence.serialization.MeasurementSerializer.DEFLATER_LEVEL;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import de.cyface.persistence.model.Point3d;
+import de.cyface.persistence.model.Point3dBatch;
+
+/**
+ * Tests that the {@link ParallelDeflaterOutputStream} creates one raw deflate stream which is decompressed by a single
+ * {@link Inflater}, as used by the server.
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 6.2.0
+ */
+public class ParallelDeflaterOutputStreamTest {
+
+    /**
+     * The number of uncompressed bytes per block used in the tests, which is the smallest allowed block size.
+     */
+    private static final int BLOCK_SIZE = 32 * 1024;
+
+    /**
+     * Tests that data of multiple blocks is decompressed to the data written, independent of the number of threads
+     * and of how the data is split into writes.
+     */
+    @Test
+    public void testCompress() throws IOException, DataFormatException {
+        final byte[] data = MeasurementSerializer.serialize(ride(5_000));
+        for (final int threads : new int[] {1, 3}) {
+            // Arrange
+            final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+            // Act
+            try (final ParallelDeflaterOutputStream oocut = new ParallelDeflaterOutputStream(output, DEFLATER_LEVEL,
+                    threads, BLOCK_SIZE)) {
+                oocut.write(data, 0, 1_000);
+                oocut.write(data[1_000]);
+                oocut.write(data, 1_001, data.length - 1_001);
+            }
+
+            // Assert
+            assertThat(inflate(output.toByteArray(), data.length), is(equalTo(data)));
+        }
+    }
+
+    /**
+     * Tests that data which fits into one block, including no data, is compressed like by one {@link Deflater}.
+     */
+    @Test
+    public void testCompress_singleBlock() throws IOException {
+        for (final int length : new int[] {0, 100, BLOCK_SIZE}) {
+            // Arrange
+            final byte[] data = new byte[length];
+            new Random(length).nextBytes(data);
+            final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+            // Act
+            try (final ParallelDeflaterOutputStream oocut = new ParallelDeflaterOutputStream(output, DEFLATER_LEVEL,
+                    2, BLOCK_SIZE)) {
+                oocut.write(data);
+            }
+
+            // Assert
+            assertThat(output.toByteArray(), is(equalTo(deflate(data))));
+        }
+    }
+
+    /**
+     * Compares the throughput and compression ratio of the {@link ParallelDeflaterOutputStream} with an increasing
+     * number of threads with a single {@link Deflater}, as used before.
+     * <p>
+     * This is ignored as it's a benchmark which is executed manually.
+     */
+    @Test
+    @Ignore("Benchmark, execute manually")
+    public void benchmarkThreads() throws IOException {
+        // About 3 hours of data at 100 Hz
+        final byte[] data = MeasurementSerializer.serialize(ride(1_000_000));
+        final int rounds = 5;
+
+        long start = System.nanoTime();
+        int compressed = 0;
+        for (int round = 0; round < rounds; round++) {
+            compressed = deflate(data).length;
+        }
+        print("Deflater", data.length, compressed, rounds, System.nanoTime() - start);
+
+        final int processors = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads <= processors; threads *= 2) {
+            start = System.nanoTime();
+            for (int round = 0; round < rounds; round++) {
+                final ByteArrayOutputStream output = new ByteArrayOutputStream(data.length / 2);
+                try (final ParallelDeflaterOutputStream oocut = new ParallelDeflaterOutputStream(output,
+                        DEFLATER_LEVEL, threads, ParallelDeflaterOutputStream.BLOCK_SIZE)) {
+                    oocut.write(data);
+                }
+                compressed = output.size();
+            }
+            print("Parallel, " + threads + " threads", data.length, compressed, rounds, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Prints the result of a benchmark.
+     *
+     * @param name The name of the benchmarked compressor.
+     * @param length The number of uncompressed bytes.
+     * @param compressed The number of compressed bytes.
+     * @param rounds The number of times the data was compressed.
+     * @param nanos The time it took to compress the data in all rounds.
+     */
+    private static void print(final String name, final int length, final int compressed, final int rounds,
+            final long nanos) {
+        System.out.println(String.format(Locale.US, "%s: ratio %.2f, %.1f MB/s", name, length / (double)compressed,
+                (long)length * rounds / (nanos / 1e3)));
+    }
+
+    /**
+     * Compresses the provided data with one {@link Deflater}, like the transfer file was compressed before.
+     *
+     * @param data The data to compress.
+     * @return The compressed data.
+     */
+    private static byte[] deflate(final byte[] data) throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream(data.length / 2 + 64);
+        final Deflater deflater = new Deflater(DEFLATER_LEVEL, COMPRESSION_NOWRAP);
+        try (final DeflaterOutputStream deflaterStream = new DeflaterOutputStream(output, deflater)) {
+            deflaterStream.write(data);
+        }
+        deflater.end();
+        return output.toByteArray();
+    }
+
+    /**
+     * Decompresses the provided data like the server does.
+     *
+     * @param compressed The compressed data.
+     * @param length The number of uncompressed bytes.
+     * @return The decompressed data.
+     */
+    private static byte[] inflate(final byte[] compressed, final int length) throws DataFormatException {
+        final Inflater inflater = new Inflater(COMPRESSION_NOWRAP);
+        try {
+            inflater.setInput(compressed);
+            final byte[] inflated = new byte[length];
+            int inflatedBytes = 0;
+            while (!inflater.finished()) {
+                final int bytes = inflater.inflate(inflated, inflatedBytes, inflated.length - inflatedBytes);
+                if (bytes == 0 && inflater.needsInput() && !inflater.finished()) {
+                    throw new DataFormatException("Stream ended after " + inflatedBytes + " bytes");
+                }
+                inflatedBytes += bytes;
+            }
+            assertThat(inflatedBytes, is(equalTo(length)));
+            return inflated;
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Creates a synthetic ride of sensor data at 100 Hz with some noise.
+     *
+     * @param size The number of samples.
+     * @return The created ride.
+     */
+    private static Point3dBatch ride(final int size) {
+        final Random random = new Random(1L);
+        final List<Point3d> points = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            points.add(new Point3d((float)random.nextGaussian() * 0.5f, (float)random.nextGaussian() * 0.5f,
+                    9.81f + (float)random.nextGaussian() * 0.2f, 1_600_000_000_000L + i * 10L));
+        }
+        return new Point3dBatch(points);
+    }
+}
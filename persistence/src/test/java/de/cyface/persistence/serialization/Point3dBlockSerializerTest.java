@@ -0,0 +1,181 @@
+/*
+ * Copyright 2021 Cyface GmbH
+ *
+ * This file is part of the Cyface SDK for Android.
+ *
+ * The Cyface SDK for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface SDK for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface SDK for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.persistence.serialization;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import android.os.Build;
+
+import de.cyface.persistence.DefaultFileAccess;
+import de.cyface.persistence.model.Point3d;
+import de.cyface.persistence.model.Point3dBatch;
+
+/**
+ * Tests that the block based versions written by the {@link Point3dBlockSerializer} can be read and converted to the
+ * transfer format.
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 6.2.0
+ */
+@RunWith(RobolectricTestRunner.class)
+// Config.NONE: To avoid warning
+// sdk: To be able to execute tests with Java 8 (instead of 9)
+@Config(manifest = Config.NONE, sdk = Build.VERSION_CODES.O_MR1)
+public class Point3dBlockSerializerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Tests the {@link MeasurementSerializer#PERSISTENCE_FILE_FORMAT_VERSION_2}.
+     */
+    @Test
+    public void testRoundTrip_version2() throws IOException {
+        roundTrip(MeasurementSerializer.PERSISTENCE_FILE_FORMAT_VERSION_2);
+    }
+
+    /**
+     * Tests the {@link MeasurementSerializer#PERSISTENCE_FILE_FORMAT_VERSION_3}.
+     */
+    @Test
+    public void testRoundTrip_version3() throws IOException {
+        roundTrip(MeasurementSerializer.PERSISTENCE_FILE_FORMAT_VERSION_3);
+    }
+
+    /**
+     * Tests the {@link MeasurementSerializer#PERSISTENCE_FILE_FORMAT_VERSION_4}.
+     */
+    @Test
+    public void testRoundTrip_version4() throws IOException {
+        roundTrip(MeasurementSerializer.PERSISTENCE_FILE_FORMAT_VERSION_4);
+    }
+
+    /**
+     * Tests that the deflate segments of a {@link MeasurementSerializer#PERSISTENCE_FILE_FORMAT_VERSION_4} file,
+     * concatenated after a segment with other data and terminated by the final block, can be inflated as one stream.
+     */
+    @Test
+    public void testWriteDeflateSegments() throws IOException, DataFormatException {
+        // Arrange
+        final Point3dBatch batch1 = batch(0, 100, 10L);
+        final Point3dBatch batch2 = batch(100, 50, 10L);
+        final File file = folder.newFile("accelerations.cyfa");
+        try (final Point3dFileAppender appender = new Point3dFileAppender(file,
+                MeasurementSerializer.PERSISTENCE_FILE_FORMAT_VERSION_4)) {
+            appender.append(batch1, batch2);
+        }
+        final byte[] prefix = new byte[] {1, 2, 3, 4};
+
+        // Act
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        compressed.write(Point3dDeflateCodec.deflateSegment(prefix));
+        Point3dBlockSerializer.writeDeflateSegments(file, compressed);
+        compressed.write(Point3dDeflateCodec.FINAL_BLOCK);
+
+        // Assert
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.write(prefix);
+        expected.write(MeasurementSerializer.serialize(batch1));
+        expected.write(MeasurementSerializer.serialize(batch2));
+        final Inflater inflater = new Inflater(MeasurementSerializer.COMPRESSION_NOWRAP);
+        inflater.setInput(compressed.toByteArray());
+        final byte[] inflated = new byte[expected.size() + 1];
+        final int length = inflater.inflate(inflated);
+        assertThat(inflater.finished(), is(equalTo(true)));
+        inflater.end();
+        assertThat(Arrays.copyOf(inflated, length), is(equalTo(expected.toByteArray())));
+    }
+
+    /**
+     * Tests that blocks appended to a file are deserialized, counted and converted to the transfer format without
+     * loss, including timestamps which are not increasing.
+     *
+     * @param persistenceFileFormatVersion The block based version to test.
+     */
+    private void roundTrip(final short persistenceFileFormatVersion) throws IOException {
+        // Arrange
+        final Point3dBatch batch1 = batch(0, 100, 10L);
+        final Point3dBatch batch2 = batch(100, 50, -3L);
+        final File file = folder.newFile("accelerations.cyfa");
+
+        // Act
+        try (final Point3dFileAppender appender = new Point3dFileAppender(file, persistenceFileFormatVersion)) {
+            appender.append(batch1);
+            appender.append(Point3dBatch.EMPTY, batch2);
+        }
+
+        // Assert
+        final byte[] bytes = new DefaultFileAccess().loadBytes(file);
+        final Point3dBatch deserialized = Point3dBlockSerializer.deserialize(bytes, persistenceFileFormatVersion);
+        assertThat(deserialized.size(), is(equalTo(150)));
+        for (int i = 0; i < 100; i++) {
+            assertThat(deserialized.getTimestamp(i), is(equalTo(batch1.getTimestamp(i))));
+            assertThat(deserialized.getX(i), is(equalTo(batch1.getX(i))));
+            assertThat(deserialized.getZ(100 + i / 2), is(equalTo(batch2.getZ(i / 2))));
+        }
+        assertThat(Point3dBlockSerializer.countSamples(file), is(equalTo(150)));
+        assertThat(bytes.length, is(lessThan(150 * MeasurementSerializer.BYTES_IN_ONE_POINT_3D_ENTRY / 2)));
+
+        final ByteArrayOutputStream transferFormat = new ByteArrayOutputStream();
+        final long written = Point3dBlockSerializer.writeAsTransferFormat(file, persistenceFileFormatVersion,
+                transferFormat);
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.write(MeasurementSerializer.serialize(batch1));
+        expected.write(MeasurementSerializer.serialize(batch2));
+        assertThat(written, is(equalTo((long)expected.size())));
+        assertThat(transferFormat.toByteArray(), is(equalTo(expected.toByteArray())));
+    }
+
+    /**
+     * Creates a batch of test data.
+     *
+     * @param offset The index of the first sample to make the data of each batch distinct.
+     * @param size The number of samples in the batch.
+     * @param step The difference between two timestamps.
+     * @return The created batch.
+     */
+    private static Point3dBatch batch(final int offset, final int size, final long step) {
+        final List<Point3d> points = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            final int n = offset + i;
+            points.add(new Point3d(n * 0.1f, -n * 0.2f, 9.81f + n, 1_600_000_000_000L + n * step));
+        }
+        return new Point3dBatch(points);
+    }
+}
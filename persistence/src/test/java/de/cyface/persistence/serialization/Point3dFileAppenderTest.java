@@ -0,0 +1,174 @@
+/*
+ * Copyright 2021 Cyface GmbH
+ *
+ * This file is part of the Cyface SDK for Android.
+ *
+ * The Cyface SDK for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface SDK for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface SDK for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.persistence.serialization;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.junit.Ignore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import android.os.Build;
+
+import de.cyface.persistence.DefaultFileAccess;
+import de.cyface.persistence.model.Point3d;
+import de.cyface.persistence.model.Point3dBatch;
+
+/**
+ * Tests the {@link Point3dFileAppender} and compares it with the previous approach of opening the file for each
+ * append via {@link DefaultFileAccess#write(File, byte[], boolean)}.
+ *
+ * @author Armin Schnabel
+ * @version 1.1.0
+ * @since 6.2.0
+ */
+@RunWith(RobolectricTestRunner.class)
+// Config.NONE: To avoid warning
+// sdk: To be able to execute tests with Java 8 (instead of 9)
+@Config(manifest = Config.NONE, sdk = Build.VERSION_CODES.O_MR1)
+public class Point3dFileAppenderTest {
+
+    /**
+     * The number of samples per batch, which is about one second of data at 100 Hz.
+     */
+    private static final int SAMPLES_PER_BATCH = 100;
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Tests that the appender writes exactly the same bytes as {@link DefaultFileAccess#write(File, byte[], boolean)}
+     * when batches are appended one by one and with gathering writes.
+     */
+    @Test
+    public void testAppend_writesSameBytesAsDefaultFileAccess() throws IOException {
+        // Arrange
+        final DefaultFileAccess fileAccess = new DefaultFileAccess();
+        final File expectedFile = folder.newFile("expected.cyfa");
+        final File actualFile = folder.newFile("actual.cyfa");
+        final Point3dBatch batch1 = batch(0);
+        final Point3dBatch batch2 = batch(1);
+        final Point3dBatch batch3 = batch(2);
+        fileAccess.write(expectedFile, MeasurementSerializer.serialize(batch1), true);
+        fileAccess.write(expectedFile, MeasurementSerializer.serialize(batch2), true);
+        fileAccess.write(expectedFile, MeasurementSerializer.serialize(batch3), true);
+
+        // Act
+        try (final Point3dFileAppender oocut = new Point3dFileAppender(actualFile,
+                MeasurementSerializer.PERSISTENCE_FILE_FORMAT_VERSION_1)) {
+            oocut.append(batch1);
+            oocut.append(batch2, batch3);
+        }
+
+        // Assert
+        assertThat(actualFile.length(),
+                is(equalTo(3L * SAMPLES_PER_BATCH * MeasurementSerializer.BYTES_IN_ONE_POINT_3D_ENTRY)));
+        assertThat(fileAccess.loadBytes(actualFile), is(equalTo(fileAccess.loadBytes(expectedFile))));
+    }
+
+    /**
+     * Compares the throughput of the {@link Point3dFileAppender} with {@link DefaultFileAccess#write(File, byte[],
+     * boolean)} for the three sensor files written per location fix.
+     * <p>
+     * The number of system calls is derived from the code paths: {@code DefaultFileAccess} requires an
+     * {@code open}, a {@code write} and a {@code close} per append while the appender requires one {@code write} per
+     * append and one {@code open} and {@code close} per file for the whole measurement. Use {@code strace -c} on the
+     * test JVM to verify the numbers.
+     * <p>
+     * This is ignored as it's a benchmark which is executed manually.
+     */
+    @Test
+    @Ignore("Benchmark, execute manually")
+    public void benchmarkAppend() throws IOException {
+        final int appendsPerFile = 2_000;
+        final int files = 3;
+        final DefaultFileAccess fileAccess = new DefaultFileAccess();
+        final Point3dBatch batch = batch(0);
+        final byte[] serialized = MeasurementSerializer.serialize(batch);
+        final long bytes = (long)appendsPerFile * files * serialized.length;
+
+        final File[] defaultFiles = new File[files];
+        final File[] appenderFiles = new File[files];
+        for (int i = 0; i < files; i++) {
+            defaultFiles[i] = folder.newFile("default" + i);
+            appenderFiles[i] = folder.newFile("appender" + i);
+        }
+
+        final long defaultStart = System.nanoTime();
+        for (int i = 0; i < appendsPerFile; i++) {
+            for (final File file : defaultFiles) {
+                // Serialization is included in both measurements
+                fileAccess.write(file, MeasurementSerializer.serialize(batch), true);
+            }
+        }
+        final long defaultNanos = System.nanoTime() - defaultStart;
+
+        final long appenderStart = System.nanoTime();
+        final List<Point3dFileAppender> appenders = new ArrayList<>(files);
+        for (final File file : appenderFiles) {
+            // Without segments to compare the length of the whole file
+            appenders.add(new Point3dFileAppender(file, MeasurementSerializer.PERSISTENCE_FILE_FORMAT_VERSION_1,
+                    Long.MAX_VALUE));
+        }
+        for (int i = 0; i < appendsPerFile; i++) {
+            for (final Point3dFileAppender appender : appenders) {
+                appender.append(batch);
+            }
+        }
+        for (final Point3dFileAppender appender : appenders) {
+            appender.close();
+        }
+        final long appenderNanos = System.nanoTime() - appenderStart;
+
+        final int appends = appendsPerFile * files;
+        System.out.println(String.format(Locale.US, "DefaultFileAccess: %.1f MB/s, %d open, %d write, %d close",
+                bytes / (defaultNanos / 1e3), appends, appends, appends));
+        System.out.println(String.format(Locale.US, "Point3dFileAppender: %.1f MB/s, %d open, %d write, %d close",
+                bytes / (appenderNanos / 1e3), files, appends, files));
+        for (int i = 0; i < files; i++) {
+            assertThat(appenderFiles[i].length(), is(equalTo(defaultFiles[i].length())));
+        }
+    }
+
+    /**
+     * Creates a batch of test data.
+     *
+     * @param offset An offset to make the data of each batch distinct.
+     * @return The created batch.
+     */
+    private static Point3dBatch batch(final int offset) {
+        final List<Point3d> points = new ArrayList<>(SAMPLES_PER_BATCH);
+        for (int i = 0; i < SAMPLES_PER_BATCH; i++) {
+            final int n = offset * SAMPLES_PER_BATCH + i;
+            points.add(new Point3d(n * 0.1f, -n * 0.2f, 9.81f, 1_600_000_000_000L + n * 10L));
+        }
+        return new Point3dBatch(points);
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2021 Cyface GmbH
+ *
+ * This file is part of the Cyface SDK for Android.
+ *
+ * The Cyface SDK for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface SDK for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface SDK for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.persistence.serialization;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import android.os.Build;
+
+import de.cyface.persistence.model.Point3d;
+import de.cyface.persistence.model.Point3dBatch;
+
+/**
+ * Tests that the {@link Point3dFileChecksums} are written on append and that damaged blocks are removed on verify.
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 6.2.0
+ */
+@RunWith(RobolectricTestRunner.class)
+// Config.NONE: To avoid warning
+// sdk: To be able to execute tests with Java 8 (instead of 9)
+@Config(manifest = Config.NONE, sdk = Build.VERSION_CODES.O_MR1)
+public class Point3dFileChecksumsTest {
+
+    /**
+     * The number of samples per batch, which is about one second of data at 100 Hz.
+     */
+    private static final int SAMPLES_PER_BATCH = 100;
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Tests that an intact file is not changed.
+     */
+    @Test
+    public void testVerify() throws IOException {
+        // Arrange
+        final File file = folder.newFile("points");
+        append(file, 5);
+        final long length = file.length();
+
+        // Act
+        final long removed = Point3dFileChecksums.verify(file, MeasurementSerializer.PERSISTENCE_FILE_FORMAT_VERSION);
+
+        // Assert
+        assertThat(removed, is(equalTo(0L)));
+        assertThat(file.length(), is(equalTo(length)));
+        assertThat(Point3dFileChecksums.getChecksumFile(file).length(),
+                is(equalTo(5L * Point3dFileChecksums.BYTES_IN_ENTRY)));
+    }
+
+    /**
+     * Tests that an incomplete block at the end of the file, e.g. when the app was killed while appending, is removed.
+     */
+    @Test
+    public void testVerify_removesTornTail() throws IOException {
+        // Arrange
+        final File file = folder.newFile("points");
+        append(file, 5);
+        final long length = file.length();
+        final byte[] block = MeasurementSerializer.serialize(batch(5),
+                MeasurementSerializer.PERSISTENCE_FILE_FORMAT_VERSION);
+        try (final FileOutputStream outputStream = new FileOutputStream(file, true)) {
+            outputStream.write(block, 0, block.length / 2);
+        }
+
+        // Act
+        final long removed = Point3dFileChecksums.verify(file, MeasurementSerializer.PERSISTENCE_FILE_FORMAT_VERSION);
+
+        // Assert
+        assertThat(removed, is(equalTo((long)block.length / 2)));
+        assertThat(file.length(), is(equalTo(length)));
+        assertThat(read(file), is(equalTo(batches(5))));
+    }
+
+    /**
+     * Tests that a block which does not match its checksum is removed together with the blocks after it.
+     */
+    @Test
+    public void testVerify_removesDamagedBlock() throws IOException {
+        // Arrange
+        final File file = folder.newFile("points");
+        append(file, 5);
+        long damagedBlock = 0L;
+        for (int i = 0; i < 3; i++) {
+            damagedBlock += MeasurementSerializer.serialize(batch(i),
+                    MeasurementSerializer.PERSISTENCE_FILE_FORMAT_VERSION).length;
+        }
+        final int blockLength = MeasurementSerializer.serialize(batch(3),
+                MeasurementSerializer.PERSISTENCE_FILE_FORMAT_VERSION).length;
+        try (final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            // Flip a bit in the data of the fourth block, not in its header
+            final long position = damagedBlock + blockLength - 1;
+            randomAccessFile.seek(position);
+            final int value = randomAccessFile.read();
+            randomAccessFile.seek(position);
+            randomAccessFile.write(value ^ 0x01);
+        }
+
+        // Act
+        Point3dFileChecksums.verify(file, MeasurementSerializer.PERSISTENCE_FILE_FORMAT_VERSION);
+
+        // Assert
+        assertThat(file.length(), is(equalTo(damagedBlock)));
+        assertThat(Point3dFileChecksums.getChecksumFile(file).length(),
+                is(equalTo(3L * Point3dFileChecksums.BYTES_IN_ENTRY)));
+        assertThat(read(file), is(equalTo(batches(3))));
+    }
+
+    /**
+     * Appends batches to the provided file with a new {@link Point3dFileAppender}.
+     *
+     * @param file The file to append to.
+     * @param batches The number of batches to append.
+     */
+    private static void append(final File file, final int batches) throws IOException {
+        try (final Point3dFileAppender appender = new Point3dFileAppender(file)) {
+            for (int i = 0; i < batches; i++) {
+                appender.append(batch(i));
+            }
+        }
+    }
+
+    /**
+     * Reads all samples of the provided file.
+     *
+     * @param file The file to read.
+     * @return The samples read.
+     */
+    private static Point3dBatch read(final File file) throws IOException {
+        try (final Point3dFileReader reader = new Point3dFileReader(file,
+                MeasurementSerializer.PERSISTENCE_FILE_FORMAT_VERSION)) {
+            return reader.read(Long.MIN_VALUE, Long.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Creates the first batches of test data as one batch.
+     *
+     * @param batches The number of batches to create.
+     * @return The created batch.
+     */
+    private static Point3dBatch batches(final int batches) {
+        final List<Point3d> points = new ArrayList<>(batches * SAMPLES_PER_BATCH);
+        for (int i = 0; i < batches; i++) {
+            points.addAll(batch(i).asList());
+        }
+        return new Point3dBatch(points);
+    }
+
+    /**
+     * Creates a batch of test data with one sample every 10 milliseconds.
+     *
+     * @param offset An offset to make the data of each batch distinct.
+     * @return The created batch.
+     */
+    private static Point3dBatch batch(final int offset) {
+        final List<Point3d> points = new ArrayList<>(SAMPLES_PER_BATCH);
+        for (int i = 0; i < SAMPLES_PER_BATCH; i++) {
+            final int n = offset * SAMPLES_PER_BATCH + i;
+            points.add(new Point3d(n * 0.1f, -n * 0.2f, 9.81f, 1_600_000_000_000L + n * 10L));
+        }
+        return new Point3dBatch(points);
+    }
+}
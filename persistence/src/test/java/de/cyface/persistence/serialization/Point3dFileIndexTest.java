@@ -0,0 +1,220 @@
+/*
+ * Copyright 2021 Cyface GmbH
+ *
+ * This file is part of the Cyface SDK for Android.
+ *
+ * The Cyface SDK for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface SDK for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface SDK for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.persistence.serialization;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import android.os.Build;
+
+import de.cyface.persistence.DefaultFileAccess;
+import de.cyface.persistence.model.Point3d;
+import de.cyface.persistence.model.Point3dBatch;
+
+/**
+ * Tests that the {@link Point3dFileIndex} is written on append and rebuilt from the data file when it is lost or
+ * does not match the data.
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 6.2.0
+ */
+@RunWith(RobolectricTestRunner.class)
+// Config.NONE: To avoid warning
+// sdk: To be able to execute tests with Java 8 (instead of 9)
+@Config(manifest = Config.NONE, sdk = Build.VERSION_CODES.O_MR1)
+public class Point3dFileIndexTest {
+
+    /**
+     * The number of samples per batch, which is about one second of data at 100 Hz.
+     */
+    private static final int SAMPLES_PER_BATCH = 100;
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Tests that one entry per appended batch is written.
+     */
+    @Test
+    public void testAppend() throws IOException {
+        // Arrange
+        final File file = folder.newFile("points");
+
+        // Act
+        append(file, 0, 5);
+
+        // Assert
+        final Point3dFileIndex index = load(file);
+        assertThat(Point3dFileIndex.getIndexFile(file).length(), is(equalTo(5L * Point3dFileIndex.BYTES_IN_ENTRY)));
+        assertThat(index.size(), is(equalTo(5)));
+        assertThat(index.getSampleCount(), is(equalTo(5L * SAMPLES_PER_BATCH)));
+        long position = 0L;
+        for (int i = 0; i < 5; i++) {
+            assertThat(index.getTimestamp(i), is(equalTo(batch(i).getTimestamp(0))));
+            assertThat(index.getPosition(i), is(equalTo(position)));
+            assertThat(index.getSampleCount(i), is(equalTo(SAMPLES_PER_BATCH)));
+            position += index.getLength(i);
+        }
+        assertThat(position, is(equalTo(file.length())));
+    }
+
+    /**
+     * Tests that a lost index file is rebuilt from the data file on the next append.
+     */
+    @Test
+    public void testAppend_rebuildsLostIndex() throws IOException {
+        // Arrange
+        final File file = folder.newFile("points");
+        append(file, 0, 5);
+        final byte[] expected = new DefaultFileAccess().loadBytes(Point3dFileIndex.getIndexFile(file));
+        append(file, 5, 3);
+        final byte[] appended = new DefaultFileAccess().loadBytes(Point3dFileIndex.getIndexFile(file));
+        final File otherFile = folder.newFile("otherPoints");
+        append(otherFile, 0, 5);
+        Point3dFileIndex.getIndexFile(otherFile).delete();
+
+        // Act
+        append(otherFile, 5, 3);
+
+        // Assert
+        final byte[] actual = new DefaultFileAccess().loadBytes(Point3dFileIndex.getIndexFile(otherFile));
+        assertThat(Arrays.copyOf(actual, expected.length), is(equalTo(expected)));
+        assertThat(actual, is(equalTo(appended)));
+    }
+
+    /**
+     * Tests that entries which do not match the data file are replaced by entries scanned from the data file.
+     */
+    @Test
+    public void testLoad_ignoresEntriesNotMatchingTheData() throws IOException {
+        // Arrange
+        final File file = folder.newFile("points");
+        append(file, 0, 5);
+        final File indexFile = Point3dFileIndex.getIndexFile(file);
+        final byte[] expected = new DefaultFileAccess().loadBytes(indexFile);
+        // An entry beyond the end of the data file and an incomplete entry
+        try (final FileOutputStream outputStream = new FileOutputStream(indexFile, true)) {
+            outputStream.write(Arrays.copyOfRange(expected, 0, Point3dFileIndex.BYTES_IN_ENTRY + 10));
+        }
+
+        // Act
+        final Point3dBatch points;
+        try (final Point3dFileReader reader = new Point3dFileReader(file,
+                MeasurementSerializer.PERSISTENCE_FILE_FORMAT_VERSION)) {
+            points = reader.read(Long.MIN_VALUE, Long.MAX_VALUE);
+        }
+        Point3dFileIndex.update(file, MeasurementSerializer.PERSISTENCE_FILE_FORMAT_VERSION);
+
+        // Assert
+        final List<Point3d> expectedPoints = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            expectedPoints.addAll(batch(i).asList());
+        }
+        assertThat(points, is(equalTo(new Point3dBatch(expectedPoints))));
+        assertThat(new DefaultFileAccess().loadBytes(indexFile), is(equalTo(expected)));
+    }
+
+    /**
+     * Tests that a {@link MeasurementSerializer#PERSISTENCE_FILE_FORMAT_VERSION_1} file without index file is indexed
+     * by scanning the fixed-size samples.
+     */
+    @Test
+    public void testLoad_scansVersion1() throws IOException {
+        // Arrange
+        final File file = folder.newFile("points");
+        final DefaultFileAccess fileAccess = new DefaultFileAccess();
+        for (int i = 0; i < 5; i++) {
+            fileAccess.write(file, MeasurementSerializer.serialize(batch(i),
+                    MeasurementSerializer.PERSISTENCE_FILE_FORMAT_VERSION_1), true);
+        }
+
+        // Act
+        final Point3dFileIndex index;
+        try (final FileChannel channel = new FileInputStream(file).getChannel()) {
+            index = Point3dFileIndex.load(file, channel, MeasurementSerializer.PERSISTENCE_FILE_FORMAT_VERSION_1);
+        }
+
+        // Assert
+        final int expectedEntries = (5 * SAMPLES_PER_BATCH + 255) / 256;
+        assertThat(index.size(), is(equalTo(expectedEntries)));
+        assertThat(index.getSampleCount(), is(equalTo(5L * SAMPLES_PER_BATCH)));
+        assertThat(index.getTimestamp(1), is(equalTo(batch(2).getTimestamp(56))));
+        assertThat(index.getPosition(1), is(equalTo(256L * MeasurementSerializer.BYTES_IN_ONE_POINT_3D_ENTRY)));
+    }
+
+    /**
+     * Appends batches to the provided file with a new {@link Point3dFileAppender}.
+     *
+     * @param file The file to append to.
+     * @param offset The offset of the first batch, see {@link #batch(int)}.
+     * @param batches The number of batches to append.
+     */
+    private static void append(final File file, final int offset, final int batches) throws IOException {
+        try (final Point3dFileAppender appender = new Point3dFileAppender(file)) {
+            for (int i = offset; i < offset + batches; i++) {
+                appender.append(batch(i));
+            }
+        }
+    }
+
+    /**
+     * Loads the index of the provided file in the current
+     * {@link MeasurementSerializer#PERSISTENCE_FILE_FORMAT_VERSION}.
+     *
+     * @param file The data file.
+     * @return The loaded index.
+     */
+    private static Point3dFileIndex load(final File file) throws IOException {
+        try (final FileChannel channel = new FileInputStream(file).getChannel()) {
+            return Point3dFileIndex.load(file, channel, MeasurementSerializer.PERSISTENCE_FILE_FORMAT_VERSION);
+        }
+    }
+
+    /**
+     * Creates a batch of test data with one sample every 10 milliseconds.
+     *
+     * @param offset An offset to make the data of each batch distinct.
+     * @return The created batch.
+     */
+    private static Point3dBatch batch(final int offset) {
+        final List<Point3d> points = new ArrayList<>(SAMPLES_PER_BATCH);
+        for (int i = 0; i < SAMPLES_PER_BATCH; i++) {
+            final int n = offset * SAMPLES_PER_BATCH + i;
+            points.add(new Point3d(n * 0.1f, -n * 0.2f, 9.81f, 1_600_000_000_000L + n * 10L));
+        }
+        return new Point3dBatch(points);
+    }
+}
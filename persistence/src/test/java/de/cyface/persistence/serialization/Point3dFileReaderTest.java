@@ -0,0 +1,163 @@
+/*
+ * Copyright 2021 Cyface GmbH
+ *
+ * This file is part of the Cyface SDK for Android.
+ *
+ * The Cyface SDK for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface SDK for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface SDK for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.persistence.serialization;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import android.os.Build;
+
+import de.cyface.persistence.model.Point3d;
+import de.cyface.persistence.model.Point3dBatch;
+
+/**
+ * Tests that the {@link Point3dFileReader} reads the same samples of a time range as deserializing the whole file.
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 6.2.0
+ */
+@RunWith(RobolectricTestRunner.class)
+// Config.NONE: To avoid warning
+// sdk: To be able to execute tests with Java 8 (instead of 9)
+@Config(manifest = Config.NONE, sdk = Build.VERSION_CODES.O_MR1)
+public class Point3dFileReaderTest {
+
+    /**
+     * The number of samples per batch, which is about one second of data at 100 Hz.
+     */
+    private static final int SAMPLES_PER_BATCH = 100;
+    /**
+     * The timestamp of the first sample.
+     */
+    private static final long START = 1_600_000_000_000L;
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Tests time ranges within a block, across blocks, before and after the data for all persistence file format
+     * versions.
+     */
+    @Test
+    public void testRead() throws IOException {
+        final short[] versions = new short[] {MeasurementSerializer.PERSISTENCE_FILE_FORMAT_VERSION_1,
+                MeasurementSerializer.PERSISTENCE_FILE_FORMAT_VERSION_2,
+                MeasurementSerializer.PERSISTENCE_FILE_FORMAT_VERSION_3,
+                MeasurementSerializer.PERSISTENCE_FILE_FORMAT_VERSION_4};
+        for (final short version : versions) {
+            // Arrange
+            final File file = folder.newFile("points" + version);
+            try (final Point3dFileAppender appender = new Point3dFileAppender(file, version)) {
+                for (int i = 0; i < 10; i++) {
+                    appender.append(batch(i));
+                }
+            }
+
+            // Act & Assert
+            try (final Point3dFileReader oocut = new Point3dFileReader(file, version)) {
+                assertThat(oocut.getSampleCount(), is(equalTo(10L * SAMPLES_PER_BATCH)));
+                assertRead(oocut, START + 120L, START + 180L);
+                assertRead(oocut, START + 995L, START + 3_005L);
+                assertRead(oocut, START + 1_000L, START + 2_000L);
+                assertRead(oocut, START - 100L, START + 5L);
+                assertRead(oocut, START + 9_990L, START + 20_000L);
+                assertRead(oocut, START + 20_000L, START + 30_000L);
+                assertRead(oocut, Long.MIN_VALUE, Long.MAX_VALUE);
+            }
+        }
+    }
+
+    /**
+     * Tests that an incomplete block at the end of the file, e.g. when the app was killed while appending, is ignored.
+     */
+    @Test
+    public void testRead_ignoresIncompleteBlock() throws IOException {
+        // Arrange
+        final File file = folder.newFile("points");
+        try (final Point3dFileAppender appender = new Point3dFileAppender(file)) {
+            appender.append(batch(0), batch(1));
+        }
+        final byte[] block = MeasurementSerializer.serialize(batch(2),
+                MeasurementSerializer.PERSISTENCE_FILE_FORMAT_VERSION);
+        try (final FileOutputStream outputStream = new FileOutputStream(file, true)) {
+            outputStream.write(block, 0, block.length - 1);
+        }
+
+        // Act
+        final Point3dBatch points;
+        try (final Point3dFileReader oocut = new Point3dFileReader(file,
+                MeasurementSerializer.PERSISTENCE_FILE_FORMAT_VERSION)) {
+            points = oocut.read(Long.MIN_VALUE, Long.MAX_VALUE);
+        }
+
+        // Assert
+        assertThat(points.size(), is(equalTo(2 * SAMPLES_PER_BATCH)));
+    }
+
+    /**
+     * Asserts that the reader returns the same samples as filtering all samples by the time range.
+     *
+     * @param oocut The reader to test.
+     * @param from The start of the time range, inclusive.
+     * @param to The end of the time range, exclusive.
+     */
+    private static void assertRead(final Point3dFileReader oocut, final long from, final long to) throws IOException {
+        final List<Point3d> expected = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            for (final Point3d point : batch(i).asList()) {
+                if (point.getTimestamp() >= from && point.getTimestamp() < to) {
+                    expected.add(point);
+                }
+            }
+        }
+
+        final Point3dBatch actual = oocut.read(from, to);
+
+        assertThat(actual, is(equalTo(new Point3dBatch(expected))));
+    }
+
+    /**
+     * Creates a batch of test data with one sample every 10 milliseconds.
+     *
+     * @param offset An offset to make the data of each batch distinct.
+     * @return The created batch.
+     */
+    private static Point3dBatch batch(final int offset) {
+        final List<Point3d> points = new ArrayList<>(SAMPLES_PER_BATCH);
+        for (int i = 0; i < SAMPLES_PER_BATCH; i++) {
+            final int n = offset * SAMPLES_PER_BATCH + i;
+            points.add(new Point3d(n * 0.1f, -n * 0.2f, 9.81f, START + n * 10L));
+        }
+        return new Point3dBatch(points);
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2021 Cyface GmbH
+ *
+ * This file is part of the Cyface SDK for Android.
+ *
+ * The Cyface SDK for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface SDK for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface SDK for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.persistence.serialization;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import android.os.Build;
+
+import de.cyface.persistence.model.Point3d;
+import de.cyface.persistence.model.Point3dBatch;
+
+/**
+ * Tests that the {@link Point3dFileAppender} splits the data into {@link Point3dFileSegments} and that the
+ * {@link Point3dFileReader} reads them as one file.
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 6.2.0
+ */
+@RunWith(RobolectricTestRunner.class)
+// Config.NONE: To avoid warning
+// sdk: To be able to execute tests with Java 8 (instead of 9)
+@Config(manifest = Config.NONE, sdk = Build.VERSION_CODES.O_MR1)
+public class Point3dFileSegmentsTest {
+
+    /**
+     * The number of samples per batch, which is about one second of data at 100 Hz.
+     */
+    private static final int SAMPLES_PER_BATCH = 100;
+    /**
+     * The number of batches appended per test.
+     */
+    private static final int BATCHES = 20;
+    /**
+     * The number of bytes after which a segment is closed, which is about one or two compressed batches.
+     */
+    private static final long MAX_SEGMENT_BYTES = 1_000L;
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Tests that the data is appended to multiple segments and read in the order it was appended.
+     */
+    @Test
+    public void testAppend() throws IOException {
+        // Arrange
+        final File file = folder.newFile("points");
+
+        // Act
+        append(file);
+
+        // Assert
+        final Point3dFileSegments segments = Point3dFileSegments.load(file);
+        assertThat(segments.getSegmentCount(), is(greaterThan(2)));
+        for (int i = 0; i < segments.getSegmentCount(); i++) {
+            assertThat(Point3dFileSegments.getSegmentFile(file, i).exists(), is(equalTo(true)));
+        }
+        for (int i = 0; i < segments.getSegmentCount() - 1; i++) {
+            assertThat(segments.getLength(i), is(equalTo(Point3dFileSegments.getSegmentFile(file, i).length())));
+        }
+        try (final Point3dFileReader reader = new Point3dFileReader(file,
+                MeasurementSerializer.PERSISTENCE_FILE_FORMAT_VERSION)) {
+            assertThat(reader.getSampleCount(), is(equalTo((long)BATCHES * SAMPLES_PER_BATCH)));
+            assertThat(reader.read(Long.MIN_VALUE, Long.MAX_VALUE), is(equalTo(batches(-1))));
+            // A time range across segments
+            final long from = batch(3).getTimestamp(50);
+            final long to = batch(11).getTimestamp(50);
+            final List<Point3d> expected = new ArrayList<>();
+            for (final Point3d point : batches(-1).asList()) {
+                if (point.getTimestamp() >= from && point.getTimestamp() < to) {
+                    expected.add(point);
+                }
+            }
+            assertThat(reader.read(from, to), is(equalTo(new Point3dBatch(expected))));
+        }
+    }
+
+    /**
+     * Tests that a truncated segment only loses the data of the incomplete block.
+     */
+    @Test
+    public void testRead_confinesDamageToSegment() throws IOException {
+        // Arrange
+        final File file = folder.newFile("points");
+        append(file);
+        final File segmentFile = Point3dFileSegments.getSegmentFile(file, 1);
+        final long lostTimestamp;
+        try (final FileChannel channel = new FileInputStream(segmentFile).getChannel()) {
+            final Point3dFileIndex index = Point3dFileIndex.load(segmentFile, channel,
+                    MeasurementSerializer.PERSISTENCE_FILE_FORMAT_VERSION);
+            lostTimestamp = index.getTimestamp(index.size() - 1);
+        }
+        try (final RandomAccessFile randomAccessFile = new RandomAccessFile(segmentFile, "rw")) {
+            randomAccessFile.setLength(randomAccessFile.length() - 10);
+        }
+
+        // Act
+        final Point3dBatch points;
+        try (final Point3dFileReader reader = new Point3dFileReader(file,
+                MeasurementSerializer.PERSISTENCE_FILE_FORMAT_VERSION)) {
+            points = reader.read(Long.MIN_VALUE, Long.MAX_VALUE);
+        }
+
+        // Assert
+        int lostBatch = -1;
+        for (int i = 0; i < BATCHES; i++) {
+            if (batch(i).getTimestamp(0) == lostTimestamp) {
+                lostBatch = i;
+            }
+        }
+        assertThat(points, is(equalTo(batches(lostBatch))));
+    }
+
+    /**
+     * Tests that all segments are deleted together with their index files and the manifest.
+     */
+    @Test
+    public void testDelete() throws IOException {
+        // Arrange
+        final File file = folder.newFile("points");
+        append(file);
+
+        // Act
+        Point3dFileSegments.delete(file);
+
+        // Assert
+        assertThat(folder.getRoot().list().length, is(equalTo(0)));
+    }
+
+    /**
+     * Appends the test data to the provided file, one batch per append.
+     *
+     * @param file The file to append to.
+     */
+    private static void append(final File file) throws IOException {
+        try (final Point3dFileAppender appender = new Point3dFileAppender(file,
+                MeasurementSerializer.PERSISTENCE_FILE_FORMAT_VERSION, MAX_SEGMENT_BYTES)) {
+            for (int i = 0; i < BATCHES; i++) {
+                appender.append(batch(i));
+            }
+        }
+    }
+
+    /**
+     * Creates all batches of test data as one batch.
+     *
+     * @param skippedBatch The number of a batch to skip or {@code -1}.
+     * @return The created batch.
+     */
+    private static Point3dBatch batches(final int skippedBatch) {
+        final List<Point3d> points = new ArrayList<>(BATCHES * SAMPLES_PER_BATCH);
+        for (int i = 0; i < BATCHES; i++) {
+            if (i != skippedBatch) {
+                points.addAll(batch(i).asList());
+            }
+        }
+        return new Point3dBatch(points);
+    }
+
+    /**
+     * Creates a batch of test data with one sample every 10 milliseconds.
+     *
+     * @param offset An offset to make the data of each batch distinct.
+     * @return The created batch.
+     */
+    private static Point3dBatch batch(final int offset) {
+        final List<Point3d> points = new ArrayList<>(SAMPLES_PER_BATCH);
+        for (int i = 0; i < SAMPLES_PER_BATCH; i++) {
+            final int n = offset * SAMPLES_PER_BATCH + i;
+            points.add(new Point3d(n * 0.1f, -n * 0.2f, 9.81f, 1_600_000_000_000L + n * 10L));
+        }
+        return new Point3dBatch(points);
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2021 Cyface GmbH
+ *
+ * This file is part of the Cyface SDK for Android.
+ *
+ * The Cyface SDK for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface SDK for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface SDK for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.persistence.serialization;
+
+import static de.cyface.persistence.serialization.MeasurementSerializer.BYTES_IN_ONE_POINT_3D_ENTRY;
+import static de.cyface.persistence.serialization.MeasurementSerializer.COMPRESSION_NOWRAP;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Locale;
+import java.util.Random;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import android.os.Build;
+
+import de.cyface.persistence.model.Point3dBatch;
+import de.cyface.persistence.model.Point3dBuffer;
+
+/**
+ * Tests the {@link Point3dXorCodec} and compares it with the {@link Deflater} used to compress the transfer file.
+ *
+ * @author Armin Schnabel
+ * @version 1.1.0
+ * @since 6.2.0
+ */
+@RunWith(RobolectricTestRunner.class)
+// Config.NONE: To avoid warning
+// sdk: To be able to execute tests with Java 8 (instead of 9)
+@Config(manifest = Config.NONE, sdk = Build.VERSION_CODES.O_MR1)
+public class Point3dXorCodecTest {
+
+    /**
+     * The system property to provide a recorded ride to the benchmark: the path of a file with the samples in the
+     * {@link MeasurementSerializer#PERSISTENCE_FILE_FORMAT_VERSION_1}, e.g. an acceleration file of an older
+     * measurement pulled from a device.
+     */
+    private static final String RIDE_PROPERTY = "de.cyface.benchmark.ride";
+    /**
+     * The level used by {@code MeasurementSerializer#loadSerializedCompressed}.
+     */
+    private static final int DEFLATER_LEVEL = 5;
+
+    /**
+     * Tests that values which are hard to compress are restored bit by bit, including large and negative changes of
+     * the timestamps.
+     */
+    @Test
+    public void testEncodeDecode_withSpecialValues() {
+        // Arrange
+        final float[] values = new float[] {0.0f, -0.0f, 9.81f, 9.81f, Float.NaN, Float.POSITIVE_INFINITY,
+                Float.NEGATIVE_INFINITY, Float.MIN_VALUE, -Float.MAX_VALUE, 1.0E-20f, 12345.678f, -9.81f};
+        final long[] timestamps = new long[] {1_000L, 1_000L, 1_010L, 1_020L, 1_029L, 900L, 5_000L, 5_001L,
+                Long.MAX_VALUE / 2, 0L, 10L, 20L};
+        final Point3dBuffer buffer = new Point3dBuffer();
+        for (int i = 0; i < values.length; i++) {
+            buffer.add(timestamps[i], values[i], values[values.length - 1 - i], i);
+        }
+        final Point3dBatch batch = buffer.toBatch();
+
+        // Act
+        final byte[] encoded = Point3dXorCodec.encode(batch, timestamps[0]);
+        final Point3dBuffer decoded = new Point3dBuffer();
+        final ByteBuffer input = ByteBuffer.wrap(encoded);
+        Point3dXorCodec.decode(input, batch.size(), timestamps[0], decoded);
+
+        // Assert
+        assertThat(input.remaining(), is(equalTo(0)));
+        assertThat(decoded.size(), is(equalTo(batch.size())));
+        for (int i = 0; i < batch.size(); i++) {
+            assertThat(decoded.getTimestamp(i), is(equalTo(batch.getTimestamp(i))));
+            assertThat(Float.floatToRawIntBits(decoded.getX(i)), is(equalTo(Float.floatToRawIntBits(batch.getX(i)))));
+            assertThat(Float.floatToRawIntBits(decoded.getY(i)), is(equalTo(Float.floatToRawIntBits(batch.getY(i)))));
+            assertThat(Float.floatToRawIntBits(decoded.getZ(i)), is(equalTo(Float.floatToRawIntBits(batch.getZ(i)))));
+        }
+    }
+
+    /**
+     * Compares the compression ratio and the encode and decode throughput of the {@link Point3dXorCodec} with the
+     * {@link Deflater} which compresses the transfer format in {@code MeasurementSerializer#loadSerializedCompressed}
+     * and the compression ratio of the {@link Point3dDeflateCodec}.
+     * <p>
+     * Set the system property {@link #RIDE_PROPERTY} to run the benchmark on a recorded ride. Else a synthetic ride is
+     * used, which is only a rough approximation of real sensor noise.
+     * <p>
+     * This is ignored as it's a benchmark which is executed manually.
+     */
+    @Test
+    @Ignore("Benchmark, execute manually")
+    public void benchmarkCompression() throws IOException, DataFormatException {
+        final Point3dBatch ride = loadRide();
+        final int rounds = 20;
+        // Blocks of one second of data at 100 Hz, as appended during capturing
+        final int blockSize = 100;
+        final byte[] transferFormat = MeasurementSerializer.serialize(ride);
+        final long rawBytes = (long)transferFormat.length * rounds;
+
+        // Deflater
+        byte[] deflated = new byte[0];
+        final long deflateStart = System.nanoTime();
+        for (int round = 0; round < rounds; round++) {
+            final ByteArrayOutputStream output = new ByteArrayOutputStream();
+            final Deflater deflater = new Deflater(DEFLATER_LEVEL, COMPRESSION_NOWRAP);
+            try (final DeflaterOutputStream deflaterStream = new DeflaterOutputStream(output, deflater)) {
+                deflaterStream.write(transferFormat);
+            }
+            deflater.end();
+            deflated = output.toByteArray();
+        }
+        final long deflateNanos = System.nanoTime() - deflateStart;
+        final long inflateStart = System.nanoTime();
+        for (int round = 0; round < rounds; round++) {
+            final Inflater inflater = new Inflater(COMPRESSION_NOWRAP);
+            inflater.setInput(deflated);
+            final byte[] inflated = new byte[transferFormat.length];
+            int length = 0;
+            while (!inflater.finished() && length < inflated.length) {
+                length += inflater.inflate(inflated, length, inflated.length - length);
+            }
+            inflater.end();
+            assertThat(length, is(equalTo(transferFormat.length)));
+        }
+        final long inflateNanos = System.nanoTime() - inflateStart;
+
+        // XOR codec
+        int encodedBytes = 0;
+        final byte[][] blocks = new byte[(ride.size() + blockSize - 1) / blockSize][];
+        final long encodeStart = System.nanoTime();
+        for (int round = 0; round < rounds; round++) {
+            encodedBytes = 0;
+            for (int i = 0; i < blocks.length; i++) {
+                final Point3dBatch block = ride.subBatch(i * blockSize, Math.min((i + 1) * blockSize, ride.size()));
+                blocks[i] = Point3dBlockSerializer.serialize(block,
+                        MeasurementSerializer.PERSISTENCE_FILE_FORMAT_VERSION_3);
+                encodedBytes += blocks[i].length;
+            }
+        }
+        final long encodeNanos = System.nanoTime() - encodeStart;
+        final long decodeStart = System.nanoTime();
+        for (int round = 0; round < rounds; round++) {
+            int decoded = 0;
+            for (final byte[] block : blocks) {
+                decoded += Point3dBlockSerializer
+                        .deserialize(block, MeasurementSerializer.PERSISTENCE_FILE_FORMAT_VERSION_3).size();
+            }
+            assertThat(decoded, is(equalTo(ride.size())));
+        }
+        final long decodeNanos = System.nanoTime() - decodeStart;
+
+        // Deflate segment per block
+        int segmentBytes = 0;
+        for (int i = 0; i < blocks.length; i++) {
+            final Point3dBatch block = ride.subBatch(i * blockSize, Math.min((i + 1) * blockSize, ride.size()));
+            segmentBytes += Point3dBlockSerializer.serialize(block,
+                    MeasurementSerializer.PERSISTENCE_FILE_FORMAT_VERSION_4).length;
+        }
+
+        System.out.println(String.format(Locale.US, "%d samples, %d bytes in transfer format", ride.size(),
+                transferFormat.length));
+        System.out.println(String.format(Locale.US, "Deflater(%d): ratio %.2f, encode %.1f MB/s, decode %.1f MB/s",
+                DEFLATER_LEVEL, transferFormat.length / (double)deflated.length, rawBytes / (deflateNanos / 1e3),
+                rawBytes / (inflateNanos / 1e3)));
+        System.out.println(String.format(Locale.US, "Point3dXorCodec: ratio %.2f, encode %.1f MB/s, decode %.1f MB/s",
+                transferFormat.length / (double)encodedBytes, rawBytes / (encodeNanos / 1e3),
+                rawBytes / (decodeNanos / 1e3)));
+        System.out.println(String.format(Locale.US, "Point3dDeflateCodec: ratio %.2f",
+                transferFormat.length / (double)segmentBytes));
+    }
+
+    /**
+     * Loads the ride provided via {@link #RIDE_PROPERTY} or creates a synthetic ride.
+     *
+     * @return The samples of the ride.
+     */
+    private static Point3dBatch loadRide() throws IOException {
+        final String path = System.getProperty(RIDE_PROPERTY);
+        final Point3dBuffer ride = new Point3dBuffer();
+        if (path != null) {
+            final ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(new File(path).toPath()));
+            while (buffer.remaining() >= BYTES_IN_ONE_POINT_3D_ENTRY) {
+                ride.add(buffer.getLong(), (float)buffer.getDouble(), (float)buffer.getDouble(),
+                        (float)buffer.getDouble());
+            }
+            return ride.toBatch();
+        }
+
+        // 30 minutes at about 100 Hz: gravity, slow changes, road vibration and jitter of the sensor timestamps
+        final Random random = new Random(1L);
+        long timestamp = 1_600_000_000_000L;
+        float x = 0.0f;
+        float y = 0.0f;
+        for (int i = 0; i < 180_000; i++) {
+            timestamp += 9 + random.nextInt(3);
+            x += (float)(random.nextGaussian() * 0.01);
+            y += (float)(random.nextGaussian() * 0.01);
+            final float vibration = (float)(random.nextGaussian() * 0.3);
+            ride.add(timestamp, x + vibration, y - vibration, 9.81f + (float)(random.nextGaussian() * 0.3));
+        }
+        return ride.toBatch();
+    }
+}
@@ -19,6 +19,7 @@
 package de.cyface.synchronization;
 
 import static de.cyface.persistence.AbstractCyfaceMeasurementTable.DATABASE_QUERY_LIMIT;
+import static de.cyface.persistence.MeasurementContentProviderClient.BEFORE_FIRST_PAGE;
 import static de.cyface.persistence.Utils.getGeoLocationsUri;
 import static de.cyface.persistence.Utils.getMeasurementUri;
 import static de.cyface.persistence.model.MeasurementStatus.OPEN;
@@ -43,6 +44,7 @@ import android.content.Context;
 import android.database.Cursor;
 import android.net.Uri;
 import android.os.RemoteException;
+import android.provider.BaseColumns;
 import android.util.Log;
 
 import androidx.test.ext.junit.runners.AndroidJUnit4;
@@ -60,7 +62,7 @@ import de.cyface.utils.Validate;
  *
  * @author Klemens Muthmann
  * @author Armin Schnabel
- * @version 1.1.8
+ * @version 1.2.0
  * @since 2.0.0
  */
 @RunWith(AndroidJUnit4.class)
@@ -153,10 +155,18 @@ public class MeasurementContentProviderClientTest {
                     AUTHORITY);
             startTime = System.currentTimeMillis();
 
+            long afterTimestamp = BEFORE_FIRST_PAGE;
+            long afterId = BEFORE_FIRST_PAGE;
             for (int i = 0; i < geoLocationValuesArray.length; i += DATABASE_QUERY_LIMIT) {
-                locationsCursor = oocut.loadGeoLocations(i, DATABASE_QUERY_LIMIT);
+                if (locationsCursor != null) {
+                    locationsCursor.close();
+                }
+                locationsCursor = oocut.loadGeoLocations(afterTimestamp, afterId, DATABASE_QUERY_LIMIT);
                 while (locationsCursor.moveToNext()) {
                     numberOfLoadedGeoLocations++;
+                    afterTimestamp = locationsCursor
+                            .getLong(locationsCursor.getColumnIndex(GeoLocationsTable.COLUMN_GEOLOCATION_TIME));
+                    afterId = locationsCursor.getLong(locationsCursor.getColumnIndex(BaseColumns._ID));
                 }
                 Log.i(TAG,
                         "Loading " + locationsCursor.getCount() + " entries  took: "
@@ -216,7 +226,8 @@ public class MeasurementContentProviderClientTest {
             // Check loadGeoLocations()
             MeasurementContentProviderClient oocut = new MeasurementContentProviderClient(measurementIdentifier, client,
                     AUTHORITY);
-            Cursor geoLocationCursor = oocut.loadGeoLocations(0, DATABASE_QUERY_LIMIT);
+            Cursor geoLocationCursor = oocut.loadGeoLocations(BEFORE_FIRST_PAGE, BEFORE_FIRST_PAGE,
+                    DATABASE_QUERY_LIMIT);
             assertThat(geoLocationCursor.getCount(), is(equalTo(2)));
         }
     }
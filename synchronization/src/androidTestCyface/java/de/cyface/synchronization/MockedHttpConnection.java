@@ -18,6 +18,7 @@
  */
 package de.cyface.synchronization;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.net.URL;
@@ -34,7 +35,7 @@ import androidx.annotation.NonNull;
  *
  * @author Klemens Muthmann
  * @author Armin Schnabel
- * @version 3.0.4
+ * @version 3.1.0
  * @since 3.0.0
  */
 final class MockedHttpConnection implements Http {
@@ -76,4 +77,22 @@ final class MockedHttpConnection implements Http {
         progressListener.updatedProgress(1.0f); // 100%
         return new HttpResponse(201, "");
     }
+
+    @NonNull
+    @Override
+    public String startUploadSession(@NonNull HttpURLConnection connection, @NonNull SyncAdapter.MetaData metaData,
+            @NonNull String fileName, @NonNull String partName, long uploadLength) {
+        return connection.getURL().toString() + "/1";
+    }
+
+    @Override
+    public long requestUploadStatus(@NonNull HttpURLConnection connection, long uploadLength) {
+        return -1L; // Session unknown
+    }
+
+    @Override
+    public long uploadChunk(@NonNull HttpURLConnection connection, @NonNull File file, long offset, long length,
+            long uploadLength) {
+        return offset + length;
+    }
 }
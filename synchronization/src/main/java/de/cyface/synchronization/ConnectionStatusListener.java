@@ -5,7 +5,7 @@ package de.cyface.synchronization;
  *
  * @author Armin Schnabel
  * @author Klemens Muthmann
- * @version 1.0.4
+ * @version 1.0.5
  * @since 1.0.0
  */
 public interface ConnectionStatusListener {
@@ -16,6 +16,9 @@ public interface ConnectionStatusListener {
 
     /**
      * This event is called when the sync progress changed.
+     * <p>
+     * Multiple measurements may be uploaded at the same time, so the events of different measurements may interleave.
+     * The events of one measurement are reported in order.
      *
      * @param percent How much of the currently uploading measurement is transmitted
      * @param measurementId The measurement id of the measurement which is currently transmitted.
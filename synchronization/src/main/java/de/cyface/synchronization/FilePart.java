@@ -18,24 +18,29 @@
  */
 package de.cyface.synchronization;
 
-import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
 
 import android.util.Log;
 
 import androidx.annotation.NonNull;
 
+import de.cyface.persistence.FileTransfer;
 import de.cyface.utils.Validate;
 
 /**
  * Encapsulates a data file that is transferred together with its meta data.
+ * <p>
+ * Subclasses may provide the data without a file by overriding {@link #contentLength()} and
+ * {@link #writeContentTo(BufferedOutputStream, UploadProgressListener)}.
  *
  * @author Klemens Muthmann
- * @version 1.0.1
+ * @author Armin Schnabel
+ * @version 1.2.1
  * @since 5.0.0
  */
 class FilePart {
@@ -43,6 +48,10 @@ class FilePart {
      * Used to identify log messages from objects of this class.
      */
     private static final String TAG = "de.cyface.sync.FilePart";
+    /**
+     * The number of bytes after which the {@link UploadProgressListener} is informed about the progress.
+     */
+    static final long PROGRESS_STEP_BYTES = 256 * 1024;
     /**
      * The multipart name of the file to transfer.
      */
@@ -52,7 +61,7 @@ class FilePart {
      */
     private final String partName;
     /**
-     * The file to transfer itself
+     * The file to transfer itself or {@code null} if a subclass provides the data.
      */
     private final File file;
     /**
@@ -80,10 +89,35 @@ class FilePart {
     }
 
     /**
-     * @return the length of this part in bytes. This is the sum of the file size and the header size
+     * Creates a new part for subclasses which provide the data without a file.
+     *
+     * @param fileName The multipart name of the file to transfer
+     * @param partName The name of the part in a multi part request
+     */
+    FilePart(@NonNull final String fileName, @NonNull final String partName) {
+        Validate.notEmpty(fileName);
+        Validate.notEmpty(partName);
+
+        this.fileName = fileName;
+        this.file = null;
+        this.partName = partName;
+        this.header = generateHeaderPart();
+    }
+
+    /**
+     * @return the length of this part in bytes. This is the sum of the file size and the header size or {@code -1}
+     *         if the length of the data is not known before it is written.
      */
     long partLength() {
-        return file.length() + header.getBytes().length;
+        final long contentLength = contentLength();
+        return contentLength < 0 ? -1L : contentLength + header.getBytes().length;
+    }
+
+    /**
+     * @return the number of bytes of the data to transfer or {@code -1} if it is not known before it is written
+     */
+    long contentLength() {
+        return file.length();
     }
 
     /**
@@ -110,62 +144,39 @@ class FilePart {
      */
     public long writeTo(@NonNull final BufferedOutputStream outputStream,
             @NonNull final UploadProgressListener progressListener) throws IOException {
-        try (final FileInputStream fileInputStream = new FileInputStream(file)) {
-
-            final BufferedInputStream bufferedFileInputStream = new BufferedInputStream(fileInputStream);
-
-            byte[] headerBytes = header.getBytes();
-            outputStream.write(headerBytes);
-            long bytesWrittenToOutputStream = headerBytes.length;
+        byte[] headerBytes = header.getBytes();
+        outputStream.write(headerBytes);
+        long bytesWrittenToOutputStream = headerBytes.length;
 
-            bytesWrittenToOutputStream += writeToOutputStream(outputStream, bufferedFileInputStream, file.length(),
-                    progressListener);
-            outputStream.write(Http.LINE_FEED.getBytes());
-            bytesWrittenToOutputStream += Http.LINE_FEED.getBytes().length;
+        bytesWrittenToOutputStream += writeContentTo(outputStream, progressListener);
+        outputStream.write(Http.LINE_FEED.getBytes());
+        bytesWrittenToOutputStream += Http.LINE_FEED.getBytes().length;
 
-            return bytesWrittenToOutputStream;
-        } catch (final FileNotFoundException e) {
-            throw new IllegalStateException(e);
-        }
+        return bytesWrittenToOutputStream;
     }
 
     /**
-     * Writes the content of {@param bufferedFileInputStream} to the {@param outputStream} and informs the
-     * {@param progressListener} about the progress.
+     * Writes the data to transfer to an {@code OutputStream}.
      *
-     * @param outputStream the {@code BufferedOutputStream} to write the data to
-     * @param bufferedFileInputStream the {@code BufferedInputStream} to read the data from
-     * @param binarySize the {code Byte} size of the data to read
-     * @param progressListener the {@code UploadProgressListener} to inform about the progress
-     * @return the number of {@code Byte}s written to the {@param outputStream}
+     * @param outputStream the {@code HttpURLConnection} to write to
+     * @param progressListener the {@link UploadProgressListener} to inform about the upload progress
+     * @return the number of {@code Byte}s written to the stream
      * @throws IOException when an I/O operation fails
      */
-    private int writeToOutputStream(@NonNull final BufferedOutputStream outputStream,
-            @NonNull final BufferedInputStream bufferedFileInputStream, final long binarySize,
+    long writeContentTo(@NonNull final BufferedOutputStream outputStream,
             @NonNull final UploadProgressListener progressListener) throws IOException {
-        // Create file upload buffer
-        // noinspection PointlessArithmeticExpression - makes semantically more sense
-        final int maxBufferSize = 1 * 1_024 * 1_024;
-        int bytesAvailable, bufferSize;
-        byte[] buffer;
-        bytesAvailable = bufferedFileInputStream.available();
-        bufferSize = Math.min(bytesAvailable, maxBufferSize);
-        buffer = new byte[bufferSize];
-
-        // Write the binaries to the OutputStream
-        int bytesWritten = 0;
-        int bytesRead;
-        bytesRead = bufferedFileInputStream.read(buffer, 0, bufferSize);
-        while (bytesRead > 0) {
-            outputStream.write(buffer, 0, bufferSize);
-            bytesWritten += bytesRead; // Here progress is total uploaded bytes
-            progressListener.updatedProgress((bytesWritten * 100.0f) / binarySize);
-
-            bytesAvailable = bufferedFileInputStream.available();
-            bufferSize = Math.min(bytesAvailable, maxBufferSize);
-            bytesRead = bufferedFileInputStream.read(buffer, 0, bufferSize);
+        final long binarySize = contentLength();
+        try (final FileChannel channel = new FileInputStream(file).getChannel()) {
+            long bytesWritten = 0L;
+            while (bytesWritten < binarySize) {
+                bytesWritten += FileTransfer.transfer(channel, bytesWritten,
+                        Math.min(PROGRESS_STEP_BYTES, binarySize - bytesWritten), outputStream);
+                progressListener.updatedProgress((bytesWritten * 100.0f) / binarySize);
+            }
+            Log.d(TAG, "writeContentTo() file -> " + bytesWritten);
+            return bytesWritten;
+        } catch (final FileNotFoundException e) {
+            throw new IllegalStateException(e);
         }
-        Log.d(TAG, "writeToOutputStream() file -> " + bytesWritten);
-        return bytesWritten;
     }
 }
@@ -18,6 +18,7 @@
  */
 package de.cyface.synchronization;
 
+import java.io.File;
 import java.net.HttpURLConnection;
 import java.net.URL;
 
@@ -34,7 +35,7 @@ import de.cyface.synchronization.exception.HostUnresolvable;
  *
  * @author Klemens Muthmann
  * @author Armin Schnabel
- * @version 9.0.0
+ * @version 9.2.0
  * @since 3.0.0
  */
 interface Http {
@@ -117,7 +118,8 @@ interface Http {
      * @param metaData The {@link SyncAdapter.MetaData} required for the Multipart request.
      * @param progressListener The {@link UploadProgressListener} to be informed about the upload progress.
      * @param files The data files to upload via this post request. Currently these should be a sensor data file and an
-     *            events data file.
+     *            events data file. If the length of any part is unknown, see {@link StreamedFilePart}, the request is
+     *            sent with chunked transfer encoding.
      * @throws SynchronisationException If an IOException occurred during synchronization.
      * @throws BadRequestException When server returns {@code HttpURLConnection#HTTP_BAD_REQUEST}
      * @throws UnauthorizedException When the server returns {@code HttpURLConnection#HTTP_UNAUTHORIZED}
@@ -139,4 +141,103 @@ interface Http {
             throws SynchronisationException, BadRequestException, UnauthorizedException, InternalServerErrorException,
             ForbiddenException, EntityNotParsableException, ConflictException, NetworkUnavailableException,
             SynchronizationInterruptedException, TooManyRequestsException, HostUnresolvable, ServerUnavailableException;
+
+    /**
+     * Starts a session to upload a file in chunks, see {@link ResumableUpload}.
+     * <p>
+     * The {@link SyncAdapter.MetaData} are sent as JSON. The number of bytes to upload is sent in the
+     * {@code X-Upload-Content-Length} header. The server returns the URL of the session in the {@code Location}
+     * header.
+     *
+     * @param connection The {@code HttpURLConnection} to be used for the request.
+     * @param metaData The {@link SyncAdapter.MetaData} of the measurement to which the file belongs.
+     * @param fileName The name of the file to upload.
+     * @param partName The name of the part which the file would have in a multipart request, which identifies the
+     *            type of the file.
+     * @param uploadLength The number of bytes of the file to upload.
+     * @return The URL of the upload session.
+     * @throws SynchronisationException If an IOException occurred during synchronization or no session was returned.
+     * @throws BadRequestException When server returns {@code HttpURLConnection#HTTP_BAD_REQUEST}
+     * @throws UnauthorizedException When the server returns {@code HttpURLConnection#HTTP_UNAUTHORIZED}
+     * @throws ForbiddenException When the server returns {@code HttpURLConnection#HTTP_FORBIDDEN}
+     * @throws ConflictException When the server returns {@code HttpURLConnection#HTTP_CONFLICT}
+     * @throws EntityNotParsableException When the server returns {@link HttpConnection#HTTP_ENTITY_NOT_PROCESSABLE}
+     * @throws InternalServerErrorException When the server returns {@code HttpURLConnection#HTTP_INTERNAL_ERROR}
+     * @throws NetworkUnavailableException When the network used for transmission becomes unavailable.
+     * @throws SynchronizationInterruptedException When the transmission stream ended too early, likely because the sync
+     *             thread was interrupted (sync canceled)
+     * @throws TooManyRequestsException When the server returns {@link HttpConnection#HTTP_TOO_MANY_REQUESTS}
+     * @throws HostUnresolvable e.g. when the phone is connected to a network which is not connected to the internet
+     * @throws ServerUnavailableException When no connection could be established with the server
+     */
+    @NonNull
+    String startUploadSession(@NonNull HttpURLConnection connection, @NonNull SyncAdapter.MetaData metaData,
+            @NonNull String fileName, @NonNull String partName, long uploadLength)
+            throws SynchronisationException, BadRequestException, UnauthorizedException, InternalServerErrorException,
+            ForbiddenException, EntityNotParsableException, ConflictException, NetworkUnavailableException,
+            SynchronizationInterruptedException, TooManyRequestsException, HostUnresolvable, ServerUnavailableException;
+
+    /**
+     * Requests the number of bytes of an upload session which were committed by the server.
+     * <p>
+     * An empty {@code PUT} request with the {@code Content-Range} header {@code bytes *}{@code /<uploadLength>} is sent
+     * to the session. The server responds with {@link HttpConnection#HTTP_RESUME_INCOMPLETE} and the committed bytes in
+     * the {@code Range} header, e.g. {@code bytes=0-99} for 100 committed bytes, or without {@code Range} header if no
+     * bytes were committed. When the upload is complete, the server responds with {@code HTTP_OK} or
+     * {@code HTTP_CREATED}.
+     *
+     * @param connection The {@code HttpURLConnection} to the upload session.
+     * @param uploadLength The number of bytes of the file to upload.
+     * @return The number of committed bytes or {@code -1} if the server does not know the session, e.g. because it
+     *         expired.
+     * @throws SynchronisationException If an IOException occurred during synchronization or the response is invalid.
+     * @throws BadRequestException When server returns {@code HttpURLConnection#HTTP_BAD_REQUEST}
+     * @throws UnauthorizedException When the server returns {@code HttpURLConnection#HTTP_UNAUTHORIZED}
+     * @throws ForbiddenException When the server returns {@code HttpURLConnection#HTTP_FORBIDDEN}
+     * @throws ConflictException When the server returns {@code HttpURLConnection#HTTP_CONFLICT}
+     * @throws EntityNotParsableException When the server returns {@link HttpConnection#HTTP_ENTITY_NOT_PROCESSABLE}
+     * @throws InternalServerErrorException When the server returns {@code HttpURLConnection#HTTP_INTERNAL_ERROR}
+     * @throws NetworkUnavailableException When the network used for transmission becomes unavailable.
+     * @throws SynchronizationInterruptedException When the transmission stream ended too early, likely because the sync
+     *             thread was interrupted (sync canceled)
+     * @throws TooManyRequestsException When the server returns {@link HttpConnection#HTTP_TOO_MANY_REQUESTS}
+     * @throws HostUnresolvable e.g. when the phone is connected to a network which is not connected to the internet
+     * @throws ServerUnavailableException When no connection could be established with the server
+     */
+    long requestUploadStatus(@NonNull HttpURLConnection connection, long uploadLength)
+            throws SynchronisationException, BadRequestException, UnauthorizedException, InternalServerErrorException,
+            ForbiddenException, EntityNotParsableException, ConflictException, NetworkUnavailableException,
+            SynchronizationInterruptedException, TooManyRequestsException, HostUnresolvable, ServerUnavailableException;
+
+    /**
+     * Uploads a chunk of a file to an upload session with a {@code PUT} request and the {@code Content-Range} header,
+     * e.g. {@code bytes 100-199/500}. The server responds like to
+     * {@link #requestUploadStatus(HttpURLConnection, long)}.
+     *
+     * @param connection The {@code HttpURLConnection} to the upload session.
+     * @param file The file to upload.
+     * @param offset The position of the first byte of the chunk in the file.
+     * @param length The number of bytes of the chunk.
+     * @param uploadLength The number of bytes of the file to upload.
+     * @return The number of committed bytes, which is the offset of the next chunk, or {@code -1} if the server does
+     *         not know the session, e.g. because it expired.
+     * @throws SynchronisationException If an IOException occurred during synchronization or the response is invalid.
+     * @throws BadRequestException When server returns {@code HttpURLConnection#HTTP_BAD_REQUEST}
+     * @throws UnauthorizedException When the server returns {@code HttpURLConnection#HTTP_UNAUTHORIZED}
+     * @throws ForbiddenException When the server returns {@code HttpURLConnection#HTTP_FORBIDDEN}
+     * @throws ConflictException When the server returns {@code HttpURLConnection#HTTP_CONFLICT}
+     * @throws EntityNotParsableException When the server returns {@link HttpConnection#HTTP_ENTITY_NOT_PROCESSABLE}
+     * @throws InternalServerErrorException When the server returns {@code HttpURLConnection#HTTP_INTERNAL_ERROR}
+     * @throws NetworkUnavailableException When the network used for transmission becomes unavailable.
+     * @throws SynchronizationInterruptedException When the transmission stream ended too early, likely because the sync
+     *             thread was interrupted (sync canceled)
+     * @throws TooManyRequestsException When the server returns {@link HttpConnection#HTTP_TOO_MANY_REQUESTS}
+     * @throws HostUnresolvable e.g. when the phone is connected to a network which is not connected to the internet
+     * @throws ServerUnavailableException When no connection could be established with the server
+     */
+    long uploadChunk(@NonNull HttpURLConnection connection, @NonNull File file, long offset, long length,
+            long uploadLength)
+            throws SynchronisationException, BadRequestException, UnauthorizedException, InternalServerErrorException,
+            ForbiddenException, EntityNotParsableException, ConflictException, NetworkUnavailableException,
+            SynchronizationInterruptedException, TooManyRequestsException, HostUnresolvable, ServerUnavailableException;
 }
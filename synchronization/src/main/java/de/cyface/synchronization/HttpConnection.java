@@ -23,14 +23,18 @@ import static de.cyface.persistence.Constants.DEFAULT_CHARSET;
 import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.InterruptedIOException;
 import java.io.UnsupportedEncodingException;
 import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
 import java.net.ProtocolException;
 import java.net.URL;
+import java.nio.channels.FileChannel;
 import java.util.zip.GZIPOutputStream;
 
 import javax.net.ssl.HostnameVerifier;
@@ -39,12 +43,14 @@ import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLException;
 import javax.net.ssl.SSLSession;
 
+import org.json.JSONException;
 import org.json.JSONObject;
 
 import android.util.Log;
 
 import androidx.annotation.NonNull;
 
+import de.cyface.persistence.FileTransfer;
 import de.cyface.synchronization.exception.HostUnresolvable;
 import de.cyface.utils.Validate;
 
@@ -53,7 +59,7 @@ import de.cyface.utils.Validate;
  *
  * @author Klemens Muthmann
  * @author Armin Schnabel
- * @version 11.0.5
+ * @version 11.2.0
  * @since 2.0.0
  */
 public class HttpConnection implements Http {
@@ -76,6 +82,10 @@ public class HttpConnection implements Http {
      * This helps to prevent DDoS attacks. The client should just retry a short time later.
      */
     final static int HTTP_TOO_MANY_REQUESTS = 429;
+    /**
+     * The status code returned by an upload session when the upload is not complete, see {@link ResumableUpload}.
+     */
+    final static int HTTP_RESUME_INCOMPLETE = 308;
 
     @NonNull
     @Override
@@ -196,12 +206,22 @@ public class HttpConnection implements Http {
 
         // The streaming length needs to be set up before the connection is connected.
         long sizeOfFileParts = 0L;
+        boolean lengthKnown = true;
         for (FilePart filePart : fileParts) {
-            sizeOfFileParts += filePart.partLength();
+            final long partLength = filePart.partLength();
+            lengthKnown &= partLength >= 0;
+            sizeOfFileParts += partLength;
         }
 
-        final long fixedStreamLength = setupFixedLengthStreamingMode(connection, remainingHeaderBytes.length,
-                sizeOfFileParts);
+        // Parts which are written while they are produced, e.g. a StreamedFilePart, require chunked streaming
+        final long fixedStreamLength;
+        if (lengthKnown) {
+            fixedStreamLength = setupFixedLengthStreamingMode(connection, remainingHeaderBytes.length,
+                    sizeOfFileParts);
+        } else {
+            connection.setChunkedStreamingMode(0);
+            fixedStreamLength = -1L;
+        }
 
         // Use a buffered stream to upload the transfer file to avoid OOM and for performance
         final BufferedOutputStream outputStream = initOutputStream(connection);
@@ -226,13 +246,196 @@ public class HttpConnection implements Http {
 
                 // Ensure we only write the "registered" number of bytes to the stream MOV-693
                 outputStream.flush(); // This way we can identify exceptions thrown by flush easier
-                Validate.isTrue(bytesWrittenToOutputStream == fixedStreamLength, "bytesWrittenToOutputStream "
-                        + bytesWrittenToOutputStream + " != " + fixedStreamLength + " fixedStreamLength");
+                Validate.isTrue(fixedStreamLength < 0 || bytesWrittenToOutputStream == fixedStreamLength,
+                        "bytesWrittenToOutputStream " + bytesWrittenToOutputStream + " != " + fixedStreamLength
+                                + " fixedStreamLength");
                 Log.d(TAG, "Total bytes written to output stream: " + bytesWrittenToOutputStream);
             } finally {
                 outputStream.close();
             }
-        } catch (final SSLException e) {
+        } catch (final IOException e) {
+            handleTransmissionException(e);
+        }
+
+        return readResponse(connection);
+    }
+
+    @NonNull
+    @Override
+    public String startUploadSession(@NonNull final HttpURLConnection connection,
+            @NonNull final SyncAdapter.MetaData metaData, @NonNull final String fileName,
+            @NonNull final String partName, final long uploadLength)
+            throws SynchronisationException, BadRequestException, UnauthorizedException, InternalServerErrorException,
+            ForbiddenException, EntityNotParsableException, ConflictException, NetworkUnavailableException,
+            SynchronizationInterruptedException, TooManyRequestsException, HostUnresolvable,
+            ServerUnavailableException {
+
+        final byte[] payload;
+        try {
+            payload = generateMetaData(metaData, fileName, partName).toString().getBytes(DEFAULT_CHARSET);
+        } catch (final UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+        connection.setInstanceFollowRedirects(false);
+        connection.setRequestProperty("X-Upload-Content-Type", "application/octet-stream");
+        connection.setRequestProperty("X-Upload-Content-Length", String.valueOf(uploadLength));
+        connection.setFixedLengthStreamingMode(payload.length);
+        final BufferedOutputStream outputStream = initOutputStream(connection);
+        try {
+            try {
+                outputStream.write(payload);
+                outputStream.flush();
+            } finally {
+                outputStream.close();
+            }
+        } catch (final IOException e) {
+            handleTransmissionException(e);
+        }
+
+        readResponse(connection);
+        final String location = connection.getHeaderField("Location");
+        if (location == null) {
+            throw new SynchronisationException("No upload session returned for " + fileName);
+        }
+        try {
+            // The location may be relative to the request URL
+            return new URL(connection.getURL(), location).toString();
+        } catch (final MalformedURLException e) {
+            throw new SynchronisationException(e);
+        }
+    }
+
+    @Override
+    public long requestUploadStatus(@NonNull final HttpURLConnection connection, final long uploadLength)
+            throws SynchronisationException, BadRequestException, UnauthorizedException, InternalServerErrorException,
+            ForbiddenException, EntityNotParsableException, ConflictException, NetworkUnavailableException,
+            SynchronizationInterruptedException, TooManyRequestsException, HostUnresolvable,
+            ServerUnavailableException {
+
+        setupUploadSessionRequest(connection, "bytes */" + uploadLength, 0L);
+        final BufferedOutputStream outputStream = initOutputStream(connection);
+        try {
+            outputStream.close();
+        } catch (final IOException e) {
+            handleTransmissionException(e);
+        }
+
+        return readCommittedBytes(connection, uploadLength);
+    }
+
+    @Override
+    public long uploadChunk(@NonNull final HttpURLConnection connection, @NonNull final File file, final long offset,
+            final long length, final long uploadLength)
+            throws SynchronisationException, BadRequestException, UnauthorizedException, InternalServerErrorException,
+            ForbiddenException, EntityNotParsableException, ConflictException, NetworkUnavailableException,
+            SynchronizationInterruptedException, TooManyRequestsException, HostUnresolvable,
+            ServerUnavailableException {
+        Validate.isTrue(offset >= 0 && length > 0 && offset + length <= uploadLength,
+                "Illegal chunk: " + offset + ", " + length + " of " + uploadLength);
+
+        setupUploadSessionRequest(connection, "bytes " + offset + "-" + (offset + length - 1) + "/" + uploadLength,
+                length);
+        connection.setRequestProperty("Content-Type", "application/octet-stream");
+        final BufferedOutputStream outputStream = initOutputStream(connection);
+        try {
+            connection.connect();
+            try (final FileChannel channel = new FileInputStream(file).getChannel()) {
+                FileTransfer.transfer(channel, offset, length, outputStream);
+                outputStream.flush();
+            } finally {
+                outputStream.close();
+            }
+        } catch (final IOException e) {
+            handleTransmissionException(e);
+        }
+
+        return readCommittedBytes(connection, uploadLength);
+    }
+
+    /**
+     * Prepares a {@code PUT} request to an upload session, see {@link ResumableUpload}.
+     *
+     * @param connection The {@code HttpURLConnection} to the upload session.
+     * @param contentRange The value of the {@code Content-Range} header.
+     * @param length The number of bytes of the request body.
+     */
+    private void setupUploadSessionRequest(@NonNull final HttpURLConnection connection,
+            @NonNull final String contentRange, final long length) {
+        try {
+            connection.setRequestMethod("PUT");
+        } catch (final ProtocolException e) {
+            throw new IllegalStateException(e);
+        }
+        // The server responds with HTTP_RESUME_INCOMPLETE which must not be followed like a redirect
+        connection.setInstanceFollowRedirects(false);
+        connection.setRequestProperty("Content-Range", contentRange);
+        connection.setFixedLengthStreamingMode(length);
+    }
+
+    /**
+     * Reads the number of bytes committed by an upload session from the response, see
+     * {@link #requestUploadStatus(HttpURLConnection, long)}.
+     *
+     * @param connection The {@code HttpURLConnection} to the upload session.
+     * @param uploadLength The number of bytes of the file to upload.
+     * @return The number of committed bytes or {@code -1} if the server does not know the session.
+     * @throws SynchronisationException If an IOException occurred while reading the response or it is invalid.
+     * @throws BadRequestException When server returns {@code HttpURLConnection#HTTP_BAD_REQUEST}
+     * @throws UnauthorizedException When the server returns {@code HttpURLConnection#HTTP_UNAUTHORIZED}
+     * @throws ForbiddenException When the server returns {@code HttpURLConnection#HTTP_FORBIDDEN}
+     * @throws ConflictException When the server returns {@code HttpURLConnection#HTTP_CONFLICT}
+     * @throws EntityNotParsableException When the server returns {@link #HTTP_ENTITY_NOT_PROCESSABLE}
+     * @throws InternalServerErrorException When the server returns {@code HttpURLConnection#HTTP_INTERNAL_ERROR}
+     * @throws TooManyRequestsException When the server returns {@link #HTTP_TOO_MANY_REQUESTS}
+     */
+    private long readCommittedBytes(@NonNull final HttpURLConnection connection, final long uploadLength)
+            throws SynchronisationException, BadRequestException, UnauthorizedException, ForbiddenException,
+            ConflictException, EntityNotParsableException, InternalServerErrorException, TooManyRequestsException {
+
+        final int responseCode;
+        try {
+            responseCode = connection.getResponseCode();
+        } catch (final IOException e) {
+            throw new SynchronisationException(e);
+        }
+        switch (responseCode) {
+            case HTTP_RESUME_INCOMPLETE:
+                final String range = connection.getHeaderField("Range");
+                if (range == null) {
+                    return 0L;
+                }
+                // Format: bytes=0-<last committed byte>
+                final String prefix = "bytes=0-";
+                try {
+                    if (range.startsWith(prefix)) {
+                        return Long.parseLong(range.substring(prefix.length())) + 1L;
+                    }
+                } catch (final NumberFormatException e) {
+                    throw new SynchronisationException("Invalid range: " + range, e);
+                }
+                throw new SynchronisationException("Invalid range: " + range);
+            case HttpURLConnection.HTTP_NOT_FOUND:
+            case HttpURLConnection.HTTP_GONE:
+                Log.w(TAG, responseCode + ": Upload session unknown");
+                return -1L;
+        }
+
+        readResponse(connection);
+        return uploadLength;
+    }
+
+    /**
+     * Converts an {@code IOException} thrown while writing a request into the exception which describes its cause.
+     *
+     * @param e The {@code IOException} thrown.
+     * @throws NetworkUnavailableException When the network used for transmission became unavailable.
+     * @throws SynchronizationInterruptedException When the transmission stream ended too early, likely because the sync
+     *             thread was interrupted (sync canceled)
+     * @throws SynchronisationException For all other causes.
+     */
+    private void handleTransmissionException(@NonNull final IOException e) throws NetworkUnavailableException,
+            SynchronizationInterruptedException, SynchronisationException {
+        if (e instanceof SSLException) {
             Log.w(TAG, "Caught SSLException: " + e.getMessage());
             // This exception is thrown by OkHttp when the network is no longer available
             final String message = e.getMessage();
@@ -240,21 +443,18 @@ public class HttpConnection implements Http {
                 throw new NetworkUnavailableException("Network became unavailable during transmission.");
             }
             throw new SynchronisationException(e); // SSLException with unknown cause MOV-774
-        } catch (final InterruptedIOException e) {
+        }
+        if (e instanceof InterruptedIOException) {
             // This exception is thrown when the login request is interrupted
             throw new NetworkUnavailableException("Network interrupted during post", e);
-        } catch (final IOException e) {
-            Log.w(TAG, "Caught IOException: " + e.getMessage());
-            // Logging out interrupts the sync thread. This must not throw a RuntimeException, thus:
-            final String message = e.getMessage();
-            if (message != null && message.contains("unexpected end of stream")) {
-                throw new SynchronizationInterruptedException("Sync was probably interrupted via cancelSynchronization",
-                        e);
-            }
-            throw new SynchronisationException(e); // IOException with unknown cause MOV-778
         }
-
-        return readResponse(connection);
+        Log.w(TAG, "Caught IOException: " + e.getMessage());
+        // Logging out interrupts the sync thread. This must not throw a RuntimeException, thus:
+        final String message = e.getMessage();
+        if (message != null && message.contains("unexpected end of stream")) {
+            throw new SynchronizationInterruptedException("Sync was probably interrupted via cancelSynchronization", e);
+        }
+        throw new SynchronisationException(e); // IOException with unknown cause MOV-778
     }
 
     /**
@@ -388,6 +588,46 @@ public class HttpConnection implements Http {
                 + appVersionPart + lengthPart + locationCountPart + modalityPart;
     }
 
+    /**
+     * Assembles the {@link SyncAdapter.MetaData} of an upload session, with the same keys as in the Multipart header.
+     *
+     * @param metaData The {@code MetaData} of the measurement.
+     * @param fileName The name of the file to upload.
+     * @param partName The name of the part which the file would have in a multipart request.
+     * @return The meta data as JSON
+     */
+    @NonNull
+    JSONObject generateMetaData(@NonNull final SyncAdapter.MetaData metaData, @NonNull final String fileName,
+            @NonNull final String partName) {
+        final JSONObject json = new JSONObject();
+        try {
+            if (metaData.startLocation != null) {
+                json.put("startLocLat", metaData.startLocation.getLat());
+                json.put("startLocLon", metaData.startLocation.getLon());
+                json.put("startLocTS", metaData.startLocation.getTimestamp());
+            }
+            if (metaData.endLocation != null) {
+                json.put("endLocLat", metaData.endLocation.getLat());
+                json.put("endLocLon", metaData.endLocation.getLon());
+                json.put("endLocTS", metaData.endLocation.getTimestamp());
+            }
+            json.put("deviceId", metaData.deviceId);
+            json.put("measurementId", metaData.measurementId);
+            json.put("deviceType", metaData.deviceType);
+            json.put("osVersion", metaData.osVersion);
+            json.put("appVersion", metaData.appVersion);
+            json.put("length", metaData.length);
+            json.put("locationCount", metaData.locationCount);
+            // To support the API v2 specification we may not change the "vehicle" key name of the modality
+            json.put("vehicle", String.valueOf(metaData.modality.getDatabaseIdentifier()));
+            json.put("fileName", fileName);
+            json.put("partName", partName);
+        } catch (final JSONException e) {
+            throw new IllegalStateException(e);
+        }
+        return json;
+    }
+
     /**
      * Generates a valid Multipart entry.
      *
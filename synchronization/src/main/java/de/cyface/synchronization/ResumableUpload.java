@@ -0,0 +1,356 @@
+/*
+ * Copyright 2021 Cyface GmbH
+ *
+ * This file is part of the Cyface SDK for Android.
+ *
+ * The Cyface SDK for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface SDK for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface SDK for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.synchronization;
+
+import static de.cyface.persistence.Constants.DEFAULT_CHARSET;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collection;
+
+import javax.net.ssl.SSLContext;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import de.cyface.synchronization.exception.HostUnresolvable;
+import de.cyface.utils.Validate;
+
+/**
+ * Uploads a transfer file in chunks, so an upload interrupted e.g. by a network loss continues where it stopped.
+ * <p>
+ * The transfer file is stored in the {@link #UPLOADS_FOLDER_NAME} folder and kept until {@link #delete()} is called
+ * after the measurement was synchronized, so the same bytes are uploaded in all sync attempts. The URL of the upload
+ * session is stored next to it, see {@link #SESSION_FILE_EXTENSION}. The upload protocol is:
+ * <ol>
+ * <li>The upload session is started with the {@link SyncAdapter.MetaData}, see
+ * {@link Http#startUploadSession(HttpURLConnection, SyncAdapter.MetaData, String, String, long)}. The server returns
+ * the URL of the session.</li>
+ * <li>The chunks are uploaded to the session, see
+ * {@link Http#uploadChunk(HttpURLConnection, File, long, long, long)}. For each chunk the server reports the number of
+ * bytes it committed, which is the offset of the next chunk.</li>
+ * <li>When the upload is continued, the committed offset is requested from the server, see
+ * {@link Http#requestUploadStatus(HttpURLConnection, long)}. If the server does not know the session anymore, a new
+ * session is started.</li>
+ * </ol>
+ * <p>
+ * This class is not thread safe.
+ *
+ * @author Armin Schnabel
+ * @version 1.0.1
+ * @since 6.2.0
+ */
+final class ResumableUpload {
+
+    /**
+     * Used to identify log messages from objects of this class.
+     */
+    private static final String TAG = "de.cyface.sync.upload";
+    /**
+     * The name of the folder in the app's files folder which contains the transfer files and their sessions.
+     */
+    static final String UPLOADS_FOLDER_NAME = "uploads";
+    /**
+     * The file extension which is added to the name of the transfer file to get the name of the session file.
+     */
+    static final String SESSION_FILE_EXTENSION = "session";
+    /**
+     * The file extension which is added to the name of the transfer file while it's written.
+     */
+    private static final String TEMPORARY_FILE_EXTENSION = "tmp";
+    /**
+     * The number of bytes uploaded per request, which is the maximal number of bytes sent again after the connection
+     * was lost.
+     */
+    static final long CHUNK_BYTES = 1024L * 1024L;
+    /**
+     * The transfer file to upload.
+     */
+    private final File file;
+    /**
+     * The maximal number of bytes uploaded per request.
+     */
+    private final long chunkBytes;
+
+    /**
+     * @param file The transfer file to upload.
+     * @param chunkBytes The maximal number of bytes uploaded per request.
+     */
+    ResumableUpload(@NonNull final File file, final long chunkBytes) {
+        Validate.isTrue(chunkBytes > 0, "Illegal argument: chunkBytes must be positive");
+        this.file = file;
+        this.chunkBytes = chunkBytes;
+    }
+
+    /**
+     * Creates a {@code ResumableUpload} of the transfer file of a measurement, which may not exist yet.
+     *
+     * @param context The {@code Context} to find the files folder of the app.
+     * @param measurementIdentifier The identifier of the measurement.
+     * @param fileExtension The extension of the transfer file, e.g.
+     *            {@link de.cyface.persistence.Constants#TRANSFER_FILE_EXTENSION}.
+     * @return The created {@code ResumableUpload}.
+     */
+    @NonNull
+    static ResumableUpload of(@NonNull final Context context, final long measurementIdentifier,
+            @NonNull final String fileExtension) {
+        final File folder = getUploadsFolder(context);
+        return new ResumableUpload(new File(folder, measurementIdentifier + "." + fileExtension), CHUNK_BYTES);
+    }
+
+    /**
+     * Deletes the transfer files and sessions of all measurements but the provided ones, e.g. of measurements which
+     * were deleted before they were synchronized.
+     *
+     * @param context The {@code Context} to find the files folder of the app.
+     * @param measurementIdentifiers The identifiers of the measurements to keep.
+     */
+    static void deleteAllExcept(@NonNull final Context context,
+            @NonNull final Collection<Long> measurementIdentifiers) {
+        final File[] files = getUploadsFolder(context).listFiles();
+        if (files == null) {
+            return;
+        }
+        for (final File file : files) {
+            final String name = file.getName();
+            final int separator = name.indexOf('.');
+            try {
+                if (separator > 0 && measurementIdentifiers.contains(Long.parseLong(name.substring(0, separator)))) {
+                    continue;
+                }
+            } catch (final NumberFormatException e) {
+                Log.w(TAG, "Unexpected file: " + file.getPath());
+            }
+            Validate.isTrue(file.delete(), "Failed to delete " + file.getPath());
+        }
+    }
+
+    /**
+     * @param context The {@code Context} to find the files folder of the app.
+     * @return The folder which contains the transfer files and their sessions. It's created if it does not exist.
+     */
+    @NonNull
+    private static File getUploadsFolder(@NonNull final Context context) {
+        final File folder = new File(context.getFilesDir(), UPLOADS_FOLDER_NAME);
+        // Measurements are synchronized in parallel, so the folder may be created by another thread in between
+        Validate.isTrue(folder.mkdirs() || folder.isDirectory(), "Failed to create " + folder.getPath());
+        return folder;
+    }
+
+    /**
+     * @return The transfer file to upload. The file may not exist.
+     */
+    @NonNull
+    File getFile() {
+        return file;
+    }
+
+    /**
+     * Writes the transfer file unless it exists. The file is first written next to the transfer file and renamed when
+     * complete, so an interrupted write is not uploaded.
+     *
+     * @param writer The {@link StreamedFilePart.Writer} which produces the content of the transfer file.
+     * @throws IOException If the file could not be written.
+     */
+    void createIfMissing(@NonNull final StreamedFilePart.Writer writer) throws IOException {
+        if (file.exists()) {
+            return;
+        }
+        // A session of an older file would continue with other bytes
+        deleteIfExists(getSessionFile());
+
+        final File temporaryFile = new File(file.getPath() + "." + TEMPORARY_FILE_EXTENSION);
+        try (final OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(temporaryFile))) {
+            writer.writeTo(outputStream);
+        }
+        if (!temporaryFile.renameTo(file)) {
+            deleteIfExists(temporaryFile);
+            throw new IOException("Failed to rename " + temporaryFile.getPath());
+        }
+    }
+
+    /**
+     * Uploads the transfer file, continuing the upload of a previous sync attempt if the server still knows it.
+     *
+     * @param http The {@link Http} connection to use for transmission.
+     * @param sslContext The {@code SSLContext} to open the connections with.
+     * @param dataServerUrl The server URL to send the data to.
+     * @param metaData The {@link SyncAdapter.MetaData} which identifies the upload.
+     * @param fileName The name of the uploaded file.
+     * @param partName The name of the part which the file would have in a multipart request, which identifies the
+     *            type of the file.
+     * @param progressListener The {@link UploadProgressListener} to be informed about the upload progress.
+     * @param jwtAuthToken A valid JWT auth token to authenticate the transmission.
+     * @throws MalformedURLException If the {@code dataServerUrl} is invalid.
+     * @throws SynchronisationException If an IOException occurred during synchronization or the upload made no
+     *             progress.
+     * @throws BadRequestException When server returns {@code HttpURLConnection#HTTP_BAD_REQUEST}
+     * @throws UnauthorizedException When the server returns {@code HttpURLConnection#HTTP_UNAUTHORIZED}
+     * @throws ForbiddenException When the server returns {@code HttpURLConnection#HTTP_FORBIDDEN}
+     * @throws ConflictException When the server returns {@code HttpURLConnection#HTTP_CONFLICT}
+     * @throws EntityNotParsableException When the server returns {@link HttpConnection#HTTP_ENTITY_NOT_PROCESSABLE}
+     * @throws InternalServerErrorException When the server returns {@code HttpURLConnection#HTTP_INTERNAL_ERROR}
+     * @throws NetworkUnavailableException When the network used for transmission becomes unavailable.
+     * @throws SynchronizationInterruptedException When the transmission stream ended too early, likely because the sync
+     *             thread was interrupted (sync canceled)
+     * @throws TooManyRequestsException When the server returns {@link HttpConnection#HTTP_TOO_MANY_REQUESTS}
+     * @throws HostUnresolvable e.g. when the phone is connected to a network which is not connected to the internet
+     * @throws ServerUnavailableException When no connection could be established with the server
+     */
+    void upload(@NonNull final Http http, @NonNull final SSLContext sslContext, @NonNull final String dataServerUrl,
+            @NonNull final SyncAdapter.MetaData metaData, @NonNull final String fileName,
+            @NonNull final String partName, @NonNull final UploadProgressListener progressListener,
+            @NonNull final String jwtAuthToken) throws MalformedURLException, SynchronisationException,
+            BadRequestException, UnauthorizedException, InternalServerErrorException, ForbiddenException,
+            EntityNotParsableException, ConflictException, NetworkUnavailableException,
+            SynchronizationInterruptedException, TooManyRequestsException, HostUnresolvable,
+            ServerUnavailableException {
+
+        final long uploadLength = file.length();
+        // We don't post empty files, ensure files still exists
+        Validate.isTrue(uploadLength > 0L, "Nothing to upload: " + file.getPath());
+
+        String session = loadSession();
+        long committed = -1L;
+        if (session != null) {
+            HttpURLConnection connection = null;
+            try {
+                connection = http.openHttpConnection(new URL(session), sslContext, false, jwtAuthToken);
+                committed = http.requestUploadStatus(connection, uploadLength);
+            } finally {
+                if (connection != null) {
+                    connection.disconnect();
+                }
+            }
+            Log.d(TAG, String.format("Continuing upload of %s at %d of %d bytes", fileName, committed, uploadLength));
+        }
+        if (committed < 0) {
+            HttpURLConnection connection = null;
+            try {
+                final URL url = new URL(String.format("%s/uploads", dataServerUrl));
+                connection = http.openHttpConnection(url, sslContext, false, jwtAuthToken);
+                session = http.startUploadSession(connection, metaData, fileName, partName, uploadLength);
+            } finally {
+                if (connection != null) {
+                    connection.disconnect();
+                }
+            }
+            saveSession(session);
+            committed = 0L;
+        }
+
+        while (committed < uploadLength) {
+            final long offset = committed;
+            HttpURLConnection connection = null;
+            try {
+                connection = http.openHttpConnection(new URL(session), sslContext, true, jwtAuthToken);
+                committed = http.uploadChunk(connection, file, offset,
+                        Math.min(chunkBytes, uploadLength - offset), uploadLength);
+            } finally {
+                if (connection != null) {
+                    connection.disconnect();
+                }
+            }
+            if (committed < 0) {
+                // The next sync attempt starts a new session
+                deleteIfExists(getSessionFile());
+                throw new SynchronisationException("Upload session expired: " + fileName);
+            }
+            if (committed <= offset) {
+                throw new SynchronisationException("Upload made no progress at " + offset + ": " + fileName);
+            }
+            progressListener.updatedProgress((committed * 100.0f) / uploadLength);
+        }
+    }
+
+    /**
+     * Deletes the transfer file and its session, e.g. after the measurement was synchronized.
+     */
+    void delete() {
+        deleteIfExists(file);
+        deleteIfExists(getSessionFile());
+    }
+
+    /**
+     * @return The file which contains the URL of the upload session. The file may not exist.
+     */
+    @NonNull
+    private File getSessionFile() {
+        return new File(file.getPath() + "." + SESSION_FILE_EXTENSION);
+    }
+
+    /**
+     * @return The URL of the upload session of a previous sync attempt or {@code null} if there is none.
+     */
+    @Nullable
+    private String loadSession() {
+        final File sessionFile = getSessionFile();
+        if (!sessionFile.exists()) {
+            return null;
+        }
+        try (final FileChannel channel = new FileInputStream(sessionFile).getChannel()) {
+            final ByteBuffer buffer = ByteBuffer.allocate((int)channel.size());
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // Nothing to do
+            }
+            return new String(buffer.array(), 0, buffer.position(), DEFAULT_CHARSET);
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Stores the URL of the upload session for the following sync attempts.
+     *
+     * @param session The URL of the upload session.
+     */
+    private void saveSession(@NonNull final String session) {
+        final File sessionFile = getSessionFile();
+        final File temporaryFile = new File(sessionFile.getPath() + "." + TEMPORARY_FILE_EXTENSION);
+        try (final FileOutputStream outputStream = new FileOutputStream(temporaryFile)) {
+            outputStream.write(session.getBytes(DEFAULT_CHARSET));
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+        Validate.isTrue(temporaryFile.renameTo(sessionFile), "Failed to rename " + temporaryFile.getPath());
+    }
+
+    /**
+     * Deletes a file if it exists.
+     *
+     * @param file The file to delete.
+     */
+    private static void deleteIfExists(@NonNull final File file) {
+        if (file.exists()) {
+            Validate.isTrue(file.delete(), "Failed to delete " + file.getPath());
+        }
+    }
+}
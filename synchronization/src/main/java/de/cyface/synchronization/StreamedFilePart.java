@@ -0,0 +1,217 @@
+/*
+ * Copyright 2021 Cyface GmbH
+ *
+ * This file is part of the Cyface SDK for Android.
+ *
+ * The Cyface SDK for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface SDK for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface SDK for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.synchronization;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+/**
+ * A {@link FilePart} which writes the data to transfer directly into the request instead of reading it from a file.
+ * <p>
+ * In the chunked mode the length of the data is unknown, so the {@link HttpConnection} uses chunked transfer encoding.
+ * Otherwise, the {@link Writer} is called twice: first to count the bytes for the fixed length streaming mode and then
+ * to write the data. The {@code Writer} must write the same data both times.
+ * <p>
+ * Like for a {@link FilePart}, the {@link UploadProgressListener} is informed every
+ * {@link FilePart#PROGRESS_STEP_BYTES}. In the chunked mode the progress is calculated from an estimated length, if
+ * available, and only reaches 100 % when all data was written.
+ *
+ * @author Armin Schnabel
+ * @version 1.1.0
+ * @since 6.2.0
+ */
+class StreamedFilePart extends FilePart {
+
+    /**
+     * Used to identify log messages from objects of this class.
+     */
+    private static final String TAG = "de.cyface.sync.SFP";
+    /**
+     * The {@link Writer} which produces the data to transfer.
+     */
+    private final Writer writer;
+    /**
+     * The number of bytes of the data or {@code -1} in the chunked mode.
+     */
+    private final long contentLength;
+    /**
+     * The approximate number of bytes of the data in the chunked mode or {@code -1} if unknown.
+     */
+    private final long estimatedLength;
+
+    /**
+     * Creates a new completely initialized object of this class. Unless {@code chunked} is {@code true}, this already
+     * calls the {@code writer} to count the bytes of the data.
+     *
+     * @param fileName The multipart name of the file to transfer
+     * @param partName The name of the part in a multi part request
+     * @param writer The {@link Writer} which produces the data to transfer
+     * @param chunked {@code true} if the length of the data does not need to be known before it is written
+     * @throws IOException when the {@code writer} failed to count the bytes of the data
+     */
+    StreamedFilePart(@NonNull final String fileName, @NonNull final String partName, @NonNull final Writer writer,
+            final boolean chunked) throws IOException {
+        this(fileName, partName, writer, chunked, -1L);
+    }
+
+    /**
+     * Creates a new completely initialized object of this class. Unless {@code chunked} is {@code true}, this already
+     * calls the {@code writer} to count the bytes of the data.
+     *
+     * @param fileName The multipart name of the file to transfer
+     * @param partName The name of the part in a multi part request
+     * @param writer The {@link Writer} which produces the data to transfer
+     * @param chunked {@code true} if the length of the data does not need to be known before it is written
+     * @param estimatedLength The approximate number of bytes of the data, which is used to report the progress in the
+     *            chunked mode, or {@code -1} if unknown
+     * @throws IOException when the {@code writer} failed to count the bytes of the data
+     */
+    StreamedFilePart(@NonNull final String fileName, @NonNull final String partName, @NonNull final Writer writer,
+            final boolean chunked, final long estimatedLength) throws IOException {
+        super(fileName, partName);
+        this.writer = writer;
+        if (chunked) {
+            this.contentLength = -1L;
+            this.estimatedLength = estimatedLength;
+        } else {
+            final CountingOutputStream counter = new CountingOutputStream(null, -1L, 0.0f, null);
+            writer.writeTo(counter);
+            this.contentLength = counter.count;
+            this.estimatedLength = -1L;
+        }
+    }
+
+    @Override
+    long contentLength() {
+        return contentLength;
+    }
+
+    @Override
+    long writeContentTo(@NonNull final BufferedOutputStream outputStream,
+            @NonNull final UploadProgressListener progressListener) throws IOException {
+        // An estimated length may be too small, so the progress stays below 100 % until all data was written
+        final CountingOutputStream counter = contentLength >= 0
+                ? new CountingOutputStream(outputStream, contentLength, 100.0f, progressListener)
+                : new CountingOutputStream(outputStream, estimatedLength, 99.0f, progressListener);
+        writer.writeTo(counter);
+        counter.flush();
+        if (contentLength >= 0 && counter.count != contentLength) {
+            throw new IOException("Written " + counter.count + " bytes instead of " + contentLength);
+        }
+        progressListener.updatedProgress(100.0f);
+        Log.d(TAG, "writeContentTo() -> " + counter.count);
+        return counter.count;
+    }
+
+    /**
+     * Produces the data to transfer.
+     *
+     * @author Armin Schnabel
+     * @version 1.0.0
+     * @since 6.2.0
+     */
+    interface Writer {
+        /**
+         * Writes the data to transfer.
+         *
+         * @param outputStream The {@code OutputStream} to write the data to. Closing it has no effect on the request.
+         * @throws IOException when the data could not be produced or written
+         */
+        void writeTo(@NonNull OutputStream outputStream) throws IOException;
+    }
+
+    /**
+     * Counts the bytes written to it and forwards them to another stream, if one is provided.
+     * <p>
+     * The {@link UploadProgressListener} is informed every {@link FilePart#PROGRESS_STEP_BYTES}.
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+
+        /**
+         * The number of bytes of the data which is used to calculate the progress or {@code -1} if unknown.
+         */
+        private final long expectedCount;
+        /**
+         * The maximal progress in percent which is reported while the data is written.
+         */
+        private final float maxProgress;
+        /**
+         * The {@link UploadProgressListener} to inform about the progress or {@code null}.
+         */
+        private final UploadProgressListener progressListener;
+        /**
+         * The number of bytes written to this stream.
+         */
+        private long count;
+        /**
+         * The {@link #count} after which the progress is reported next.
+         */
+        private long nextProgressCount = PROGRESS_STEP_BYTES;
+
+        /**
+         * @param out The stream to forward the data to or {@code null} to discard the data
+         * @param expectedCount The number of bytes of the data or {@code -1} if unknown
+         * @param maxProgress The maximal progress in percent which is reported while the data is written
+         * @param progressListener The {@link UploadProgressListener} to inform about the progress or {@code null}
+         */
+        CountingOutputStream(final OutputStream out, final long expectedCount, final float maxProgress,
+                final UploadProgressListener progressListener) {
+            super(out);
+            this.expectedCount = expectedCount;
+            this.maxProgress = maxProgress;
+            this.progressListener = progressListener;
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            write(new byte[] {(byte)b}, 0, 1);
+        }
+
+        @Override
+        public void write(@NonNull final byte[] b, final int off, final int len) throws IOException {
+            if (out != null) {
+                out.write(b, off, len);
+            }
+            count += len;
+            if (progressListener != null && expectedCount > 0 && count >= nextProgressCount) {
+                progressListener.updatedProgress(Math.min(maxProgress, (count * 100.0f) / expectedCount));
+                nextProgressCount = (count / PROGRESS_STEP_BYTES + 1) * PROGRESS_STEP_BYTES;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (out != null) {
+                out.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            // The request is closed by the HttpConnection
+            flush();
+        }
+    }
+}
@@ -18,18 +18,31 @@
  */
 package de.cyface.synchronization;
 
+import static de.cyface.persistence.Constants.EVENTS_TRANSFER_FILE_EXTENSION;
+import static de.cyface.persistence.Constants.TRANSFER_FILE_EXTENSION;
 import static de.cyface.synchronization.Constants.AUTH_TOKEN_TYPE;
 import static de.cyface.synchronization.Constants.TAG;
 import static de.cyface.synchronization.ErrorHandler.sendErrorIntent;
 import static de.cyface.synchronization.ErrorHandler.ErrorCode.AUTHENTICATION_ERROR;
 import static de.cyface.synchronization.ErrorHandler.ErrorCode.DATABASE_ERROR;
+import static de.cyface.synchronization.ErrorHandler.ErrorCode.SYNCHRONIZATION_ERROR;
 import static de.cyface.synchronization.ErrorHandler.ErrorCode.SYNCHRONIZATION_INTERRUPTED;
 import static java.lang.Thread.interrupted;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import android.accounts.Account;
 import android.accounts.AccountManager;
@@ -41,6 +54,7 @@ import android.content.ContentResolver;
 import android.content.Context;
 import android.content.SharedPreferences;
 import android.content.SyncResult;
+import android.content.SyncStats;
 import android.content.pm.PackageManager;
 import android.os.Build;
 import android.os.Bundle;
@@ -55,13 +69,16 @@ import de.cyface.persistence.MeasurementContentProviderClient;
 import de.cyface.persistence.NoSuchMeasurementException;
 import de.cyface.persistence.PersistenceLayer;
 import de.cyface.persistence.model.GeoLocation;
+import de.cyface.persistence.model.GeoLocationAggregate;
 import de.cyface.persistence.model.Measurement;
 import de.cyface.persistence.model.MeasurementStatus;
 import de.cyface.persistence.model.Modality;
-import de.cyface.persistence.model.Track;
 import de.cyface.persistence.serialization.EventsFileSerializerStrategy;
+import de.cyface.persistence.serialization.FileSerializerStrategy;
 import de.cyface.persistence.serialization.MeasurementFileSerializerStrategy;
 import de.cyface.persistence.serialization.MeasurementSerializer;
+import de.cyface.persistence.serialization.Point3dFile;
+import de.cyface.persistence.serialization.Point3dFileSegments;
 import de.cyface.utils.CursorIsNullException;
 import de.cyface.utils.Validate;
 
@@ -70,7 +87,7 @@ import de.cyface.utils.Validate;
  *
  * @author Armin Schnabel
  * @author Klemens Muthmann
- * @version 2.6.13
+ * @version 2.10.5
  * @since 2.0.0
  */
 public final class SyncAdapter extends AbstractThreadedSyncAdapter {
@@ -83,6 +100,12 @@ public final class SyncAdapter extends AbstractThreadedSyncAdapter {
      * method returns true;
      */
     static final String MOCK_IS_CONNECTED_TO_RETURN_TRUE = "mocked_periodic_sync_check_false";
+    /**
+     * The number of measurements which are synchronized at the same time unless
+     * {@link SyncService#SYNC_CONCURRENCY_SETTINGS_KEY} is set. Two are enough to serialize one measurement while
+     * another one is uploaded.
+     */
+    private static final int DEFAULT_CONCURRENCY = 2;
     private final Collection<ConnectionStatusListener> progressListener;
     private final Http http;
     /**
@@ -140,10 +163,12 @@ public final class SyncAdapter extends AbstractThreadedSyncAdapter {
                 context.getContentResolver(), authority, new DefaultPersistenceBehaviour());
         final CyfaceAuthenticator authenticator = new CyfaceAuthenticator(context);
         final SyncPerformer syncPerformer = new SyncPerformer(context);
+        // Set when the synchronization of the remaining measurements shall not be started anymore
+        final AtomicBoolean aborted = new AtomicBoolean(false);
 
         try {
             // Ensure user is authorized before starting synchronization
-            getAuthToken(authenticator, account);
+            getAuthToken(authenticator, account, aborted);
             final String deviceId = persistence.restoreOrCreateDeviceId();
 
             // Inform ConnectionStatusListener
@@ -153,71 +178,57 @@ public final class SyncAdapter extends AbstractThreadedSyncAdapter {
 
             // Load all Measurements ready for synchronization
             final List<Measurement> syncableMeasurements = persistence.loadMeasurements(MeasurementStatus.FINISHED);
+            final boolean resumableUpload = isResumableUpload(context);
+            // The uploads of measurements which were deleted or synchronized otherwise are not resumed
+            final List<Long> syncableIdentifiers = new ArrayList<>();
+            for (final Measurement measurement : syncableMeasurements) {
+                syncableIdentifiers.add(measurement.getIdentifier());
+            }
+            ResumableUpload.deleteAllExcept(context, syncableIdentifiers);
             if (syncableMeasurements.size() == 0) {
                 return; // nothing to sync
             }
 
-            for (final Measurement measurement : syncableMeasurements) {
-                Log.d(Constants.TAG,
-                        String.format("Measurement with identifier %d is about to be loaded for transmission.",
-                                measurement.getIdentifier()));
-
-                // Load measurement data
-                final MeasurementContentProviderClient loader = new MeasurementContentProviderClient(
-                        measurement.getIdentifier(), provider, authority);
-                final MetaData metaData = loadMetaData(measurement, persistence, deviceId, context);
-
-                // Load, try to sync the file to be transferred and clean it up afterwards
-                File compressedTransferTempFile = null;
-                File compressedEventsTransferTempFile;
-                try {
-                    compressedTransferTempFile = serializer.writeSerializedCompressed(loader,
-                            measurement.getIdentifier(), persistence, new MeasurementFileSerializerStrategy());
-                    compressedEventsTransferTempFile = serializer.writeSerializedCompressed(loader,
-                            measurement.getIdentifier(), persistence, new EventsFileSerializerStrategy());
-
-                    // Acquire new auth token before each synchronization (old one could be expired)
-                    final String jwtAuthToken = getAuthToken(authenticator, account);
-                    final String endPointUrl = getApiUrl(context);
-
-                    // Check whether the network settings changed to avoid using metered network without permission
-                    if (isSyncRequestAborted(account, authority)) {
-                        return;
-                    }
-
-                    // Synchronize measurement
-                    final boolean transmissionSuccessful = syncPerformer.sendData(http, syncResult, endPointUrl,
-                            metaData, compressedTransferTempFile, compressedEventsTransferTempFile,
-                            new UploadProgressListener() {
-                                @Override
-                                public void updatedProgress(float percent) {
-                                    for (final ConnectionStatusListener listener : progressListener) {
-                                        listener.onProgress(percent, measurement.getIdentifier());
-                                    }
-                                }
-                            }, jwtAuthToken);
-                    if (!transmissionSuccessful) {
-                        break;
-                    }
-
-                    // Mark successfully transmitted measurement as synced
-                    try {
-                        persistence.markAsSynchronized(measurement);
-                        Log.d(Constants.TAG, "Measurement marked as synced.");
-                    } catch (final NoSuchMeasurementException e) {
-                        throw new IllegalStateException(e);
-                    }
-
-                } finally {
-                    if (compressedTransferTempFile != null && compressedTransferTempFile.exists()) {
-                        Validate.isTrue(compressedTransferTempFile.delete());
-                    }
+            // Measurements are synchronized in parallel, so the serialization of one overlaps the upload of another
+            final ExecutorService executor = Executors.newFixedThreadPool(getConcurrency(context));
+            try {
+                final List<Future<Void>> syncs = new ArrayList<>(syncableMeasurements.size());
+                for (final Measurement measurement : syncableMeasurements) {
+                    syncs.add(executor.submit(new Callable<Void>() {
+                        @Override
+                        public Void call() throws CursorIsNullException, IOException, AuthenticatorException,
+                                NetworkErrorException, SynchronizationInterruptedException {
+                            // The ContentProviderClient of the sync thread must not be used by multiple threads
+                            final ContentProviderClient client = context.getContentResolver()
+                                    .acquireContentProviderClient(authority);
+                            Validate.notNull("ContentProvider not available for authority: " + authority, client);
+                            try {
+                                syncMeasurement(account, authority, client, syncResult, measurement, deviceId,
+                                        resumableUpload, persistence, serializer, authenticator, syncPerformer,
+                                        aborted);
+                            } finally {
+                                release(client);
+                            }
+                            return null;
+                        }
+                    }));
                 }
+                for (final Future<Void> sync : syncs) {
+                    await(sync);
+                }
+            } finally {
+                // Ensures no progress is reported after the sync finished
+                shutdown(executor);
             }
         } catch (final CursorIsNullException e) {
             Log.w(TAG, "DatabaseException: " + e.getMessage());
             syncResult.databaseError = true;
             sendErrorIntent(context, DATABASE_ERROR.getCode(), e.getMessage());
+        } catch (final IOException e) {
+            // The transfer files of resumable uploads could not be written, e.g. because the storage is full
+            Log.w(TAG, e.getClass().getSimpleName() + ": " + e.getMessage());
+            syncResult.stats.numIoExceptions++;
+            sendErrorIntent(context, SYNCHRONIZATION_ERROR.getCode(), e.getMessage());
         } catch (final AuthenticatorException e) {
             Log.w(TAG, e.getClass().getSimpleName() + ": " + e.getMessage());
             syncResult.stats.numAuthExceptions++;
@@ -238,17 +249,235 @@ public final class SyncAdapter extends AbstractThreadedSyncAdapter {
         }
     }
 
+    /**
+     * Serializes and uploads one {@link Measurement} and marks it as synchronized when the upload was successful.
+     * <p>
+     * This is called in parallel for multiple measurements. When the upload failed because the server rejected the
+     * data of this measurement, the other measurements are still synchronized. For all other errors, e.g. when the
+     * network or the server is unavailable, {@code aborted} is set so that no further measurements are started.
+     *
+     * @param account The {@code Account} which is used for synchronization
+     * @param authority The authority which is used for synchronization
+     * @param provider The {@code ContentProviderClient} to load the measurement data with. It's only used by the
+     *            thread synchronizing this measurement.
+     * @param syncResult The {@link SyncResult} of the whole synchronization to add the result of this measurement to
+     * @param measurement The {@code Measurement} to synchronize
+     * @param deviceId The device identifier generated for this device
+     * @param resumableUpload {@code True} if the data is uploaded with {@link ResumableUpload}s
+     * @param persistence The {@link PersistenceLayer} to load the data with and to mark the measurement as synced
+     * @param serializer The {@link MeasurementSerializer} to serialize the data with
+     * @param authenticator The {@link CyfaceAuthenticator} to get the auth token from
+     * @param syncPerformer The {@link SyncPerformer} to upload the data with
+     * @param aborted Set when no further measurements shall be synchronized, e.g. because the network is unavailable
+     * @throws CursorIsNullException If the {@code ContentProvider} returned no cursor
+     * @throws IOException If the transfer files of resumable uploads could not be written
+     * @throws AuthenticatorException If no auth token was supplied
+     * @throws NetworkErrorException If the network authentication request failed
+     * @throws SynchronizationInterruptedException If the synchronization was canceled
+     */
+    private void syncMeasurement(@NonNull final Account account, @NonNull final String authority,
+            @NonNull final ContentProviderClient provider, @NonNull final SyncResult syncResult,
+            @NonNull final Measurement measurement, @NonNull final String deviceId, final boolean resumableUpload,
+            @NonNull final PersistenceLayer<DefaultPersistenceBehaviour> persistence,
+            @NonNull final MeasurementSerializer serializer, @NonNull final CyfaceAuthenticator authenticator,
+            @NonNull final SyncPerformer syncPerformer, @NonNull final AtomicBoolean aborted)
+            throws CursorIsNullException, IOException, AuthenticatorException, NetworkErrorException,
+            SynchronizationInterruptedException {
+
+        if (aborted.get()) {
+            return;
+        }
+        final Context context = getContext();
+        Log.d(Constants.TAG, String.format("Measurement with identifier %d is about to be loaded for transmission.",
+                measurement.getIdentifier()));
+
+        // Load measurement data
+        final MeasurementContentProviderClient loader = new MeasurementContentProviderClient(
+                measurement.getIdentifier(), provider, authority);
+        final MetaData metaData = loadMetaData(measurement, persistence, deviceId, context);
+
+        // The data is serialized and compressed while it's uploaded, unless its length is required before the upload
+        final StreamedFilePart.Writer measurementWriter = serializedWriter(serializer, loader,
+                measurement.getIdentifier(), persistence, new MeasurementFileSerializerStrategy());
+        final StreamedFilePart.Writer eventsWriter = serializedWriter(serializer, loader,
+                measurement.getIdentifier(), persistence, new EventsFileSerializerStrategy());
+
+        // Resumable uploads keep the transfer files until the measurement is synced to resume the same bytes
+        final ResumableUpload measurementUpload = resumableUpload
+                ? ResumableUpload.of(context, measurement.getIdentifier(), TRANSFER_FILE_EXTENSION)
+                : null;
+        final ResumableUpload eventsUpload = resumableUpload
+                ? ResumableUpload.of(context, measurement.getIdentifier(), EVENTS_TRANSFER_FILE_EXTENSION)
+                : null;
+        if (resumableUpload) {
+            measurementUpload.createIfMissing(measurementWriter);
+            eventsUpload.createIfMissing(eventsWriter);
+        }
+
+        // Acquire new auth token before each synchronization (old one could be expired)
+        final String jwtAuthToken = getAuthToken(authenticator, account, aborted);
+        final String endPointUrl = getApiUrl(context);
+
+        // Check whether the network settings changed to avoid using metered network without permission
+        if (isSyncRequestAborted(account, authority)) {
+            aborted.set(true);
+            return;
+        }
+
+        // Synchronize measurement
+        final UploadProgressListener uploadProgressListener = new UploadProgressListener() {
+            @Override
+            public void updatedProgress(float percent) {
+                for (final ConnectionStatusListener listener : progressListener) {
+                    listener.onProgress(percent, measurement.getIdentifier());
+                }
+            }
+        };
+        // The SyncResult is not thread safe, so each measurement collects its result separately
+        final SyncResult measurementResult = new SyncResult();
+        final boolean chunkedUpload = isChunkedUpload(context);
+        final boolean transmissionSuccessful;
+        if (resumableUpload) {
+            transmissionSuccessful = syncPerformer.sendData(http, measurementResult, endPointUrl, metaData,
+                    measurementUpload, eventsUpload, uploadProgressListener, jwtAuthToken);
+        } else if (chunkedUpload
+                || measurement.getFileFormatVersion() == MeasurementSerializer.PERSISTENCE_FILE_FORMAT_VERSION_4) {
+            // The segments of the version 4 are only copied, so counting the bytes before the upload is cheap
+            transmissionSuccessful = syncPerformer.sendData(http, measurementResult, endPointUrl, metaData,
+                    measurementWriter, eventsWriter, chunkedUpload,
+                    chunkedUpload ? estimateTransferLength(persistence, measurement.getIdentifier()) : -1L,
+                    uploadProgressListener, jwtAuthToken);
+        } else {
+            transmissionSuccessful = sendTempFiles(measurementResult, endPointUrl, metaData, serializer, loader,
+                    measurement.getIdentifier(), persistence, syncPerformer, uploadProgressListener, jwtAuthToken);
+        }
+        addResult(syncResult, measurementResult);
+        if (!transmissionSuccessful) {
+            // Only errors caused by the data of this measurement don't affect the other measurements
+            final boolean rejected = measurementResult.stats.numParseExceptions > 0
+                    || measurementResult.stats.numConflictDetectedExceptions > 0;
+            if (!rejected) {
+                aborted.set(true);
+            }
+            return;
+        }
+
+        // Mark successfully transmitted measurement as synced
+        try {
+            persistence.markAsSynchronized(measurement);
+            Log.d(Constants.TAG, "Measurement marked as synced.");
+        } catch (final NoSuchMeasurementException e) {
+            throw new IllegalStateException(e);
+        }
+        if (resumableUpload) {
+            measurementUpload.delete();
+            eventsUpload.delete();
+        }
+    }
+
+    /**
+     * Adds the result of the synchronization of one {@link Measurement} to the result of the whole synchronization.
+     *
+     * @param syncResult The {@link SyncResult} of the whole synchronization
+     * @param measurementResult The {@code SyncResult} of one {@code Measurement}
+     */
+    private static void addResult(@NonNull final SyncResult syncResult, @NonNull final SyncResult measurementResult) {
+        final SyncStats stats = measurementResult.stats;
+        synchronized (syncResult) {
+            syncResult.stats.numAuthExceptions += stats.numAuthExceptions;
+            syncResult.stats.numIoExceptions += stats.numIoExceptions;
+            syncResult.stats.numParseExceptions += stats.numParseExceptions;
+            syncResult.stats.numConflictDetectedExceptions += stats.numConflictDetectedExceptions;
+            syncResult.stats.numInserts += stats.numInserts;
+            syncResult.stats.numUpdates += stats.numUpdates;
+            syncResult.stats.numDeletes += stats.numDeletes;
+            syncResult.stats.numEntries += stats.numEntries;
+            syncResult.stats.numSkippedEntries += stats.numSkippedEntries;
+        }
+    }
+
+    /**
+     * Releases a {@link ContentProviderClient} which was acquired for the synchronization of one {@link Measurement}.
+     *
+     * @param client The {@code ContentProviderClient} to release
+     */
+    private static void release(@NonNull final ContentProviderClient client) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            client.close();
+        } else {
+            client.release();
+        }
+    }
+
+    /**
+     * Waits until the synchronization of a {@link Measurement} finished.
+     *
+     * @param sync The {@code Future} of the synchronization
+     * @throws CursorIsNullException If the {@code ContentProvider} returned no cursor
+     * @throws IOException If the transfer files of resumable uploads could not be written
+     * @throws AuthenticatorException If no auth token was supplied
+     * @throws NetworkErrorException If the network authentication request failed
+     * @throws SynchronizationInterruptedException If the synchronization was {@link Thread#interrupted()}
+     */
+    private static void await(@NonNull final Future<Void> sync) throws CursorIsNullException, IOException,
+            AuthenticatorException, NetworkErrorException, SynchronizationInterruptedException {
+        try {
+            sync.get();
+        } catch (final InterruptedException e) {
+            throw new SynchronizationInterruptedException("Sync interrupted, aborting sync.", e);
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof CursorIsNullException) {
+                throw (CursorIsNullException)cause;
+            } else if (cause instanceof IOException) {
+                throw (IOException)cause;
+            } else if (cause instanceof AuthenticatorException) {
+                throw (AuthenticatorException)cause;
+            } else if (cause instanceof NetworkErrorException) {
+                throw (NetworkErrorException)cause;
+            } else if (cause instanceof SynchronizationInterruptedException) {
+                throw (SynchronizationInterruptedException)cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            } else if (cause instanceof Error) {
+                throw (Error)cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Cancels the synchronizations which did not start yet, interrupts the running ones and waits until they ended.
+     *
+     * @param executor The {@code ExecutorService} which runs the synchronizations
+     */
+    private static void shutdown(@NonNull final ExecutorService executor) {
+        executor.shutdownNow();
+        try {
+            // Running uploads end when their connection fails or times out, as network IO is not interruptible
+            while (!executor.awaitTermination(1L, TimeUnit.SECONDS)) {
+                Log.d(TAG, "Waiting for running synchronizations to end");
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     /**
      * Gets the authentication token from the {@link CyfaceAuthenticator}.
      *
      * @param authenticator The {@code CyfaceAuthenticator} to be used
      * @param account The {@code Account} to get the token for
+     * @param aborted Set when the token is empty, i.e. when the synchronization was canceled. This is called from the
+     *            threads synchronizing the measurements, so the canceled state cannot be read from
+     *            {@link Thread#interrupted()}.
      * @return The token as string
      * @throws AuthenticatorException If no token was supplied which must be supported for implementing apps (SR)
      * @throws NetworkErrorException If the network authentication request failed for any reasons
-     * @throws SynchronizationInterruptedException If the synchronization was {@link Thread#interrupted()}.
+     * @throws SynchronizationInterruptedException If the synchronization was canceled
      */
-    private String getAuthToken(@NonNull final CyfaceAuthenticator authenticator, @NonNull final Account account)
+    private String getAuthToken(@NonNull final CyfaceAuthenticator authenticator, @NonNull final Account account,
+            @NonNull final AtomicBoolean aborted)
             throws AuthenticatorException, NetworkErrorException, SynchronizationInterruptedException {
 
         String jwtAuthToken;
@@ -266,9 +495,9 @@ public final class SyncAdapter extends AbstractThreadedSyncAdapter {
             throw new AuthenticatorException("No valid auth token supplied. Aborting data synchronization!");
         }
         jwtAuthToken = bundle.getString(AccountManager.KEY_AUTHTOKEN);
-        // When WifiSurveyor.deleteAccount() was called in the meantime the jwt token is empty, thus:
+        // When WifiSurveyor.deleteAccount() was called in the meantime the jwt token is empty and the sync is canceled
         if (jwtAuthToken == null) {
-            Validate.isTrue(interrupted());
+            aborted.set(true);
             throw new SynchronizationInterruptedException("Sync interrupted, aborting sync.");
         }
         Log.d(TAG, "Login authToken: **" + jwtAuthToken.substring(jwtAuthToken.length() - 7));
@@ -291,6 +520,140 @@ public final class SyncAdapter extends AbstractThreadedSyncAdapter {
         return endPointUrl;
     }
 
+    /**
+     * Reads from the preferences whether the server accepts uploads with chunked transfer encoding.
+     *
+     * @param context The {@code Context} required to read the preferences
+     * @return {@code True} if the data is uploaded with chunked transfer encoding
+     */
+    private boolean isChunkedUpload(@NonNull final Context context) {
+        final SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(context);
+        return preferences.getBoolean(SyncService.SYNC_CHUNKED_UPLOAD_SETTINGS_KEY, false);
+    }
+
+    /**
+     * Reads from the preferences whether the server supports resumable uploads.
+     *
+     * @param context The {@code Context} required to read the preferences
+     * @return {@code True} if the data is uploaded with {@link ResumableUpload}s
+     */
+    private boolean isResumableUpload(@NonNull final Context context) {
+        final SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(context);
+        return preferences.getBoolean(SyncService.SYNC_RESUMABLE_UPLOAD_SETTINGS_KEY, false);
+    }
+
+    /**
+     * Reads from the preferences how many measurements are synchronized at the same time.
+     *
+     * @param context The {@code Context} required to read the preferences
+     * @return The maximal number of measurements which are synchronized at the same time
+     */
+    private int getConcurrency(@NonNull final Context context) {
+        final SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(context);
+        final int concurrency = preferences.getInt(SyncService.SYNC_CONCURRENCY_SETTINGS_KEY, DEFAULT_CONCURRENCY);
+        Validate.isTrue(concurrency > 0, "Invalid sync concurrency: " + concurrency);
+        return concurrency;
+    }
+
+    /**
+     * Creates a {@link StreamedFilePart.Writer} which serializes and compresses data of a {@link Measurement} directly
+     * into the upload.
+     *
+     * @param serializer The {@link MeasurementSerializer} to serialize the data with
+     * @param loader The {@link MeasurementContentProviderClient} to load the data with
+     * @param measurementId The identifier of the {@code Measurement} to serialize
+     * @param persistence The {@link PersistenceLayer} to load the file based data with
+     * @param strategy The {@link FileSerializerStrategy} which selects the data to serialize
+     * @return The created {@code Writer}
+     */
+    @NonNull
+    private StreamedFilePart.Writer serializedWriter(@NonNull final MeasurementSerializer serializer,
+            @NonNull final MeasurementContentProviderClient loader, final long measurementId,
+            @NonNull final PersistenceLayer<DefaultPersistenceBehaviour> persistence,
+            @NonNull final FileSerializerStrategy strategy) {
+        return new StreamedFilePart.Writer() {
+            @Override
+            public void writeTo(@NonNull final OutputStream outputStream) throws IOException {
+                try {
+                    serializer.writeSerializedCompressed(outputStream, loader, measurementId, persistence, strategy);
+                } catch (final CursorIsNullException e) {
+                    throw new IOException(e);
+                }
+            }
+        };
+    }
+
+    /**
+     * Uploads the data of a {@link Measurement} from compressed temp files. The fixed length streaming mode requires
+     * the length of the data before the upload, so this compresses the data only once instead of counting the bytes
+     * of a {@link StreamedFilePart} first.
+     *
+     * @param syncResult The {@link SyncResult} to store the sync error information in
+     * @param endPointUrl The server URL to send the data to
+     * @param metaData The {@link MetaData} of the {@code Measurement}
+     * @param serializer The {@link MeasurementSerializer} to serialize the data with
+     * @param loader The {@link MeasurementContentProviderClient} to load the data with
+     * @param measurementId The identifier of the {@code Measurement} to upload
+     * @param persistence The {@link PersistenceLayer} to load the file based data with
+     * @param syncPerformer The {@link SyncPerformer} to upload the data with
+     * @param progressListener The {@link UploadProgressListener} to be informed about the upload progress
+     * @param jwtAuthToken A valid JWT auth token to authenticate the transmission
+     * @return {@code True} if the transmission was successful
+     * @throws CursorIsNullException If the {@code ContentProvider} returned no cursor
+     */
+    private boolean sendTempFiles(@NonNull final SyncResult syncResult, @NonNull final String endPointUrl,
+            @NonNull final MetaData metaData, @NonNull final MeasurementSerializer serializer,
+            @NonNull final MeasurementContentProviderClient loader, final long measurementId,
+            @NonNull final PersistenceLayer<DefaultPersistenceBehaviour> persistence,
+            @NonNull final SyncPerformer syncPerformer, @NonNull final UploadProgressListener progressListener,
+            @NonNull final String jwtAuthToken) throws CursorIsNullException {
+        File compressedTransferTempFile = null;
+        File compressedEventsTransferTempFile = null;
+        try {
+            compressedTransferTempFile = serializer.writeSerializedCompressed(loader, measurementId, persistence,
+                    new MeasurementFileSerializerStrategy());
+            compressedEventsTransferTempFile = serializer.writeSerializedCompressed(loader, measurementId,
+                    persistence, new EventsFileSerializerStrategy());
+            return syncPerformer.sendData(http, syncResult, endPointUrl, metaData, compressedTransferTempFile,
+                    compressedEventsTransferTempFile, progressListener, jwtAuthToken);
+        } finally {
+            if (compressedTransferTempFile != null && compressedTransferTempFile.exists()) {
+                Validate.isTrue(compressedTransferTempFile.delete());
+            }
+            if (compressedEventsTransferTempFile != null && compressedEventsTransferTempFile.exists()) {
+                Validate.isTrue(compressedEventsTransferTempFile.delete());
+            }
+        }
+    }
+
+    /**
+     * Estimates the number of bytes of the compressed sensor data of a {@link Measurement} from the size of its sensor
+     * data files. The segments of the {@link MeasurementSerializer#PERSISTENCE_FILE_FORMAT_VERSION_4} are copied into
+     * the transfer file without compressing them again, so the estimate is close for this format.
+     *
+     * @param persistence The {@link PersistenceLayer} to locate the files with
+     * @param measurementId The identifier of the {@code Measurement}
+     * @return The estimated number of bytes
+     */
+    private long estimateTransferLength(@NonNull final PersistenceLayer<DefaultPersistenceBehaviour> persistence,
+            final long measurementId) {
+        final String[] folderNames = new String[] {Point3dFile.ACCELERATIONS_FOLDER_NAME,
+                Point3dFile.ROTATIONS_FOLDER_NAME, Point3dFile.DIRECTIONS_FOLDER_NAME};
+        final String[] fileExtensions = new String[] {Point3dFile.ACCELERATIONS_FILE_EXTENSION,
+                Point3dFile.ROTATION_FILE_EXTENSION, Point3dFile.DIRECTION_FILE_EXTENSION};
+        long length = 0L;
+        for (int i = 0; i < folderNames.length; i++) {
+            final File file = persistence.getFileAccessLayer().getFilePath(persistence.getContext(), measurementId,
+                    folderNames[i], fileExtensions[i]);
+            File segmentFile = file;
+            for (int segment = 1; segmentFile.exists(); segment++) {
+                length += segmentFile.length();
+                segmentFile = Point3dFileSegments.getSegmentFile(file, segment);
+            }
+        }
+        return length;
+    }
+
     /**
      * Checks whether the network was disconnected or the synchronization was interrupted.
      *
@@ -320,25 +683,19 @@ public final class SyncAdapter extends AbstractThreadedSyncAdapter {
      * @param deviceId The device identifier generated for this device
      * @param context The {@code Context} to load the version name of this SDK
      * @return The {@link MetaData} loaded
-     * @throws CursorIsNullException when accessing the {@code ContentProvider} failed
      */
     private MetaData loadMetaData(@NonNull final Measurement measurement,
             PersistenceLayer<DefaultPersistenceBehaviour> persistence, @NonNull final String deviceId,
-            @NonNull final Context context) throws CursorIsNullException {
+            @NonNull final Context context) {
 
         // If there is only one location captured, start and end locations are identical
-        final List<Track> tracks = persistence.loadTracks(measurement.getIdentifier());
-        int locationCount = 0;
-        for (final Track track : tracks) {
-            locationCount += track.getGeoLocations().size();
-        }
-        Validate.isTrue(tracks.size() == 0 || (tracks.get(0).getGeoLocations().size() > 0
-                && tracks.get(tracks.size() - 1).getGeoLocations().size() > 0));
-        final List<GeoLocation> lastTrack = tracks.size() > 0 ? tracks.get(tracks.size() - 1).getGeoLocations() : null;
+        // Aggregated by the database to avoid loading the whole track
+        final GeoLocationAggregate locations = persistence.aggregateGeoLocations(measurement.getIdentifier());
+        final int locationCount = locations.getCount();
         @Nullable
-        final GeoLocation startLocation = tracks.size() > 0 ? tracks.get(0).getGeoLocations().get(0) : null;
+        final GeoLocation startLocation = locations.getStartLocation();
         @Nullable
-        final GeoLocation endLocation = lastTrack != null ? lastTrack.get(lastTrack.size() - 1) : null;
+        final GeoLocation endLocation = locations.getEndLocation();
 
         // Non location meta data
         final String deviceType = android.os.Build.MODEL;
@@ -377,7 +734,10 @@ public final class SyncAdapter extends AbstractThreadedSyncAdapter {
         return ContentResolver.getSyncAutomatically(account, authority);
     }
 
-    private void addConnectionListener(@NonNull final ConnectionStatusListener listener) {
+    /**
+     * @param listener The {@link ConnectionStatusListener} to inform about the synchronization and its progress
+     */
+    void addConnectionListener(@NonNull final ConnectionStatusListener listener) {
         progressListener.add(listener);
     }
 
@@ -61,11 +61,19 @@ import de.cyface.synchronization.exception.HostUnresolvable;
  *
  * @author Klemens Muthmann
  * @author Armin Schnabel
- * @version 5.0.2
+ * @version 5.2.2
  * @since 2.0.0
  */
 class SyncPerformer {
 
+    /**
+     * The name of the multipart request part with the {@link Measurement} data.
+     */
+    private static final String MEASUREMENT_PART_NAME = "fileToUpload";
+    /**
+     * The name of the multipart request part with the {@link Event} data.
+     */
+    private static final String EVENTS_PART_NAME = "eventsFile";
     /**
      * Socket Factory required to communicate with the Cyface Server when using a self signed certificate issued by that
      * server. Further details are available in the
@@ -124,27 +132,159 @@ class SyncPerformer {
                 DefaultFileAccess.humanReadableByteCount(compressedTransferTempFile.length(), true)));
         Log.d(Constants.TAG, String.format("Transferring compressed events (%s)",
                 DefaultFileAccess.humanReadableByteCount(compressedEventsTransferTempFile.length(), true)));
-        HttpURLConnection.setFollowRedirects(false);
-        HttpURLConnection connection = null;
-        final String fileName = String.format(Locale.US, "%s_%d." + Constants.TRANSFER_FILE_EXTENSION,
-                metaData.deviceId, metaData.measurementId);
-        final String eventsFileName = String.format(Locale.US, "%s_%d." + Constants.EVENTS_TRANSFER_FILE_EXTENSION,
-                metaData.deviceId, metaData.measurementId);
+        return sendData(http, syncResult, dataServerUrl, metaData,
+                new FilePart(transferFileName(metaData), compressedTransferTempFile, MEASUREMENT_PART_NAME),
+                new FilePart(eventsTransferFileName(metaData), compressedEventsTransferTempFile, EVENTS_PART_NAME),
+                progressListener, jwtAuthToken);
+    }
+
+    /**
+     * Triggers the data transmission to a Cyface server API like
+     * {@link #sendData(Http, SyncResult, String, SyncAdapter.MetaData, File, File, UploadProgressListener, String)}
+     * but writes the data directly into the request instead of reading it from files.
+     * <p>
+     * If {@code chunked} is {@code false}, each {@link StreamedFilePart.Writer} is called twice as the length of the
+     * request is calculated before the upload. Use the {@code File} based method instead when producing the data is
+     * expensive, e.g. when it has to be compressed.
+     *
+     * @param http The {@link Http} connection to use for transmission
+     * @param syncResult The {@link SyncResult} used to store sync error information.
+     * @param dataServerUrl The server URL to send the data to.
+     * @param metaData The {@link SyncAdapter.MetaData} required for the Multipart request.
+     * @param measurementWriter The {@link StreamedFilePart.Writer} of the compressed {@link Measurement} data
+     * @param eventsWriter The {@link StreamedFilePart.Writer} of the compressed {@link Event} data of the
+     *            {@code Measurement}
+     * @param chunked {@code true} if the server accepts requests with chunked transfer encoding
+     * @param estimatedMeasurementLength The approximate number of bytes of the compressed {@code Measurement} data,
+     *            which is used to report the progress in the chunked mode, or {@code -1} if unknown
+     * @param progressListener The {@link UploadProgressListener} to be informed about the upload progress.
+     * @param jwtAuthToken A valid JWT auth token to authenticate the transmission
+     * @return True of the transmission was successful.
+     */
+    boolean sendData(@NonNull final Http http, @NonNull final SyncResult syncResult,
+            @NonNull final String dataServerUrl, @NonNull final SyncAdapter.MetaData metaData,
+            @NonNull final StreamedFilePart.Writer measurementWriter,
+            @NonNull final StreamedFilePart.Writer eventsWriter, final boolean chunked,
+            final long estimatedMeasurementLength, @NonNull final UploadProgressListener progressListener,
+            @NonNull final String jwtAuthToken) {
 
+        final FilePart measurementPart;
+        final FilePart eventsPart;
         try {
-            final URL url = new URL(String.format("%s/measurements", dataServerUrl));
-            Log.i(TAG, String.format(Locale.GERMAN, "Uploading %s and %s to %s", fileName, eventsFileName,
-                    url.toString()));
-            try {
-                connection = http.openHttpConnection(url, sslContext, true, jwtAuthToken);
-                http.post(connection, metaData, progressListener,
-                        new FilePart(fileName, compressedTransferTempFile, "fileToUpload"),
-                        new FilePart(eventsFileName, compressedEventsTransferTempFile, "eventsFile"));
-            } finally {
-                if (connection != null) {
-                    connection.disconnect();
+            measurementPart = new StreamedFilePart(transferFileName(metaData), MEASUREMENT_PART_NAME,
+                    measurementWriter, chunked, estimatedMeasurementLength);
+            eventsPart = new StreamedFilePart(eventsTransferFileName(metaData), EVENTS_PART_NAME, eventsWriter,
+                    chunked);
+        } catch (final IOException e) {
+            syncResult.stats.numIoExceptions++;
+            sendErrorIntent(context, SYNCHRONIZATION_ERROR.getCode(), e.getMessage());
+            return false;
+        }
+        Log.d(Constants.TAG, String.format("Transferring compressed measurement (%s) and events (%s)",
+                chunked ? "chunked" : DefaultFileAccess.humanReadableByteCount(measurementPart.contentLength(), true),
+                chunked ? "chunked" : DefaultFileAccess.humanReadableByteCount(eventsPart.contentLength(), true)));
+        return sendData(http, syncResult, dataServerUrl, metaData, measurementPart, eventsPart, progressListener,
+                jwtAuthToken);
+    }
+
+    /**
+     * Transmits the {@link FilePart}s to a Cyface server API, see
+     * {@link #sendData(Http, SyncResult, String, SyncAdapter.MetaData, File, File, UploadProgressListener, String)}.
+     *
+     * @param http The {@link Http} connection to use for transmission
+     * @param syncResult The {@link SyncResult} used to store sync error information.
+     * @param dataServerUrl The server URL to send the data to.
+     * @param metaData The {@link SyncAdapter.MetaData} required for the Multipart request.
+     * @param measurementPart The {@link FilePart} with the {@link Measurement} data to transmit
+     * @param eventsPart The {@link FilePart} with the {@link Event} data of the {@link Measurement} to transmit
+     * @param progressListener The {@link UploadProgressListener} to be informed about the upload progress.
+     * @param jwtAuthToken A valid JWT auth token to authenticate the transmission
+     * @return True of the transmission was successful.
+     */
+    private boolean sendData(@NonNull final Http http, @NonNull final SyncResult syncResult,
+            @NonNull final String dataServerUrl, @NonNull final SyncAdapter.MetaData metaData,
+            @NonNull final FilePart measurementPart, @NonNull final FilePart eventsPart,
+            @NonNull final UploadProgressListener progressListener, @NonNull final String jwtAuthToken) {
+
+        return transmit(syncResult, new Transmission() {
+            @Override
+            public void run() throws MalformedURLException, SynchronisationException, BadRequestException,
+                    UnauthorizedException, InternalServerErrorException, ForbiddenException,
+                    EntityNotParsableException, ConflictException, NetworkUnavailableException,
+                    SynchronizationInterruptedException, TooManyRequestsException, HostUnresolvable,
+                    ServerUnavailableException {
+                HttpURLConnection.setFollowRedirects(false);
+                HttpURLConnection connection = null;
+                final URL url = new URL(String.format("%s/measurements", dataServerUrl));
+                Log.i(TAG, String.format(Locale.GERMAN, "Uploading %s and %s to %s", transferFileName(metaData),
+                        eventsTransferFileName(metaData), url.toString()));
+                try {
+                    connection = http.openHttpConnection(url, sslContext, true, jwtAuthToken);
+                    http.post(connection, metaData, progressListener, measurementPart, eventsPart);
+                } finally {
+                    if (connection != null) {
+                        connection.disconnect();
+                    }
                 }
             }
+        });
+    }
+
+    /**
+     * Triggers the data transmission to a Cyface server API like
+     * {@link #sendData(Http, SyncResult, String, SyncAdapter.MetaData, File, File, UploadProgressListener, String)}
+     * but uploads the transfer files in chunks, see {@link ResumableUpload}. When the transmission fails, the next
+     * call continues the upload after the bytes committed by the server.
+     *
+     * @param http The {@link Http} connection to use for transmission
+     * @param syncResult The {@link SyncResult} used to store sync error information.
+     * @param dataServerUrl The server URL to send the data to.
+     * @param metaData The {@link SyncAdapter.MetaData} of the {@link Measurement} to transmit.
+     * @param measurementUpload The {@link ResumableUpload} of the {@code Measurement} data, whose file must exist
+     * @param eventsUpload The {@link ResumableUpload} of the {@link Event} data of the {@code Measurement}, whose file
+     *            must exist
+     * @param progressListener The {@link UploadProgressListener} to be informed about the upload progress.
+     * @param jwtAuthToken A valid JWT auth token to authenticate the transmission
+     * @return True of the transmission was successful.
+     */
+    boolean sendData(@NonNull final Http http, @NonNull final SyncResult syncResult,
+            @NonNull final String dataServerUrl, @NonNull final SyncAdapter.MetaData metaData,
+            @NonNull final ResumableUpload measurementUpload, @NonNull final ResumableUpload eventsUpload,
+            @NonNull final UploadProgressListener progressListener, @NonNull final String jwtAuthToken) {
+
+        Log.d(Constants.TAG, String.format("Transferring compressed measurement (%s) and events (%s) resumable",
+                DefaultFileAccess.humanReadableByteCount(measurementUpload.getFile().length(), true),
+                DefaultFileAccess.humanReadableByteCount(eventsUpload.getFile().length(), true)));
+        return transmit(syncResult, new Transmission() {
+            @Override
+            public void run() throws MalformedURLException, SynchronisationException, BadRequestException,
+                    UnauthorizedException, InternalServerErrorException, ForbiddenException,
+                    EntityNotParsableException, ConflictException, NetworkUnavailableException,
+                    SynchronizationInterruptedException, TooManyRequestsException, HostUnresolvable,
+                    ServerUnavailableException {
+                HttpURLConnection.setFollowRedirects(false);
+                Log.i(TAG, String.format(Locale.GERMAN, "Uploading %s and %s to %s", transferFileName(metaData),
+                        eventsTransferFileName(metaData), dataServerUrl));
+                measurementUpload.upload(http, sslContext, dataServerUrl, metaData, transferFileName(metaData),
+                        MEASUREMENT_PART_NAME, progressListener, jwtAuthToken);
+                eventsUpload.upload(http, sslContext, dataServerUrl, metaData, eventsTransferFileName(metaData),
+                        EVENTS_PART_NAME, progressListener, jwtAuthToken);
+            }
+        });
+    }
+
+    /**
+     * Runs a {@link Transmission} and handles its errors.
+     * <p>
+     * Sync errors are broadcasted to the {@link ErrorHandler}.
+     *
+     * @param syncResult The {@link SyncResult} used to store sync error information.
+     * @param transmission The {@code Transmission} to run.
+     * @return True of the transmission was successful.
+     */
+    private boolean transmit(@NonNull final SyncResult syncResult, @NonNull final Transmission transmission) {
+        try {
+            transmission.run();
         } catch (final ServerUnavailableException e) {
             // The SyncResults come from Android and help the SyncAdapter to re-schedule the sync
             syncResult.stats.numIoExceptions++;
@@ -202,4 +342,53 @@ class SyncPerformer {
         syncResult.stats.numUpdates++; // Upload was successful, measurement can be marked as synced
         return true;
     }
+
+    /**
+     * A data transmission to a Cyface server API.
+     */
+    private interface Transmission {
+        /**
+         * Transmits the data.
+         *
+         * @throws MalformedURLException If the server URL is invalid.
+         * @throws SynchronisationException If an IOException occurred during synchronization.
+         * @throws BadRequestException When server returns {@code HttpURLConnection#HTTP_BAD_REQUEST}
+         * @throws UnauthorizedException When the server returns {@code HttpURLConnection#HTTP_UNAUTHORIZED}
+         * @throws InternalServerErrorException When the server returns {@code HttpURLConnection#HTTP_INTERNAL_ERROR}
+         * @throws ForbiddenException When the server returns {@code HttpURLConnection#HTTP_FORBIDDEN}
+         * @throws EntityNotParsableException When the server returns
+         *             {@link HttpConnection#HTTP_ENTITY_NOT_PROCESSABLE}
+         * @throws ConflictException When the server returns {@code HttpURLConnection#HTTP_CONFLICT}
+         * @throws NetworkUnavailableException When the network used for transmission becomes unavailable.
+         * @throws SynchronizationInterruptedException When the transmission stream ended too early
+         * @throws TooManyRequestsException When the server returns {@link HttpConnection#HTTP_TOO_MANY_REQUESTS}
+         * @throws HostUnresolvable e.g. when the phone is connected to a network which is not connected to the
+         *             internet
+         * @throws ServerUnavailableException When no connection could be established with the server
+         */
+        void run() throws MalformedURLException, SynchronisationException, BadRequestException,
+                UnauthorizedException, InternalServerErrorException, ForbiddenException, EntityNotParsableException,
+                ConflictException, NetworkUnavailableException, SynchronizationInterruptedException,
+                TooManyRequestsException, HostUnresolvable, ServerUnavailableException;
+    }
+
+    /**
+     * @param metaData The {@link SyncAdapter.MetaData} of the {@link Measurement} to transmit
+     * @return The multipart name of the file with the {@code Measurement} data
+     */
+    @NonNull
+    private static String transferFileName(@NonNull final SyncAdapter.MetaData metaData) {
+        return String.format(Locale.US, "%s_%d." + Constants.TRANSFER_FILE_EXTENSION, metaData.deviceId,
+                metaData.measurementId);
+    }
+
+    /**
+     * @param metaData The {@link SyncAdapter.MetaData} of the {@link Measurement} to transmit
+     * @return The multipart name of the file with the {@link Event} data
+     */
+    @NonNull
+    private static String eventsTransferFileName(@NonNull final SyncAdapter.MetaData metaData) {
+        return String.format(Locale.US, "%s_%d." + Constants.EVENTS_TRANSFER_FILE_EXTENSION, metaData.deviceId,
+                metaData.measurementId);
+    }
 }
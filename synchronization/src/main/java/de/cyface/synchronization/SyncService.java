@@ -14,7 +14,7 @@ import android.util.Log;
  *
  * @author Armin Schnabel
  * @author Klemens Muthmann
- * @version 1.0.8
+ * @version 1.3.0
  * @since 2.0.0
  */
 public final class SyncService extends Service {
@@ -28,6 +28,22 @@ public final class SyncService extends Service {
      * The settings key used to identify the settings storing the URL of the server to upload data to.
      */
     public static final String SYNC_ENDPOINT_URL_SETTINGS_KEY = "de.cyface.sync.endpoint";
+    /**
+     * The settings key used to identify the settings storing whether the server accepts uploads with chunked transfer
+     * encoding. If not set, the length of the upload is calculated before the upload.
+     */
+    public static final String SYNC_CHUNKED_UPLOAD_SETTINGS_KEY = "de.cyface.sync.chunked_upload";
+    /**
+     * The settings key used to identify the settings storing whether the server supports resumable uploads. If set,
+     * an interrupted upload continues where it stopped in the next synchronization, which takes precedence over
+     * {@link #SYNC_CHUNKED_UPLOAD_SETTINGS_KEY}.
+     */
+    public static final String SYNC_RESUMABLE_UPLOAD_SETTINGS_KEY = "de.cyface.sync.resumable_upload";
+    /**
+     * The settings key used to identify the settings storing the maximal number of measurements which are serialized
+     * and uploaded at the same time, as {@code int}. If not set, two measurements are synchronized at the same time.
+     */
+    public static final String SYNC_CONCURRENCY_SETTINGS_KEY = "de.cyface.sync.concurrency";
     /**
      * The synchronisation adapter this service is supposed to call.
      * <p>
@@ -29,6 +29,7 @@ import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.when;
 
 import java.io.BufferedOutputStream;
@@ -70,7 +71,7 @@ import de.cyface.utils.Validate;
 /**
  *
  * @author Armin Schnabel
- * @version 1.1.0
+ * @version 1.1.1
  * @since 5.0.0-beta1
  */
 @RunWith(RobolectricTestRunner.class)
@@ -110,7 +111,8 @@ public class EventsFileSerializerTest {
         Uri eventUri = Utils.getEventUri(AUTHORITY);
         when(loader.createEventTableUri()).thenReturn(eventUri);
         when(loader.countData(eventUri, EventTable.COLUMN_MEASUREMENT_FK)).thenReturn(SAMPLE_EVENTS);
-        when(loader.loadEvents(anyInt(), anyInt())).thenReturn(eventsCursor);
+        when(loader.loadEvents(anyLong(), anyLong(), anyInt())).thenReturn(eventsCursor);
+        when(eventsCursor.getCount()).thenReturn(SAMPLE_EVENTS);
 
         // Mock insert of 5 Events
         when(eventsCursor.moveToNext()).thenReturn(true).thenReturn(true).thenReturn(true).thenReturn(true)
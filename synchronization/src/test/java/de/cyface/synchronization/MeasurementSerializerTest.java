@@ -89,7 +89,7 @@ import de.cyface.utils.Validate;
  *
  * @author Klemens Muthmann
  * @author Armin Schnabel
- * @version 2.4.0
+ * @version 2.4.1
  * @since 2.0.0
  */
 @RunWith(RobolectricTestRunner.class)
@@ -150,11 +150,11 @@ public class MeasurementSerializerTest {
         when(loader.createGeoLocationTableUri()).thenReturn(geoLocationUri);
         when(loader.countData(geoLocationUri, GeoLocationsTable.COLUMN_MEASUREMENT_FK))
                 .thenReturn(SAMPLE_GEO_LOCATIONS);
-        when(loader.loadGeoLocations(anyInt(), anyInt())).thenReturn(geoLocationsCursor);
+        when(loader.loadGeoLocations(anyLong(), anyLong(), anyInt())).thenReturn(geoLocationsCursor);
 
         // Mock point counters
         final Measurement measurement = new Measurement(1L, OPEN, Modality.UNKNOWN,
-                MeasurementSerializer.PERSISTENCE_FILE_FORMAT_VERSION, 0.0, 123L);
+                MeasurementSerializer.PERSISTENCE_FILE_FORMAT_VERSION_1, 0.0, 123L);
         when(persistence.loadMeasurement(anyLong())).thenReturn(measurement);
         when(persistence.getContext()).thenReturn(mockedContext);
         when(geoLocationsCursor.getCount()).thenReturn(SAMPLE_GEO_LOCATIONS);
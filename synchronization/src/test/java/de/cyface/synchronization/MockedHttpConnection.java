@@ -0,0 +1,169 @@
+/*
+ * Copyright 2021 Cyface GmbH
+ *
+ * This file is part of the Cyface SDK for Android.
+ *
+ * The Cyface SDK for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface SDK for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface SDK for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.synchronization;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.net.ssl.SSLContext;
+
+import org.json.JSONObject;
+
+import androidx.annotation.NonNull;
+
+/**
+ * An HTTP connection that does not actually connect to the server. This is useful for testing code requiring a
+ * connection.
+ * <p>
+ * The {@link FilePart}s posted are written to a stream which discards the data, so the data is serialized and the
+ * progress is reported like for a real upload. The uploads of selected measurements can be failed.
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 6.2.0
+ */
+final class MockedHttpConnection implements Http {
+
+    /**
+     * The identifiers of the measurements whose upload is rejected with an {@link EntityNotParsableException}.
+     */
+    private final Set<Long> rejectedMeasurements = Collections.synchronizedSet(new HashSet<Long>());
+    /**
+     * The identifiers of the measurements whose upload fails with a {@link NetworkUnavailableException}.
+     */
+    private final Set<Long> unreachableMeasurements = Collections.synchronizedSet(new HashSet<Long>());
+    /**
+     * The identifiers of the measurements which were posted, in the order of the requests.
+     */
+    private final List<Long> postedMeasurements = Collections.synchronizedList(new ArrayList<Long>());
+
+    /**
+     * @param measurementId The identifier of the measurement whose upload is rejected by the server
+     */
+    void reject(final long measurementId) {
+        rejectedMeasurements.add(measurementId);
+    }
+
+    /**
+     * @param measurementId The identifier of the measurement whose upload fails as the network is unavailable
+     */
+    void failNetwork(final long measurementId) {
+        unreachableMeasurements.add(measurementId);
+    }
+
+    /**
+     * @return The identifiers of the measurements which were posted, in the order of the requests
+     */
+    List<Long> getPostedMeasurements() {
+        synchronized (postedMeasurements) {
+            return new ArrayList<>(postedMeasurements);
+        }
+    }
+
+    @NonNull
+    @Override
+    public String returnUrlWithTrailingSlash(@NonNull String url) {
+        return url;
+    }
+
+    @NonNull
+    @Override
+    public HttpURLConnection openHttpConnection(@NonNull URL url, @NonNull SSLContext sslContext,
+            boolean hasBinaryContent, @NonNull String jwtBearer) throws SynchronisationException {
+        return openHttpConnection(url, sslContext, hasBinaryContent);
+    }
+
+    @NonNull
+    @Override
+    public HttpURLConnection openHttpConnection(@NonNull URL url, @NonNull SSLContext sslContext,
+            boolean hasBinaryContent) throws SynchronisationException {
+        try {
+            return (HttpURLConnection)url.openConnection();
+        } catch (IOException e) {
+            throw new SynchronisationException("Mocked Err", e);
+        }
+    }
+
+    @NonNull
+    @Override
+    public HttpResponse post(@NonNull HttpURLConnection connection, @NonNull JSONObject payload, boolean compress) {
+        return new HttpResponse(201, "");
+    }
+
+    @NonNull
+    @Override
+    public HttpResponse post(@NonNull HttpURLConnection connection, @NonNull SyncAdapter.MetaData metaData,
+            @NonNull UploadProgressListener progressListener, @NonNull FilePart... fileParts)
+            throws SynchronisationException, EntityNotParsableException, NetworkUnavailableException {
+        postedMeasurements.add(metaData.measurementId);
+        if (unreachableMeasurements.contains(metaData.measurementId)) {
+            throw new NetworkUnavailableException("Mocked network error");
+        }
+
+        try (final BufferedOutputStream outputStream = new BufferedOutputStream(new OutputStream() {
+            @Override
+            public void write(final int b) {
+                // Nothing to do here.
+            }
+
+            @Override
+            public void write(@NonNull final byte[] b, final int off, final int len) {
+                // Nothing to do here.
+            }
+        })) {
+            for (final FilePart filePart : fileParts) {
+                filePart.writeTo(outputStream, progressListener);
+            }
+        } catch (final IOException e) {
+            throw new SynchronisationException("Mocked Err", e);
+        }
+
+        if (rejectedMeasurements.contains(metaData.measurementId)) {
+            throw new EntityNotParsableException("Mocked rejection");
+        }
+        return new HttpResponse(201, "");
+    }
+
+    @NonNull
+    @Override
+    public String startUploadSession(@NonNull HttpURLConnection connection, @NonNull SyncAdapter.MetaData metaData,
+            @NonNull String fileName, @NonNull String partName, long uploadLength) {
+        return connection.getURL().toString() + "/1";
+    }
+
+    @Override
+    public long requestUploadStatus(@NonNull HttpURLConnection connection, long uploadLength) {
+        return -1L; // Session unknown
+    }
+
+    @Override
+    public long uploadChunk(@NonNull HttpURLConnection connection, @NonNull File file, long offset, long length,
+            long uploadLength) {
+        return offset + length;
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright 2021 Cyface GmbH
+ *
+ * This file is part of the Cyface SDK for Android.
+ *
+ * The Cyface SDK for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface SDK for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface SDK for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.synchronization;
+
+import static de.cyface.testutils.SharedTestUtils.generateGeoLocation;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import javax.net.ssl.SSLContext;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import android.os.Build;
+
+import de.cyface.persistence.model.Modality;
+
+/**
+ * Tests that the {@link ResumableUpload} continues an interrupted upload at the offset committed by the server, using a
+ * stand-in collector server which implements the upload protocol.
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 6.2.0
+ */
+@RunWith(RobolectricTestRunner.class)
+// Config.NONE: To avoid warning
+// sdk: To be able to execute tests with Java 8 (instead of 9)
+@Config(manifest = Config.NONE, sdk = Build.VERSION_CODES.O_MR1)
+public class ResumableUploadTest {
+
+    private static final int CHUNK_BYTES = 1_000;
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    private HttpServer server;
+    private StandInCollector collector;
+    private String dataServerUrl;
+    private byte[] data;
+    private File file;
+    private SyncAdapter.MetaData metaData;
+
+    @Before
+    public void setUp() throws IOException {
+        collector = new StandInCollector();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/uploads", collector);
+        server.start();
+        dataServerUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/api";
+
+        data = new byte[10 * CHUNK_BYTES + 123];
+        new Random(1L).nextBytes(data);
+        file = folder.newFile("1.ccyf");
+        try (final FileOutputStream outputStream = new FileOutputStream(file)) {
+            outputStream.write(data);
+        }
+        metaData = new SyncAdapter.MetaData(generateGeoLocation(0), generateGeoLocation(10), "test-did", 1L,
+                "test_deviceType", "test_osVersion", "test_appVersion", 10.0, 5, Modality.BICYCLE);
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    /**
+     * Tests that a sync attempt after a failed chunk only sends the bytes which the server did not commit yet.
+     */
+    @Test
+    public void testUpload_resumesAtCommittedOffset() throws Exception {
+        // Arrange
+        collector.failAtOffset = 4 * CHUNK_BYTES;
+        final RecordingProgressListener progressListener = new RecordingProgressListener();
+
+        // Act
+        try {
+            upload(new ResumableUpload(file, CHUNK_BYTES), progressListener);
+            fail("The failed chunk was not reported");
+        } catch (final InternalServerErrorException e) {
+            // Expected
+        }
+        // A new instance, like in the next sync attempt
+        upload(new ResumableUpload(file, CHUNK_BYTES), progressListener);
+
+        // Assert
+        assertThat(collector.sessionsStarted, is(equalTo(1)));
+        assertThat(collector.sessions.get("/api/uploads/1").toByteArray(), is(equalTo(data)));
+        // Only the failed chunk is sent twice
+        assertThat(collector.bytesReceived, is(equalTo((long)data.length + CHUNK_BYTES)));
+        assertThat(progressListener.progress, is(equalTo(100.0f)));
+    }
+
+    /**
+     * Tests that a new session is started when the server does not know the session of the previous attempt anymore.
+     */
+    @Test
+    public void testUpload_restartsUnknownSession() throws Exception {
+        // Arrange
+        collector.failAtOffset = 4 * CHUNK_BYTES;
+        final RecordingProgressListener progressListener = new RecordingProgressListener();
+        try {
+            upload(new ResumableUpload(file, CHUNK_BYTES), progressListener);
+            fail("The failed chunk was not reported");
+        } catch (final InternalServerErrorException e) {
+            // Expected
+        }
+        collector.sessions.clear();
+
+        // Act
+        upload(new ResumableUpload(file, CHUNK_BYTES), progressListener);
+
+        // Assert
+        assertThat(collector.sessionsStarted, is(equalTo(2)));
+        assertThat(collector.sessions.get("/api/uploads/2").toByteArray(), is(equalTo(data)));
+        assertThat(progressListener.progress, is(equalTo(100.0f)));
+    }
+
+    private void upload(final ResumableUpload upload, final UploadProgressListener progressListener)
+            throws Exception {
+        upload.upload(new HttpConnection(), SSLContext.getDefault(), dataServerUrl, metaData, "1.ccyf",
+                "fileToUpload", progressListener, "test-jwt");
+    }
+
+    /**
+     * Remembers the last progress reported.
+     */
+    private static final class RecordingProgressListener implements UploadProgressListener {
+
+        private float progress;
+
+        @Override
+        public void updatedProgress(final float percent) {
+            progress = percent;
+        }
+    }
+
+    /**
+     * A collector server which implements the upload protocol of the {@link ResumableUpload} in memory.
+     */
+    private static final class StandInCollector implements HttpHandler {
+
+        /**
+         * The bytes committed per session URL path.
+         */
+        private final Map<String, ByteArrayOutputStream> sessions = new HashMap<>();
+        private int sessionsStarted;
+        /**
+         * The number of bytes received in chunks, including the bytes of chunks which were not committed.
+         */
+        private long bytesReceived;
+        /**
+         * The offset of a chunk which is answered once with {@code HttpURLConnection#HTTP_INTERNAL_ERROR} or
+         * {@code -1} if no chunk fails.
+         */
+        private long failAtOffset = -1L;
+
+        @Override
+        public void handle(final HttpExchange exchange) throws IOException {
+            try {
+                final byte[] body = readAll(exchange.getRequestBody());
+                if ("POST".equals(exchange.getRequestMethod())) {
+                    final String session = "/api/uploads/" + (++sessionsStarted);
+                    sessions.put(session, new ByteArrayOutputStream());
+                    exchange.getResponseHeaders().add("Location", session);
+                    exchange.sendResponseHeaders(HttpURLConnection.HTTP_CREATED, -1);
+                    return;
+                }
+
+                final ByteArrayOutputStream committed = sessions.get(exchange.getRequestURI().getPath());
+                if (committed == null) {
+                    exchange.sendResponseHeaders(HttpURLConnection.HTTP_NOT_FOUND, -1);
+                    return;
+                }
+                // Format: bytes */<total> or bytes <first>-<last>/<total>
+                final String range = exchange.getRequestHeaders().getFirst("Content-Range");
+                final long total = Long.parseLong(range.substring(range.indexOf('/') + 1));
+                if (!range.startsWith("bytes *")) {
+                    final long offset = Long.parseLong(range.substring("bytes ".length(), range.indexOf('-')));
+                    bytesReceived += body.length;
+                    if (offset == failAtOffset) {
+                        failAtOffset = -1L;
+                        exchange.sendResponseHeaders(HttpURLConnection.HTTP_INTERNAL_ERROR, -1);
+                        return;
+                    }
+                    if (offset == committed.size()) {
+                        committed.write(body);
+                    }
+                }
+
+                if (committed.size() == total) {
+                    exchange.sendResponseHeaders(HttpURLConnection.HTTP_CREATED, -1);
+                    return;
+                }
+                if (committed.size() > 0) {
+                    exchange.getResponseHeaders().add("Range", "bytes=0-" + (committed.size() - 1));
+                }
+                exchange.sendResponseHeaders(HttpConnection.HTTP_RESUME_INCOMPLETE, -1);
+            } finally {
+                exchange.close();
+            }
+        }
+
+        private static byte[] readAll(final InputStream inputStream) throws IOException {
+            final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[4096];
+            int read;
+            while ((read = inputStream.read(buffer)) >= 0) {
+                outputStream.write(buffer, 0, read);
+            }
+            return outputStream.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,302 @@
+/*
+ * Copyright 2021 Cyface GmbH
+ *
+ * This file is part of the Cyface SDK for Android.
+ *
+ * The Cyface SDK for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface SDK for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface SDK for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.synchronization;
+
+import static de.cyface.testutils.SharedTestUtils.generateGeoLocation;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import javax.net.ssl.SSLContext;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import android.os.Build;
+
+import androidx.annotation.NonNull;
+
+import de.cyface.persistence.model.Modality;
+
+/**
+ * Tests that the {@link StreamedFilePart} writes the same number of bytes it announced and reports the progress in
+ * steps, and that the {@link HttpConnection} uploads it with fixed length or chunked streaming.
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 6.2.0
+ */
+@RunWith(RobolectricTestRunner.class)
+// Config.NONE: To avoid warning
+// sdk: To be able to execute tests with Java 8 (instead of 9)
+@Config(manifest = Config.NONE, sdk = Build.VERSION_CODES.O_MR1)
+public class StreamedFilePartTest {
+
+    /**
+     * The number of bytes written by the {@link #writer} in each call of {@code OutputStream#write}.
+     */
+    private static final int WRITE_BYTES = 1_000;
+    private HttpServer server;
+    private RecordingCollector collector;
+    private String dataServerUrl;
+    private byte[] data;
+    private StreamedFilePart.Writer writer;
+
+    @Before
+    public void setUp() throws IOException {
+        collector = new RecordingCollector();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/measurements", collector);
+        server.start();
+        dataServerUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/api";
+
+        data = new byte[(int)(4 * FilePart.PROGRESS_STEP_BYTES) + 123];
+        new Random(1L).nextBytes(data);
+        writer = new StreamedFilePart.Writer() {
+            @Override
+            public void writeTo(@NonNull final OutputStream outputStream) throws IOException {
+                for (int offset = 0; offset < data.length; offset += WRITE_BYTES) {
+                    outputStream.write(data, offset, Math.min(WRITE_BYTES, data.length - offset));
+                }
+            }
+        };
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    /**
+     * Tests that the length counted in the first pass matches the number of bytes written in the second pass.
+     */
+    @Test
+    public void testWriteTo_lengthMatchesWrittenBytes() throws IOException {
+        // Arrange
+        final StreamedFilePart oocut = new StreamedFilePart("1.ccyf", "fileToUpload", writer, false);
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        // Act
+        final long written;
+        try (final BufferedOutputStream outputStream = new BufferedOutputStream(output)) {
+            written = oocut.writeTo(outputStream, new RecordingProgressListener());
+        }
+
+        // Assert
+        assertThat(oocut.contentLength(), is(equalTo((long)data.length)));
+        assertThat(written, is(equalTo(oocut.partLength())));
+        assertThat((long)output.size(), is(equalTo(written)));
+    }
+
+    /**
+     * Tests that the progress is only reported every {@link FilePart#PROGRESS_STEP_BYTES} and not on each write.
+     */
+    @Test
+    public void testWriteTo_throttlesProgress() throws IOException {
+        // Arrange
+        final StreamedFilePart oocut = new StreamedFilePart("1.ccyf", "fileToUpload", writer, false);
+        final RecordingProgressListener progressListener = new RecordingProgressListener();
+
+        // Act
+        write(oocut, progressListener);
+
+        // Assert
+        // One report per step and one when all data is written
+        assertThat(progressListener.progress.size(),
+                is(equalTo((int)(data.length / FilePart.PROGRESS_STEP_BYTES) + 1)));
+        assertIncreasing(progressListener.progress);
+        assertThat(progressListener.progress.get(progressListener.progress.size() - 1), is(equalTo(100.0f)));
+    }
+
+    /**
+     * Tests that the progress in the chunked mode is reported from the estimated length and only reaches 100 % when all
+     * data is written, also when the estimate is too small.
+     */
+    @Test
+    public void testWriteTo_chunkedReportsEstimatedProgress() throws IOException {
+        // Arrange
+        final StreamedFilePart oocut = new StreamedFilePart("1.ccyf", "fileToUpload", writer, true, data.length / 2);
+        final RecordingProgressListener progressListener = new RecordingProgressListener();
+
+        // Act
+        write(oocut, progressListener);
+
+        // Assert
+        final List<Float> progress = progressListener.progress;
+        assertThat(oocut.contentLength(), is(equalTo(-1L)));
+        assertThat(progress.size(), is(greaterThan(1)));
+        assertThat(progress.get(0), is(greaterThan(0.0f)));
+        for (final float percent : progress.subList(0, progress.size() - 1)) {
+            assertThat(percent, is(lessThan(100.0f)));
+        }
+        assertIncreasing(progress);
+        assertThat(progress.get(progress.size() - 1), is(equalTo(100.0f)));
+    }
+
+    /**
+     * Tests that a {@code StreamedFilePart} of known length is uploaded in the fixed length streaming mode with the
+     * announced number of bytes.
+     */
+    @Test
+    public void testPost_fixedLength() throws Exception {
+        // Arrange
+        final StreamedFilePart part = new StreamedFilePart("1.ccyf", "fileToUpload", writer, false);
+
+        // Act
+        post(part);
+
+        // Assert
+        assertThat(collector.transferEncoding, is(nullValue()));
+        assertThat(collector.contentLength, is(equalTo(String.valueOf(collector.body.length))));
+        assertThat(containsData(collector.body), is(equalTo(true)));
+    }
+
+    /**
+     * Tests that a {@code StreamedFilePart} of unknown length is uploaded in the chunked streaming mode.
+     */
+    @Test
+    public void testPost_chunked() throws Exception {
+        // Arrange
+        final StreamedFilePart part = new StreamedFilePart("1.ccyf", "fileToUpload", writer, true);
+
+        // Act
+        post(part);
+
+        // Assert
+        assertThat(collector.transferEncoding, is(equalTo("chunked")));
+        assertThat(collector.contentLength, is(nullValue()));
+        assertThat(containsData(collector.body), is(equalTo(true)));
+    }
+
+    private void write(final StreamedFilePart part, final UploadProgressListener progressListener)
+            throws IOException {
+        try (final BufferedOutputStream outputStream = new BufferedOutputStream(new ByteArrayOutputStream())) {
+            part.writeTo(outputStream, progressListener);
+        }
+    }
+
+    private void post(final StreamedFilePart part) throws Exception {
+        final HttpConnection http = new HttpConnection();
+        final SyncAdapter.MetaData metaData = new SyncAdapter.MetaData(generateGeoLocation(0), generateGeoLocation(10),
+                "test-did", 1L, "test_deviceType", "test_osVersion", "test_appVersion", 10.0, 5, Modality.BICYCLE);
+        final HttpURLConnection connection = http.openHttpConnection(new URL(dataServerUrl + "/measurements"),
+                SSLContext.getDefault(), true, "test-jwt");
+        try {
+            http.post(connection, metaData, new RecordingProgressListener(), part);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static void assertIncreasing(final List<Float> progress) {
+        for (int i = 1; i < progress.size(); i++) {
+            assertThat(progress.get(i), is(greaterThanOrEqualTo(progress.get(i - 1))));
+        }
+        for (final float percent : progress) {
+            assertThat(percent, is(lessThanOrEqualTo(100.0f)));
+        }
+    }
+
+    /**
+     * @param body The request body received
+     * @return {@code true} if the {@link #data} is part of the {@code body}
+     */
+    private boolean containsData(final byte[] body) {
+        for (int start = 0; start + data.length <= body.length; start++) {
+            boolean matches = true;
+            for (int i = 0; i < data.length && matches; i++) {
+                matches = body[start + i] == data[i];
+            }
+            if (matches) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Remembers all progress reported.
+     */
+    private static final class RecordingProgressListener implements UploadProgressListener {
+
+        private final List<Float> progress = new ArrayList<>();
+
+        @Override
+        public void updatedProgress(final float percent) {
+            progress.add(percent);
+        }
+    }
+
+    /**
+     * A collector server which records the last request.
+     */
+    private static final class RecordingCollector implements HttpHandler {
+
+        private String contentLength;
+        private String transferEncoding;
+        private byte[] body;
+
+        @Override
+        public void handle(final HttpExchange exchange) throws IOException {
+            try {
+                contentLength = exchange.getRequestHeaders().getFirst("Content-Length");
+                transferEncoding = exchange.getRequestHeaders().getFirst("Transfer-Encoding");
+                body = readAll(exchange.getRequestBody());
+                exchange.sendResponseHeaders(HttpURLConnection.HTTP_CREATED, -1);
+            } finally {
+                exchange.close();
+            }
+        }
+
+        private static byte[] readAll(final InputStream inputStream) throws IOException {
+            final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[4096];
+            int read;
+            while ((read = inputStream.read(buffer)) >= 0) {
+                outputStream.write(buffer, 0, read);
+            }
+            return outputStream.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright 2021 Cyface GmbH
+ *
+ * This file is part of the Cyface SDK for Android.
+ *
+ * The Cyface SDK for Android is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Cyface SDK for Android is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Cyface SDK for Android. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.cyface.synchronization;
+
+import static de.cyface.synchronization.Constants.AUTH_TOKEN_TYPE;
+import static de.cyface.synchronization.SyncAdapter.MOCK_IS_CONNECTED_TO_RETURN_TRUE;
+import static de.cyface.synchronization.TestUtils.ACCOUNT_TYPE;
+import static de.cyface.synchronization.TestUtils.AUTHORITY;
+import static de.cyface.testutils.SharedTestUtils.insertSampleMeasurementWithData;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import android.accounts.Account;
+import android.accounts.AccountManager;
+import android.content.ContentProviderClient;
+import android.content.Context;
+import android.content.SyncResult;
+import android.os.Build;
+import android.os.Bundle;
+import android.preference.PreferenceManager;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import de.cyface.persistence.DefaultPersistenceBehaviour;
+import de.cyface.persistence.MeasuringPointsContentProvider;
+import de.cyface.persistence.NoSuchMeasurementException;
+import de.cyface.persistence.PersistenceLayer;
+import de.cyface.persistence.model.MeasurementStatus;
+import de.cyface.utils.CursorIsNullException;
+
+/**
+ * Tests that the {@link SyncAdapter} synchronizes multiple measurements in parallel and handles the errors of single
+ * measurements, using the {@link MockedHttpConnection}.
+ * <p>
+ * This test is part of the Movebis flavour as the {@link CyfaceAuthenticator} of the Cyface flavour requires a server
+ * to log in.
+ *
+ * @author Armin Schnabel
+ * @version 1.0.0
+ * @since 6.2.0
+ */
+@RunWith(RobolectricTestRunner.class)
+// Config.NONE: To avoid warning
+// sdk: To be able to execute tests with Java 8 (instead of 9)
+@Config(manifest = Config.NONE, sdk = Build.VERSION_CODES.O_MR1)
+public class SyncAdapterLocalTest {
+
+    private static final int MEASUREMENTS = 3;
+    private Context context;
+    private Account account;
+    private PersistenceLayer<DefaultPersistenceBehaviour> persistence;
+    private MockedHttpConnection http;
+    private RecordingConnectionStatusListener statusListener;
+    private SyncAdapter oocut;
+
+    @Before
+    public void setUp() {
+        Robolectric.buildContentProvider(MeasuringPointsContentProvider.class).create(AUTHORITY);
+        context = ApplicationProvider.getApplicationContext();
+        persistence = new PersistenceLayer<>(context, context.getContentResolver(), AUTHORITY,
+                new DefaultPersistenceBehaviour());
+        PreferenceManager.getDefaultSharedPreferences(context).edit()
+                .putString(SyncService.SYNC_ENDPOINT_URL_SETTINGS_KEY, "https://localhost:8080/api/v2").apply();
+
+        final AccountManager accountManager = AccountManager.get(context);
+        account = new Account("test-user", ACCOUNT_TYPE);
+        accountManager.addAccountExplicitly(account, "test-password", null);
+        accountManager.setAuthToken(account, AUTH_TOKEN_TYPE, "test-jwt-token");
+
+        http = new MockedHttpConnection();
+        statusListener = new RecordingConnectionStatusListener();
+        oocut = new SyncAdapter(context, false, http);
+        oocut.addConnectionListener(statusListener);
+    }
+
+    /**
+     * Tests that the measurements which are not rejected by the server are synchronized, when another measurement is
+     * rejected.
+     */
+    @Test
+    public void testOnPerformSync_rejectedMeasurementDoesNotStopOthers()
+            throws CursorIsNullException, NoSuchMeasurementException {
+        // Arrange
+        setConcurrency(2);
+        final List<Long> measurementIds = insertMeasurements();
+        final long rejectedId = measurementIds.get(1);
+        http.reject(rejectedId);
+
+        // Act
+        final SyncResult syncResult = performSync();
+
+        // Assert
+        assertThat(http.getPostedMeasurements(), containsInAnyOrder(measurementIds.toArray()));
+        assertThat(syncResult.stats.numParseExceptions, is(equalTo(1L)));
+        assertThat(syncResult.stats.numIoExceptions, is(equalTo(0L)));
+        for (final long measurementId : measurementIds) {
+            assertThat(persistence.loadMeasurementStatus(measurementId), is(equalTo(
+                    measurementId == rejectedId ? MeasurementStatus.FINISHED : MeasurementStatus.SYNCED)));
+        }
+    }
+
+    /**
+     * Tests that no further measurements are started after the upload of a measurement failed because the network
+     * is unavailable.
+     */
+    @Test
+    public void testOnPerformSync_networkErrorStopsRemainingMeasurements()
+            throws CursorIsNullException, NoSuchMeasurementException {
+        // Arrange
+        // Only one measurement at a time, so the remaining measurements are not started yet when the upload fails
+        setConcurrency(1);
+        final List<Long> measurementIds = insertMeasurements();
+        for (final long measurementId : measurementIds) {
+            http.failNetwork(measurementId);
+        }
+
+        // Act
+        final SyncResult syncResult = performSync();
+
+        // Assert
+        assertThat(http.getPostedMeasurements().size(), is(equalTo(1)));
+        assertThat(syncResult.stats.numIoExceptions, is(equalTo(1L)));
+        for (final long measurementId : measurementIds) {
+            assertThat(persistence.loadMeasurementStatus(measurementId), is(equalTo(MeasurementStatus.FINISHED)));
+        }
+        assertThat(statusListener.progress.isEmpty(), is(equalTo(true)));
+    }
+
+    /**
+     * Tests that the progress of each measurement is reported with its identifier and reaches 100 %, also when the
+     * measurements are synchronized in parallel.
+     */
+    @Test
+    public void testOnPerformSync_progressPerMeasurement() throws CursorIsNullException {
+        // Arrange
+        setConcurrency(MEASUREMENTS);
+        final List<Long> measurementIds = insertMeasurements();
+
+        // Act
+        performSync();
+
+        // Assert
+        assertThat(statusListener.progress.keySet(), containsInAnyOrder(measurementIds.toArray()));
+        for (final List<Float> progress : statusListener.progress.values()) {
+            for (final float percent : progress) {
+                assertThat(percent, is(greaterThanOrEqualTo(0.0f)));
+                assertThat(percent, is(lessThanOrEqualTo(100.0f)));
+            }
+            assertThat(progress.get(progress.size() - 1), is(equalTo(100.0f)));
+        }
+        assertThat(statusListener.syncStarted, is(equalTo(1)));
+        assertThat(statusListener.syncFinished, is(equalTo(1)));
+    }
+
+    private void setConcurrency(final int concurrency) {
+        PreferenceManager.getDefaultSharedPreferences(context).edit()
+                .putInt(SyncService.SYNC_CONCURRENCY_SETTINGS_KEY, concurrency).apply();
+    }
+
+    private List<Long> insertMeasurements() throws CursorIsNullException {
+        final List<Long> measurementIds = new ArrayList<>();
+        for (int i = 0; i < MEASUREMENTS; i++) {
+            try {
+                measurementIds.add(insertSampleMeasurementWithData(context, AUTHORITY, MeasurementStatus.FINISHED,
+                        persistence, 100, 10).getIdentifier());
+            } catch (final NoSuchMeasurementException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return measurementIds;
+    }
+
+    private SyncResult performSync() {
+        final SyncResult syncResult = new SyncResult();
+        final Bundle extras = new Bundle();
+        extras.putString(MOCK_IS_CONNECTED_TO_RETURN_TRUE, "");
+        final ContentProviderClient client = context.getContentResolver().acquireContentProviderClient(AUTHORITY);
+        try {
+            oocut.onPerformSync(account, extras, AUTHORITY, client, syncResult);
+        } finally {
+            client.close();
+        }
+        return syncResult;
+    }
+
+    /**
+     * Records the events reported by the {@link SyncAdapter}. The progress is reported by multiple threads.
+     */
+    private static final class RecordingConnectionStatusListener implements ConnectionStatusListener {
+
+        /**
+         * The progress reported in percent by the identifier of the measurement.
+         */
+        private final Map<Long, List<Float>> progress = new HashMap<>();
+        private int syncStarted;
+        private int syncFinished;
+
+        @Override
+        public synchronized void onSyncStarted() {
+            syncStarted++;
+        }
+
+        @Override
+        public synchronized void onProgress(final float percent, final long measurementId) {
+            if (!progress.containsKey(measurementId)) {
+                progress.put(measurementId, new ArrayList<Float>());
+            }
+            progress.get(measurementId).add(percent);
+        }
+
+        @Override
+        public synchronized void onSyncFinished() {
+            syncFinished++;
+        }
+    }
+}
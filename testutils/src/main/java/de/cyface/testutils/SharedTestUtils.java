@@ -24,15 +24,13 @@ import static de.cyface.persistence.Utils.getGeoLocationsUri;
 import static de.cyface.persistence.Utils.getMeasurementUri;
 import static de.cyface.persistence.model.MeasurementStatus.FINISHED;
 import static de.cyface.persistence.model.MeasurementStatus.SYNCED;
-import static de.cyface.persistence.serialization.MeasurementSerializer.BYTES_IN_ONE_POINT_3D_ENTRY;
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.junit.Assert.assertThat;
 
 import java.io.File;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -60,9 +58,14 @@ import de.cyface.persistence.model.Measurement;
 import de.cyface.persistence.model.MeasurementStatus;
 import de.cyface.persistence.model.Modality;
 import de.cyface.persistence.model.Point3d;
+import de.cyface.persistence.model.Point3dBatch;
 import de.cyface.persistence.model.Track;
 import de.cyface.persistence.serialization.MeasurementSerializer;
+import de.cyface.persistence.serialization.Point3dBlockSerializer;
 import de.cyface.persistence.serialization.Point3dFile;
+import de.cyface.persistence.serialization.Point3dFileChecksums;
+import de.cyface.persistence.serialization.Point3dFileIndex;
+import de.cyface.persistence.serialization.Point3dFileSegments;
 import de.cyface.utils.CursorIsNullException;
 import de.cyface.utils.Validate;
 
@@ -71,7 +74,7 @@ import de.cyface.utils.Validate;
  * It's located in the main folder to be compiled and imported as dependency in the testImplementations.
  *
  * @author Armin Schnabel
- * @version 5.0.0
+ * @version 5.3.0
  * @since 3.0.0
  */
 public class SharedTestUtils {
@@ -173,7 +176,7 @@ public class SharedTestUtils {
         while (nextInsertedIndex < point3ds.size()) {
             final List<Point3d> sublist = point3ds.subList(nextInsertedIndex,
                     Math.min(nextInsertedIndex + insertLimit, point3ds.size()));
-            point3dFile.append(sublist);
+            point3dFile.append(new Point3dBatch(sublist));
             nextInsertedIndex += sublist.size();
             Log.v(TAG, "Inserted " + nextInsertedIndex);
         }
@@ -201,25 +204,23 @@ public class SharedTestUtils {
      */
     private static List<Point3d> deserializePoint3dData(final byte[] point3dFileBytes, final int pointCount) {
 
-        Validate.isTrue(point3dFileBytes.length == pointCount * BYTES_IN_ONE_POINT_3D_ENTRY);
-        if (pointCount == 0) {
-            return new ArrayList<>();
-        }
-
-        // Deserialize bytes
-        final List<Point3d> points = new ArrayList<>();
-        final ByteBuffer buffer = ByteBuffer.wrap(point3dFileBytes);
-        for (int i = 0; i < pointCount; i++) {
-            final long timestamp = buffer.order(ByteOrder.BIG_ENDIAN).getLong();
-            final double x = buffer.order(ByteOrder.BIG_ENDIAN).getDouble();
-            final double y = buffer.order(ByteOrder.BIG_ENDIAN).getDouble();
-            final double z = buffer.order(ByteOrder.BIG_ENDIAN).getDouble();
-            // final long timestamp = buffer.order(ByteOrder.BIG_ENDIAN).getLong();
-            points.add(new Point3d((float)x, (float)y, (float)z, timestamp));
-        }
+        final Point3dBatch points = Point3dBlockSerializer.deserialize(point3dFileBytes,
+                MeasurementSerializer.PERSISTENCE_FILE_FORMAT_VERSION);
+        Validate.isTrue(points.size() == pointCount);
 
         Log.d(TAG, "Deserialized Points: " + points.size());
-        return points;
+        return new ArrayList<>(points.asList());
+    }
+
+    /**
+     * @param file The file to check.
+     * @return {@code true} if the file is the {@link Point3dFileIndex}, the {@link Point3dFileChecksums} or the
+     *         manifest of the {@link Point3dFileSegments} of a {@link Point3dFile}.
+     */
+    private static boolean isSidecarFile(@NonNull final File file) {
+        return file.getName().endsWith("." + Point3dFileIndex.FILE_EXTENSION)
+                || file.getName().endsWith("." + Point3dFileChecksums.FILE_EXTENSION)
+                || file.getName().endsWith("." + Point3dFileSegments.MANIFEST_FILE_EXTENSION);
     }
 
     /**
@@ -234,7 +235,8 @@ public class SharedTestUtils {
      * @param resolver The {@link ContentResolver} required to access the database
      * @return number of rows removed from the database and number of <b>FILES</b> (not points) deleted. The earlier
      *         includes {@link Measurement}s, {@link GeoLocation}s and {@link Event}s.
-     *         The later includes the {@link Point3dFile}s.
+     *         The later includes the segments of the {@link Point3dFile}s but not their {@link Point3dFileIndex}es
+     *         and manifests.
      */
     public static int clearPersistenceLayer(@NonNull final Context context, @NonNull final ContentResolver resolver,
             @NonNull final String authority) {
@@ -250,8 +252,10 @@ public class SharedTestUtils {
             final File[] accelerationFiles = accelerationFolder.listFiles();
             for (File file : accelerationFiles) {
                 Validate.isTrue(file.delete());
+                if (!isSidecarFile(file)) {
+                    removedFiles++;
+                }
             }
-            removedFiles += accelerationFiles.length;
             Validate.isTrue(accelerationFolder.delete());
         }
 
@@ -261,8 +265,10 @@ public class SharedTestUtils {
             final File[] rotationFiles = rotationFolder.listFiles();
             for (File file : rotationFiles) {
                 Validate.isTrue(file.delete());
+                if (!isSidecarFile(file)) {
+                    removedFiles++;
+                }
             }
-            removedFiles += rotationFiles.length;
             Validate.isTrue(rotationFolder.delete());
         }
 
@@ -272,8 +278,10 @@ public class SharedTestUtils {
             final File[] directionFiles = directionFolder.listFiles();
             for (File file : directionFiles) {
                 Validate.isTrue(file.delete());
+                if (!isSidecarFile(file)) {
+                    removedFiles++;
+                }
             }
-            removedFiles += directionFiles.length;
             Validate.isTrue(directionFolder.delete());
         }
 
@@ -363,12 +371,13 @@ public class SharedTestUtils {
         // Check the sensor data (must be before measurements are marked as sync which deletes the data)
         // noinspection ConstantConditions - we may add tests with a 0 count later
         if (point3dCount > 0) {
-            assertThat((int)(accelerationsFile.getFile().length() / MeasurementSerializer.BYTES_IN_ONE_POINT_3D_ENTRY),
-                    is(equalTo(point3dCount)));
-            assertThat((int)(rotationsFile.getFile().length() / MeasurementSerializer.BYTES_IN_ONE_POINT_3D_ENTRY),
-                    is(equalTo(point3dCount)));
-            assertThat((int)(directionsFile.getFile().length() / MeasurementSerializer.BYTES_IN_ONE_POINT_3D_ENTRY),
-                    is(equalTo(point3dCount)));
+            try {
+                assertThat(Point3dBlockSerializer.countSamples(accelerationsFile.getFile()), is(equalTo(point3dCount)));
+                assertThat(Point3dBlockSerializer.countSamples(rotationsFile.getFile()), is(equalTo(point3dCount)));
+                assertThat(Point3dBlockSerializer.countSamples(directionsFile.getFile()), is(equalTo(point3dCount)));
+            } catch (final IOException e) {
+                throw new IllegalStateException(e);
+            }
         }
 
         if (status == SYNCED) {